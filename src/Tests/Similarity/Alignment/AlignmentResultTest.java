@@ -0,0 +1,109 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.AlignmentResult;
+import ie.atu.forge.Similarity.Alignment.NeedlemanWunsch;
+import ie.atu.forge.Similarity.Alignment.ScoringMatrix;
+import ie.atu.forge.Similarity.Alignment.SmithWaterman;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlignmentResultTest {
+
+    @Test
+    public void testLocalAlignment() {
+        SmithWaterman sw = new SmithWaterman();
+        AlignmentResult result = sw.alignment("TTTGATTACATTT", "CCGATCACACC");
+
+        // GATTACA against GATCACA: 3 matches, a mismatch, then 3 more matches.
+        assertEquals(3, result.subjectStart());
+        assertEquals(10, result.subjectEnd());
+        assertEquals(2, result.queryStart());
+        assertEquals(9, result.queryEnd());
+        assertEquals(5, result.score());
+        assertEquals("3=1X3=", result.cigarString());
+        assertEquals(7, result.length());
+        assertEquals(6, result.matches());
+        assertEquals(6.0 / 7, result.identity(), 1e-9);
+        assertArrayEquals(new String[]{ "GATTACA", "GATCACA" }, result.render());
+
+        int[] cigar = result.cigar();
+        assertEquals(3, cigar.length);
+        assertEquals(AlignmentResult.MISMATCH, AlignmentResult.operation(cigar[1]));
+        assertEquals(1, AlignmentResult.runLength(cigar[1]));
+    }
+
+    @Test
+    public void testGaps() {
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        AlignmentResult result = nw.alignment("ACGTT", "AGT");
+
+        assertEquals(0, result.subjectStart());
+        assertEquals(5, result.subjectEnd());
+        assertEquals(0, result.queryStart());
+        assertEquals(3, result.queryEnd());
+        assertArrayEquals(nw.align("ACGTT", "AGT"), result.render());
+        assertEquals(nw.score("ACGTT", "AGT"), result.score());
+
+        // Insertions and deletions in the CIGAR line up with the gaps in the rendered strings.
+        AlignmentResult insertion = nw.alignment("ACGT", "ACCGT");
+        assertEquals("1=1I3=", insertion.cigarString());
+        assertArrayEquals(new String[]{ "A-CGT", "ACCGT" }, insertion.render());
+    }
+
+    @Test
+    public void testEmptyAlignment() {
+        AlignmentResult result = new SmithWaterman().alignment("AAAA", "CCCC");
+
+        assertEquals(0, result.score());
+        assertEquals(0, result.length());
+        assertEquals(0.0, result.identity());
+        assertEquals("", result.cigarString());
+        assertArrayEquals(new String[]{ "", "" }, result.render());
+    }
+
+    @Test
+    public void testMatchesAlignAndScore() {
+        Random random = new Random(79);
+        String protein = "ARNDCQEGHILKMFPSTWYV";
+
+        SmithWaterman linear = new SmithWaterman();
+        linear.setLinearSpace(true);
+        SmithWaterman affine = SmithWaterman.builder().gapOpen(-3).scoringMatrix(ScoringMatrix.BLOSUM62).build();
+        NeedlemanWunsch global = NeedlemanWunsch.builder().scoringMatrix(ScoringMatrix.BLOSUM62).gap(-4).build();
+        NeedlemanWunsch globalLinear = NeedlemanWunsch.builder().gap(-2).linearSpace(true).build();
+
+        for(int n = 0; n < 40; n++) {
+            String s1 = randomSequence(random, protein, random.nextInt(150));
+            String s2 = randomSequence(random, protein, random.nextInt(150));
+
+            check(linear.alignment(s1, s2), linear.align(s1, s2), linear.score(s1, s2), s1, s2);
+            check(affine.alignment(s1, s2), affine.align(s1, s2), affine.score(s1, s2), s1, s2);
+            check(global.alignment(s1, s2), global.align(s1, s2), global.score(s1, s2), s1, s2);
+            check(globalLinear.alignment(s1, s2), globalLinear.align(s1, s2), globalLinear.score(s1, s2), s1, s2);
+        }
+    }
+
+    // The result should render to what align() returns, have the same score as score(), and its coordinates should cover exactly the aligned characters.
+    private void check(AlignmentResult result, String[] aligned, int score, String s1, String s2) {
+        assertArrayEquals(aligned, result.render());
+        assertEquals(score, result.score());
+        assertEquals(aligned[0].length(), result.length());
+        assertEquals(s1.substring(result.subjectStart(), result.subjectEnd()), aligned[0].replace("-", ""));
+        assertEquals(s2.substring(result.queryStart(), result.queryEnd()), aligned[1].replace("-", ""));
+
+        int matches = 0;
+        for(int i = 0; i < aligned[0].length(); i++) {
+            if(aligned[0].charAt(i) == aligned[1].charAt(i)) matches++;
+        }
+        assertEquals(matches, result.matches());
+    }
+
+    private String randomSequence(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+}
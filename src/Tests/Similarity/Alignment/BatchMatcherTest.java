@@ -0,0 +1,103 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.BatchMatcher;
+import ie.atu.forge.Similarity.Alignment.CandidateMatch;
+import ie.atu.forge.Similarity.Alignment.StringMetric;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+public class BatchMatcherTest {
+    private final List<String> words = List.of("kitten", "sitting", "mitten", "bitten", "kitchen", "sitten", "fitting", "kit", "written", "");
+
+    @Test
+    public void testBestMatchesLevenshtein() {
+        List<CandidateMatch> matches = BatchMatcher.bestMatches("sitten", words, StringMetric.LEVENSHTEIN, 4);
+
+        assertEquals(new CandidateMatch(5, "sitten", 0), matches.get(0));
+        // "kitten", "mitten" and "bitten" are all 1 edit away. Ties go to the earliest in the list.
+        assertEquals(List.of(0, 2, 3), matches.subList(1, 4).stream().map(CandidateMatch::index).toList());
+        assertTrue(matches.subList(1, 4).stream().allMatch(m -> m.score() == 1));
+    }
+
+    @Test
+    public void testTranspositions() {
+        List<String> candidates = List.of("abcd", "abdc", "bacd", "dcba");
+
+        assertEquals(List.of(0, 1, 2), indices(BatchMatcher.matchesWithin("abcd", candidates, StringMetric.DAMERAU_LEVENSHTEIN, 1)));
+        assertEquals(List.of(0), indices(BatchMatcher.matchesWithin("abcd", candidates, StringMetric.LEVENSHTEIN, 1)));
+    }
+
+    @Test
+    public void testBestMatchesJaroWinkler() {
+        List<CandidateMatch> matches = BatchMatcher.bestMatches("kiten", words, StringMetric.JARO_WINKLER, 2);
+
+        assertEquals(2, matches.size());
+        assertEquals("kitten", matches.get(0).candidate());
+        assertTrue(matches.get(0).score() >= matches.get(1).score());
+    }
+
+    @Test
+    public void testMatchesNaiveLoop() {
+        Random random = new Random(11);
+        List<String> candidates = new ArrayList<>();
+        for(int i = 0; i < 500; i++) candidates.add(randomWord(random, 12));
+
+        for(StringMetric metric: StringMetric.values()) {
+            for(int i = 0; i < 30; i++) {
+                String query = randomWord(random, 12);
+                List<CandidateMatch> naive = naive(query, candidates, metric);
+
+                int k = 1 + random.nextInt(20);
+                assertEquals(naive.subList(0, Math.min(k, naive.size())), BatchMatcher.bestMatches(query, candidates, metric, k));
+
+                double threshold = metric.isDistance() ? random.nextInt(5) : 0.5 + random.nextDouble() * 0.4;
+                List<CandidateMatch> within = naive.stream().filter(m -> metric.isDistance() ? m.score() <= threshold : m.score() >= threshold).toList();
+                assertEquals(within, BatchMatcher.matchesWithin(query, candidates, metric, threshold));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyInputs() {
+        assertTrue(BatchMatcher.bestMatches("abc", List.of(), StringMetric.LEVENSHTEIN, 3).isEmpty());
+        assertEquals(new CandidateMatch(9, "", 0), BatchMatcher.bestMatches("", words, StringMetric.LEVENSHTEIN, 1).get(0));
+        assertEquals(new CandidateMatch(9, "", 1.0), BatchMatcher.bestMatches("", words, StringMetric.JARO, 1).get(0));
+        assertTrue(BatchMatcher.matchesWithin("abc", words, StringMetric.LEVENSHTEIN, -1).isEmpty());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> BatchMatcher.bestMatches(null, words, StringMetric.JARO, 1));
+        assertThrows(IllegalArgumentException.class, () -> BatchMatcher.bestMatches("abc", words, StringMetric.JARO, 0));
+        assertThrows(IllegalArgumentException.class, () -> BatchMatcher.bestMatches("abc", Arrays.asList("abc", null), StringMetric.LEVENSHTEIN, 1));
+        assertThrows(IllegalArgumentException.class, () -> BatchMatcher.matchesWithin("abc", words, null, 1));
+    }
+
+    private List<CandidateMatch> naive(String query, List<String> candidates, StringMetric metric) {
+        List<CandidateMatch> matches = new ArrayList<>();
+        for(int i = 0; i < candidates.size(); i++) {
+            // Hamming distance is only defined for strings of the same length.
+            if(metric == StringMetric.HAMMING && candidates.get(i).length() != query.length()) continue;
+            matches.add(new CandidateMatch(i, candidates.get(i), metric.compare(candidates.get(i), query)));
+        }
+
+        Comparator<CandidateMatch> byScore = Comparator.comparingDouble(CandidateMatch::score);
+        if(!metric.isDistance()) byScore = byScore.reversed();
+        matches.sort(byScore.thenComparingInt(CandidateMatch::index));
+
+        return matches;
+    }
+
+    private List<Integer> indices(List<CandidateMatch> matches) {
+        return matches.stream().map(CandidateMatch::index).toList();
+    }
+
+    private String randomWord(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength)];
+        for(int i = 0; i < chars.length; i++) chars[i] = (char) ('a' + random.nextInt(4));
+        return new String(chars);
+    }
+}
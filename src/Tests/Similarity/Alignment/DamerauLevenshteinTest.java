@@ -1,6 +1,10 @@
 package Tests.Similarity.Alignment;
 
 import ie.atu.forge.Similarity.Alignment.DamerauLevenshtein;
+import ie.atu.forge.Similarity.Alignment.Levenshtein;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
@@ -78,5 +82,84 @@ public class DamerauLevenshteinTest {
         // OSA counts this as 2 edits (swap + move), not 1.
         assertEquals(2, DamerauLevenshtein.distance("abc", "cab"));
     }
-}
 
+    @Test
+    public void testBoundedDistance() {
+        assertEquals(1, DamerauLevenshtein.distance("abcd", "acbd", 1));
+        assertEquals(2, DamerauLevenshtein.distance("abcdef", "abcfed", 2));
+        assertEquals(3, DamerauLevenshtein.distance("kitten", "sitting", 3));
+
+        // Over the limit, maxDistance + 1 is returned.
+        assertEquals(2, DamerauLevenshtein.distance("abcdef", "abcfed", 1));
+        assertEquals(1, DamerauLevenshtein.distance("ab", "ba", 0));
+
+        // Length difference alone is over the limit.
+        assertEquals(3, DamerauLevenshtein.distance("ab", "abcdef", 2));
+    }
+
+    @Test
+    public void testBoundedDistanceMatchesUnbounded() {
+        String s1 = "abcdefghij".repeat(20);
+        String s2 = "abcedfghij".repeat(20); // one transposition per repeat
+        assertEquals(20, DamerauLevenshtein.distance(s1, s2));
+        assertEquals(20, DamerauLevenshtein.distance(s1, s2, 20));
+        assertEquals(20, DamerauLevenshtein.distance(s1, s2, Integer.MAX_VALUE));
+        assertEquals(6, DamerauLevenshtein.distance(s1, s2, 5));
+    }
+
+    @Test
+    public void testBoundedDistanceNegativeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> DamerauLevenshtein.distance("a", "b", -1));
+    }
+
+    @Test
+    public void testCharSequenceInput() {
+        assertEquals(1, DamerauLevenshtein.distance(new StringBuilder("abcd"), new StringBuilder("acbd")));
+        assertEquals(2, DamerauLevenshtein.distance(new StringBuilder("abcdef"), "abcfed", 2));
+        assertEquals(2, DamerauLevenshtein.distance(new StringBuilder("abcdef"), "abcfed", 1));
+    }
+
+    @Test
+    public void testNoAllocationOnceWarmedUp() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String shortA = "kitten", shortB = "sitting";
+        String longA = "abcdefghij".repeat(20), longB = "abcedfghij".repeat(20);
+        StringBuilder builder = new StringBuilder("flaw");
+
+        int sink = 0;
+        for(int i = 0; i < 20_000; i++) {
+            sink += DamerauLevenshtein.distance(shortA, shortB) + DamerauLevenshtein.distance(longA, longB) + DamerauLevenshtein.distance(builder, "lawn") + DamerauLevenshtein.distance(longA, longB, 3);
+        }
+
+        int calls = 10_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < calls; i++) {
+            sink += DamerauLevenshtein.distance(shortA, shortB) + DamerauLevenshtein.distance(longA, longB) + DamerauLevenshtein.distance(builder, "lawn") + DamerauLevenshtein.distance(longA, longB, 3);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(sink > 0);
+        assertTrue(allocated < calls, "Expected no allocation per call, but " + allocated + " bytes were allocated.");
+    }
+
+    @Test
+    public void testPatternsLongerThan64() {
+        // Forces the multi-block path. The second swap straddles the boundary between the first two 64-bit blocks.
+        String s1 = "abcdefghij".repeat(13);
+        char[] swapped = s1.toCharArray();
+        swap(swapped, 0);
+        swap(swapped, 63);
+        swap(swapped, 128);
+        String s2 = new String(swapped);
+
+        assertEquals(3, DamerauLevenshtein.distance(s1, s2));
+        assertEquals(3, DamerauLevenshtein.distance(s2, s1));
+        assertEquals(6, Levenshtein.distance(s1, s2)); // Each swap costs 2 without transpositions.
+    }
+
+    private void swap(char[] chars, int i) {
+        char temp = chars[i];
+        chars[i] = chars[i + 1];
+        chars[i + 1] = temp;
+    }
+}
@@ -0,0 +1,114 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.DistanceMatrix;
+import ie.atu.forge.Similarity.Alignment.StringMetric;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class DistanceMatrixTest {
+
+    @Test
+    public void testSmallMatrix() {
+        DistanceMatrix matrix = DistanceMatrix.compute(List.of("kitten", "sitting", "mitten"), StringMetric.LEVENSHTEIN);
+
+        assertEquals(3, matrix.size());
+        assertEquals(0, matrix.get(1, 1));
+        assertEquals(3, matrix.get(0, 1));
+        assertEquals(3, matrix.get(1, 0));
+        assertEquals(1, matrix.get(0, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.get(0, 3));
+    }
+
+    @Test
+    public void testMatchesPairwiseComparisons() {
+        Random random = new Random(3);
+        // More than one tile per side, so tiles on and off the diagonal are both covered.
+        List<String> strings = new ArrayList<>();
+        for(int i = 0; i < 150; i++) strings.add(randomWord(random, 12));
+
+        List<String> fixedLength = new ArrayList<>();
+        for(int i = 0; i < 150; i++) fixedLength.add(randomWord(random, 8, 8));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(StringMetric metric: StringMetric.values()) {
+                List<String> input = metric == StringMetric.HAMMING ? fixedLength : strings;
+                DistanceMatrix matrix = DistanceMatrix.compute(input, metric, pool);
+
+                for(int i = 0; i < input.size(); i++) {
+                    for(int j = i + 1; j < input.size(); j++) {
+                        assertEquals((float) metric.compare(input.get(i), input.get(j)), (float) matrix.get(i, j), metric + " " + i + " " + j);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFileBacked(@TempDir Path dir) throws IOException {
+        Random random = new Random(5);
+        List<String> strings = new ArrayList<>();
+        for(int i = 0; i < 100; i++) strings.add(randomWord(random, 10));
+
+        DistanceMatrix heap = DistanceMatrix.compute(strings, StringMetric.JARO_WINKLER);
+        String path = dir.resolve("matrix.bin").toString();
+
+        try(DistanceMatrix mapped = DistanceMatrix.compute(strings, StringMetric.JARO_WINKLER, path)) {
+            for(int i = 0; i < strings.size(); i++) {
+                for(int j = 0; j < strings.size(); j++) assertEquals(heap.get(i, j), mapped.get(i, j));
+            }
+        }
+
+        try(DistanceMatrix loaded = DistanceMatrix.load(path)) {
+            assertEquals(StringMetric.JARO_WINKLER, loaded.getMetric());
+            assertEquals(strings.size(), loaded.size());
+            for(int i = 0; i < strings.size(); i++) {
+                for(int j = 0; j < strings.size(); j++) assertEquals(heap.get(i, j), loaded.get(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testLoadRejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("other.bin");
+        Files.write(path, new byte[32]);
+
+        assertThrows(IOException.class, () -> DistanceMatrix.load(path.toString()));
+    }
+
+    @Test
+    public void testEdgeCases() {
+        assertEquals(0, DistanceMatrix.compute(List.of(), StringMetric.JARO).size());
+
+        DistanceMatrix single = DistanceMatrix.compute(List.of("abc"), StringMetric.JARO);
+        assertEquals(1.0, single.get(0, 0));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.compute(null, StringMetric.LEVENSHTEIN));
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.compute(List.of("abc"), null));
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.compute(Arrays.asList("abc", null), StringMetric.LEVENSHTEIN));
+        assertThrows(IllegalArgumentException.class, () -> DistanceMatrix.compute(List.of("abc", "ab"), StringMetric.HAMMING));
+    }
+
+    private String randomWord(Random random, int maxLength) {
+        return randomWord(random, 0, maxLength - 1);
+    }
+
+    private String randomWord(Random random, int minLength, int maxLength) {
+        char[] chars = new char[minLength + random.nextInt(maxLength - minLength + 1)];
+        for(int i = 0; i < chars.length; i++) chars[i] = (char) ('a' + random.nextInt(4));
+        return new String(chars);
+    }
+}
@@ -0,0 +1,155 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.DamerauLevenshtein;
+import ie.atu.forge.Similarity.Alignment.FuzzyTrie;
+import ie.atu.forge.Similarity.Alignment.Levenshtein;
+import ie.atu.forge.Similarity.Alignment.TermMatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class FuzzyTrieTest {
+    private static final String[] DICTIONARY = {
+            "kitten", "sitting", "mitten", "kitchen", "bitten", "written", "smitten",
+            "cat", "cart", "act", "at", "a", "", "dog", "god", "good", "food"
+    };
+
+    private List<String> terms(List<TermMatch> matches) {
+        return matches.stream().map(TermMatch::term).toList();
+    }
+
+    @Test
+    public void testExactLookup() {
+        FuzzyTrie trie = new FuzzyTrie(DICTIONARY);
+        assertEquals(List.of(new TermMatch("kitten", 0)), trie.search("kitten", 0));
+        assertTrue(trie.search("kitte", 0).isEmpty());
+    }
+
+    @Test
+    public void testWithinDistance() {
+        FuzzyTrie trie = new FuzzyTrie(DICTIONARY);
+        List<TermMatch> matches = trie.search("kitten", 1);
+
+        // Ordered by distance, then alphabetically.
+        assertEquals(List.of("kitten", "bitten", "mitten"), terms(matches));
+        assertEquals(0, matches.get(0).distance());
+        assertEquals(1, matches.get(1).distance());
+    }
+
+    @Test
+    public void testTranspositions() {
+        FuzzyTrie trie = new FuzzyTrie(DICTIONARY);
+
+        // "cta" -> "cat" is a single swap, but 2 edits without transpositions.
+        assertFalse(terms(trie.search("cta", 1)).contains("cat"));
+        assertTrue(terms(trie.search("cta", 1, true)).contains("cat"));
+        assertEquals(new TermMatch("god", 1), trie.search("gdo", 1, true).get(0));
+    }
+
+    @Test
+    public void testEmptyStrings() {
+        FuzzyTrie trie = new FuzzyTrie(DICTIONARY);
+        assertEquals(List.of("", "a"), terms(trie.search("", 1)));
+        assertEquals(List.of("a", "", "at"), terms(trie.search("a", 1)));
+
+        FuzzyTrie empty = new FuzzyTrie(new String[0]);
+        assertEquals(0, empty.size());
+        assertTrue(empty.search("anything", 3).isEmpty());
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(42);
+        List<String> dictionary = new ArrayList<>();
+        for(int i = 0; i < 2000; i++) dictionary.add(randomWord(random));
+        FuzzyTrie trie = new FuzzyTrie(dictionary);
+        Set<String> unique = new TreeSet<>(dictionary);
+
+        for(int i = 0; i < 50; i++) {
+            String query = randomWord(random);
+
+            for(int k = 0; k <= 2; k++) {
+                Map<String, Integer> expected = new TreeMap<>();
+                Map<String, Integer> expectedDamerau = new TreeMap<>();
+                for(String term: unique) {
+                    int distance = Levenshtein.distance(term, query);
+                    if(distance <= k) expected.put(term, distance);
+
+                    distance = DamerauLevenshtein.distance(term, query);
+                    if(distance <= k) expectedDamerau.put(term, distance);
+                }
+
+                assertEquals(expected, toMap(trie.search(query, k)));
+                assertEquals(expectedDamerau, toMap(trie.search(query, k, true)));
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicatesAndContains() {
+        FuzzyTrie trie = new FuzzyTrie(List.of("dog", "dog", "do", "dot"));
+        assertEquals(3, trie.size());
+        assertTrue(trie.contains("do"));
+        assertTrue(trie.contains("dog"));
+        assertFalse(trie.contains("d"));
+        assertFalse(trie.contains("dogs"));
+    }
+
+    @Test
+    public void testSaveAndLoad(@TempDir Path dir) throws IOException {
+        FuzzyTrie trie = new FuzzyTrie(DICTIONARY);
+        String path = dir.resolve("dictionary.bin").toString();
+        trie.save(path);
+
+        FuzzyTrie loaded = FuzzyTrie.load(path);
+        assertEquals(trie.size(), loaded.size());
+        assertEquals(trie.nodeCount(), loaded.nodeCount());
+        assertEquals(trie.search("kitten", 2), loaded.search("kitten", 2));
+        assertEquals(trie.search("gdo", 1, true), loaded.search("gdo", 1, true));
+    }
+
+    @Test
+    public void testLoadRejectsCorruptFiles(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("dictionary.bin");
+        new FuzzyTrie(DICTIONARY).save(path.toString());
+        byte[] saved = Files.readAllBytes(path);
+
+        // The node count (after the magic number and version) sizes the arrays, so a bad one must be caught before anything is allocated.
+        for (int nodes : new int[]{ -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, ByteBuffer.wrap(saved).getInt(8) + 1 }) {
+            byte[] corrupt = saved.clone();
+            ByteBuffer.wrap(corrupt).putInt(8, nodes);
+            Files.write(path, corrupt);
+            assertThrows(IOException.class, () -> FuzzyTrie.load(path.toString()), "nodes = " + nodes);
+        }
+
+        Files.write(path, Arrays.copyOf(saved, saved.length - 1));
+        assertThrows(IOException.class, () -> FuzzyTrie.load(path.toString()));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        FuzzyTrie trie = new FuzzyTrie(DICTIONARY);
+        assertThrows(IllegalArgumentException.class, () -> trie.search("cat", -1));
+        assertThrows(IllegalArgumentException.class, () -> trie.search(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new FuzzyTrie(new String[]{"a", null}));
+    }
+
+    private String randomWord(Random random) {
+        char[] chars = new char[random.nextInt(8)];
+        for(int i = 0; i < chars.length; i++) chars[i] = (char) ('a' + random.nextInt(4));
+        return new String(chars);
+    }
+
+    private Map<String, Integer> toMap(List<TermMatch> matches) {
+        Map<String, Integer> map = new TreeMap<>();
+        for(TermMatch match: matches) map.put(match.term(), match.distance());
+        return map;
+    }
+}
@@ -7,6 +7,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 public class HammingTest {
 
     @Test
@@ -49,5 +51,49 @@ public class HammingTest {
         String s2 = "A".repeat(999) + "B";  // Only last char differs
         assertEquals(1, Hamming.distance(s1, s2));
     }
-}
 
+    @Test
+    public void testMatchesCharByChar() {
+        Random random = new Random(9);
+
+        // Every length up to several vectors, so the tails after the vector and word-at-a-time loops are covered.
+        for(int length = 0; length < 300; length++) {
+            char[] s1 = new char[length];
+            char[] s2 = new char[length];
+            byte[] b1 = new byte[length];
+            byte[] b2 = new byte[length];
+
+            for(int i = 0; i < length; i++) {
+                // Include characters that only differ in the high bit of a lane.
+                s1[i] = (char) (random.nextBoolean() ? 'A' + random.nextInt(4) : 0x8000 | random.nextInt(2));
+                s2[i] = random.nextInt(3) == 0 ? (char) (s1[i] ^ (1 << random.nextInt(16))) : s1[i];
+                b1[i] = (byte) s1[i];
+                b2[i] = (byte) (random.nextInt(3) == 0 ? b1[i] ^ (1 << random.nextInt(8)) : b1[i]);
+            }
+
+            int expectedChars = 0, expectedBytes = 0;
+            for(int i = 0; i < length; i++) {
+                if(s1[i] != s2[i]) expectedChars++;
+                if(b1[i] != b2[i]) expectedBytes++;
+            }
+
+            assertEquals(expectedChars, Hamming.distance(s1, s2));
+            assertEquals(expectedChars, Hamming.distance(new StringBuilder().append(s1), new String(s2)));
+            assertEquals(expectedBytes, Hamming.distance(b1, b2));
+        }
+    }
+
+    @Test
+    public void testPackedFingerprints() {
+        assertEquals(0, Hamming.distance(0xFFL, 0xFFL));
+        assertEquals(64, Hamming.distance(0L, -1L));
+        assertEquals(3, Hamming.distance(new long[] {0b1011L, 1L << 63}, new long[] {0b0010L, 0L}));
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            Hamming.distance(new long[2], new long[4]);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            Hamming.distance(new byte[2], new byte[3]);
+        });
+    }
+}
@@ -1,6 +1,12 @@
 package Tests.Similarity.Alignment;
 
+import ie.atu.forge.Similarity.Alignment.CompiledJaroPattern;
 import ie.atu.forge.Similarity.Alignment.Jaro;
+import ie.atu.forge.Similarity.Alignment.JaroWinkler;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
@@ -48,5 +54,99 @@ public class JaroTest {
         assertEquals(0.0, Jaro.similarity("", "A"), 1e-6);
         assertEquals(1.0, Jaro.similarity("A", "A"), 1e-6);
     }
-}
 
+    @Test
+    public void testCharSequenceInput() {
+        assertEquals(0.944444, Jaro.similarity(new StringBuilder("MARTHA"), new StringBuilder("MARHTA")), 1e-5);
+        assertEquals(Jaro.similarity("DWAYNE", "DUANE"), Jaro.similarity(new StringBuilder("DWAYNE"), "DUANE"), 1e-12);
+    }
+
+    @Test
+    public void testNoAllocationOnceWarmedUp() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String a = "DWAYNE", b = "DUANE";
+        char[] c = "MARTHA".toCharArray(), d = "MARHTA".toCharArray();
+        StringBuilder builder = new StringBuilder("CRATE");
+
+        double sink = 0;
+        for(int i = 0; i < 20_000; i++) {
+            sink += Jaro.similarity(a, b) + Jaro.similarity(c, d) + Jaro.similarity(builder, "TRACE") + JaroWinkler.similarity(a, b);
+        }
+
+        int calls = 10_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < calls; i++) {
+            sink += Jaro.similarity(a, b) + Jaro.similarity(c, d) + Jaro.similarity(builder, "TRACE") + JaroWinkler.similarity(a, b);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(sink > 0);
+        assertTrue(allocated < calls, "Expected no allocation per call, but " + allocated + " bytes were allocated.");
+    }
+
+    @Test
+    public void testCompiledPattern() {
+        CompiledJaroPattern martha = new CompiledJaroPattern("MARTHA");
+
+        assertEquals(6, martha.length());
+        assertEquals(0.944444, Jaro.similarity("MARHTA", martha), 1e-5);
+        assertEquals(Jaro.similarity("DIXON", "DICKSONX"), Jaro.similarity("DIXON", new CompiledJaroPattern("DICKSONX")), 1e-12);
+        assertEquals(JaroWinkler.similarity("DWAYNE", "DUANE", 0.2), JaroWinkler.similarity("DWAYNE", new CompiledJaroPattern("DUANE"), 0.2), 1e-12);
+        assertEquals(1.0, Jaro.similarity("", new CompiledJaroPattern("")), 1e-12);
+        assertEquals(0.0, JaroWinkler.similarity("A", new CompiledJaroPattern("")), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> new CompiledJaroPattern(null));
+    }
+
+    @Test
+    public void testMatchesReference() {
+        Random random = new Random(13);
+
+        // Lengths either side of 64, where the bit-parallel kernel hands over to the flag arrays.
+        for(int n = 0; n < 3000; n++) {
+            String s1 = randomWord(random, 1 + random.nextInt(80), 2 + random.nextInt(5));
+            String s2 = random.nextInt(4) == 0 ? s1 : randomWord(random, 1 + random.nextInt(80), 2 + random.nextInt(5));
+            double expected = reference(s1.toCharArray(), s2.toCharArray());
+
+            assertEquals(expected, Jaro.similarity(s1, s2), 1e-12, s1 + " " + s2);
+            assertEquals(expected, Jaro.similarity(s1, new CompiledJaroPattern(s2)), 1e-12, s1 + " " + s2);
+            assertEquals(JaroWinkler.similarity(s1, s2), JaroWinkler.similarity(s1, new CompiledJaroPattern(s2)), 1e-12);
+        }
+    }
+
+    // The original flag array version of Jaro.
+    private double reference(char[] s1, char[] s2) {
+        if(s1.length == 0 && s2.length == 0) return 1.0;
+        if(s1.length == 0 || s2.length == 0) return 0.0;
+
+        int range = Math.max((int) Math.floor((Math.max(s1.length, s2.length) / 2.0d) - 1), 0);
+        boolean[] matched1 = new boolean[s1.length], matched2 = new boolean[s2.length];
+
+        int matches = 0;
+        for(int i = 0; i < s1.length; i++) {
+            for(int j = Math.max(i - range, 0); j < Math.min(i + range + 1, s2.length); j++) {
+                if(!matched2[j] && s2[j] == s1[i]) {
+                    matches++;
+                    matched1[i] = matched2[j] = true;
+                    break;
+                }
+            }
+        }
+        if(matches == 0) return 0;
+
+        int transpositions = 0;
+        for(int i = 0, j = 0; i < s1.length; i++) {
+            if(!matched1[i]) continue;
+            while(!matched2[j]) j++;
+            if(s1[i] != s2[j++]) transpositions++;
+        }
+        transpositions /= 2;
+
+        return ((matches / (double) s1.length) + (matches / (double) s2.length) + ((matches - transpositions) / (double) matches)) / 3.0d;
+    }
+
+    private String randomWord(Random random, int length, int alphabet) {
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) chars[i] = (char) ('a' + random.nextInt(alphabet));
+        return new String(chars);
+    }
+}
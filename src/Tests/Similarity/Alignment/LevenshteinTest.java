@@ -2,6 +2,9 @@ package Tests.Similarity.Alignment;
 
 import ie.atu.forge.Similarity.Alignment.Levenshtein;
 
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
@@ -66,4 +69,78 @@ public class LevenshteinTest {
         assertEquals(1000, Levenshtein.distance("a".repeat(1000), ""));
         assertEquals(1000, Levenshtein.distance("", "a".repeat(1000)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPatternsLongerThan64() {
+        // Forces the multi-block path. Edits at both ends stop the shared prefix/suffix from being trimmed off.
+        String s1 = "abcdefghij".repeat(13);
+        String s2 = "X" + s1.substring(1, 64) + "Y" + s1.substring(65, 70) + "Z" + s1.substring(70, 129) + "W";
+        assertEquals(4, Levenshtein.distance(s1, s2)); // 3 substitutions + 1 insertion
+        assertEquals(4, Levenshtein.distance(s2, s1));
+
+        assertEquals(65, Levenshtein.distance("a".repeat(65), "b".repeat(65)));
+        assertEquals(1, Levenshtein.distance("a".repeat(64), "a".repeat(65)));
+    }
+
+    @Test
+    public void testBoundedDistance() {
+        // Within the limit, the exact distance is returned.
+        assertEquals(3, Levenshtein.distance("kitten", "sitting", 3));
+        assertEquals(2, Levenshtein.distance("flaw", "lawn", 5));
+        assertEquals(0, Levenshtein.distance("kitten", "kitten", 0));
+
+        // Over the limit, maxDistance + 1 is returned.
+        assertEquals(3, Levenshtein.distance("kitten", "sitting", 2));
+        assertEquals(1, Levenshtein.distance("cat", "dog", 0));
+
+        // Length difference alone is over the limit.
+        assertEquals(2, Levenshtein.distance("a", "abcdef", 1));
+        assertEquals(4, Levenshtein.distance("", "hello", 3));
+        assertEquals(5, Levenshtein.distance("", "hello", 5));
+    }
+
+    @Test
+    public void testBoundedDistanceMatchesUnbounded() {
+        String s1 = "abcdefghij".repeat(20);
+        String s2 = "abcdXfghij".repeat(20);
+        assertEquals(20, Levenshtein.distance(s1, s2));
+        assertEquals(20, Levenshtein.distance(s1, s2, 20));
+        assertEquals(20, Levenshtein.distance(s1, s2, Integer.MAX_VALUE));
+        assertEquals(4, Levenshtein.distance(s1, s2, 3));
+    }
+
+    @Test
+    public void testBoundedDistanceNegativeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> Levenshtein.distance("a", "b", -1));
+    }
+
+    @Test
+    public void testCharSequenceInput() {
+        assertEquals(3, Levenshtein.distance(new StringBuilder("kitten"), new StringBuilder("sitting")));
+        assertEquals(3, Levenshtein.distance(new StringBuilder("kitten"), "sitting", 3));
+        assertEquals(3, Levenshtein.distance(new StringBuilder("kitten"), "sitting", 2));
+    }
+
+    @Test
+    public void testNoAllocationOnceWarmedUp() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String shortA = "kitten", shortB = "sitting";
+        String longA = "abcdefghij".repeat(20), longB = "abcdXfghij".repeat(20);
+        StringBuilder builder = new StringBuilder("flaw");
+
+        int sink = 0;
+        for(int i = 0; i < 20_000; i++) {
+            sink += Levenshtein.distance(shortA, shortB) + Levenshtein.distance(longA, longB) + Levenshtein.distance(builder, "lawn") + Levenshtein.distance(longA, longB, 3);
+        }
+
+        int calls = 10_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < calls; i++) {
+            sink += Levenshtein.distance(shortA, shortB) + Levenshtein.distance(longA, longB) + Levenshtein.distance(builder, "lawn") + Levenshtein.distance(longA, longB, 3);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(sink > 0);
+        assertTrue(allocated < calls, "Expected no allocation per call, but " + allocated + " bytes were allocated.");
+    }
+}
@@ -3,10 +3,14 @@ package Tests.Similarity.Alignment;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import ie.atu.forge.Similarity.Alignment.NeedlemanWunsch;
+import ie.atu.forge.Similarity.Alignment.ScoringMatrix;
 import ie.atu.forge.ToolBox.MatrixLoader;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class NeedlemanWunschTest {
 
@@ -121,6 +125,188 @@ public class NeedlemanWunschTest {
         assertEquals(4, countMismatches(result[0], result[1]));
     }
 
+    @Test
+    public void testLinearSpaceMatchesFullMatrix() {
+        Random random = new Random(17);
+        NeedlemanWunsch full = new NeedlemanWunsch();
+        NeedlemanWunsch linear = new NeedlemanWunsch();
+        linear.setLinearSpace(true);
+        assertTrue(linear.isLinearSpace());
+
+        // Up to a few hundred characters, so the larger pairs are split several times before being traced back.
+        for(int n = 0; n < 60; n++) {
+            String s1 = randomSequence(random, "ACGT", random.nextInt(400));
+            String s2 = random.nextBoolean() ? mutate(random, s1, "ACGT") : randomSequence(random, "ACGT", random.nextInt(400));
+
+            assertArrayEquals(full.align(s1, s2), linear.align(s1, s2), s1 + " " + s2);
+        }
+
+        // Long and thin.
+        String s1 = randomSequence(random, "ACGT", 3000), s2 = randomSequence(random, "ACGT", 4);
+        assertArrayEquals(full.align(s1, s2), linear.align(s1, s2));
+        assertArrayEquals(full.align(s2, s1), linear.align(s2, s1));
+    }
+
+    @Test
+    public void testLinearSpaceWithMatrix() {
+        Random random = new Random(19);
+        String protein = "ARNDCQEGHILKMFPSTWYV";
+        NeedlemanWunsch full = new NeedlemanWunsch();
+        NeedlemanWunsch linear = new NeedlemanWunsch();
+        full.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        linear.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        full.setGAP(-4);
+        linear.setGAP(-4);
+        linear.setLinearSpace(true);
+
+        for(int n = 0; n < 40; n++) {
+            String s1 = randomSequence(random, protein, random.nextInt(500));
+            String s2 = mutate(random, s1, protein);
+
+            assertArrayEquals(full.align(s1, s2), linear.align(s1, s2), s1 + " " + s2);
+        }
+    }
+
+    @Test
+    public void testScoreMatchesAlignment() {
+        Random random = new Random(31);
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        nw.setMATCH(2);
+        nw.setMISMATCH(-3);
+        nw.setGAP(-2);
+        assertEquals(-8, nw.score("", "ACGT"));
+
+        for(int n = 0; n < 200; n++) {
+            String s1 = randomSequence(random, "ACGT", random.nextInt(40));
+            String s2 = randomSequence(random, "ACGT", random.nextInt(40));
+
+            assertEquals(alignmentScore(nw.align(s1, s2), null, 2, -3, -2), nw.score(s1, s2), s1 + " " + s2);
+        }
+    }
+
+    @Test
+    public void testScoreWithMatrix() {
+        Random random = new Random(37);
+        String protein = "ARNDCQEGHILKMFPSTWYV";
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        nw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        nw.setGAP(-4);
+
+        for(int n = 0; n < 200; n++) {
+            String s1 = randomSequence(random, protein, random.nextInt(60));
+            String s2 = mutate(random, s1, protein);
+
+            assertEquals(alignmentScore(nw.align(s1, s2), ScoringMatrix.BLOSUM62, 0, 0, -4), nw.score(s1, s2), s1 + " " + s2);
+        }
+
+        assertThrows(IllegalStateException.class, () -> new NeedlemanWunsch().score("ACGT", "ACGT", true));
+    }
+
+    @Test
+    public void testScoreLongSequences() {
+        // Large enough to be split into tiles and scored as a wavefront, with partial tiles at the edges.
+        Random random = new Random(41);
+        String s1 = randomSequence(random, "ACGT", 4500);
+        String s2 = mutate(random, s1, "ACGT") + randomSequence(random, "ACGT", 700);
+
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        int score = alignmentScore(nw.align(s1, s2), null, 1, -1, -1);
+        assertEquals(score, nw.score(s1, s2));
+        assertEquals(score, nw.score(s2, s1));
+    }
+
+    @Test
+    public void testAffineGaps() {
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        nw.setGAP_OPEN(-3);
+
+        // Opening a gap is expensive, so the 3 missing characters are kept together.
+        String[] result = nw.align("AAACCCGGG", "AAAGGG");
+        assertEquals("AAACCCGGG", result[0]);
+        assertEquals("AAA---GGG", result[1]);
+        assertEquals(0, nw.score("AAACCCGGG", "AAAGGG"));
+        assertEquals(-7, nw.score("ACGT", ""));
+    }
+
+    @Test
+    public void testBandedAlignment() {
+        Random random = new Random(47);
+        NeedlemanWunsch full = new NeedlemanWunsch();
+        NeedlemanWunsch banded = new NeedlemanWunsch();
+        full.setGAP_OPEN(-2);
+        banded.setGAP_OPEN(-2);
+        banded.setBand(20);
+
+        for(int n = 0; n < 50; n++) {
+            String s1 = randomSequence(random, "ACGT", random.nextInt(300));
+            String s2 = mutate(random, s1, "ACGT");
+
+            // Similar sequences stay close to the main diagonal, so the band doesn't change the result.
+            assertEquals(full.score(s1, s2), banded.score(s1, s2), s1 + " " + s2);
+            assertEquals(full.score(s1, s2), alignmentScore(banded.align(s1, s2), 1, -1, -2, -1));
+        }
+
+        // A band too narrow to reach the end is widened to include it.
+        banded.setBand(0);
+        String[] result = banded.align("ACGTACGT", "ACGT");
+        assertEquals("ACGTACGT", result[0].replace("-", ""));
+        assertEquals("ACGT", result[1].replace("-", ""));
+
+        assertThrows(IllegalArgumentException.class, () -> banded.setBand(-1));
+        banded.removeBand();
+        assertEquals(-1, banded.getBandWidth());
+    }
+
+    @Test
+    public void testBuilderMatchesSetters() {
+        Random random = new Random(71);
+        NeedlemanWunsch set = new NeedlemanWunsch();
+        set.setMATCH(2);
+        set.setMISMATCH(-3);
+        set.setGAP(-2);
+        set.setGAP_OPEN(-1);
+        NeedlemanWunsch built = NeedlemanWunsch.builder().match(2).mismatch(-3).gap(-2).gapOpen(-1).build();
+
+        NeedlemanWunsch setMatrix = new NeedlemanWunsch();
+        setMatrix.setScoringMatrix(identityMatrix(3, -2));
+        NeedlemanWunsch builtMatrix = NeedlemanWunsch.builder().scoringMatrix(identityMatrix(3, -2)).build();
+
+        for(int n = 0; n < 30; n++) {
+            String s1 = randomSequence(random, "ACGT", random.nextInt(200));
+            String s2 = mutate(random, s1, "ACGT");
+
+            assertArrayEquals(set.align(s1, s2), built.align(s1, s2));
+            assertArrayEquals(setMatrix.align(s1, s2), builtMatrix.align(s1, s2));
+            assertEquals(setMatrix.score(s1, s2), builtMatrix.score(s1, s2));
+        }
+
+        NeedlemanWunsch banded = NeedlemanWunsch.builder().band(4).linearSpace(true).build();
+        assertEquals(4, banded.getBandWidth());
+        assertTrue(banded.isLinearSpace());
+    }
+
+    @Test
+    public void testBuiltAlignerCantBeChanged() throws Exception {
+        NeedlemanWunsch nw = NeedlemanWunsch.builder().gap(-2).build();
+
+        assertThrows(UnsupportedOperationException.class, () -> nw.setGAP(-1));
+        assertThrows(UnsupportedOperationException.class, () -> nw.setLinearSpace(true));
+        assertThrows(UnsupportedOperationException.class, () -> nw.setScoringMatrix((ScoringMatrix) null));
+        assertThrows(IllegalArgumentException.class, () -> NeedlemanWunsch.builder().band(-1));
+
+        // One instance used by many virtual threads at once gives the same alignments as using it from one thread.
+        Random random = new Random(73);
+        List<String[]> pairs = new ArrayList<>();
+        for(int n = 0; n < 100; n++) pairs.add(new String[]{ randomSequence(random, "ACGT", random.nextInt(400)), randomSequence(random, "ACGT", random.nextInt(400)) });
+
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String[]>> results = new ArrayList<>();
+            for(String[] pair: pairs) results.add(executor.submit(() -> nw.align(pair[0], pair[1])));
+
+            for(int n = 0; n < pairs.size(); n++) assertArrayEquals(nw.align(pairs.get(n)[0], pairs.get(n)[1]), results.get(n).get());
+        }
+    }
+
     private int countMismatches(String a, String b) {
         int mismatches = 0;
         for (int i = 0; i < a.length(); i++) {
@@ -129,6 +315,50 @@ public class NeedlemanWunschTest {
         return mismatches;
     }
 
+    private int alignmentScore(String[] alignment, ScoringMatrix matrix, int match, int mismatch, int gap) {
+        int score = 0;
+        for(int i = 0; i < alignment[0].length(); i++) {
+            char a = alignment[0].charAt(i), b = alignment[1].charAt(i);
+            if(a == '-' || b == '-') score += gap;
+            else if(matrix != null) score += matrix.score(a, b);
+            else score += a == b ? match : mismatch;
+        }
+        return score;
+    }
+
+    // Scores an alignment with affine gaps, where a gap of length k scores open + k * extend.
+    private int alignmentScore(String[] alignment, int match, int mismatch, int open, int extend) {
+        int score = 0;
+        char previousA = 0, previousB = 0;
+        for(int i = 0; i < alignment[0].length(); i++) {
+            char a = alignment[0].charAt(i), b = alignment[1].charAt(i);
+            if(a == '-') score += extend + (previousA == '-' ? 0 : open);
+            else if(b == '-') score += extend + (previousB == '-' ? 0 : open);
+            else score += a == b ? match : mismatch;
+            previousA = a;
+            previousB = b;
+        }
+        return score;
+    }
+
+    private String randomSequence(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+
+    // Copies s with roughly 1 in 10 characters substituted, deleted, or followed by an insertion.
+    private String mutate(Random random, String s, String alphabet) {
+        StringBuilder mutated = new StringBuilder();
+        for(char c: s.toCharArray()) {
+            int roll = random.nextInt(30);
+            if(roll == 0) continue;
+            mutated.append(roll == 1 ? alphabet.charAt(random.nextInt(alphabet.length())) : c);
+            if(roll == 2) mutated.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return mutated.toString();
+    }
+
     private Map<String, Integer> loadBlosum45Stub() throws IOException {
         return MatrixLoader.load("./ScoringMatrices/BLOSUM45.txt");
     }
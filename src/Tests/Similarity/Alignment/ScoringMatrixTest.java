@@ -0,0 +1,131 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.NeedlemanWunsch;
+import ie.atu.forge.Similarity.Alignment.ScoringMatrix;
+import ie.atu.forge.Similarity.Alignment.SmithWaterman;
+import ie.atu.forge.ToolBox.MatrixLoader;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+public class ScoringMatrixTest {
+
+    @Test
+    public void testConstantsMatchFiles() throws IOException {
+        assertSameScores(MatrixLoader.load("./ScoringMatrices/BLOSUM45.txt"), ScoringMatrix.BLOSUM45);
+        assertSameScores(MatrixLoader.load("./ScoringMatrices/BLOSUM62.txt"), ScoringMatrix.BLOSUM62);
+        assertSameScores(MatrixLoader.load("./ScoringMatrices/PAM250.txt"), ScoringMatrix.PAM250);
+        assertSameScores(MatrixLoader.load("./ScoringMatrices/BLOSUM62.txt"), ScoringMatrix.load("./ScoringMatrices/BLOSUM62.txt"));
+    }
+
+    @Test
+    public void testKnownScores() {
+        assertEquals(4, ScoringMatrix.BLOSUM62.score('A', 'A'));
+        assertEquals(1, ScoringMatrix.BLOSUM62.score('W', 'F'));
+        assertEquals(17, ScoringMatrix.PAM250.score('W', 'W'));
+        // Characters outside the alphabet fall back to the '*' row and column, and a pair of them has no score.
+        assertEquals(-4, ScoringMatrix.BLOSUM62.score('A', 'j'));
+        assertEquals(-4, ScoringMatrix.BLOSUM62.score('j', 'A'));
+        assertFalse(ScoringMatrix.BLOSUM62.isComplete());
+        assertEquals(-3, ScoringMatrix.BLOSUM62.withDefault(-3).score('j', 'é'));
+    }
+
+    @Test
+    public void testWildcardOrder() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("AA", 5);
+        map.put("*C", 1);
+        map.put("A*", 2);
+        map.put("**", -7);
+        ScoringMatrix matrix = ScoringMatrix.fromMap(map);
+
+        assertEquals(5, matrix.score('A', 'A'));
+        assertEquals(1, matrix.score('A', 'C')); // "*C" is tried before "A*".
+        assertEquals(2, matrix.score('A', 'G'));
+        assertEquals(1, matrix.score('G', 'C'));
+        assertEquals(-7, matrix.score('*', '*'));
+
+        // "**" isn't a fallback, so pairs without an exact or single wildcard entry use the default.
+        assertFalse(matrix.isComplete());
+        assertEquals(-3, matrix.withDefault(-3).score('G', 'G'));
+        assertEquals(-3, matrix.withDefault(-3).score('G', 'T'));
+    }
+
+    @Test
+    public void testDefaultScore() {
+        ScoringMatrix matrix = ScoringMatrix.fromMap(Map.of("AA", 3, "CC", 3));
+
+        assertFalse(matrix.isComplete());
+        ScoringMatrix filled = matrix.withDefault(-2);
+        assertTrue(filled.isComplete());
+        assertEquals(3, filled.score('C', 'C'));
+        assertEquals(-2, filled.score('A', 'C'));
+        assertEquals(-2, filled.score('A', 'T'));
+        assertSame(filled, filled.withDefault(5));
+    }
+
+    @Test
+    public void testAlignersMatchMapLookups() {
+        // A map with no wildcard entries, so unscored pairs use the aligners' mismatch score.
+        Map<String, Integer> map = Map.of("AA", 2, "CC", 2, "GG", 2, "TT", 2, "AG", 1, "GA", 1);
+
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMISMATCH(-2);
+        sw.setScoringMatrix(map);
+        assertArrayEquals(new String[]{"GATTACA", "GATTACA"}, sw.align("xxGATTACAyy", "GATTACA"));
+
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        nw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        String[] result = nw.align("HEAGAWGHEE", "PAWHEAE");
+        assertEquals(result[0].length(), result[1].length());
+        assertEquals("HEAGAWGHEE", result[0].replace("-", ""));
+        assertEquals("PAWHEAE", result[1].replace("-", ""));
+    }
+
+    @Test
+    public void testUnknownPairsUseMismatch() {
+        // J isn't in BLOSUM62, so J against J scores the aligner's mismatch (not the +1 of "**"), which keeps the alignment to YPJL.
+        SmithWaterman sw = new SmithWaterman();
+        sw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        assertArrayEquals(new String[]{"YPJL", "YPJL"}, sw.align("IMJVYPJLTJ", "IRJWYPJLNJ", true));
+
+        NeedlemanWunsch nw = new NeedlemanWunsch();
+        nw.setMISMATCH(-5);
+        nw.setGAP(-10);
+        nw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        assertEquals(-5 * 3, nw.score("abc", "abd", true));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> ScoringMatrix.fromMap(null));
+        assertThrows(IOException.class, () -> ScoringMatrix.load("./ScoringMatrices/missing.txt"));
+    }
+
+    // The scores a map lookup (with wildcards) would give, for every pair of characters in the map plus 2 that aren't.
+    private void assertSameScores(Map<String, Integer> map, ScoringMatrix matrix) {
+        int mismatch = -100;
+        ScoringMatrix filled = matrix.withDefault(mismatch);
+        Set<Character> symbols = new TreeSet<>();
+        for(String key: map.keySet()) {
+            symbols.add(key.charAt(0));
+            symbols.add(key.charAt(1));
+        }
+        symbols.add('j');
+        symbols.add('k');
+
+        for(char a: symbols) {
+            for(char b: symbols) {
+                Integer expected = map.get("" + a + b);
+                if(expected == null) expected = map.get("*" + b);
+                if(expected == null) expected = map.get(a + "*");
+                if(expected == null) expected = mismatch;
+
+                assertEquals(expected, filled.score(a, b), a + " " + b);
+            }
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package Tests.Similarity.Alignment;
 
+import ie.atu.forge.Similarity.Alignment.AlignmentResult;
+import ie.atu.forge.Similarity.Alignment.Chain;
+import ie.atu.forge.Similarity.Alignment.NeedlemanWunsch;
 import ie.atu.forge.Similarity.Alignment.SeedAndExtend;
+import ie.atu.forge.Similarity.Alignment.SeedScheme;
 import ie.atu.forge.Similarity.Alignment.Extension;
 import ie.atu.forge.Similarity.Alignment.SmithWaterman;
+import ie.atu.forge.Similarity.Alignment.SubjectIndex;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SeedAndExtendTest {
 
     private String[] extractTexts(Extension[] extensions) {
-        return java.util.Arrays.stream(extensions)
+        return Arrays.stream(extensions)
                 .map(Extension::text)
                 .toArray(String[]::new);
     }
@@ -219,6 +236,304 @@ public class SeedAndExtendTest {
         assertValidPositions(results, subject, query);
     }
 
+    @Test
+    public void testNonAsciiSeeds() throws Exception {
+        String subject = "héllo wörld, héllo 世界";
+        String query = "wörld 世界";
+        Extension[] results = SeedAndExtend.align(subject, query, 2);
+
+        assertValidPositions(results, subject, query);
+        Set<String> texts = new HashSet<>(Arrays.asList(extractTexts(results)));
+        assertEquals(Set.of("wörld", " 世界"), texts);
+    }
+
+    @Test
+    public void testEveryRepeatIsSeeded() throws Exception {
+        // The query's kmer appears at every 7th position of a long subject, so every copy should be found.
+        StringBuilder subject = new StringBuilder();
+        for(int i = 0; i < 2000; i++) subject.append("GATTACA");
+        String query = "TTTGATTACACCC";
+
+        Extension[] results = SeedAndExtend.align(subject.toString(), query, 5);
+        assertEquals(2000, results.length);
+        assertValidPositions(results, subject.toString(), query);
+        for (Extension e : results) {
+            assertEquals("GATTACA", e.text());
+            assertEquals(3, e.queryPos());
+            assertEquals(0, e.subjectPos() % 7);
+        }
+    }
+
+    @Test
+    public void testIndexedSubject() throws Exception {
+        // Aligning against an index should find the same extensions as aligning against the subject itself.
+        Random random = new Random(17);
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMATCH(2);
+        sw.setMISMATCH(-1);
+        sw.setGAP(-2);
+
+        for (int n = 0; n < 20; n++) {
+            char[] chars = new char[200 + random.nextInt(200)];
+            for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+            String subject = new String(chars);
+            int start = random.nextInt(chars.length - 40);
+            String query = subject.substring(start, start + 20) + "TTTT" + subject.substring(start + 25, start + 40);
+            SubjectIndex index = SubjectIndex.build(subject);
+
+            assertEquals(Set.of(SeedAndExtend.align(subject, query, 4)), Set.of(SeedAndExtend.align(index, query, 4)));
+        }
+
+        for (String[] pair : new String[][]{ {"AGTCGA", "TCG"}, {"ATCGATCG", "TCG"}, {"AGTCGAC", "TCGAC"}, {"AAAAA", "AAA"} }) {
+            SubjectIndex index = SubjectIndex.build(pair[0]);
+            assertEquals(Set.of(SeedAndExtend.align(pair[0], pair[1], 2, sw, 10)), Set.of(SeedAndExtend.align(index, pair[1], 2, sw, 10)));
+        }
+    }
+
+    @Test
+    public void testIndexedSubjectOnLongSimilarInputs() {
+        // A long query that matches the subject almost everywhere. Each maximal match used to be walked again from every query position inside it,
+        // which made the index slower than indexing the subject again for every query.
+        Random random = new Random(19);
+        char[] chars = new char[80000];
+        for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        String subject = new String(chars);
+        for (int i = 0; i < chars.length; i++) {
+            if (random.nextInt(500) == 0) chars[i] = "ACGT".charAt(("ACGT".indexOf(chars[i]) + 1 + random.nextInt(3)) % 4);
+        }
+        String query = new String(chars);
+        SubjectIndex index = SubjectIndex.build(subject);
+
+        assertEquals(Set.of(SeedAndExtend.align(subject, query, 11)), Set.of(SeedAndExtend.align(index, query, 11)));
+
+        long indexed = Long.MAX_VALUE, rebuilt = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            SeedAndExtend.align(index, query, 11);
+            long middle = System.nanoTime();
+            SeedAndExtend.align(subject, query, 11);
+            long end = System.nanoTime();
+
+            indexed = Math.min(indexed, middle - start);
+            rebuilt = Math.min(rebuilt, end - middle);
+        }
+
+        assertTrue(indexed <= 4 * rebuilt + 200_000_000L, "Indexed: " + indexed / 1_000_000 + " ms, rebuilt: " + rebuilt / 1_000_000 + " ms");
+    }
+
+    @Test
+    public void testSmithWatermanExtendsEverySeed() throws Exception {
+        // Seeds inside another seed's Smith-Waterman extension can still extend differently, so none of them are skipped. These are the results before seeds were grouped by diagonal.
+        String subject = "AGGCACTACTGATCGCCGATCATGTCACACTATCTCACAGACAGTGACTCTTTTC";
+        String query = "ATCGCCGATCATGTCTATCGCCGATC";
+
+        Set<Extension> expected = Set.of(
+                new Extension(4, 0, "ATCGCCGATCATG"), new Extension(8, 0, "CTGATCGCCGATC"), new Extension(11, 0, "ATCGCCGATCATGTC"),
+                new Extension(12, 1, "TCGCCGATCATGTC"), new Extension(13, 2, "CGCCGATCATGTC"), new Extension(14, 3, "GCCGATCATGTC"),
+                new Extension(15, 4, "CCGATCATGTC"), new Extension(16, 5, "CGATCATGTC"), new Extension(11, 16, "ATCGCCGATC"));
+        Extension[] results = SeedAndExtend.align(subject, query, 4, new SmithWaterman(), 19);
+        assertEquals(10, results.length); // The 10th is at (29, 14), and its consensus ends in an unfilled character.
+        assertTrue(Set.of(results).containsAll(expected));
+    }
+
+    @Test
+    public void testMinimizerSeeds() throws Exception {
+        Random random = new Random(23);
+        char[] chars = new char[5000];
+        for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        String subject = new String(chars);
+        String query = subject.substring(3000, 3100);
+
+        // Only a sample of the positions are seeded, but the whole shared region is still found.
+        Extension[] results = SeedAndExtend.align(subject, query, SeedScheme.kmers(12).minimizers(8));
+        assertValidPositions(results, subject, query);
+        assertTrue(Arrays.asList(results).contains(new Extension(3000, 0, query)));
+        assertArrayEquals(results, SeedAndExtend.align(subject, query, SeedScheme.kmers(12).minimizers(8), null, 10));
+    }
+
+    @Test
+    public void testSpacedSeeds() throws Exception {
+        // Every third query character is changed, so no 5 consecutive characters match. A spaced seed with its '0's over the changes still does.
+        Random random = new Random(7);
+        char[] chars = new char[60];
+        for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        String subject = new String(chars);
+        for (int i = 2; i < chars.length; i += 3) chars[i] = chars[i] == 'A' ? 'C' : 'A';
+        String query = new String(chars);
+
+        assertEquals(0, SeedAndExtend.align(subject, query, SeedScheme.kmers(5)).length);
+
+        Extension[] results = SeedAndExtend.align(subject, query, SeedScheme.spaced("1101101"));
+        assertTrue(results.length > 0);
+        assertValidPositions(results, subject, query);
+        for (Extension e : results) assertEquals(e.subjectPos(), e.queryPos());
+    }
+
+    @Test
+    public void testChainJoinsCollinearSeeds() throws Exception {
+        // The query is the subject with a substitution every 50 characters and a 10 character insertion, so the exact matches are broken into many short hits.
+        Random random = new Random(31);
+        char[] chars = new char[3000];
+        for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        String subject = new String(chars);
+        for (int i = 25; i < chars.length; i += 50) chars[i] = chars[i] == 'A' ? 'C' : 'A';
+        String query = new String(chars, 0, 1500) + "TTTTTTTTTT" + new String(chars, 1500, 1500);
+
+        Chain[] chains = SeedAndExtend.chain(subject, query, SeedScheme.kmers(12));
+        assertTrue(chains.length > 0);
+        assertTrue(SeedAndExtend.align(subject, query, 12).length > 50);
+
+        // The best chain covers both strings from end to end, in one alignment.
+        AlignmentResult alignment = chains[0].alignment();
+        assertEquals(0, alignment.subjectStart());
+        assertEquals(subject.length(), alignment.subjectEnd());
+        assertEquals(0, alignment.queryStart());
+        assertEquals(query.length(), alignment.queryEnd());
+        assertEquals(60, alignment.length() - alignment.matches() - 10); // 60 substitutions, plus the insertion.
+
+        String[] rendered = alignment.render();
+        assertEquals(subject, rendered[0].replace("-", ""));
+        assertEquals(query, rendered[1].replace("-", ""));
+    }
+
+    @Test
+    public void testChainScoresItsAlignment() {
+        // With linear gaps, the chain's alignment score is the sum of its columns' scores.
+        Random random = new Random(37);
+        NeedlemanWunsch aligner = NeedlemanWunsch.builder().match(2).mismatch(-3).gap(-2).build();
+
+        for (int n = 0; n < 20; n++) {
+            char[] chars = new char[500 + random.nextInt(500)];
+            for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+            String subject = new String(chars);
+            StringBuilder query = new StringBuilder(subject);
+            for (int i = 0; i < 10; i++) query.setCharAt(random.nextInt(query.length()), 'A');
+            for (int i = 0; i < 3; i++) query.deleteCharAt(random.nextInt(query.length()));
+
+            for (Chain chain : SeedAndExtend.chain(subject, query.toString(), SeedScheme.spaced("110111").minimizers(4), aligner, 100, 20)) {
+                String[] rendered = chain.alignment().render();
+                int score = 0;
+                for (int i = 0; i < rendered[0].length(); i++) {
+                    char a = rendered[0].charAt(i), b = rendered[1].charAt(i);
+                    score += a == '-' || b == '-' ? -2 : a == b ? 2 : -3;
+                }
+
+                assertEquals(score, chain.alignment().score());
+                assertTrue(chain.score() >= 20);
+                assertEquals(subject.substring(chain.alignment().subjectStart(), chain.alignment().subjectEnd()), rendered[0].replace("-", ""));
+            }
+        }
+    }
+
+    @Test
+    public void testChainEdgeCases() {
+        assertEquals(0, SeedAndExtend.chain("", "ACGT", SeedScheme.kmers(2)).length);
+        assertEquals(0, SeedAndExtend.chain("AAAA", "CCCC", SeedScheme.kmers(2)).length);
+        assertThrows(IllegalArgumentException.class, () -> SeedAndExtend.chain("ACGT", "ACGT", null));
+        assertThrows(IllegalArgumentException.class, () -> SeedAndExtend.chain("ACGT", "ACGT", SeedScheme.kmers(2), null, 10, 0));
+    }
+
+    @Test
+    public void testMappedSubject(@TempDir Path dir) throws Exception {
+        // Aligning against a file or a memory segment should find the same alignments as aligning against the subject as a String.
+        Random random = new Random(43);
+        char[] chars = new char[4000];
+        for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        String subject = new String(chars);
+        for (int i = 10; i < chars.length; i += 40) chars[i] = chars[i] == 'A' ? 'C' : 'A';
+        String query = new String(chars, 1000, 800) + "GGGGG" + new String(chars, 2000, 600);
+
+        Path file = dir.resolve("subject.txt");
+        Files.write(file, subject.getBytes(StandardCharsets.ISO_8859_1));
+        SeedScheme seeds = SeedScheme.kmers(10);
+        SmithWaterman sw = new SmithWaterman();
+
+        Set<Extension> expected = Set.of(SeedAndExtend.align(subject, query, seeds));
+        assertEquals(expected, Set.of(SeedAndExtend.align(file, query, seeds)));
+        assertEquals(expected, Set.of(SeedAndExtend.align(MemorySegment.ofArray(subject.getBytes(StandardCharsets.ISO_8859_1)), query, seeds)));
+        assertEquals(Set.of(SeedAndExtend.align(subject, query, seeds, sw, 30)), Set.of(SeedAndExtend.align(file, query, seeds, sw, 30)));
+
+        Chain[] heap = SeedAndExtend.chain(subject, query, seeds);
+        try (Arena arena = Arena.ofShared(); FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            assertEquals(expected, Set.of(SeedAndExtend.align(mapped, query, seeds)));
+
+            Chain[] chains = SeedAndExtend.chain(mapped, query, seeds);
+            assertEquals(heap.length, chains.length);
+            for (int i = 0; i < heap.length; i++) {
+                assertEquals(heap[i].score(), chains[i].score());
+                assertArrayEquals(heap[i].alignment().render(), chains[i].alignment().render());
+            }
+        }
+
+        Chain[] fromFile = SeedAndExtend.chain(file, query, seeds);
+        assertArrayEquals(heap[0].alignment().render(), fromFile[0].alignment().render());
+    }
+
+    @Test
+    public void testMappedSubjectEdgeCases(@TempDir Path dir) throws Exception {
+        Path empty = dir.resolve("empty.txt");
+        Files.write(empty, new byte[0]);
+
+        assertEquals(0, SeedAndExtend.align(empty, "ACGT", SeedScheme.kmers(2)).length);
+        assertEquals(0, SeedAndExtend.chain(empty, "ACGT", SeedScheme.kmers(2)).length);
+        assertEquals(0, SeedAndExtend.align((MemorySegment) null, "ACGT", SeedScheme.kmers(2)).length);
+        assertThrows(IllegalArgumentException.class, () -> SeedAndExtend.align((Path) null, "ACGT", SeedScheme.kmers(2)));
+        assertThrows(IOException.class, () -> SeedAndExtend.align(dir.resolve("missing.txt"), "ACGT", SeedScheme.kmers(2)));
+    }
+
+    @Test
+    public void testAlignAll() throws Exception {
+        // Each query should get the same alignments as aligning it on its own, whichever thread it's run on.
+        Random random = new Random(47);
+        char[] chars = new char[5000];
+        for (int i = 0; i < chars.length; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        String subject = new String(chars);
+
+        List<String> queries = new ArrayList<>();
+        for (int n = 0; n < 40; n++) {
+            int start = random.nextInt(subject.length() - 200);
+            queries.add(subject.substring(start, start + 60) + "TTTTT" + subject.substring(start + 65, start + 65 + random.nextInt(130)));
+        }
+        queries.add("");
+        queries.add("GGGGGGGGGGGG");
+
+        SeedScheme seeds = SeedScheme.kmers(10);
+        Map<Integer, Extension[]> greedy = new ConcurrentHashMap<>();
+        SeedAndExtend.alignAll(subject, queries, seeds, (i, extensions) -> assertNull(greedy.put(i, extensions)));
+
+        assertEquals(queries.size(), greedy.size());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(Set.of(SeedAndExtend.align(subject, queries.get(i), seeds)), Set.of(greedy.get(i)));
+        }
+        assertEquals(0, greedy.get(queries.size() - 2).length);
+
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMATCH(2);
+        sw.setMISMATCH(-1);
+        sw.setGAP(-2);
+        List<String> fixtures = List.of("TCG", "GTCGA", "CGAC");
+        Map<Integer, Extension[]> smithWaterman = new ConcurrentHashMap<>();
+        SeedAndExtend.alignAll("AGTCGAC", fixtures, SeedScheme.kmers(2), sw, 10, (i, extensions) -> assertNull(smithWaterman.put(i, extensions)));
+
+        assertEquals(fixtures.size(), smithWaterman.size());
+        for (int i = 0; i < fixtures.size(); i++) {
+            assertEquals(Set.of(SeedAndExtend.align("AGTCGAC", fixtures.get(i), 2, sw, 10)), Set.of(smithWaterman.get(i)));
+        }
+    }
+
+    @Test
+    public void testAlignAllEdgeCases() {
+        List<Integer> called = new ArrayList<>();
+        SeedAndExtend.alignAll("ACGT", List.of(), SeedScheme.kmers(2), (i, extensions) -> called.add(i));
+        assertEquals(List.of(), called);
+
+        SeedAndExtend.alignAll("", List.of("ACGT"), SeedScheme.kmers(2), (i, extensions) -> assertEquals(0, extensions.length));
+        assertThrows(IllegalArgumentException.class, () -> SeedAndExtend.alignAll("ACGT", null, SeedScheme.kmers(2), (i, extensions) -> {}));
+        assertThrows(IllegalArgumentException.class, () -> SeedAndExtend.alignAll("ACGT", List.of("ACGT"), null, (i, extensions) -> {}));
+        assertThrows(IllegalArgumentException.class, () -> SeedAndExtend.alignAll("ACGT", List.of("ACGT"), SeedScheme.kmers(2), null));
+    }
+
     @Test
     public void testEmptySequences() throws Exception {
         String subject = "";
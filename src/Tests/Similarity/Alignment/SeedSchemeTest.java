@@ -0,0 +1,40 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.SeedScheme;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class SeedSchemeTest {
+
+    @Test
+    public void testKmers() {
+        SeedScheme scheme = SeedScheme.kmers(5);
+
+        assertEquals("11111", scheme.mask());
+        assertEquals(5, scheme.span());
+        assertEquals(5, scheme.weight());
+        assertEquals(1, scheme.window());
+    }
+
+    @Test
+    public void testSpacedMinimizers() {
+        SeedScheme spaced = SeedScheme.spaced("1101101");
+        SeedScheme sampled = spaced.minimizers(10);
+
+        assertEquals(7, sampled.span());
+        assertEquals(5, sampled.weight());
+        assertEquals(10, sampled.window());
+        assertEquals(1, spaced.window()); // minimizers() returns a new scheme.
+    }
+
+    @Test
+    public void testInvalidSchemes() {
+        assertThrows(IllegalArgumentException.class, () -> SeedScheme.kmers(0));
+        assertThrows(IllegalArgumentException.class, () -> SeedScheme.spaced(null));
+        assertThrows(IllegalArgumentException.class, () -> SeedScheme.spaced(""));
+        assertThrows(IllegalArgumentException.class, () -> SeedScheme.spaced("0110"));
+        assertThrows(IllegalArgumentException.class, () -> SeedScheme.spaced("1121"));
+        assertThrows(IllegalArgumentException.class, () -> SeedScheme.kmers(3).minimizers(0));
+    }
+}
@@ -1,11 +1,17 @@
 package Tests.Similarity.Alignment;
 
+import ie.atu.forge.Similarity.Alignment.CandidateMatch;
+import ie.atu.forge.Similarity.Alignment.ScoringMatrix;
 import ie.atu.forge.Similarity.Alignment.SmithWaterman;
 import ie.atu.forge.ToolBox.MatrixLoader;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -89,6 +95,353 @@ public class SmithWatermanTest {
         assertEquals(result[0].length(), result[1].length());
     }
 
+    // --- Tests for score-only alignment ---
+    @Test
+    public void testScoreDefault() {
+        SmithWaterman sw = new SmithWaterman();
+        assertEquals(7, sw.score("GATTACA", "GATTACA"));
+        assertEquals(4, sw.score("ACGTGGG", "TTACGT"));
+        assertEquals(0, sw.score("AAAA", "CCCC"));
+        assertEquals(0, sw.score("", "ACGT"));
+    }
+
+    @Test
+    public void testScoreMatchesAlignment() {
+        Random random = new Random(11);
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMATCH(2);
+        sw.setMISMATCH(-3);
+        sw.setGAP(-2);
+
+        for(int n = 0; n < 200; n++) {
+            String s1 = randomSequence(random, "ACGT", 1 + random.nextInt(40));
+            String s2 = randomSequence(random, "ACGT", 1 + random.nextInt(40));
+
+            String[] alignment = sw.align(s1, s2);
+            assertEquals(alignmentScore(alignment, null, 2, -3, -2), sw.score(s1, s2), s1 + " " + s2);
+        }
+    }
+
+    @Test
+    public void testScoreWithMatrix() {
+        Random random = new Random(13);
+        SmithWaterman sw = new SmithWaterman();
+        sw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        sw.setGAP(-4);
+
+        for(int n = 0; n < 200; n++) {
+            String s1 = randomSequence(random, "ARNDCQEGHILKMFPSTWYVX", 1 + random.nextInt(60));
+            String s2 = randomSequence(random, "ARNDCQEGHILKMFPSTWYVX", 1 + random.nextInt(60));
+
+            String[] alignment = sw.align(s1, s2);
+            assertEquals(alignmentScore(alignment, ScoringMatrix.BLOSUM62, 0, 0, -4), sw.score(s1, s2), s1 + " " + s2);
+            assertEquals(sw.score(s1, s2), sw.score(s1.toCharArray(), s2.toCharArray(), true));
+        }
+
+        assertEquals(new SmithWaterman().score("MEEPQ", "MEEPQ"), sw.score("MEEPQ", "MEEPQ", false));
+    }
+
+    @Test
+    public void testScoreLongSequences() {
+        Random random = new Random(43);
+        String core = randomSequence(random, "ACGT", 3000);
+        String s1 = randomSequence(random, "ACGT", 1500) + core + randomSequence(random, "ACGT", 500);
+        String s2 = randomSequence(random, "ACGT", 200) + mutate(random, core) + randomSequence(random, "ACGT", 1200);
+
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMATCH(2);
+        sw.setMISMATCH(-3);
+        sw.setGAP(-2);
+
+        int score = alignmentScore(sw.align(s1, s2), null, 2, -3, -2);
+        assertEquals(score, sw.score(s1, s2));
+        assertEquals(score, sw.score(s2, s1));
+    }
+
+    @Test
+    public void testScoreAcrossLaneWidths() {
+        // Scores that fit in 8 bits, need 16 bits, and don't fit in 16 bits, with Match and Mismatch scores, a scoring matrix, and affine gaps.
+        Random random = new Random(47);
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMISMATCH(-5);
+        sw.setGAP(-3);
+
+        for(int match: new int[]{ 1, 4, 25 }) {
+            sw.setMATCH(match);
+            String core = randomSequence(random, "ACGT", 1500);
+            String s1 = randomSequence(random, "ACGT", 100) + core + randomSequence(random, "ACGT", 100);
+            String s2 = mutate(random, core);
+
+            assertEquals(alignmentScore(sw.align(s1, s2), null, match, -5, -3), sw.score(s1, s2), "Match " + match);
+        }
+
+        sw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        for(int length: new int[]{ 10, 400, 4000 }) {
+            String s = "W".repeat(length);
+            assertEquals(11 * length, sw.score("AC" + s + "DE", s));
+        }
+
+        SmithWaterman affine = new SmithWaterman();
+        affine.setMATCH(3);
+        affine.setMISMATCH(-4);
+        affine.setGAP_OPEN(-6);
+        affine.setGAP(-1);
+        for(int n = 0; n < 40; n++) {
+            String core = randomSequence(random, "ACGT", random.nextInt(400));
+            String s1 = randomSequence(random, "ACGT", random.nextInt(50)) + core + randomSequence(random, "ACGT", random.nextInt(50));
+            String s2 = mutate(random, core);
+
+            assertEquals(affineScore(affine.align(s1, s2), 3, -4, -6, -1), affine.score(s1, s2), s1 + " " + s2);
+        }
+    }
+
+    // --- Tests for linear-space alignment ---
+    @Test
+    public void testLinearSpaceMatchesFullMatrix() {
+        Random random = new Random(23);
+        SmithWaterman full = new SmithWaterman();
+        SmithWaterman linear = new SmithWaterman();
+        linear.setLinearSpace(true);
+
+        for(int n = 0; n < 60; n++) {
+            // A shared core with unrelated flanks, so the local alignment starts and ends away from the edges.
+            String core = randomSequence(random, "ACGT", random.nextInt(300));
+            String s1 = randomSequence(random, "ACGT", random.nextInt(100)) + core + randomSequence(random, "ACGT", random.nextInt(100));
+            String s2 = randomSequence(random, "ACGT", random.nextInt(100)) + mutate(random, core) + randomSequence(random, "ACGT", random.nextInt(100));
+
+            assertArrayEquals(full.align(s1, s2), linear.align(s1, s2), s1 + " " + s2);
+        }
+
+        assertArrayEquals(new String[]{ "", "" }, linear.align("AAAA", "CCCC"));
+    }
+
+    @Test
+    public void testLinearSpaceWithMatrix() {
+        Random random = new Random(29);
+        String protein = "ARNDCQEGHILKMFPSTWYV";
+        SmithWaterman full = new SmithWaterman();
+        SmithWaterman linear = new SmithWaterman();
+        full.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        linear.setScoringMatrix(ScoringMatrix.BLOSUM62);
+        linear.setLinearSpace(true);
+
+        for(int n = 0; n < 40; n++) {
+            String s1 = randomSequence(random, protein, random.nextInt(600));
+            String s2 = randomSequence(random, protein, random.nextInt(600));
+
+            assertArrayEquals(full.align(s1, s2), linear.align(s1, s2), s1 + " " + s2);
+        }
+    }
+
+    // --- Tests for affine gaps, bands and X-drop ---
+    @Test
+    public void testAffineGaps() {
+        SmithWaterman sw = new SmithWaterman();
+        sw.setMATCH(2);
+        sw.setGAP_OPEN(-2);
+
+        String[] result = sw.align("TTAAACCCGGGTT", "AAAGGG");
+        assertEquals("AAACCCGGG", result[0]);
+        assertEquals("AAA---GGG", result[1]);
+        assertEquals(7, sw.score("TTAAACCCGGGTT", "AAAGGG"));
+    }
+
+    @Test
+    public void testBandAroundSeedDiagonal() {
+        SmithWaterman sw = new SmithWaterman();
+        // The shared part starts at position 8 in the subject and 2 in the query, so it is on diagonal 2 - 8 = -6.
+        String s1 = "GGGGGGGGACGTACGTAC";
+        String s2 = "TTACGTACGTACTTTTTT";
+
+        sw.setBand(1, -6);
+        assertEquals(-6, sw.getBandDiagonal());
+        String[] result = sw.align(s1, s2);
+        assertEquals("ACGTACGTAC", result[0]);
+        assertEquals("ACGTACGTAC", result[1]);
+
+        // A band that misses the shared part can't find it.
+        sw.setBand(1, 4);
+        assertTrue(sw.score(s1, s2) < 10);
+    }
+
+    @Test
+    public void testXDrop() {
+        Random random = new Random(53);
+        String core = randomSequence(random, "ACGT", 400);
+        String s1 = randomSequence(random, "ACGT", 300) + core + randomSequence(random, "ACGT", 300);
+        String s2 = randomSequence(random, "ACGT", 100) + mutate(random, core) + randomSequence(random, "ACGT", 500);
+
+        SmithWaterman full = new SmithWaterman();
+        full.setGAP_OPEN(-2);
+        SmithWaterman pruned = new SmithWaterman();
+        pruned.setGAP_OPEN(-2);
+
+        // With an X too large to ever prune, nothing changes.
+        pruned.setX_DROP(100000);
+        assertArrayEquals(full.align(s1, s2), pruned.align(s1, s2));
+
+        // A strong core is still found with a small X, and the result is a real alignment with the reported score.
+        pruned.setX_DROP(20);
+        int score = pruned.score(s1, s2);
+        assertTrue(score <= full.score(s1, s2));
+        assertTrue(score > 200);
+        assertEquals(score, affineScore(pruned.align(s1, s2), 1, -1, -2, -1));
+
+        assertThrows(IllegalArgumentException.class, () -> pruned.setX_DROP(-1));
+    }
+
+    // --- Tests for database search ---
+    @Test
+    public void testSearchMatchesPairwiseScores() {
+        Random random = new Random(59);
+        String protein = "ARNDCQEGHILKMFPSTWYV";
+        String query = randomSequence(random, protein, 40);
+
+        // Some subjects contain part of the query, and a few are exact duplicates of each other to check the order of ties.
+        List<String> subjects = new ArrayList<>();
+        for(int i = 0; i < 500; i++) {
+            int length = 5 + random.nextInt(80);
+            if(i % 7 == 0) {
+                int from = random.nextInt(30);
+                subjects.add(randomSequence(random, protein, random.nextInt(20)) + query.substring(from, from + 5 + random.nextInt(35 - from)) + randomSequence(random, protein, random.nextInt(20)));
+            }
+            else if(i % 50 == 1) subjects.add(subjects.get(i - 1));
+            else subjects.add(randomSequence(random, protein, length));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SmithWaterman sw = new SmithWaterman();
+            assertEquals(naiveSearch(sw, query, subjects, 10), sw.search(query, subjects, 10, pool));
+
+            sw.setScoringMatrix(ScoringMatrix.BLOSUM62);
+            sw.setGAP(-4);
+            assertEquals(naiveSearch(sw, query, subjects, 25), sw.search(query, subjects, 25, pool));
+
+            sw.setGAP_OPEN(-7);
+            sw.setGAP(-1);
+            assertEquals(naiveSearch(sw, query, subjects, 5), sw.search(query, subjects, 5));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSearchScoresTooBigForNarrowLanes() {
+        // A few hits whose scores need 16 bits (or more) among many subjects that barely align.
+        Random random = new Random(67);
+        String query = randomSequence(random, "ACGT", 800);
+        List<String> subjects = new ArrayList<>();
+        for(int i = 0; i < 3000; i++) subjects.add(randomSequence(random, "ACGT", 20 + random.nextInt(200)));
+        subjects.set(100, randomSequence(random, "ACGT", 30) + query + randomSequence(random, "ACGT", 30));
+        subjects.set(2000, query.substring(0, 60));
+        subjects.set(2500, mutate(random, query.substring(100, 400)));
+
+        SmithWaterman sw = new SmithWaterman();
+        for(int match: new int[]{ 1, 5, 50 }) {
+            sw.setMATCH(match);
+            List<CandidateMatch> hits = sw.search(query, subjects, 4);
+            assertEquals(naiveSearch(sw, query, subjects, 4), hits, "Match " + match);
+            assertEquals(new CandidateMatch(100, subjects.get(100), 800 * match), hits.get(0));
+        }
+    }
+
+    @Test
+    public void testSearchEdgeCases() {
+        SmithWaterman sw = new SmithWaterman();
+        assertTrue(sw.search("ACGT", List.of(), 3).isEmpty());
+        assertTrue(sw.search("ACGT", List.of("TTTT", "GGGG"), 3).stream().allMatch(hit -> hit.score() > 0));
+        assertEquals(List.of(new CandidateMatch(1, "ACGT", 4), new CandidateMatch(0, "ACG", 3)), sw.search("ACGT", List.of("ACG", "ACGT", "CCCC"), 2));
+        assertEquals(3, sw.search("ACGT", List.of("ACG", "ACGT", "CCCC"), 5).size());
+
+        assertThrows(IllegalArgumentException.class, () -> sw.search("ACGT", List.of("A"), 0));
+        assertThrows(IllegalArgumentException.class, () -> sw.search(null, List.of("A"), 1));
+        assertThrows(IllegalArgumentException.class, () -> sw.search("ACGT", Arrays.asList("A", null), 1));
+    }
+
+    // --- Tests for built aligners ---
+    @Test
+    public void testBuilderMatchesSetters() {
+        Random random = new Random(61);
+        SmithWaterman set = new SmithWaterman();
+        set.setMATCH(2);
+        set.setMISMATCH(-3);
+        set.setGAP(-2);
+        SmithWaterman built = SmithWaterman.builder().match(2).mismatch(-3).gap(-2).build();
+
+        // A map without every pair, so the missing ones fall back to the Mismatch score.
+        Map<String, Integer> partial = new HashMap<>();
+        partial.put("AA", 4);
+        partial.put("CC", 5);
+        partial.put("AC", -1);
+        SmithWaterman setMatrix = new SmithWaterman();
+        setMatrix.setMISMATCH(-4);
+        setMatrix.setScoringMatrix(partial);
+        SmithWaterman builtMatrix = SmithWaterman.builder().mismatch(-4).scoringMatrix(partial).build();
+
+        SmithWaterman setAffine = new SmithWaterman();
+        setAffine.setGAP_OPEN(-3);
+        setAffine.setBand(10, 5);
+        setAffine.setX_DROP(30);
+        SmithWaterman builtAffine = SmithWaterman.builder().gapOpen(-3).band(10, 5).xDrop(30).build();
+
+        for(int n = 0; n < 30; n++) {
+            String s1 = randomSequence(random, "ACGT", random.nextInt(200));
+            String s2 = mutate(random, s1);
+
+            assertArrayEquals(set.align(s1, s2), built.align(s1, s2));
+            assertArrayEquals(setMatrix.align(s1, s2), builtMatrix.align(s1, s2));
+            assertArrayEquals(setAffine.align(s1, s2), builtAffine.align(s1, s2));
+            assertEquals(setMatrix.score(s1, s2), builtMatrix.score(s1, s2));
+        }
+
+        assertEquals(-4, builtMatrix.getMISMATCH());
+        assertEquals(10, builtAffine.getBandWidth());
+        assertEquals(30, builtAffine.getX_DROP());
+    }
+
+    @Test
+    public void testBuiltAlignerCantBeChanged() {
+        SmithWaterman.Builder builder = SmithWaterman.builder().match(3);
+        SmithWaterman sw = builder.build();
+
+        assertThrows(UnsupportedOperationException.class, () -> sw.setMATCH(1));
+        assertThrows(UnsupportedOperationException.class, () -> sw.setScoringMatrix(ScoringMatrix.BLOSUM62));
+        assertThrows(UnsupportedOperationException.class, () -> sw.setBand(2));
+        assertThrows(UnsupportedOperationException.class, sw::removeBand);
+        assertThrows(IllegalArgumentException.class, () -> builder.band(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.xDrop(-1));
+
+        // Changing the builder afterwards doesn't change what it already built.
+        builder.match(5);
+        assertEquals(3, sw.getMATCH());
+        assertEquals(5, builder.build().getMATCH());
+    }
+
+    @Test
+    public void testBuiltAlignerSharedBetweenThreads() throws Exception {
+        Random random = new Random(67);
+        SmithWaterman sw = SmithWaterman.builder().scoringMatrix(ScoringMatrix.BLOSUM62).gap(-4).build();
+        String protein = "ARNDCQEGHILKMFPSTWYV";
+
+        // Pairs of very different sizes, so pooled buffers get reused for smaller alignments than they were made for.
+        List<String[]> pairs = new ArrayList<>();
+        List<String[]> expected = new ArrayList<>();
+        for(int n = 0; n < 200; n++) {
+            String s1 = randomSequence(random, protein, random.nextInt(n % 10 == 0 ? 800 : 60));
+            String s2 = randomSequence(random, protein, random.nextInt(n % 10 == 0 ? 800 : 60));
+            pairs.add(new String[]{ s1, s2 });
+            expected.add(sw.align(s1, s2));
+        }
+
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String[]>> results = new ArrayList<>();
+            for(String[] pair: pairs) results.add(executor.submit(() -> sw.align(pair[0], pair[1])));
+
+            for(int n = 0; n < pairs.size(); n++) assertArrayEquals(expected.get(n), results.get(n).get());
+        }
+    }
+
     // --- Helper methods ---
     private int countMismatches(String a, String b) {
         int mismatches = 0;
@@ -100,6 +453,60 @@ public class SmithWatermanTest {
         return mismatches;
     }
 
+    private int alignmentScore(String[] alignment, ScoringMatrix matrix, int match, int mismatch, int gap) {
+        int score = 0;
+        for(int i = 0; i < alignment[0].length(); i++) {
+            char a = alignment[0].charAt(i), b = alignment[1].charAt(i);
+            if(a == '-' || b == '-') score += gap;
+            else if(matrix != null) score += matrix.score(a, b);
+            else score += a == b ? match : mismatch;
+        }
+        return score;
+    }
+
+    // Scores an alignment with affine gaps, where a gap of length k scores open + k * extend.
+    private int affineScore(String[] alignment, int match, int mismatch, int open, int extend) {
+        int score = 0;
+        char previousA = 0, previousB = 0;
+        for(int i = 0; i < alignment[0].length(); i++) {
+            char a = alignment[0].charAt(i), b = alignment[1].charAt(i);
+            if(a == '-') score += extend + (previousA == '-' ? 0 : open);
+            else if(b == '-') score += extend + (previousB == '-' ? 0 : open);
+            else score += a == b ? match : mismatch;
+            previousA = a;
+            previousB = b;
+        }
+        return score;
+    }
+
+    private String randomSequence(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+
+    // Copies s with roughly 1 in 10 characters substituted, deleted, or followed by an insertion.
+    private String mutate(Random random, String s) {
+        StringBuilder mutated = new StringBuilder();
+        for(char c: s.toCharArray()) {
+            int roll = random.nextInt(30);
+            if(roll == 0) continue;
+            mutated.append(roll == 1 ? "ACGT".charAt(random.nextInt(4)) : c);
+            if(roll == 2) mutated.append("ACGT".charAt(random.nextInt(4)));
+        }
+        return mutated.toString();
+    }
+
+    private List<CandidateMatch> naiveSearch(SmithWaterman sw, String query, List<String> subjects, int n) {
+        List<CandidateMatch> hits = new ArrayList<>();
+        for(int i = 0; i < subjects.size(); i++) {
+            int score = sw.score(subjects.get(i), query);
+            if(score > 0) hits.add(new CandidateMatch(i, subjects.get(i), score));
+        }
+        hits.sort(Comparator.comparingDouble(CandidateMatch::score).reversed().thenComparingInt(CandidateMatch::index));
+        return hits.subList(0, Math.min(n, hits.size()));
+    }
+
     private Map<String, Integer> loadBlosum45Stub() throws IOException {
         return MatrixLoader.load("./ScoringMatrices/BLOSUM45.txt");
     }
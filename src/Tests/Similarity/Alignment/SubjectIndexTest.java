@@ -0,0 +1,175 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.MaximalMatch;
+import ie.atu.forge.Similarity.Alignment.SubjectIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class SubjectIndexTest {
+
+    @Test
+    public void testFind() {
+        SubjectIndex index = SubjectIndex.build("banana");
+
+        assertEquals(6, index.length());
+        assertArrayEquals(new int[]{ 1, 3 }, index.find("ana"));
+        assertArrayEquals(new int[]{ 0 }, index.find("banana"));
+        assertArrayEquals(new int[0], index.find("bananas"));
+        assertArrayEquals(new int[0], index.find("x"));
+        assertEquals(3, index.count("a"));
+        assertEquals(2, index.count("na"));
+        assertEquals(6, index.count("")); // The empty pattern occurs at every position.
+    }
+
+    @Test
+    public void testMatchesNaiveSearch() {
+        Random random = new Random(13);
+
+        for(int n = 0; n < 50; n++) {
+            String subject = randomSequence(random, "ACGT", random.nextInt(500));
+            SubjectIndex index = SubjectIndex.build(subject);
+
+            for(int p = 0; p < 20; p++) {
+                String pattern = randomSequence(random, "ACGT", 1 + random.nextInt(6));
+
+                List<Integer> expected = new ArrayList<>();
+                for(int i = subject.indexOf(pattern); i >= 0; i = subject.indexOf(pattern, i + 1)) expected.add(i);
+
+                assertEquals(expected, Arrays.stream(index.find(pattern)).boxed().toList());
+                assertEquals(expected.size(), index.count(pattern));
+            }
+        }
+    }
+
+    @Test
+    public void testMaximalMatches() {
+        SubjectIndex index = SubjectIndex.build("xabcyabcdz");
+
+        // "abc" occurs twice, but only the second copy goes on to match the 'd'. "bc" and "c" are inside those matches, so aren't maximal.
+        assertEquals(List.of(new MaximalMatch(1, 0, 3), new MaximalMatch(5, 0, 4)), index.maximalMatches("abcd", 2));
+        assertEquals(List.of(new MaximalMatch(5, 0, 4)), index.maximalMatches("abcd", 4));
+        assertEquals(List.of(), index.maximalMatches("abcd", 5));
+        assertThrows(IllegalArgumentException.class, () -> index.maximalMatches("abcd", 0));
+    }
+
+    @Test
+    public void testMaximalMatchesMatchNaiveSearch() {
+        Random random = new Random(29);
+
+        for(int n = 0; n < 50; n++) {
+            String subject = randomSequence(random, "AB", random.nextInt(200));
+            String query = randomSequence(random, "AB", random.nextInt(40));
+            int minLength = 1 + random.nextInt(5);
+
+            assertEquals(naiveMaximalMatches(subject, query, minLength), SubjectIndex.build(subject).maximalMatches(query, minLength));
+        }
+    }
+
+    @Test
+    public void testNonAsciiSubject() {
+        SubjectIndex index = SubjectIndex.build("héllo wörld, héllo 世界");
+
+        assertArrayEquals(new int[]{ 0, 13 }, index.find("héllo"));
+        assertArrayEquals(new int[]{ 19 }, index.find("世界"));
+    }
+
+    @Test
+    public void testSaveAndLoad(@TempDir Path dir) throws IOException {
+        Random random = new Random(41);
+        String subject = randomSequence(random, "ACGTé世", 20000);
+        SubjectIndex heap = SubjectIndex.build(subject);
+        String path = dir.resolve("subject.idx").toString();
+        heap.save(path);
+
+        try(SubjectIndex loaded = SubjectIndex.load(path)) {
+            assertEquals(subject.length(), loaded.length());
+
+            for(int p = 0; p < 50; p++) {
+                String pattern = randomSequence(random, "ACGTé世", 1 + random.nextInt(8));
+                assertArrayEquals(heap.find(pattern), loaded.find(pattern));
+            }
+
+            String query = subject.substring(500, 600) + "XYZ" + subject.substring(9000, 9100);
+            assertEquals(heap.maximalMatches(query, 12), loaded.maximalMatches(query, 12));
+
+            // A loaded index can be saved again.
+            String copy = dir.resolve("copy.idx").toString();
+            loaded.save(copy);
+            assertArrayEquals(Files.readAllBytes(Path.of(path)), Files.readAllBytes(Path.of(copy)));
+        }
+    }
+
+    @Test
+    public void testSaveOverLoadedFile(@TempDir Path dir) throws IOException {
+        Random random = new Random(43);
+        String subject = randomSequence(random, "ACGT", 5000) + "GATTACA" + randomSequence(random, "ACGT", 5000);
+        SubjectIndex heap = SubjectIndex.build(subject);
+        String path = dir.resolve("subject.idx").toString();
+        heap.save(path);
+
+        // The loaded index is still mapped from the file it's saved over, and keeps working.
+        try(SubjectIndex loaded = SubjectIndex.load(path)) {
+            loaded.save(path);
+            assertArrayEquals(heap.find("GATTACA"), loaded.find("GATTACA"));
+        }
+
+        try(SubjectIndex reloaded = SubjectIndex.load(path)) {
+            assertEquals(subject.length(), reloaded.length());
+            assertArrayEquals(heap.find("GATTACA"), reloaded.find("GATTACA"));
+            assertEquals(heap.maximalMatches(subject.substring(100, 300), 20), reloaded.maximalMatches(subject.substring(100, 300), 20));
+        }
+
+        // Only the index is left in the directory.
+        try(var files = Files.list(dir)) {
+            assertEquals(List.of(Path.of(path)), files.toList());
+        }
+    }
+
+    @Test
+    public void testLoadRejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("other.idx");
+        Files.write(path, new byte[32]);
+
+        assertThrows(IOException.class, () -> SubjectIndex.load(path.toString()));
+    }
+
+    @Test
+    public void testEdgeCases() {
+        SubjectIndex empty = SubjectIndex.build("");
+
+        assertEquals(0, empty.length());
+        assertArrayEquals(new int[0], empty.find("A"));
+        assertEquals(List.of(), empty.maximalMatches("ACGT", 1));
+        assertThrows(IllegalArgumentException.class, () -> SubjectIndex.build(null));
+        assertThrows(IllegalArgumentException.class, () -> empty.find(null));
+    }
+
+    private List<MaximalMatch> naiveMaximalMatches(String subject, String query, int minLength) {
+        List<MaximalMatch> matches = new ArrayList<>();
+
+        for(int i = 0; i < query.length(); i++) {
+            for(int p = 0; p < subject.length(); p++) {
+                if(i > 0 && p > 0 && query.charAt(i - 1) == subject.charAt(p - 1)) continue;
+
+                int length = 0;
+                while(i + length < query.length() && p + length < subject.length() && query.charAt(i + length) == subject.charAt(p + length)) length++;
+                if(length >= minLength) matches.add(new MaximalMatch(p, i, length));
+            }
+        }
+
+        return matches;
+    }
+
+    private String randomSequence(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+}
@@ -0,0 +1,101 @@
+package Tests.Similarity.Alignment;
+
+import ie.atu.forge.Similarity.Alignment.DamerauLevenshtein;
+import ie.atu.forge.Similarity.Alignment.Suggestion;
+import ie.atu.forge.Similarity.Alignment.SymSpell;
+import ie.atu.forge.Vectorisers.BagOfWords;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+public class SymSpellTest {
+
+    private BagOfWords corpus() {
+        BagOfWords bag = new BagOfWords();
+        bag.addSentence("The cat sat on the mat. The cat ate the rat. A bat and a hat.");
+        bag.addSentence("The cart was on the path, the cart was full.");
+        return bag;
+    }
+
+    @Test
+    public void testExactMatchFirst() {
+        SymSpell symSpell = new SymSpell(corpus(), 2);
+        List<Suggestion> suggestions = symSpell.lookup("cat");
+
+        assertEquals(new Suggestion("cat", 0, 2), suggestions.get(0));
+    }
+
+    @Test
+    public void testFrequencyRanking() {
+        SymSpell symSpell = new SymSpell(corpus(), 1);
+
+        // "cat", "sat", "mat", "rat", "bat" and "hat" are all 1 edit away. Ties go to the more frequent term, which is "cat".
+        List<Suggestion> suggestions = symSpell.lookup("xat");
+        assertTrue(suggestions.stream().allMatch(s -> s.distance() == 1));
+        assertEquals("cat", suggestions.get(0).term());
+        for(int i = 1; i < suggestions.size(); i++) {
+            assertTrue(suggestions.get(i - 1).count() >= suggestions.get(i).count());
+        }
+    }
+
+    @Test
+    public void testTranspositionsAndCorrection() {
+        SymSpell symSpell = new SymSpell(corpus(), 2);
+
+        assertEquals(new Suggestion("cart", 1, 2), symSpell.correct("crat"));
+        assertEquals("path", symSpell.correct("paht").term());
+        assertNull(symSpell.correct("elephant"));
+    }
+
+    @Test
+    public void testSmallerLookupDistance() {
+        SymSpell symSpell = new SymSpell(corpus(), 2);
+
+        assertTrue(symSpell.lookup("caat", 0).isEmpty());
+        assertEquals(List.of("cart", "cat"), symSpell.lookup("caat", 1).stream().map(Suggestion::term).toList());
+        assertThrows(IllegalArgumentException.class, () -> symSpell.lookup("caat", 3));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(7);
+        Map<String, Integer> counts = new HashMap<>();
+        for(int i = 0; i < 1000; i++) counts.put(randomWord(random, 10), random.nextInt(50));
+
+        SymSpell full = new SymSpell(counts, 2);
+        SymSpell prefixed = new SymSpell(counts, 2, 5);
+
+        for(int i = 0; i < 100; i++) {
+            String query = randomWord(random, 11);
+
+            Set<String> expected = new TreeSet<>();
+            for(String term: counts.keySet()) {
+                if(DamerauLevenshtein.distance(term, query) <= 2) expected.add(term);
+            }
+
+            assertEquals(expected, terms(full.lookup(query)));
+            assertEquals(expected, terms(prefixed.lookup(query)));
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new SymSpell(corpus(), -1));
+        assertThrows(IllegalArgumentException.class, () -> new SymSpell(corpus(), 2, 2));
+        assertThrows(IllegalArgumentException.class, () -> new SymSpell(corpus(), 1).lookup(null));
+    }
+
+    private String randomWord(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength)];
+        for(int i = 0; i < chars.length; i++) chars[i] = (char) ('a' + random.nextInt(4));
+        return new String(chars);
+    }
+
+    private Set<String> terms(List<Suggestion> suggestions) {
+        Set<String> terms = new TreeSet<>();
+        for(Suggestion suggestion: suggestions) terms.add(suggestion.term());
+        return terms;
+    }
+}
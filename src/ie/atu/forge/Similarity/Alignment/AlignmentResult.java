@@ -0,0 +1,190 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+
+/**
+ * A pairwise alignment stored compactly: where it starts and ends in both sequences, its score, and its columns as a run-length encoded list of operations (a CIGAR).
+ * The gapped strings returned by align() are only built when render() is called, so a result costs a few ints per run of operations rather than 2 characters per column.<br><br>
+ *
+ * Each CIGAR element is packed the same way as in the BAM format: the run length in the upper 28 bits and the operation in the lower 4 (length &lt;&lt; 4 | operation).
+ * Matches and mismatches are told apart (SAM's '=' and 'X'), so the identity can be worked out without the sequences.
+ * Insertions are query characters aligned to a gap in the subject, and deletions are subject characters aligned to a gap in the query.<br><br>
+ *
+ * Coordinates start at 0, and end coordinates are exclusive. The result keeps a reference to both sequences (not a copy) for rendering.
+ * Results built from char arrays read them when render() is called, so the arrays shouldn't be changed while the result is in use.
+ * Two results are equal if they have the same coordinates, score and CIGAR.
+ */
+public final class AlignmentResult {
+    /** An inserted query character, aligned to a gap in the subject ('I'). */
+    public static final int INSERTION = 1;
+    /** A deleted subject character, aligned to a gap in the query ('D'). */
+    public static final int DELETION = 2;
+    /** 2 equal characters aligned to each other ('='). */
+    public static final int MATCH = 7;
+    /** 2 different characters aligned to each other ('X'). */
+    public static final int MISMATCH = 8;
+
+    private static final String OPERATIONS = "MIDNSHP=X"; // The BAM operation codes, indexed by code.
+
+    private final CharSequence subject, query;
+    private final int subjectStart, subjectEnd, queryStart, queryEnd;
+    private final int score;
+    private final int[] cigar;
+
+    AlignmentResult(CharSequence subject, CharSequence query, int subjectStart, int subjectEnd, int queryStart, int queryEnd, int score, int[] cigar) {
+        this.subject = subject;
+        this.query = query;
+        this.subjectStart = subjectStart;
+        this.subjectEnd = subjectEnd;
+        this.queryStart = queryStart;
+        this.queryEnd = queryEnd;
+        this.score = score;
+        this.cigar = cigar;
+    }
+
+    // The same alignment, rendered from different copies of the sequences (e.g. the caller's Strings instead of the arrays that were aligned).
+    AlignmentResult withSequences(CharSequence subject, CharSequence query) {
+        return new AlignmentResult(subject, query, subjectStart, subjectEnd, queryStart, queryEnd, score, cigar);
+    }
+
+    /**
+     * Gets the operation of a CIGAR element.
+     * @param element An element of cigar().
+     * @return One of MATCH, MISMATCH, INSERTION or DELETION.
+     */
+    public static int operation(int element) {
+        return element & 0xF;
+    }
+
+    /**
+     * Gets the number of columns in a CIGAR element.
+     * @param element An element of cigar().
+     * @return The length of the run.
+     */
+    public static int runLength(int element) {
+        return element >>> 4;
+    }
+
+    /**
+     * @return The position of the alignment's first subject character.
+     */
+    public int subjectStart() { return subjectStart; }
+
+    /**
+     * @return The position after the alignment's last subject character.
+     */
+    public int subjectEnd() { return subjectEnd; }
+
+    /**
+     * @return The position of the alignment's first query character.
+     */
+    public int queryStart() { return queryStart; }
+
+    /**
+     * @return The position after the alignment's last query character.
+     */
+    public int queryEnd() { return queryEnd; }
+
+    /**
+     * @return The alignment's score.
+     */
+    public int score() { return score; }
+
+    /**
+     * Gets the CIGAR, in order from the start of the alignment.
+     * @return A copy of the run-length encoded operations (see operation() and runLength()).
+     */
+    public int[] cigar() { return cigar.clone(); }
+
+    /**
+     * Gets the CIGAR as text, e.g. "5=1X2I3=".
+     * @return The CIGAR string, or an empty string for an empty alignment.
+     */
+    public String cigarString() {
+        StringBuilder sb = new StringBuilder(cigar.length * 3);
+        for(int element: cigar) sb.append(runLength(element)).append(OPERATIONS.charAt(operation(element)));
+
+        return sb.toString();
+    }
+
+    /**
+     * Gets the number of columns in the alignment, which is the length of each rendered string.
+     * @return The number of columns.
+     */
+    public int length() {
+        int length = 0;
+        for(int element: cigar) length += runLength(element);
+
+        return length;
+    }
+
+    /**
+     * Gets the number of columns where both characters are the same.
+     * @return The number of matches.
+     */
+    public int matches() {
+        int matches = 0;
+        for(int element: cigar) {
+            if(operation(element) == MATCH) matches += runLength(element);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Gets the fraction of columns where both characters are the same.
+     * @return The number of matches over the number of columns, or 0 for an empty alignment.
+     */
+    public double identity() {
+        int length = length();
+        return length == 0 ? 0 : (double) matches() / length;
+    }
+
+    /**
+     * Builds the gapped strings for the alignment, the same as align() returns, with '-' for gaps.
+     * @return The aligned subject and query.
+     */
+    public String[] render() {
+        char[][] alignments = renderChars();
+        return new String[]{ new String(alignments[0]), new String(alignments[1]) };
+    }
+
+    char[][] renderChars() {
+        int length = length();
+        char[] alignA = new char[length];
+        char[] alignB = new char[length];
+        int i = subjectStart, j = queryStart, index = 0;
+
+        for(int element: cigar) {
+            int operation = operation(element);
+
+            for(int k = runLength(element); k > 0; k--, index++) {
+                alignA[index] = operation == INSERTION ? '-' : subject.charAt(i++);
+                alignB[index] = operation == DELETION ? '-' : query.charAt(j++);
+            }
+        }
+
+        return new char[][]{ alignA, alignB };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof AlignmentResult other)) return false;
+        return subjectStart == other.subjectStart && subjectEnd == other.subjectEnd && queryStart == other.queryStart && queryEnd == other.queryEnd
+                && score == other.score && Arrays.equals(cigar, other.cigar);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(cigar);
+        hash = 31 * hash + subjectStart;
+        hash = 31 * hash + queryStart;
+        return 31 * hash + score;
+    }
+
+    @Override
+    public String toString() {
+        return "AlignmentResult[subject=" + subjectStart + ".." + subjectEnd + ", query=" + queryStart + ".." + queryEnd + ", score=" + score + ", cigar=" + cigarString() + "]";
+    }
+}
@@ -0,0 +1,174 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Score-only alignment (no traceback) shared by NeedlemanWunsch and SmithWaterman.
+// The shorter sequence is always the inner one, so only a row as long as the shorter sequence is kept. Swapping the sequences doesn't change the score,
+// as long as the matrix lookups are swapped back, since gaps in either sequence cost the same.
+// Long alignments are split into square tiles that are filled in as a wavefront: every tile on an anti-diagonal only depends on the tiles above and to the left of it,
+// so all of them can be filled in at once. The row is shared by the tiles (each owns its own columns), and each band of tiles hands its last column on to the next tile in the band.
+final class AlignmentScorer {
+    private static final int TILE = 1024;
+    private static final long PARALLEL_CELLS = 1L << 24; // Below this, splitting into tiles costs more than it saves.
+
+    private final char[] outer, inner;
+    private final byte[] outerCodes; // Null when there is no scoring matrix.
+    private final int[][] profile; // The score of each outer code against every inner position (profile[code][j], from 1), for the codes that appear in the outer sequence.
+    private final int match, mismatch, gap;
+    private final boolean local;
+
+    /**
+     * The matrix, if there is one, must already be complete (see ScoringMatrix.withDefault()).
+     */
+    AlignmentScorer(char[] s1, char[] s2, ScoringMatrix matrix, int match, int mismatch, int gap, boolean local) {
+        boolean swap = s1.length < s2.length;
+        this.outer = swap ? s2 : s1;
+        this.inner = swap ? s1 : s2;
+        this.match = match;
+        this.mismatch = mismatch;
+        this.gap = gap;
+        this.local = local;
+
+        if(matrix == null) {
+            this.outerCodes = null;
+            this.profile = null;
+            return;
+        }
+
+        this.outerCodes = matrix.encode(outer);
+        byte[] innerCodes = matrix.encode(inner);
+        this.profile = new int[matrix.stride][];
+
+        for(byte code: outerCodes) {
+            if(profile[code] != null) continue;
+
+            int[] scores = new int[inner.length + 1];
+            for(int j = 1; j <= inner.length; j++) {
+                // The table is indexed by the subject's code first.
+                int c1 = swap ? innerCodes[j - 1] : code;
+                int c2 = swap ? code : innerCodes[j - 1];
+                scores[j] = matrix.scores[c1 * matrix.stride + c2];
+            }
+
+            profile[code] = scores;
+        }
+    }
+
+    /**
+     * The score of the optimal alignment. The pool is only used for alignments large enough to be worth splitting up.
+     */
+    int score(ForkJoinPool pool) {
+        int rows = outer.length;
+        int columns = inner.length;
+        if(columns == 0) return local ? 0 : rows * gap; // The row never moves past its first column.
+
+        int[] row = new int[columns + 1];
+        for(int j = 0; j <= columns; j++) row[j] = local ? 0 : j * gap;
+
+        if((long) rows * columns < PARALLEL_CELLS || columns < 2 * TILE) {
+            int best = fill(row, null, 0, rows, 0, columns);
+            return local ? best : row[columns];
+        }
+
+        int bands = (rows + TILE - 1) / TILE;
+        int segments = (columns + TILE - 1) / TILE;
+        int[][] edges = new int[bands][]; // The column handed along each band. Only the bands being worked on have one.
+        int[] best = new int[bands];
+
+        for(int diagonal = 0; diagonal < bands + segments - 1; diagonal++) {
+            int first = Math.max(0, diagonal - bands + 1);
+            int last = Math.min(diagonal, segments - 1);
+            pool.invoke(new DiagonalTask(row, edges, best, diagonal, first, last + 1));
+        }
+
+        if(!local) return row[columns];
+
+        int max = 0;
+        for(int b: best) max = Math.max(max, b);
+        return max;
+    }
+
+    // Fills in the tile at (band, segment), which is on the given anti-diagonal.
+    private void fillTile(int[] row, int[][] edges, int[] best, int band, int segment) {
+        int i0 = band * TILE, i1 = Math.min(outer.length, i0 + TILE);
+        int j0 = segment * TILE, j1 = Math.min(inner.length, j0 + TILE);
+
+        if(segment == 0) {
+            int[] edge = new int[TILE + 1];
+            for(int k = 0; k <= i1 - i0; k++) edge[k] = local ? 0 : (i0 + k) * gap;
+            edges[band] = edge;
+        }
+
+        best[band] = Math.max(best[band], fill(row, edges[band], i0, i1, j0, j1));
+
+        // The last tile in the band, so nothing else needs its column.
+        if(j1 == inner.length) edges[band] = null;
+    }
+
+    // Fills in rows i0+1..i1 for columns j0+1..j1, and returns the highest score filled in.
+    // row[j0+1..j1] holds row i0 on the way in, and row i1 on the way out.
+    // edge[k] holds column j0 for row i0 + k on the way in, and column j1 on the way out. Without an edge (a single tile), j0 must be 0.
+    private int fill(int[] row, int[] edge, int i0, int i1, int j0, int j1) {
+        int corner = edge == null ? (local ? 0 : i0 * gap) : edge[0]; // The cell above and to the left of the current row.
+        if(edge != null) edge[0] = row[j1];
+
+        int best = 0;
+        for(int i = i0 + 1; i <= i1; i++) {
+            int k = i - i0;
+            char c = outer[i - 1];
+            int[] scores = profile == null ? null : profile[outerCodes[i - 1]];
+
+            int diag = corner;
+            int left = edge == null ? (local ? 0 : i * gap) : edge[k];
+            corner = left;
+
+            for(int j = j0 + 1; j <= j1; j++) {
+                int up = row[j];
+                int pair = scores == null ? (c == inner[j - 1] ? match : mismatch) : scores[j];
+                int score = Math.max(diag + pair, Math.max(up, left) + gap);
+                if(local) {
+                    score = Math.max(score, 0);
+                    best = Math.max(best, score);
+                }
+
+                diag = up;
+                row[j] = score;
+                left = score;
+            }
+
+            if(edge != null) edge[k] = left;
+        }
+
+        return best;
+    }
+
+    // Fills in the tiles of one anti-diagonal, for the segments [from, to).
+    @SuppressWarnings("serial")
+    private final class DiagonalTask extends RecursiveAction {
+        private final int[] row;
+        private final int[][] edges;
+        private final int[] best;
+        private final int diagonal, from, to;
+
+        DiagonalTask(int[] row, int[][] edges, int[] best, int diagonal, int from, int to) {
+            this.row = row;
+            this.edges = edges;
+            this.best = best;
+            this.diagonal = diagonal;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DiagonalTask(row, edges, best, diagonal, from, mid), new DiagonalTask(row, edges, best, diagonal, mid, to));
+                return;
+            }
+
+            fillTile(row, edges, best, diagonal - from, from);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.*;
+
+/**
+ * Compares a single query against a list of candidates, returning either the best k matches or every match within a threshold.
+ * Cheap bounds are checked before any full comparison, so most poor candidates are rejected without running the metric:<br>
+ * - Edit distances: the length difference, and the difference between character histograms (each edit changes at most one count in each direction).<br>
+ * - Jaro and Jaro-Winkler: the best score reachable from the lengths alone, and from the number of characters the strings have in common.<br>
+ * - Hamming: candidates of a different length to the query are skipped, as the distance isn't defined for them.<br><br>
+ *
+ * For edit distances, candidates are visited in sorted order. Each DP row only depends on the candidate's prefix, so rows for a prefix shared with the previous candidate are reused rather than recomputed.
+ */
+public class BatchMatcher {
+    private static final int BUCKETS = 64; // Histogram size. Characters are folded into buckets, which keeps the bounds valid (just a little looser).
+
+    /**
+     * Finds the k best matching candidates for the query.
+     *
+     * @param query The query string.
+     * @param candidates The strings to compare the query against.
+     * @param metric The metric to compare with.
+     * @param k The number of matches to return.
+     * @return Up to k matches, best first (lowest distance, or highest similarity). Ties go to the candidate that appears first in the list.
+     */
+    public static List<CandidateMatch> bestMatches(String query, List<String> candidates, StringMetric metric, int k) {
+        if(k <= 0) throw new IllegalArgumentException("k must be greater than 0.");
+        validate(query, candidates, metric);
+
+        return switch(metric) {
+            case LEVENSHTEIN -> editDistance(query, candidates, false, k, Integer.MAX_VALUE);
+            case DAMERAU_LEVENSHTEIN -> editDistance(query, candidates, true, k, Integer.MAX_VALUE);
+            case JARO -> jaro(query, candidates, false, k, 0.0d);
+            case JARO_WINKLER -> jaro(query, candidates, true, k, 0.0d);
+            case HAMMING -> hamming(query, candidates, k, Integer.MAX_VALUE);
+        };
+    }
+
+    /**
+     * Finds every candidate within the threshold of the query.
+     * For edit distances, this is every candidate at most 'threshold' edits away. For Jaro and Jaro-Winkler, it is every candidate with a similarity of at least 'threshold'.
+     *
+     * @param query The query string.
+     * @param candidates The strings to compare the query against.
+     * @param metric The metric to compare with.
+     * @param threshold The largest distance, or smallest similarity, to accept.
+     * @return The matches, best first (lowest distance, or highest similarity). Ties are in the order the candidates appear in the list.
+     */
+    public static List<CandidateMatch> matchesWithin(String query, List<String> candidates, StringMetric metric, double threshold) {
+        validate(query, candidates, metric);
+
+        return switch(metric) {
+            case LEVENSHTEIN -> threshold < 0 ? new ArrayList<>() : editDistance(query, candidates, false, Integer.MAX_VALUE, (int) Math.min(threshold, Integer.MAX_VALUE - 1));
+            case DAMERAU_LEVENSHTEIN -> threshold < 0 ? new ArrayList<>() : editDistance(query, candidates, true, Integer.MAX_VALUE, (int) Math.min(threshold, Integer.MAX_VALUE - 1));
+            case JARO -> jaro(query, candidates, false, Integer.MAX_VALUE, threshold);
+            case JARO_WINKLER -> jaro(query, candidates, true, Integer.MAX_VALUE, threshold);
+            case HAMMING -> threshold < 0 ? new ArrayList<>() : hamming(query, candidates, Integer.MAX_VALUE, (int) Math.min(threshold, Integer.MAX_VALUE - 1));
+        };
+    }
+
+    private static void validate(String query, List<String> candidates, StringMetric metric) {
+        if(query == null) throw new IllegalArgumentException("The provided query is null.");
+        if(candidates == null) throw new IllegalArgumentException("The provided candidates are null.");
+        if(metric == null) throw new IllegalArgumentException("The provided metric is null.");
+        for(String candidate: candidates) {
+            if(candidate == null) throw new IllegalArgumentException("The provided candidates contain a null string.");
+        }
+    }
+
+    // Keeps at most k matches (or all of them when k is Integer.MAX_VALUE), with the worst at the head of the queue so it can be dropped.
+    private static Comparator<CandidateMatch> bestFirst(boolean distance) {
+        Comparator<CandidateMatch> byScore = Comparator.comparingDouble(CandidateMatch::score);
+        if(!distance) byScore = byScore.reversed();
+        return byScore.thenComparingInt(CandidateMatch::index);
+    }
+
+    // Edit distances. Rows of the DP matrix (candidate prefix of length i vs. the full query) are kept for the whole current path, as in FuzzyTrie.
+    private static List<CandidateMatch> editDistance(String query, List<String> candidates, boolean transpositions, int k, int maxDistance) {
+        char[] q = query.toCharArray();
+        int n = q.length;
+        int width = n + 1;
+
+        int[] queryHistogram = new int[BUCKETS];
+        for(char c: q) queryHistogram[c & (BUCKETS - 1)]++;
+        int[] histogram = new int[BUCKETS];
+
+        // Sorting puts candidates with shared prefixes next to each other.
+        Integer[] order = new Integer[candidates.size()];
+        int longest = 0;
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+            longest = Math.max(longest, candidates.get(i).length());
+        }
+        Arrays.sort(order, Comparator.comparing(candidates::get));
+
+        int[] rows = new int[(longest + 1) * width];
+        char[] path = new char[longest];
+        int validDepth = 0; // rows[0..validDepth] are correct for path[0, validDepth).
+
+        for(int j = 0; j <= n; j++) rows[j] = j;
+
+        Comparator<CandidateMatch> best = bestFirst(true);
+        PriorityQueue<CandidateMatch> kept = new PriorityQueue<>(best.reversed());
+        int bound = maxDistance;
+
+        for(int index: order) {
+            String candidate = candidates.get(index);
+            int length = candidate.length();
+
+            // Cheapest bound first: the length difference.
+            if(Math.abs(length - n) > bound) continue;
+
+            // Then the histogram bound.
+            Arrays.fill(histogram, 0);
+            for(int i = 0; i < length; i++) histogram[candidate.charAt(i) & (BUCKETS - 1)]++;
+            int extra = 0, missing = 0;
+            for(int b = 0; b < BUCKETS; b++) {
+                int diff = histogram[b] - queryHistogram[b];
+                if(diff > 0) extra += diff;
+                else missing -= diff;
+            }
+            if(Math.max(extra, missing) > bound) continue;
+
+            // Reuse the rows of the prefix this candidate shares with the current path.
+            int shared = 0;
+            int limit = Math.min(validDepth, length);
+            while(shared < limit && path[shared] == candidate.charAt(shared)) shared++;
+
+            boolean abandoned = false;
+            for(int i = shared + 1; i <= length; i++) {
+                char c = candidate.charAt(i - 1);
+                path[i - 1] = c;
+
+                int base = i * width, parent = base - width;
+                rows[base] = i;
+                int rowMin = i;
+
+                for(int j = 1; j <= n; j++) {
+                    int value;
+                    if(c == q[j - 1]) {
+                        value = rows[parent + j - 1];
+                    } else {
+                        value = 1 + Math.min(rows[parent + j], Math.min(rows[base + j - 1], rows[parent + j - 1]));
+
+                        if(transpositions && i > 1 && j > 1 && c == q[j - 2] && path[i - 2] == q[j - 1]) {
+                            value = Math.min(value, rows[parent - width + j - 2] + 1);
+                        }
+                    }
+
+                    rows[base + j] = value;
+                    if(value < rowMin) rowMin = value;
+                }
+
+                validDepth = i;
+
+                // Row minimums never decrease further down, so this candidate can't get back under the bound.
+                if(rowMin > bound) {
+                    abandoned = true;
+                    break;
+                }
+            }
+            if(abandoned) continue;
+
+            int distance = rows[length * width + n];
+            if(distance > bound) continue;
+
+            kept.add(new CandidateMatch(index, candidate, distance));
+            if(kept.size() > k) kept.poll();
+            if(kept.size() == k) bound = (int) kept.peek().score();
+        }
+
+        List<CandidateMatch> matches = new ArrayList<>(kept);
+        matches.sort(best);
+        return matches;
+    }
+
+    // Hamming. Counting stops as soon as the bound is passed.
+    private static List<CandidateMatch> hamming(String query, List<String> candidates, int k, int maxDistance) {
+        int n = query.length();
+
+        Comparator<CandidateMatch> best = bestFirst(true);
+        PriorityQueue<CandidateMatch> kept = new PriorityQueue<>(best.reversed());
+        int bound = maxDistance;
+
+        for(int index = 0; index < candidates.size(); index++) {
+            String candidate = candidates.get(index);
+            if(candidate.length() != n) continue;
+
+            int distance = 0;
+            for(int i = 0; i < n && distance <= bound; i++) {
+                if(candidate.charAt(i) != query.charAt(i)) distance++;
+            }
+            if(distance > bound) continue;
+
+            kept.add(new CandidateMatch(index, candidate, distance));
+            if(kept.size() > k) kept.poll();
+            if(kept.size() == k) bound = (int) kept.peek().score();
+        }
+
+        List<CandidateMatch> matches = new ArrayList<>(kept);
+        matches.sort(best);
+        return matches;
+    }
+
+    // Jaro and Jaro-Winkler. There is no prefix structure to share here, so candidates are visited in list order and filtered by upper bounds.
+    private static List<CandidateMatch> jaro(String query, List<String> candidates, boolean winkler, int k, double minSimilarity) {
+        int n = query.length();
+
+        int[] queryHistogram = new int[BUCKETS];
+        for(int i = 0; i < n; i++) queryHistogram[query.charAt(i) & (BUCKETS - 1)]++;
+        int[] histogram = new int[BUCKETS];
+        CompiledJaroPattern pattern = new CompiledJaroPattern(query);
+
+        Comparator<CandidateMatch> best = bestFirst(false);
+        PriorityQueue<CandidateMatch> kept = new PriorityQueue<>(best.reversed());
+        double bound = minSimilarity;
+
+        for(int index = 0; index < candidates.size(); index++) {
+            String candidate = candidates.get(index);
+            int length = candidate.length();
+
+            if(n > 0 && length > 0) {
+                // With every character of the shorter string matched and no transpositions.
+                int prefix = winkler ? commonPrefix(query, candidate) : 0;
+                if(upperBound(Math.min(n, length), n, length, prefix) < bound) continue;
+
+                // At most the number of characters the 2 strings share can be matched.
+                Arrays.fill(histogram, 0);
+                for(int i = 0; i < length; i++) histogram[candidate.charAt(i) & (BUCKETS - 1)]++;
+                int common = 0;
+                for(int b = 0; b < BUCKETS; b++) common += Math.min(histogram[b], queryHistogram[b]);
+                if(upperBound(common, n, length, prefix) < bound) continue;
+            }
+
+            double similarity = winkler ? JaroWinkler.similarity(candidate, pattern) : Jaro.similarity(candidate, pattern);
+            if(similarity < bound) continue;
+
+            kept.add(new CandidateMatch(index, candidate, similarity));
+            if(kept.size() > k) kept.poll();
+            if(kept.size() == k) bound = Math.max(bound, kept.peek().score());
+        }
+
+        List<CandidateMatch> matches = new ArrayList<>(kept);
+        matches.sort(best);
+        return matches;
+    }
+
+    // The highest Jaro (or Jaro-Winkler, if prefix > 0) similarity possible with the given number of matches.
+    private static double upperBound(int matches, int len1, int len2, int prefix) {
+        if(matches == 0) return 0.0d;
+
+        double jaro = ((matches / (double) len1) + (matches / (double) len2) + 1.0d) / 3.0d;
+        return jaro + (prefix * 0.1d * (1 - jaro));
+    }
+
+    // Length of the common prefix, capped at 4 as in JaroWinkler.
+    private static int commonPrefix(String s1, String s2) {
+        int end = Math.min(Math.min(s1.length(), s2.length()), 4);
+        int l = 0;
+        while(l < end && s1.charAt(l) == s2.charAt(l)) l++;
+        return l;
+    }
+}
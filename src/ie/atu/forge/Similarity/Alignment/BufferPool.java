@@ -0,0 +1,49 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Reusable flat score matrices for the aligners' full-matrix tracebacks, so a warmed-up server doesn't allocate a new matrix for every alignment.
+// Unlike Workspace, buffers aren't tied to a thread: aligners are often called from short-lived virtual threads, and each of those would get its own (empty) ThreadLocal.
+// Instead there is one slot per processor, so about one per carrier thread. A caller takes a buffer out of a slot and gives it back when it's done, so two callers never hold the same buffer.
+// Buffers are not cleared. Callers must initialise whatever they read.
+final class BufferPool {
+    private static final int RETAIN_LIMIT = 1 << 20; // 4 MB of ints, about a 1000 x 1000 alignment. Bigger buffers are only used for the one call.
+    private static final AtomicReferenceArray<int[]> SLOTS = new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors());
+
+    private BufferPool() {}
+
+    static int[] take(int size) {
+        int slots = SLOTS.length();
+        int start = (int) (Thread.currentThread().threadId() % slots);
+
+        for(int k = 0; k < slots; k++) {
+            int slot = (start + k) % slots;
+            int[] buffer = SLOTS.getAndSet(slot, null);
+            if(buffer == null) continue;
+
+            // A buffer that is too small is dropped, and the bigger one replaces it when it's given back.
+            if(buffer.length >= size) return buffer;
+            break;
+        }
+
+        return new int[grow(size)];
+    }
+
+    static void give(int[] buffer) {
+        if(buffer.length > RETAIN_LIMIT) return;
+
+        int slots = SLOTS.length();
+        int start = (int) (Thread.currentThread().threadId() % slots);
+
+        // If every slot is full, the buffer is dropped.
+        for(int k = 0; k < slots; k++) {
+            if(SLOTS.compareAndSet((start + k) % slots, null, buffer)) return;
+        }
+    }
+
+    private static int grow(int size) {
+        // Round up a little, so slowly growing inputs don't need a new buffer every call. Don't overshoot the retain limit though.
+        if(size > RETAIN_LIMIT) return size;
+        return Math.min(size + (size >> 2), RETAIN_LIMIT);
+    }
+}
@@ -0,0 +1,42 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+// Text stored one byte per character (ASCII or ISO-8859-1, e.g. a FASTA sequence) in a memory segment, such as a memory-mapped file,
+// read as a CharSequence without decoding it onto the heap. Only subSequence() and toString() copy, and only the characters asked for.
+final class ByteText implements CharSequence {
+    private final MemorySegment bytes;
+    private final int length;
+
+    ByteText(MemorySegment bytes) {
+        if(bytes.byteSize() > Integer.MAX_VALUE) throw new IllegalArgumentException("Subjects longer than " + Integer.MAX_VALUE + " characters aren't supported.");
+
+        this.bytes = bytes;
+        this.length = (int) bytes.byteSize();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(ValueLayout.JAVA_BYTE, index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if(start < 0 || start > end || end > length) throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+
+        char[] copy = new char[end - start];
+        for(int i = 0; i < copy.length; i++) copy[i] = charAt(start + i);
+        return new String(copy);
+    }
+
+    @Override
+    public String toString() {
+        return (String) subSequence(0, length);
+    }
+}
@@ -0,0 +1,10 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * A candidate string found by a one-vs-many comparison (BatchMatcher, or SmithWaterman.search()).
+ *
+ * @param index The position of the candidate in the list that was searched.
+ * @param candidate The candidate string.
+ * @param score The distance (for edit distances), similarity (for Jaro and Jaro-Winkler), or local alignment score between the candidate and the query.
+ */
+public record CandidateMatch(int index, String candidate, double score) {}
@@ -0,0 +1,10 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * A chain of collinear seeds found by SeedAndExtend.chain(), along with the alignment that runs through them.
+ *
+ * @param score The chaining score: about the number of characters covered by the seeds, less a penalty for the gaps between them.
+ * @param anchors The number of seeds in the chain.
+ * @param alignment The alignment from the first seed to the last (extended through exact matches at either end), with the gaps between seeds filled in by global alignment.
+ */
+public record Chain(int score, int anchors, AlignmentResult alignment) {}
@@ -0,0 +1,187 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Chains collinear seeds (anchors) into long alignments, the way minimap2 does (Li, "Minimap2: pairwise alignment for nucleotide sequences", 2018).
+// Anchors are sorted by subject position, and each one's best chain score is found from up to MAX_PREDECESSORS anchors before it:
+//   f(i) = max(span, f(j) + min(dx, dy, span) - gapCost(|dx - dy|)), for anchors j before i in both sequences, no more than maxGap away and within BANDWIDTH diagonals.
+// Chains are then traced back from the best scoring anchors, each anchor belonging to one chain, and a chain that runs into an anchor already used stops there.
+// Only the gaps between consecutive anchors are globally aligned. The anchors themselves are ungapped, so the work is about the length of the chain rather than its square.
+final class Chainer {
+    private static final int MAX_PREDECESSORS = 50; // Anchors looked back through for each anchor's predecessor.
+    private static final int BANDWIDTH = 500; // Largest difference in diagonal between consecutive anchors.
+
+    private final CharSequence subject;
+    private final String query;
+    private final int span;
+    private final NeedlemanWunsch aligner;
+    private final ScoringMatrix matrix;
+    private final int maxGap;
+
+    Chainer(CharSequence subject, String query, int span, NeedlemanWunsch aligner, int maxGap) {
+        this.subject = subject;
+        this.query = query;
+        this.span = span;
+        this.aligner = aligner;
+        this.matrix = aligner.completeScoringMatrix();
+        this.maxGap = maxGap;
+    }
+
+    // The chains scoring at least minScore, best first.
+    List<Chain> chain(List<Seed> seeds, int minScore) {
+        int n = seeds.size();
+
+        // Sort the anchors by subject position, then query position.
+        long[] keys = new long[n];
+        for(int i = 0; i < n; i++) keys[i] = (long) seeds.get(i).subjectIndex() << 32 | seeds.get(i).queryIndex();
+        Arrays.sort(keys);
+        int[] x = new int[n], y = new int[n];
+        for(int i = 0; i < n; i++) {
+            x[i] = (int) (keys[i] >>> 32);
+            y[i] = (int) keys[i];
+        }
+
+        int[] f = new int[n], predecessor = new int[n];
+        for(int i = 0; i < n; i++) {
+            f[i] = span;
+            predecessor[i] = -1;
+
+            for(int j = i - 1; j >= 0 && j >= i - MAX_PREDECESSORS; j--) {
+                int dx = x[i] - x[j], dy = y[i] - y[j];
+                if(dx > maxGap) break;
+                if(dx <= 0 || dy <= 0 || dy > maxGap) continue;
+
+                int skew = Math.abs(dx - dy);
+                if(skew > BANDWIDTH) continue;
+
+                int score = f[j] + Math.min(Math.min(dx, dy), span) - gapCost(skew);
+                if(score > f[i]) {
+                    f[i] = score;
+                    predecessor[i] = j;
+                }
+            }
+        }
+
+        // Trace chains back from the best ending anchors first.
+        Integer[] order = new Integer[n];
+        for(int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> f[a] != f[b] ? Integer.compare(f[b], f[a]) : Integer.compare(a, b));
+
+        boolean[] used = new boolean[n];
+        List<int[]> chains = new ArrayList<>();
+        List<Integer> scores = new ArrayList<>();
+        for(int end: order) {
+            if(used[end]) continue;
+
+            int length = 0, j = end;
+            while(j >= 0 && !used[j]) {
+                used[j] = true;
+                length++;
+                j = predecessor[j];
+            }
+
+            int score = f[end] - (j >= 0 ? f[j] : 0); // Only count the part of the chain that wasn't already used.
+            if(score < minScore) continue;
+
+            int[] anchors = new int[length];
+            for(int k = length - 1, a = end; k >= 0; k--, a = predecessor[a]) anchors[k] = a;
+            chains.add(anchors);
+            scores.add(score);
+        }
+
+        List<Chain> results = new ArrayList<>(chains.size());
+        for(int c = 0; c < chains.size(); c++) results.add(new Chain(scores.get(c), chains.get(c).length, align(chains.get(c), x, y)));
+        results.sort((a, b) -> Integer.compare(b.score(), a.score()));
+
+        return results;
+    }
+
+    // Builds the alignment through a chain's anchors, in order of position. Where an anchor overlaps the alignment so far, only the part past it is used.
+    private AlignmentResult align(int[] anchors, int[] x, int[] y) {
+        Runs runs = new Runs();
+        int score = 0;
+
+        // Extend the first anchor to the left through exact matches.
+        int si = x[anchors[0]], qi = y[anchors[0]];
+        while(si > 0 && qi > 0 && subject.charAt(si - 1) == query.charAt(qi - 1)) {
+            si--;
+            qi--;
+            score += pairScore(subject.charAt(si), query.charAt(qi));
+        }
+        runs.add(AlignmentResult.MATCH, x[anchors[0]] - si);
+
+        int ei = x[anchors[0]], ej = y[anchors[0]]; // Where the alignment so far ends.
+        for(int anchor: anchors) {
+            int overlap = Math.max(0, Math.max(ei - x[anchor], ej - y[anchor]));
+            if(overlap >= span) continue;
+
+            int gapEndI = x[anchor] + overlap, gapEndJ = y[anchor] + overlap;
+            if(gapEndI > ei || gapEndJ > ej) {
+                AlignmentResult gap = aligner.alignment(chars(subject, ei, gapEndI), chars(query, ej, gapEndJ));
+                for(int element: gap.cigar()) runs.add(AlignmentResult.operation(element), AlignmentResult.runLength(element));
+                score += gap.score();
+            }
+
+            for(int t = overlap; t < span; t++) {
+                char a = subject.charAt(x[anchor] + t), b = query.charAt(y[anchor] + t);
+                runs.add(a == b ? AlignmentResult.MATCH : AlignmentResult.MISMATCH, 1);
+                score += pairScore(a, b);
+            }
+
+            ei = x[anchor] + span;
+            ej = y[anchor] + span;
+        }
+
+        // Extend the last anchor to the right through exact matches.
+        int end = ei;
+        while(ei < subject.length() && ej < query.length() && subject.charAt(ei) == query.charAt(ej)) {
+            score += pairScore(subject.charAt(ei), query.charAt(ej));
+            ei++;
+            ej++;
+        }
+        runs.add(AlignmentResult.MATCH, ei - end);
+
+        return new AlignmentResult(subject, query, si, ei, qi, ej, score, runs.toArray());
+    }
+
+    // Copies s[from, to) for the gap aligner. Only the gap is copied, not the whole subject.
+    private static char[] chars(CharSequence s, int from, int to) {
+        char[] chars = new char[to - from];
+        for(int i = from; i < to; i++) chars[i - from] = s.charAt(i);
+        return chars;
+    }
+
+    private int pairScore(char a, char b) {
+        if(matrix != null) return matrix.score(a, b);
+        return a == b ? aligner.getMATCH() : aligner.getMISMATCH();
+    }
+
+    // Concave gap cost, as in minimap2: 0.01 * span per character of skew, plus half of log2 of the skew.
+    private int gapCost(int skew) {
+        if(skew == 0) return 0;
+        return span * skew / 100 + (31 - Integer.numberOfLeadingZeros(skew)) / 2;
+    }
+
+    // A CIGAR built from the start of the alignment (unlike CigarBuilder, which builds from the end during a traceback).
+    private static final class Runs {
+        private int[] runs = new int[16];
+        private int size = 0;
+
+        void add(int operation, int length) {
+            if(length == 0) return;
+            if(size > 0 && AlignmentResult.operation(runs[size - 1]) == operation) {
+                runs[size - 1] += length << 4;
+                return;
+            }
+
+            if(size == runs.length) runs = Arrays.copyOf(runs, size * 2);
+            runs[size++] = length << 4 | operation;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(runs, size);
+        }
+    }
+}
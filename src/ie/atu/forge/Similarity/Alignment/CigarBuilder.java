@@ -0,0 +1,35 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+// Collects the columns of a traceback into a CIGAR (see AlignmentResult) instead of writing out both gapped strings.
+// Tracebacks run from the end of the alignment back to its start, so runs are collected backwards and flipped over when the result is built.
+final class CigarBuilder {
+    private int[] runs = new int[16];
+    private int size = 0;
+
+    // Adds a column with 2 aligned characters.
+    void pair(char a, char b) {
+        add(a == b ? AlignmentResult.MATCH : AlignmentResult.MISMATCH);
+    }
+
+    // Adds a column with the given operation, extending the current run if it has the same one.
+    void add(int operation) {
+        if(size > 0 && AlignmentResult.operation(runs[size - 1]) == operation) {
+            runs[size - 1] += 1 << 4;
+            return;
+        }
+
+        if(size == runs.length) runs = Arrays.copyOf(runs, size * 2);
+        runs[size++] = 1 << 4 | operation;
+    }
+
+    // The alignment covering s1[i0, i1) and s2[j0, j1).
+    AlignmentResult build(char[] s1, char[] s2, int i0, int i1, int j0, int j1, int score) {
+        int[] cigar = new int[size];
+        for(int k = 0; k < size; k++) cigar[k] = runs[size - 1 - k];
+
+        return new AlignmentResult(CharBuffer.wrap(s1), CharBuffer.wrap(s2), i0, i1, j0, j1, score, cigar);
+    }
+}
@@ -0,0 +1,45 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * A query string prepared for repeated Jaro and Jaro-Winkler comparisons.
+ * The query's character masks are built once, instead of on every call, so comparing it against many strings (e.g. record linkage) only pays for the matching itself.
+ * Queries of up to 64 characters use the bit-parallel kernel. Longer ones are still accepted, but gain nothing from being compiled.<br><br>
+ *
+ * A compiled pattern is never modified after construction, so it can be shared between threads.
+ */
+public final class CompiledJaroPattern {
+    final char[] chars;
+    final PatternMask mask; // Null for queries longer than 64 characters.
+
+    /**
+     * Compiles a query.
+     *
+     * @param query The query string.
+     */
+    public CompiledJaroPattern(CharSequence query) {
+        if(query == null) throw new IllegalArgumentException("The provided query is null.");
+
+        chars = query.toString().toCharArray();
+
+        if(chars.length <= 64) {
+            mask = new PatternMask();
+            mask.compile(chars);
+        } else {
+            mask = null;
+        }
+    }
+
+    /**
+     * Gets the length of the query.
+     *
+     * @return The number of characters in the query.
+     */
+    public int length() {
+        return chars.length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars);
+    }
+}
@@ -1,5 +1,7 @@
 package ie.atu.forge.Similarity.Alignment;
 
+import java.util.Arrays;
+
 /**
  * Extension of Levenshtein distance that also measures transpositions. A transposition occurs between adjacent characters.
  *
@@ -15,9 +17,22 @@ public class DamerauLevenshtein {
      * @return The distance between s1 and s2 using Damerau-Levenshtein Distance.
      */
     public static int distance(String s1, String s2) {
+        return distance((CharSequence) s1, s2);
+    }
+
+    /**
+     * Measures the number of Insertions, Deletions, Substitutions, and Transpositions to convert one character sequence (e.g. StringBuilder) to another.
+     * Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence
+     * @param s2 The query sequence
+     * @return The distance between s1 and s2 using Damerau-Levenshtein Distance.
+     */
+    public static int distance(CharSequence s1, CharSequence s2) {
         if(s1 == null || s2 == null) throw new IllegalArgumentException("At least one of the provided strings is null.");
 
-        return distance(s1.toCharArray(), s2.toCharArray());
+        Workspace ws = Workspace.get();
+        return distance(ws.chars1(s1), s1.length(), ws.chars2(s2), s2.length(), ws);
     }
 
     /**
@@ -28,49 +43,252 @@ public class DamerauLevenshtein {
      * @return The distance between s1 and s2 using Damerau-Levenshtein Distance.
      */
     public static int distance(char[] s1 , char[] s2) {
-        int m = s1.length;
-        int n = s2.length;
+        return distance(s1, s1.length, s2, s2.length, Workspace.get());
+    }
 
+    /*
+     * Bit-parallel optimal string alignment, using Hyyrö's extension of Myers' algorithm.
+     * On top of the Levenshtein recurrence, a diagonal step is also free (D0) where the previous column's diagonal was not free,
+     * the current text character matches pattern[i - 1], and the previous text character matches pattern[i]. That is an adjacent swap costing 1.
+     *
+     * Reference: https://doi.org/10.1007/3-540-36383-1_5 (Hyyrö, "A bit-vector algorithm for computing Levenshtein and Damerau edit distances").
+     */
+    // Only the first m characters of s1 and n characters of s2 are used, as they may be workspace buffers.
+    private static int distance(char[] s1, int m, char[] s2, int n, Workspace ws) {
         // If either string is empty, return the length of the other string.
         if(m == 0) return n;
         if(n == 0) return m;
 
-        int[][] matrix = new int[m + 1][n + 1];
+        // A shared prefix or suffix never changes the distance, as a transposition can't straddle the boundary of one.
+        int start = 0;
+        int min = Math.min(m, n);
+        while(start < min && s1[start] == s2[start]) start++;
+
+        int end1 = m, end2 = n;
+        while(end1 > start && end2 > start && s1[end1 - 1] == s2[end2 - 1]) {
+            end1--;
+            end2--;
+        }
+
+        if(end1 == start) return end2 - start;
+        if(end2 == start) return end1 - start;
+
+        // The distance is symmetric, so the shorter string becomes the pattern.
+        char[] pattern = s1, text = s2;
+        int pEnd = end1, tEnd = end2;
+        if(end1 - start > end2 - start) {
+            pattern = s2;
+            text = s1;
+            pEnd = end2;
+            tEnd = end1;
+        }
+
+        PatternMask peq = ws.mask(pattern, start, pEnd);
+
+        if(peq.blocks() == 1) return osa(peq, text, start, tEnd);
+        return blockedOsa(peq, text, start, tEnd, ws);
+    }
+
+    // Single-word version. D0 marks the cells where the diagonal step is free.
+    private static int osa(PatternMask peq, char[] text, int from, int to) {
+        int m = peq.length();
+        long vp = -1L;
+        long vn = 0L;
+        long d0 = 0L;
+        long pmOld = 0L; // Match vector of the previous text character.
+        long last = 1L << (m - 1);
+        int score = m;
+
+        for(int j = from; j < to; j++) {
+            long pm = peq.get(text[j]);
+            long tr = (((~d0) & pm) << 1) & pmOld;
+            long x = pm | vn;
+            d0 = (((x & vp) + vp) ^ vp) | x | tr;
+
+            long hp = vn | ~(d0 | vp);
+            long hn = d0 & vp;
+
+            if((hp & last) != 0) score++;
+            else if((hn & last) != 0) score--;
+
+            hp = (hp << 1) | 1L;
+            hn <<= 1;
+
+            vp = hn | ~(d0 | hp);
+            vn = hp & d0;
+            pmOld = pm;
+        }
+
+        return score;
+    }
+
+    // Multi-word version. As well as the horizontal difference, the transposition term needs the top bit of the block above, from both this column and the previous one.
+    private static int blockedOsa(PatternMask peq, char[] text, int from, int to, Workspace ws) {
+        int m = peq.length();
+        int blocks = peq.blocks();
+        long[] vp = ws.longs1(blocks);
+        long[] vn = ws.longs2(blocks);
+        long[] d0s = ws.longs3(blocks);
+        long[] pmOld = ws.longs4(blocks);
+        Arrays.fill(vp, 0, blocks, -1L);
+        Arrays.fill(vn, 0, blocks, 0L);
+        Arrays.fill(d0s, 0, blocks, 0L);
+        Arrays.fill(pmOld, 0, blocks, 0L);
+
+        int lastBlock = blocks - 1;
+        long last = 1L << ((m - 1) & 63);
+        int score = m;
+
+        for(int j = from; j < to; j++) {
+            int offset = peq.find(text[j]);
+            int carry = 1; // The top row increases by 1 each column.
+            long d0Above = 0L, pmAbove = 0L; // Previous column's D0 and this column's match vector, for the block above.
+
+            for(int b = 0; b < blocks; b++) {
+                long pm = peq.word(offset, b);
+                long pv = vp[b], mv = vn[b], d0 = d0s[b];
+                int hin = carry;
+
+                long tr = ((((~d0) & pm) << 1) | (((~d0Above) & pmAbove) >>> 63)) & pmOld[b];
+                d0Above = d0;
+                pmAbove = pm;
+
+                long x = pm | mv;
+                if(hin < 0) x |= 1L;
+                d0 = (((x & pv) + pv) ^ pv) | x | tr;
+
+                long hp = mv | ~(d0 | pv);
+                long hn = d0 & pv;
+
+                if(b == lastBlock) {
+                    if((hp & last) != 0) score++;
+                    else if((hn & last) != 0) score--;
+                } else {
+                    carry = (hp >>> 63) != 0 ? 1 : ((hn >>> 63) != 0 ? -1 : 0);
+                }
+
+                hp <<= 1;
+                hn <<= 1;
+                if(hin > 0) hp |= 1L;
+                else if(hin < 0) hn |= 1L;
 
-        // Initialize first row and column
-        for(int i = 0; i <= m; i++) {
-            matrix[i][0] = i; // cost of deleting all characters from s1
+                vp[b] = hn | ~(d0 | hp);
+                vn[b] = hp & d0;
+                d0s[b] = d0;
+                pmOld[b] = pm;
+            }
         }
 
-        for(int j = 0; j <= n; j++) {
-            matrix[0][j] = j; // cost of inserting all characters of s2
+        return score;
+    }
+
+    /**
+     * Measures the number of Insertions, Deletions, Substitutions, and Transpositions to convert one string to another, giving up once it is known to be greater than maxDistance.
+     *
+     * @param s1 The subject string
+     * @param s2 The query string
+     * @param maxDistance The largest distance of interest (must not be negative).
+     * @return The distance between s1 and s2 using Damerau-Levenshtein Distance, or maxDistance + 1 if it is greater than maxDistance.
+     */
+    public static int distance(String s1, String s2, int maxDistance) {
+        return distance((CharSequence) s1, s2, maxDistance);
+    }
+
+    /**
+     * Measures the number of Insertions, Deletions, Substitutions, and Transpositions to convert one character sequence (e.g. StringBuilder) to another, giving up once it is known to be greater than maxDistance.
+     * Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence
+     * @param s2 The query sequence
+     * @param maxDistance The largest distance of interest (must not be negative).
+     * @return The distance between s1 and s2 using Damerau-Levenshtein Distance, or maxDistance + 1 if it is greater than maxDistance.
+     */
+    public static int distance(CharSequence s1, CharSequence s2, int maxDistance) {
+        if(s1 == null || s2 == null) throw new IllegalArgumentException("At least one of the provided strings is null.");
+
+        Workspace ws = Workspace.get();
+        return distance(ws.chars1(s1), s1.length(), ws.chars2(s2), s2.length(), maxDistance, ws);
+    }
+
+    /**
+     * Measures the number of Insertions, Deletions, Substitutions, and Transpositions to convert one string to another, giving up once it is known to be greater than maxDistance.
+     *
+     * @param s1 The subject string (character array)
+     * @param s2 The query string (character array)
+     * @param maxDistance The largest distance of interest (must not be negative).
+     * @return The distance between s1 and s2 using Damerau-Levenshtein Distance, or maxDistance + 1 if it is greater than maxDistance.
+     */
+    // Same banded approach as Levenshtein.distance(char[], char[], int). A transposition stays on the same diagonal, so the row from two steps back can be stored in the same band layout.
+    public static int distance(char[] s1, char[] s2, int maxDistance) {
+        return distance(s1, s1.length, s2, s2.length, maxDistance, Workspace.get());
+    }
+
+    private static int distance(char[] s1, int m, char[] s2, int n, int maxDistance, Workspace ws) {
+        if(maxDistance < 0) throw new IllegalArgumentException("maxDistance must not be negative.");
+
+        if(Math.abs(m - n) > maxDistance) return maxDistance + 1;
+        if(m == 0) return n;
+        if(n == 0) return m;
+
+        int k = Math.min(maxDistance, Math.max(m, n));
+        int over = k + 1;
+        int width = 2 * k + 3;
+
+        int[] prev2 = ws.ints3(width); // Row i - 2, only read for transpositions.
+        int[] prev = ws.ints1(width);
+        int[] curr = ws.ints2(width);
+
+        for(int d = 0; d < width; d++) {
+            int j = d - k - 1;
+            prev[d] = (j >= 0 && j <= k && j <= n) ? j : over;
         }
 
-        // Fill in the table
         for(int i = 1; i <= m; i++) {
-            for(int j = 1; j <= n; j++) {
-                if(s1[i - 1] == s2[j - 1]) {
-                    matrix[i][j] = matrix[i - 1][j - 1]; // no cost
+            char c1 = s1[i - 1];
+            curr[0] = over;
+            curr[width - 1] = over;
+            int rowMin = over;
+
+            for(int d = 1; d < width - 1; d++) {
+                int j = i + d - k - 1;
+                int value;
+
+                if(j < 0 || j > n) {
+                    value = over;
+                } else if(j == 0) {
+                    value = Math.min(i, over);
+                } else if(c1 == s2[j - 1]) {
+                    value = prev[d]; // no cost
                 } else {
-                    matrix[i][j] = 1 + Math.min(
-                            matrix[i - 1][j],     // deletion
+                    value = 1 + Math.min(
+                            prev[d + 1],     // deletion
                             Math.min(
-                                    matrix[i][j - 1], // insertion
-                                    matrix[i - 1][j - 1] // substitution
+                                    curr[d - 1], // insertion
+                                    prev[d]      // substitution
                             )
                     );
 
-                    // Transpositions are checked after performing the normal deletion/insertion/substitution phase
-                    if((i > 1) && (j > 1) && (s1[i - 1] == s2[j - 2]) && (s1[i - 2] == s2[j - 1])) {
-                        matrix[i][j] = Math.min(
-                                matrix[i][j],
-                                matrix[i - 2][j - 2] + 1
-                        );
+                    // Transposition of adjacent characters.
+                    if((i > 1) && (j > 1) && (c1 == s2[j - 2]) && (s1[i - 2] == s2[j - 1])) {
+                        value = Math.min(value, prev2[d] + 1);
                     }
+
+                    if(value > over) value = over;
                 }
+
+                curr[d] = value;
+                if(value < rowMin) rowMin = value;
             }
+
+            if(rowMin > k) return maxDistance + 1;
+
+            int[] temp = prev2;
+            prev2 = prev;
+            prev = curr;
+            curr = temp;
         }
 
-        return matrix[m][n];
+        int result = prev[n - m + k + 1];
+        return result > k ? maxDistance + 1 : result;
     }
 }
@@ -0,0 +1,218 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One query against many subjects with SmithWaterman's scoring, keeping the n best local alignment scores.
+// The query profile is built once and shared by every subject. Subjects are split into chunks that are scored in parallel, each keeping its own top n.
+// Once a chunk has n hits, its worst score is published as a floor for every chunk: a subject whose best possible score (its length times the best pair score)
+// is below the floor can't make the final list, so it is skipped without being aligned.
+// With the Vector API, subjects are scored a vector's worth at a time by InterSequenceAligner, one subject per lane. The few whose scores don't fit in its 8-bit lanes
+// (usually the hits) are scored again by StripedAligner, and only what doesn't fit in 16 bits is left to the scalar kernels.
+final class DatabaseSearch {
+    private static final int GRAIN = 64; // Subjects scored by a task before it stops splitting.
+    private static final int LANE_GRAIN = 1024; // The same for the inter-sequence kernel, which needs enough subjects to keep its lanes full.
+    private static final Comparator<CandidateMatch> BEST_FIRST = Comparator.comparingDouble(CandidateMatch::score).reversed().thenComparingInt(CandidateMatch::index);
+
+    private final SmithWaterman aligner;
+    private final boolean gotoh; // Affine gaps, bands or X-drop, which need the aligner's Gotoh path.
+    private final boolean simd; // Settings the SIMD kernels can score.
+    private final InterSequenceAligner lanes; // Null without the Vector API, or if the alphabet doesn't fit in its lanes.
+    private final char[] query;
+    private final ScoringMatrix matrix; // Null without a scoring matrix.
+    private final int[][] profile; // profile[code][j], from 1: the score of a subject code against query position j.
+    private final int match, mismatch, gap, open;
+    private final int bestPair; // The highest score any one pair of characters can get.
+    private final int queryBound; // The highest score the whole query can get.
+
+    private final List<String> subjects;
+    private final int n;
+    private final AtomicInteger floor = new AtomicInteger(1); // Subjects need at least this score. Scores of 0 aren't hits.
+
+    DatabaseSearch(SmithWaterman aligner, ScoringMatrix matrix, String query, List<String> subjects, int n) {
+        this.aligner = aligner;
+        this.gotoh = aligner.useGotoh();
+        this.query = query.toCharArray();
+        this.matrix = matrix;
+        this.match = aligner.getMATCH();
+        this.mismatch = aligner.getMISMATCH();
+        this.gap = aligner.getGAP();
+        this.open = aligner.getGAP_OPEN();
+        this.subjects = subjects;
+        this.n = n;
+
+        int best = Integer.MIN_VALUE;
+        int bound = 0;
+
+        if(matrix == null) {
+            profile = null;
+            best = match;
+            bound = this.query.length * Math.max(match, 0);
+        }
+        else {
+            byte[] codes = matrix.encode(this.query);
+            profile = new int[matrix.stride][this.query.length + 1];
+
+            for(int j = 1; j <= this.query.length; j++) {
+                int column = Integer.MIN_VALUE;
+                for(int code = 0; code < matrix.stride; code++) {
+                    int score = matrix.scores[code * matrix.stride + codes[j - 1]];
+                    profile[code][j] = score;
+                    column = Math.max(column, score);
+                }
+
+                best = Math.max(best, column);
+                bound += Math.max(column, 0);
+            }
+        }
+
+        this.bestPair = best;
+        this.queryBound = bound;
+
+        this.simd = aligner.useSimd();
+        InterSequenceAligner inter = simd ? new InterSequenceAligner(this.query, matrix, match, mismatch, open, gap) : null;
+        this.lanes = inter != null && inter.fits() ? inter : null;
+    }
+
+    List<CandidateMatch> run(ForkJoinPool pool) {
+        return pool.invoke(new SearchTask(0, subjects.size()));
+    }
+
+    private List<CandidateMatch> scan(int from, int to) {
+        PriorityQueue<CandidateMatch> kept = new PriorityQueue<>(BEST_FIRST.reversed());
+        StripedAligner striped = simd ? new StripedAligner(query, matrix, match, mismatch, open, gap) : null;
+        int[] row = new int[query.length + 1];
+        char[] chars = new char[16];
+
+        for(int index = from; index < to; index++) {
+            String subject = subjects.get(index);
+            int length = subject.length();
+            if(bound(length) < floor.get()) continue;
+
+            if(chars.length < length) chars = new char[Math.max(length, chars.length * 2)];
+            subject.getChars(0, length, chars, 0);
+            int score = striped == null ? StripedAligner.SCALAR : striped.score(chars, length);
+            if(score == StripedAligner.SCALAR) score = scalarScore(subject, chars, row);
+
+            keep(kept, index, score);
+        }
+
+        return new ArrayList<>(kept);
+    }
+
+    // scan() with the inter-sequence kernel: every subject that might beat the floor is scored up front, then the ones that didn't fit in 8 bits are scored again.
+    private List<CandidateMatch> scanLanes(int from, int to) {
+        int[] indices = new int[to - from];
+        int count = 0;
+        for(int index = from; index < to; index++) {
+            if(bound(subjects.get(index).length()) >= floor.get()) indices[count++] = index;
+        }
+
+        int[] scores = lanes.score(subjects, indices, count);
+        PriorityQueue<CandidateMatch> kept = new PriorityQueue<>(BEST_FIRST.reversed());
+        StripedAligner striped = null;
+
+        for(int k = 0; k < count; k++) {
+            int score = scores[k];
+            if(score == InterSequenceAligner.SCALAR) {
+                if(striped == null) striped = new StripedAligner(query, matrix, match, mismatch, open, gap);
+                String subject = subjects.get(indices[k]);
+                char[] chars = subject.toCharArray();
+                score = striped.scoreWide(chars, chars.length);
+                if(score == StripedAligner.SCALAR) score = scalarScore(subject, chars, new int[query.length + 1]);
+            }
+
+            keep(kept, indices[k], score);
+        }
+
+        return new ArrayList<>(kept);
+    }
+
+    // Every aligned pair scores at most bestPair, and a local alignment has at most min(length, query length) of them.
+    private int bound(int length) {
+        return bestPair <= 0 ? 0 : (int) Math.min(queryBound, (long) length * bestPair);
+    }
+
+    // Adds a hit to a task's top n, and raises the floor once it has n.
+    private void keep(PriorityQueue<CandidateMatch> kept, int index, int score) {
+        if(score < floor.get()) return;
+
+        kept.add(new CandidateMatch(index, subjects.get(index), score));
+        if(kept.size() > n) kept.poll();
+        if(kept.size() == n) floor.accumulateAndGet((int) kept.peek().score(), Math::max);
+    }
+
+    // The score from the scalar kernels, where chars holds the subject (and maybe more after it).
+    private int scalarScore(String subject, char[] chars, int[] row) {
+        if(gotoh) return aligner.gotoh(subject.toCharArray(), query, matrix).score();
+        return score(chars, subject.length(), row);
+    }
+
+    // The linear-gap local alignment score of s1[0, length) against the query, the same as SmithWaterman.score().
+    private int score(char[] s1, int length, int[] scores) {
+        int row = query.length;
+        Arrays.fill(scores, 0);
+        int max = 0;
+
+        for(int i = 1; i <= length; i++) {
+            char c = s1[i - 1];
+            int[] subject = profile == null ? null : profile[matrix.code(c)];
+            int diag = 0, left = 0;
+
+            for(int j = 1; j <= row; j++) {
+                int up = scores[j];
+                int pair = subject == null ? (c == query[j - 1] ? match : mismatch) : subject[j];
+                int score = Math.max(Math.max(0, diag + pair), Math.max(up, left) + gap);
+
+                diag = up;
+                scores[j] = score;
+                left = score;
+                max = Math.max(max, score);
+            }
+        }
+
+        return max;
+    }
+
+    // Keeps the n best of 2 lists of hits, best first.
+    private List<CandidateMatch> merge(List<CandidateMatch> a, List<CandidateMatch> b) {
+        List<CandidateMatch> hits = new ArrayList<>(a.size() + b.size());
+        hits.addAll(a);
+        hits.addAll(b);
+        hits.sort(BEST_FIRST);
+
+        return hits.size() > n ? new ArrayList<>(hits.subList(0, n)) : hits;
+    }
+
+    // Scores the subjects in [from, to), returning the best n.
+    @SuppressWarnings("serial")
+    private final class SearchTask extends RecursiveTask<List<CandidateMatch>> {
+        private final int from, to;
+
+        SearchTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<CandidateMatch> compute() {
+            if(to - from > (lanes == null ? GRAIN : LANE_GRAIN)) {
+                int mid = (from + to) >>> 1;
+                SearchTask right = new SearchTask(mid, to);
+                right.fork();
+                List<CandidateMatch> left = new SearchTask(from, mid).compute();
+                return merge(left, right.join());
+            }
+
+            List<CandidateMatch> hits = lanes == null ? scan(from, to) : scanLanes(from, to);
+            hits.sort(BEST_FIRST);
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The pairwise distances (or similarities) between every pair of strings in a list.
+ * Every metric is symmetric, so only the upper triangle (excluding the diagonal) is computed and stored, as n(n - 1)/2 entries.
+ * Edit and Hamming distances are stored as shorts and similarities as floats, instead of a double (or boxed Double) per cell.<br><br>
+ *
+ * The triangle is split into square tiles, which are computed in parallel on a ForkJoinPool. Tiles keep both the row and column strings in cache while they're compared.<br><br>
+ *
+ * The matrix can be kept on the heap, or in a memory-mapped file when it is too large for the heap (a 50,000 x 50,000 distance matrix takes 2.5GB).
+ * File-backed matrices must be closed to unmap the file, and can be reopened later with load().
+ */
+public class DistanceMatrix implements AutoCloseable {
+    private static final int MAGIC = 0x444D4154; // "DMAT"
+    private static final int VERSION = 1;
+    private static final long HEADER_BYTES = 4L * Integer.BYTES;
+
+    private static final int TILE = 64; // Strings per side of a tile.
+    private static final int GRAIN = 8; // Tiles computed by a task before it stops splitting.
+
+    // Little-endian regardless of the platform, so files can be moved between machines.
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final StringMetric metric;
+    private final int size;
+    private final MemorySegment cells; // Entry (i, j) with i < j is at triangleIndex(i, j).
+    private final Arena arena; // Only set for file-backed matrices.
+
+    private DistanceMatrix(StringMetric metric, int size, MemorySegment cells, Arena arena) {
+        this.metric = metric;
+        this.size = size;
+        this.cells = cells;
+        this.arena = arena;
+    }
+
+    /**
+     * Computes the matrix on the heap, using the common ForkJoinPool.
+     *
+     * @param strings The strings to compare.
+     * @param metric The metric to compare with.
+     * @return The matrix.
+     */
+    public static DistanceMatrix compute(List<String> strings, StringMetric metric) {
+        return compute(strings, metric, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the matrix on the heap.
+     *
+     * @param strings The strings to compare.
+     * @param metric The metric to compare with.
+     * @param pool The pool to run the comparisons on.
+     * @return The matrix.
+     */
+    public static DistanceMatrix compute(List<String> strings, StringMetric metric, ForkJoinPool pool) {
+        validate(strings, metric, pool);
+
+        int n = strings.size();
+        long entries = entries(n);
+        if(entries > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many strings to store the matrix on the heap. Use a file-backed matrix instead.");
+
+        MemorySegment cells = metric.isDistance() ? MemorySegment.ofArray(new short[(int) entries]) : MemorySegment.ofArray(new float[(int) entries]);
+        DistanceMatrix matrix = new DistanceMatrix(metric, n, cells, null);
+
+        matrix.fill(strings.toArray(new String[0]), pool);
+        return matrix;
+    }
+
+    /**
+     * Computes the matrix into a memory-mapped file, using the common ForkJoinPool.
+     * The file is created (or overwritten) and stays mapped until the matrix is closed.
+     *
+     * @param strings The strings to compare.
+     * @param metric The metric to compare with.
+     * @param path The file to store the matrix in.
+     * @return The matrix.
+     * @throws IOException
+     */
+    public static DistanceMatrix compute(List<String> strings, StringMetric metric, String path) throws IOException {
+        return compute(strings, metric, path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the matrix into a memory-mapped file.
+     * The file is created (or overwritten) and stays mapped until the matrix is closed.
+     *
+     * @param strings The strings to compare.
+     * @param metric The metric to compare with.
+     * @param path The file to store the matrix in.
+     * @param pool The pool to run the comparisons on.
+     * @return The matrix.
+     * @throws IOException
+     */
+    public static DistanceMatrix compute(List<String> strings, StringMetric metric, String path, ForkJoinPool pool) throws IOException {
+        validate(strings, metric, pool);
+        if(path == null) throw new IllegalArgumentException("The provided path is null.");
+
+        int n = strings.size();
+        long bytes = HEADER_BYTES + entries(n) * (metric.isDistance() ? Short.BYTES : Float.BYTES);
+
+        Arena arena = Arena.ofShared();
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes, arena);
+            DistanceMatrix matrix = new DistanceMatrix(metric, n, file.asSlice(HEADER_BYTES), arena);
+
+            matrix.fill(strings.toArray(new String[0]), pool);
+
+            // The header goes in last, so an interrupted run doesn't leave a file that looks complete.
+            file.set(INT, 0, MAGIC);
+            file.set(INT, 4, VERSION);
+            file.set(INT, 8, metric.ordinal());
+            file.set(INT, 12, n);
+            file.force();
+
+            return matrix;
+        } catch(IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a matrix previously computed into a file. Entries are read from the file as they're accessed, rather than loaded up front.
+     *
+     * @param path The file to read from.
+     * @return The matrix, which must be closed to unmap the file.
+     * @throws IOException
+     */
+    public static DistanceMatrix load(String path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if(bytes < HEADER_BYTES) throw new IOException("Not a DistanceMatrix file: " + path);
+
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes, arena);
+            if(file.get(INT, 0) != MAGIC) throw new IOException("Not a DistanceMatrix file: " + path);
+            int version = file.get(INT, 4);
+            if(version != VERSION) throw new IOException("Unsupported DistanceMatrix file version: " + version);
+
+            int ordinal = file.get(INT, 8);
+            int n = file.get(INT, 12);
+            if(ordinal < 0 || ordinal >= StringMetric.values().length || n < 0) throw new IOException("Corrupt DistanceMatrix file: " + path);
+
+            StringMetric metric = StringMetric.values()[ordinal];
+            if(bytes != HEADER_BYTES + entries(n) * (metric.isDistance() ? Short.BYTES : Float.BYTES)) throw new IOException("Corrupt DistanceMatrix file: " + path);
+
+            return new DistanceMatrix(metric, n, file.asSlice(HEADER_BYTES), arena);
+        } catch(IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the distance (or similarity) between the i-th and j-th strings.
+     *
+     * @param i The index of the first string.
+     * @param j The index of the second string.
+     * @return The distance (for edit and Hamming distances) or similarity (for Jaro and Jaro-Winkler). Comparing a string to itself gives 0 for distances and 1 for similarities.
+     */
+    public double get(int i, int j) {
+        Objects.checkIndex(i, size);
+        Objects.checkIndex(j, size);
+
+        if(i == j) return metric.isDistance() ? 0 : 1;
+        if(i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+
+        long index = triangleIndex(size, i, j);
+        return metric.isDistance() ? cells.getAtIndex(SHORT, index) : cells.getAtIndex(FLOAT, index);
+    }
+
+    /**
+     * Gets the number of strings (rows and columns) in the matrix.
+     *
+     * @return The number of strings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the metric the matrix was computed with.
+     *
+     * @return The metric.
+     */
+    public StringMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Unmaps the file backing the matrix. Does nothing for matrices on the heap.
+     */
+    @Override
+    public void close() {
+        if(arena != null) arena.close();
+    }
+
+    private static void validate(List<String> strings, StringMetric metric, ForkJoinPool pool) {
+        if(strings == null) throw new IllegalArgumentException("The provided strings are null.");
+        if(metric == null) throw new IllegalArgumentException("The provided metric is null.");
+        if(pool == null) throw new IllegalArgumentException("The provided pool is null.");
+
+        int longest = 0;
+        for(String s: strings) {
+            if(s == null) throw new IllegalArgumentException("The provided strings contain a null string.");
+            if(metric == StringMetric.HAMMING && s.length() != strings.get(0).length()) throw new IllegalArgumentException("All strings must be of equal length for Hamming distance.");
+            longest = Math.max(longest, s.length());
+        }
+
+        // A distance can't be larger than the longer of the 2 strings.
+        if(metric.isDistance() && longest > Short.MAX_VALUE) throw new IllegalArgumentException("Strings longer than " + Short.MAX_VALUE + " characters can't be stored in a distance matrix.");
+    }
+
+    private static long entries(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    // Row i holds the entries (i, i + 1) to (i, n - 1), after the n - 1, n - 2, ..., n - i entries of the rows above it.
+    private static long triangleIndex(int n, int i, int j) {
+        return (long) i * (2L * n - i - 1) / 2 + (j - i - 1);
+    }
+
+    private void fill(String[] strings, ForkJoinPool pool) {
+        int tiles = (size + TILE - 1) / TILE;
+        long tilePairs = (long) tiles * (tiles + 1) / 2;
+        if(tilePairs == 0) return;
+
+        pool.invoke(new TileTask(strings, 0, tilePairs, tiles));
+    }
+
+    // Computes tile pairs [from, to), numbering the tiles on and above the diagonal row by row.
+    // Splits in half until the range is small, so that the uneven row lengths of the triangle are balanced by work stealing.
+    @SuppressWarnings("serial")
+    private final class TileTask extends RecursiveAction {
+        private final String[] strings;
+        private final long from, to;
+        private final int tiles;
+
+        TileTask(String[] strings, long from, long to, int tiles) {
+            this.strings = strings;
+            this.from = from;
+            this.to = to;
+            this.tiles = tiles;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > GRAIN) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new TileTask(strings, from, mid, tiles), new TileTask(strings, mid, to, tiles));
+                return;
+            }
+
+            // Find the first tile's row and column, then walk along the rows.
+            int row = 0;
+            long start = from;
+            while(start >= tiles - row) {
+                start -= tiles - row;
+                row++;
+            }
+            int column = row + (int) start;
+
+            for(long t = from; t < to; t++) {
+                computeTile(row, column);
+
+                if(++column == tiles) {
+                    row++;
+                    column = row;
+                }
+            }
+        }
+
+        private void computeTile(int rowTile, int columnTile) {
+            int rowEnd = Math.min((rowTile + 1) * TILE, size);
+            int columnEnd = Math.min((columnTile + 1) * TILE, size);
+
+            for(int i = rowTile * TILE; i < rowEnd; i++) {
+                // On a diagonal tile, only the part above the diagonal is needed.
+                int j = Math.max(columnTile * TILE, i + 1);
+                long index = triangleIndex(size, i, j);
+
+                for(; j < columnEnd; j++, index++) {
+                    double value = metric.compare(strings[i], strings[j]);
+
+                    if(metric.isDistance()) cells.setAtIndex(SHORT, index, (short) value);
+                    else cells.setAtIndex(FLOAT, index, (float) value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A dictionary index that finds every term within k edits of a query, without comparing the query against each term.
+ * Terms are stored in a trie, which is walked alongside a Levenshtein automaton (simulated with a banded DP row per trie level).
+ * Whole branches of the trie are skipped as soon as no term under them can be within k edits.
+ * Optionally, adjacent transpositions can be counted as a single edit (Damerau-Levenshtein, optimal string alignment).<br><br>
+ *
+ * The index is immutable once built, so a single instance can be shared between any number of query threads.
+ * It can be saved to a binary file and loaded back without rebuilding.<br><br>
+ *
+ * <a href="https://doi.org/10.1007/s10032-002-0082-8">Schulz and Mihov, Fast string correction with Levenshtein automata.</a>
+ */
+public class FuzzyTrie {
+    private static final int MAGIC = 0x46545249; // "FTRI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    // Nodes are numbered in breadth-first order, so the children of node v are the consecutive nodes firstChild[v] to firstChild[v + 1] - 1.
+    // This means no child pointers need to be stored. Node 0 is the root.
+    private final int[] firstChild;
+    private final char[] labels;      // The character on the edge leading into each node.
+    private final long[] terminal;    // Bit set of nodes where a term ends.
+    private final int termCount;
+    private final int maxDepth;       // Length of the longest term.
+
+    /**
+     * Builds an index over the given terms. Duplicates are ignored and null terms are not allowed.
+     *
+     * @param terms The dictionary.
+     */
+    public FuzzyTrie(Collection<String> terms) {
+        this(terms.toArray(new String[0]));
+    }
+
+    /**
+     * Builds an index over the given terms. Duplicates are ignored and null terms are not allowed.
+     *
+     * @param terms The dictionary.
+     */
+    public FuzzyTrie(String[] terms) {
+        if(terms == null) throw new IllegalArgumentException("The provided dictionary is null.");
+
+        String[] sorted = terms.clone();
+        for(String term: sorted) {
+            if(term == null) throw new IllegalArgumentException("The provided dictionary contains a null term.");
+        }
+
+        // Sorting means every node's terms form one contiguous range, and its children come out in character order.
+        Arrays.parallelSort(sorted);
+        int unique = 0;
+        for(int i = 0; i < sorted.length; i++) {
+            if(unique == 0 || !sorted[i].equals(sorted[unique - 1])) sorted[unique++] = sorted[i];
+        }
+
+        // Breadth-first build. Each node covers the range of terms [lo, hi) sharing a prefix of length 'depth'.
+        int capacity = 16;
+        int[] lo = new int[capacity], hi = new int[capacity], depth = new int[capacity];
+        int[] first = new int[capacity + 1];
+        char[] label = new char[capacity];
+        long[] ends = new long[(capacity >>> 6) + 1];
+
+        int nodes = 1;
+        hi[0] = unique;
+        int deepest = 0;
+
+        for(int v = 0; v < nodes; v++) {
+            int start = lo[v], end = hi[v], d = depth[v];
+            first[v] = nodes;
+
+            // A term exactly 'depth' long ends here. Being the shortest, it sorts first in the range.
+            if(start < end && sorted[start].length() == d) {
+                ends[v >>> 6] |= 1L << v;
+                deepest = Math.max(deepest, d);
+                start++;
+            }
+
+            // The rest are grouped by their next character, each group becoming a child.
+            while(start < end) {
+                char c = sorted[start].charAt(d);
+                int groupEnd = start + 1;
+                while(groupEnd < end && sorted[groupEnd].charAt(d) == c) groupEnd++;
+
+                if(nodes == capacity) {
+                    capacity += capacity >> 1;
+                    lo = Arrays.copyOf(lo, capacity);
+                    hi = Arrays.copyOf(hi, capacity);
+                    depth = Arrays.copyOf(depth, capacity);
+                    first = Arrays.copyOf(first, capacity + 1);
+                    label = Arrays.copyOf(label, capacity);
+                    ends = Arrays.copyOf(ends, (capacity >>> 6) + 1);
+                }
+
+                lo[nodes] = start;
+                hi[nodes] = groupEnd;
+                depth[nodes] = d + 1;
+                label[nodes] = c;
+                nodes++;
+
+                start = groupEnd;
+            }
+        }
+        first[nodes] = nodes;
+
+        firstChild = Arrays.copyOf(first, nodes + 1);
+        labels = Arrays.copyOf(label, nodes);
+        terminal = Arrays.copyOf(ends, (nodes >>> 6) + 1);
+        termCount = unique;
+        maxDepth = deepest;
+    }
+
+    private FuzzyTrie(int[] firstChild, char[] labels, long[] terminal, int termCount, int maxDepth) {
+        this.firstChild = firstChild;
+        this.labels = labels;
+        this.terminal = terminal;
+        this.termCount = termCount;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Finds every term within maxDistance Levenshtein edits (insertions, deletions, and substitutions) of the query.
+     *
+     * @param query The query string.
+     * @param maxDistance The largest edit distance allowed (must not be negative).
+     * @return The matching terms, ordered by distance and then alphabetically.
+     */
+    public List<TermMatch> search(String query, int maxDistance) {
+        return search(query, maxDistance, false);
+    }
+
+    /**
+     * Finds every term within maxDistance edits of the query.
+     * If transpositions is true, swapping 2 adjacent characters counts as a single edit (Damerau-Levenshtein, optimal string alignment).
+     *
+     * @param query The query string.
+     * @param maxDistance The largest edit distance allowed (must not be negative).
+     * @param transpositions Whether adjacent transpositions count as a single edit.
+     * @return The matching terms, ordered by distance and then alphabetically.
+     */
+    /*
+     * Each trie level i holds one row of the edit distance matrix (term prefix of length i vs. the query), restricted to the band of 2k + 1 cells around the diagonal,
+     * using the same layout as Levenshtein.distance(char[], char[], int). The rows of the current path are kept in one flat array, so moving down a level only computes one new row.
+     * The row is the state of the Levenshtein automaton: if every cell in it is above k, nothing below this node can match, so the branch is skipped.
+     */
+    public List<TermMatch> search(String query, int maxDistance, boolean transpositions) {
+        if(query == null) throw new IllegalArgumentException("The provided query is null.");
+        if(maxDistance < 0) throw new IllegalArgumentException("maxDistance must not be negative.");
+
+        List<TermMatch> matches = new ArrayList<>();
+        if(termCount == 0) return matches;
+
+        char[] q = query.toCharArray();
+        int n = q.length;
+
+        // No distance can be larger than the longer of the two strings.
+        int k = Math.min(maxDistance, Math.max(n, maxDepth));
+        int over = k + 1;
+        int width = 2 * k + 3;
+
+        int[] rows = new int[(maxDepth + 1) * width];
+        char[] path = new char[Math.max(maxDepth, 1)];
+
+        // Row 0: cost of inserting the first j characters of the query.
+        for(int d = 0; d < width; d++) {
+            int j = d - k - 1;
+            rows[d] = (j >= 0 && j <= k && j <= n) ? j : over;
+        }
+        if(isTerminal(0) && n <= k) matches.add(new TermMatch("", n));
+
+        // Depth-first walk with an explicit stack. When a node at depth i is popped, rows[i - 1] still holds its parent's row.
+        int[] stack = new int[64];
+        int[] stackDepth = new int[64];
+        int top = 0;
+
+        for(int child = firstChild[1] - 1; child >= firstChild[0]; child--) {
+            if(top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+                stackDepth = Arrays.copyOf(stackDepth, top * 2);
+            }
+            stack[top] = child;
+            stackDepth[top++] = 1;
+        }
+
+        while(top > 0) {
+            int v = stack[--top];
+            int i = stackDepth[top];
+            char c = labels[v];
+            path[i - 1] = c;
+
+            int base = i * width, parent = base - width, grandparent = parent - width;
+            int rowMin = over;
+
+            rows[base] = over;
+            rows[base + width - 1] = over;
+
+            for(int d = 1; d < width - 1; d++) {
+                int j = i + d - k - 1;
+                int value;
+
+                if(j < 0 || j > n) {
+                    value = over;
+                } else if(j == 0) {
+                    value = Math.min(i, over);
+                } else if(c == q[j - 1]) {
+                    value = rows[parent + d];
+                } else {
+                    value = 1 + Math.min(
+                            rows[parent + d + 1],   // deletion
+                            Math.min(
+                                    rows[base + d - 1], // insertion
+                                    rows[parent + d]    // substitution
+                            )
+                    );
+
+                    if(transpositions && i > 1 && j > 1 && c == q[j - 2] && path[i - 2] == q[j - 1]) {
+                        value = Math.min(value, rows[grandparent + d] + 1);
+                    }
+
+                    if(value > over) value = over;
+                }
+
+                rows[base + d] = value;
+                if(value < rowMin) rowMin = value;
+            }
+
+            if(rowMin > k) continue; // Nothing below this node can match.
+
+            if(isTerminal(v) && Math.abs(n - i) <= k) {
+                int distance = rows[base + n - i + k + 1];
+                if(distance <= k) matches.add(new TermMatch(new String(path, 0, i), distance));
+            }
+
+            // Push children in reverse, so they are visited in character order.
+            for(int child = firstChild[v + 1] - 1; child >= firstChild[v]; child--) {
+                if(top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                    stackDepth = Arrays.copyOf(stackDepth, top * 2);
+                }
+                stack[top] = child;
+                stackDepth[top++] = i + 1;
+            }
+        }
+
+        // The walk produces terms alphabetically. A stable sort keeps that order within each distance.
+        matches.sort(Comparator.comparingInt(TermMatch::distance));
+        return matches;
+    }
+
+    /**
+     * Checks whether the exact term is in the dictionary.
+     *
+     * @param term The term to look for.
+     * @return True if the term was part of the dictionary.
+     */
+    public boolean contains(String term) {
+        if(term == null) return false;
+
+        int v = 0;
+        for(int i = 0; i < term.length(); i++) {
+            v = child(v, term.charAt(i));
+            if(v < 0) return false;
+        }
+
+        return isTerminal(v);
+    }
+
+    // Binary search over the (sorted) children of v. Returns -1 if there is no child with that label.
+    private int child(int v, char c) {
+        int low = firstChild[v], high = firstChild[v + 1] - 1;
+
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+
+            if(label < c) low = mid + 1;
+            else if(label > c) high = mid - 1;
+            else return mid;
+        }
+
+        return -1;
+    }
+
+    private boolean isTerminal(int v) {
+        return (terminal[v >>> 6] & (1L << v)) != 0;
+    }
+
+    /**
+     * Gets the number of unique terms in the dictionary.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * Gets the number of trie nodes (including the root).
+     *
+     * @return The number of nodes.
+     */
+    public int nodeCount() {
+        return labels.length;
+    }
+
+    /**
+     * Saves the index to a binary file, so it can be loaded later without rebuilding it.
+     *
+     * @param path The file to write to.
+     * @throws IOException
+     */
+    public void save(String path) throws IOException {
+        int nodes = labels.length;
+        long bytes = fileSize(nodes);
+        if(bytes > Integer.MAX_VALUE) throw new IOException("The index is too large to save to a single buffer.");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(termCount).putInt(maxDepth);
+        buffer.asIntBuffer().put(firstChild);
+        buffer.position(buffer.position() + firstChild.length * Integer.BYTES);
+        buffer.asCharBuffer().put(labels);
+        buffer.position(buffer.position() + labels.length * Character.BYTES);
+        buffer.asLongBuffer().put(terminal);
+        buffer.position(buffer.position() + terminal.length * Long.BYTES);
+        buffer.flip();
+
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * Loads an index previously written with save().
+     *
+     * @param path The file to read from.
+     * @return The loaded index.
+     * @throws IOException
+     */
+    public static FuzzyTrie load(String path) throws IOException {
+        try(RandomAccessFile file = new RandomAccessFile(path, "r"); FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) throw new IOException("The file is too large to be a FuzzyTrie index.");
+
+            // Read the whole file in one go, then bulk copy each array out of the buffer.
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0) throw new IOException("Unexpected end of file.");
+            }
+            buffer.flip();
+
+            if(size < HEADER_BYTES || buffer.getInt() != MAGIC) throw new IOException("Not a FuzzyTrie index: " + path);
+            int version = buffer.getInt();
+            if(version != VERSION) throw new IOException("Unsupported FuzzyTrie index version: " + version);
+
+            int nodes = buffer.getInt();
+            int termCount = buffer.getInt();
+            int maxDepth = buffer.getInt();
+
+            // Checked before anything is allocated, so a corrupt header can't ask for a negative or huge array.
+            // The root is always a node, every term ends at a different node, and no term is longer than the path to the deepest node.
+            if(nodes < 1 || size != fileSize(nodes) || termCount < 0 || termCount > nodes || maxDepth < 0 || maxDepth >= nodes) {
+                throw new IOException("Corrupt FuzzyTrie index: " + path);
+            }
+
+            int[] firstChild = new int[nodes + 1];
+            char[] labels = new char[nodes];
+            long[] terminal = new long[(nodes >>> 6) + 1];
+
+            buffer.asIntBuffer().get(firstChild);
+            buffer.position(buffer.position() + firstChild.length * Integer.BYTES);
+            buffer.asCharBuffer().get(labels);
+            buffer.position(buffer.position() + labels.length * Character.BYTES);
+            buffer.asLongBuffer().get(terminal);
+
+            return new FuzzyTrie(firstChild, labels, terminal, termCount, maxDepth);
+        } catch(BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt FuzzyTrie index: " + path, e);
+        }
+    }
+
+    // The header, then firstChild, labels and the terminal bits.
+    private static long fileSize(int nodes) {
+        return HEADER_BYTES + (nodes + 1L) * Integer.BYTES + (long) nodes * Character.BYTES + ((nodes >>> 6) + 1L) * Long.BYTES;
+    }
+}
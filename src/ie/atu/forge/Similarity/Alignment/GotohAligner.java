@@ -0,0 +1,259 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+
+// Affine-gap alignment (Gotoh) restricted to a band of diagonals, with optional X-drop pruning, shared by NeedlemanWunsch and SmithWaterman.
+// A gap of length k scores open + k * extend. Three scores are kept per cell: H (best overall), E (ending in a gap in s1) and F (ending in a gap in s2).
+// Diagonals are numbered j - i, so the band covers the cells with low <= j - i <= high.
+// Only 2 rows of scores are kept. For tracebacks, each computed cell also stores one byte saying where its H, E and F came from,
+// and each row only stores the cells that were computed (the band, or less once X-drop starts pruning).
+final class GotohAligner {
+    private static final int NEG = Integer.MIN_VALUE / 2; // Unreachable cells. Low enough to never win, high enough that adding penalties can't overflow.
+
+    // Trace bits. The lowest 2 say where H came from, the next 2 whether E and F extended an existing gap (rather than opening one from H).
+    private static final byte STOP = 0, DIAG = 1, FROM_F = 2, FROM_E = 3;
+    private static final byte E_EXTENDED = 4, F_EXTENDED = 8;
+
+    private final char[] s1, s2;
+    private final byte[] codes1, codes2; // Null when there is no scoring matrix.
+    private final int[] table;
+    private final int stride;
+    private final int match, mismatch, open, extend;
+    private final boolean local;
+    private final int low, high;
+    private final int xDrop; // 0 turns it off. Local alignments only.
+
+    // Filled in by fill().
+    private byte[][] trace;
+    private int[] traceStart; // The column of each row's first traced cell.
+    private int best, bestI, bestJ;
+    private int end; // H at the last cell, for global alignments.
+
+    /**
+     * The matrix, if there is one, must already be complete (see ScoringMatrix.withDefault()).
+     * For global alignments, the band is widened to include the first and last cells.
+     */
+    GotohAligner(char[] s1, char[] s2, ScoringMatrix matrix, int match, int mismatch, int open, int extend, boolean local, int low, int high, int xDrop) {
+        this.s1 = s1;
+        this.s2 = s2;
+        this.codes1 = matrix == null ? null : matrix.encode(s1);
+        this.codes2 = matrix == null ? null : matrix.encode(s2);
+        this.table = matrix == null ? null : matrix.scores;
+        this.stride = matrix == null ? 0 : matrix.stride;
+        this.match = match;
+        this.mismatch = mismatch;
+        this.open = open;
+        this.extend = extend;
+        this.local = local;
+        this.low = local ? low : Math.min(low, Math.min(0, s2.length - s1.length));
+        this.high = local ? high : Math.max(high, Math.max(0, s2.length - s1.length));
+        this.xDrop = local ? xDrop : 0;
+    }
+
+    /**
+     * The score of the optimal alignment within the band.
+     */
+    int score() {
+        fill(false);
+        return local ? best : end;
+    }
+
+    /**
+     * The optimal alignment within the band.
+     */
+    AlignmentResult align() {
+        fill(true);
+
+        int i = local ? bestI : s1.length;
+        int j = local ? bestJ : s2.length;
+        int endI = i, endJ = j;
+        CigarBuilder cigar = new CigarBuilder();
+
+        byte state = DIAG; // Which of H (DIAG), E or F the path is in.
+        while(i > 0 && j > 0) {
+            byte t = trace[i][j - traceStart[i]];
+
+            if(state == DIAG) {
+                int source = t & 3;
+                if(source == STOP) break;
+
+                if(source == DIAG) {
+                    cigar.pair(s1[i - 1], s2[j - 1]);
+                    i--;
+                    j--;
+                }
+                else state = source == FROM_F ? FROM_F : FROM_E;
+            }
+            // If deletion
+            else if(state == FROM_F) {
+                cigar.add(AlignmentResult.DELETION);
+                if((t & F_EXTENDED) == 0) state = DIAG;
+                i--;
+            }
+            // If insertion
+            else {
+                cigar.add(AlignmentResult.INSERTION);
+                if((t & E_EXTENDED) == 0) state = DIAG;
+                j--;
+            }
+        }
+
+        // A global alignment finishes along the first row or column.
+        if(!local) {
+            for(; i > 0; i--) cigar.add(AlignmentResult.DELETION);
+            for(; j > 0; j--) cigar.add(AlignmentResult.INSERTION);
+        }
+
+        return cigar.build(s1, s2, i, endI, j, endJ, local ? best : end);
+    }
+
+    private void fill(boolean keepTrace) {
+        int col = s1.length;
+        int row = s2.length;
+        int gap = open + extend; // The cost of a gap's first character.
+
+        // The previous row, overwritten in place as the current row is filled in.
+        int[] H = new int[row + 1];
+        int[] F = new int[row + 1];
+        byte[] rowTrace = keepTrace ? new byte[row + 1] : null;
+        if(keepTrace) {
+            trace = new byte[col + 1][];
+            traceStart = new int[col + 1];
+        }
+
+        for(int j = 0; j <= row; j++) {
+            H[j] = j > high ? NEG : (local || j == 0 ? 0 : open + j * extend);
+            F[j] = NEG;
+        }
+
+        best = 0;
+        bestI = 0;
+        bestJ = 0;
+        end = col == 0 ? H[row] : firstColumn(col); // A global alignment's last cell is only filled in below when neither sequence is empty.
+
+        int firstLive = 1, lastLive = row; // The cells of the previous row X-drop hasn't pruned.
+
+        for(int i = 1; i <= col; i++) {
+            int lo = Math.max(1, i + low);
+            int hi = Math.min(row, i + high);
+
+            // X-drop only prunes once the best score is more than X above 0, as before that any cell could still start a new local alignment.
+            int threshold = xDrop > 0 ? best - xDrop : 0;
+            boolean pruning = threshold > 0;
+
+            if(lo > hi) {
+                if(lo > row) break; // The band has gone past the last column.
+                continue; // The band hasn't reached the first column yet.
+            }
+
+            int start = pruning ? Math.max(lo, firstLive) : lo;
+            int reach = pruning ? Math.min(hi, lastLive + 1) : hi; // Past this, only a gap along the row can keep a cell alive.
+            if(start > hi) break;
+
+            char c = s1[i - 1];
+            int base = codes1 == null ? 0 : codes1[i - 1] * stride;
+
+            int diag, left;
+            if(start == 1) {
+                diag = firstColumn(i - 1);
+                left = firstColumn(i);
+            }
+            else {
+                diag = H[start - 1];
+                left = NEG;
+                H[start - 1] = NEG;
+                F[start - 1] = NEG;
+            }
+
+            int e = NEG;
+            int first = -1, last = -1;
+            int j = start;
+
+            for(; j <= hi; j++) {
+                int up = j <= reach ? H[j] : NEG;
+                int upF = j <= reach ? F[j] : NEG;
+                int fromDiag = diag == NEG ? NEG : diag + (codes1 == null ? (c == s2[j - 1] ? match : mismatch) : table[base + codes2[j - 1]]);
+
+                int t = 0;
+                int f = up + gap;
+                if(upF + extend > f) {
+                    f = upF + extend;
+                    t |= F_EXTENDED;
+                }
+                int openE = left + gap;
+                if(e + extend > openE) {
+                    e = e + extend;
+                    t |= E_EXTENDED;
+                }
+                else e = openE;
+                f = Math.max(f, NEG);
+                e = Math.max(e, NEG);
+
+                // The same order of preference as the linear-gap tracebacks: diagonal, then deletion, then insertion.
+                int h = fromDiag;
+                int source = DIAG;
+                if(f > h) {
+                    h = f;
+                    source = FROM_F;
+                }
+                if(e > h) {
+                    h = e;
+                    source = FROM_E;
+                }
+                if(local && h <= 0) {
+                    h = 0;
+                    source = STOP;
+                }
+
+                if(pruning && h < threshold) {
+                    h = NEG;
+                    e = NEG;
+                    f = NEG;
+                    // Past the previous row's live cells, nothing else can come back above the threshold along this row.
+                    if(j > reach) break;
+                }
+                else {
+                    if(first < 0) first = j;
+                    last = j;
+
+                    if(local && h > best) {
+                        best = h;
+                        bestI = i;
+                        bestJ = j;
+                    }
+                }
+
+                diag = up;
+                H[j] = h;
+                F[j] = f;
+                left = h;
+                if(keepTrace) rowTrace[j - start] = (byte) (t | source);
+            }
+
+            // j is one past the last computed cell. The next row may read it, so it can't be left over from an older row.
+            if(j <= row) {
+                H[j] = NEG;
+                F[j] = NEG;
+            }
+
+            if(keepTrace) {
+                trace[i] = Arrays.copyOf(rowTrace, j - start);
+                traceStart[i] = start;
+            }
+
+            if(i == col && hi == row) end = H[row];
+
+            if(pruning && first < 0) break;
+            if(first >= 0) {
+                firstLive = first;
+                lastLive = last;
+            }
+        }
+    }
+
+    // H for the cell in row i of the first column.
+    private int firstColumn(int i) {
+        if(-i < low || -i > high) return NEG;
+        return local || i == 0 ? 0 : open + i * extend;
+    }
+}
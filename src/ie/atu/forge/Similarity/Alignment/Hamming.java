@@ -1,12 +1,28 @@
 package ie.atu.forge.Similarity.Alignment;
 
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
 /**
  *  Hamming distance is the number of substitutions needed to transform one string to another.
  *  Strings must be of identical lengths.<br><br>
  *
+ *  When the JVM is started with --add-modules jdk.incubator.vector, characters and bytes are compared a full SIMD vector at a time with the Vector API
+ *  (e.g. 32 chars or 64 bytes per compare with AVX-512), and the differing lanes are counted from the compare's mask.
+ *  Without it (and for what's left after the last full vector), they're compared 4 chars (or 8 bytes) at a time, by XORing 64-bit words and counting the lanes that aren't 0.
+ *  Packed bit fingerprints (e.g. 64/128/256-bit hashes) can be compared directly with the long overloads.<br><br>
+ *
  *  <a href="https://ieeexplore.ieee.org/document/6772729/">Original Paper.</a>
  */
 public class Hamming {
+    // Heap segments can be read a word at a time at any char (or byte) offset, so the arrays don't need to be copied into longs first.
+    private static final ValueLayout.OfLong WORD = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    private static final long LOW_15 = 0x7FFF_7FFF_7FFF_7FFFL;
+    private static final long HIGH_16 = 0x8000_8000_8000_8000L;
+    private static final long LOW_7 = 0x7F7F_7F7F_7F7F_7F7FL;
+    private static final long HIGH_8 = 0x8080_8080_8080_8080L;
+
     /**
      *  Measures the number of substitutions between 2 strings.
      *  Strings must be of identical lengths.
@@ -16,7 +32,23 @@ public class Hamming {
      * @return The distance between the 2 strings using Hamming Distance.
      */
     public static int distance(String s1, String s2) {
-        return distance(s1.toCharArray(), s2.toCharArray());
+        return distance((CharSequence) s1, s2);
+    }
+
+    /**
+     *  Measures the number of substitutions between 2 strings.
+     *  Strings must be of identical lengths. Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject string
+     * @param s2 The query string
+     * @return The distance between the 2 strings using Hamming Distance.
+     */
+    public static int distance(CharSequence s1, CharSequence s2) {
+        if(s1 == null || s2 == null) throw new IllegalArgumentException("At least one of the provided strings is null.");
+        if(s1.length() != s2.length()) throw new IllegalArgumentException("Both strings must be of equal length.");
+
+        Workspace ws = Workspace.get();
+        return distance(ws.chars1(s1), ws.chars2(s2), s1.length());
     }
 
     /**
@@ -31,13 +63,122 @@ public class Hamming {
         // Strings must be of equal length.
         if(s1.length != s2.length) throw new IllegalArgumentException("Both strings must be of equal length.");
 
+        return distance(s1, s2, s1.length);
+    }
+
+    /**
+     *  Measures the number of differing bytes between 2 byte sequences, such as ASCII barcodes or k-mers.
+     *  Sequences must be of identical lengths.
+     *
+     * @param s1 The subject sequence
+     * @param s2 The query sequence
+     * @return The number of positions where the sequences differ.
+     */
+    public static int distance(byte[] s1, byte[] s2) {
+        if(s1.length != s2.length) throw new IllegalArgumentException("Both sequences must be of equal length.");
 
         int dist = 0;
-        // Check how many characters in the strings do not match.
-        for(int i = 0; i < s1.length; i++) {
+        int i = 0;
+        if(Simd.AVAILABLE) {
+            i = VectorHamming.byteBound(s1.length);
+            dist = VectorHamming.distance(s1, s2, i);
+        }
+
+        MemorySegment a = MemorySegment.ofArray(s1);
+        MemorySegment b = MemorySegment.ofArray(s2);
+        long offset = i;
+
+        // 4 words (32 bytes) per step. Each word's flags sit in different bits, so they can share a single bit count.
+        for(; i + 32 <= s1.length; i += 32, offset += 32) {
+            long flags = differingBytes(a.get(WORD, offset) ^ b.get(WORD, offset))
+                    | differingBytes(a.get(WORD, offset + 8) ^ b.get(WORD, offset + 8)) >>> 1
+                    | differingBytes(a.get(WORD, offset + 16) ^ b.get(WORD, offset + 16)) >>> 2
+                    | differingBytes(a.get(WORD, offset + 24) ^ b.get(WORD, offset + 24)) >>> 3;
+            dist += Long.bitCount(flags);
+        }
+
+        for(; i + 8 <= s1.length; i += 8, offset += 8) {
+            dist += Long.bitCount(differingBytes(a.get(WORD, offset) ^ b.get(WORD, offset)));
+        }
+
+        for(; i < s1.length; i++) {
             if(s1[i] != s2[i]) dist++;
         }
 
         return dist;
     }
+
+    /**
+     *  Measures the number of differing bits between 2 packed bit fingerprints (e.g. 2 longs for a 128-bit hash).
+     *  Fingerprints must be of identical lengths.
+     *
+     * @param f1 The subject fingerprint
+     * @param f2 The query fingerprint
+     * @return The number of bits that differ.
+     */
+    public static int distance(long[] f1, long[] f2) {
+        if(f1.length != f2.length) throw new IllegalArgumentException("Both fingerprints must be of equal length.");
+
+        int dist = 0;
+        for(int i = 0; i < f1.length; i++) {
+            dist += Long.bitCount(f1[i] ^ f2[i]);
+        }
+
+        return dist;
+    }
+
+    /**
+     *  Measures the number of differing bits between 2 64-bit fingerprints.
+     *
+     * @param f1 The subject fingerprint
+     * @param f2 The query fingerprint
+     * @return The number of bits that differ.
+     */
+    public static int distance(long f1, long f2) {
+        return Long.bitCount(f1 ^ f2);
+    }
+
+    // Only the first 'length' characters are compared, as the arrays may be workspace buffers.
+    private static int distance(char[] s1, char[] s2, int length) {
+        int dist = 0;
+        int i = 0;
+        if(Simd.AVAILABLE) {
+            i = VectorHamming.charBound(length);
+            dist = VectorHamming.distance(s1, s2, i);
+        }
+
+        MemorySegment a = MemorySegment.ofArray(s1);
+        MemorySegment b = MemorySegment.ofArray(s2);
+        long offset = (long) i * Character.BYTES;
+
+        // As for bytes, but with 4 chars per word.
+        for(; i + 16 <= length; i += 16, offset += 32) {
+            long flags = differingChars(a.get(WORD, offset) ^ b.get(WORD, offset))
+                    | differingChars(a.get(WORD, offset + 8) ^ b.get(WORD, offset + 8)) >>> 1
+                    | differingChars(a.get(WORD, offset + 16) ^ b.get(WORD, offset + 16)) >>> 2
+                    | differingChars(a.get(WORD, offset + 24) ^ b.get(WORD, offset + 24)) >>> 3;
+            dist += Long.bitCount(flags);
+        }
+
+        for(; i + 4 <= length; i += 4, offset += 8) {
+            dist += Long.bitCount(differingChars(a.get(WORD, offset) ^ b.get(WORD, offset)));
+        }
+
+        for(; i < length; i++) {
+            if(s1[i] != s2[i]) dist++;
+        }
+
+        return dist;
+    }
+
+    // Sets the high bit of each 8-bit lane of x that isn't 0, and clears every other bit.
+    // Adding 0x7F to the low 7 bits carries into the high bit if any of them are set, without spilling into the next lane.
+    private static long differingBytes(long x) {
+        return (((x & LOW_7) + LOW_7) | x) & HIGH_8;
+    }
+
+    // The same for 16-bit lanes.
+    private static long differingChars(long x) {
+        return (((x & LOW_15) + LOW_15) | x) & HIGH_16;
+    }
 }
@@ -0,0 +1,183 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+import java.util.List;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Rognes' SWIPE (https://doi.org/10.1186/1471-2105-12-221) on the Vector API: the local alignment scores of one query against many subjects at once, one subject per lane.
+// Every lane runs the ordinary recurrence down the whole query, so unlike StripedAligner nothing depends on another lane and there's no lazy F loop: each step fills the next
+// column of every lane's subject. The scores for a column are gathered once per query character code, by selecting from a table with the lanes' subject codes.
+// When a lane's subject ends, its score is read out, the lane's columns are cleared, and the next subject starts in it.
+// Scores are kept in 8-bit lanes the same way StripedAligner does, without saturating adds. Subjects that overflow them get SCALAR, for StripedAligner.scoreWide().
+// The subject alphabet (the matrix's codes, or the query's characters plus one for any other character) has to fit in a vector's lanes with one to spare. See fits().
+// Only used once Simd.AVAILABLE has been checked.
+final class InterSequenceAligner {
+    static final int SCALAR = StripedAligner.SCALAR;
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte[] queryCodes; // The query's codes, which pick a row of the table.
+    private final int queryAlphabet; // The number of query codes.
+    private final ScoringMatrix matrix; // Null for Match and Mismatch scores.
+    private final char[] alphabet; // Without a matrix: the query's characters, sorted. A character's code is its index, and any other character gets alphabet.length.
+    private final byte[] asciiCodes; // Without a matrix: the codes of the ASCII characters.
+    private final int subjectAlphabet; // The number of subject codes. The next one is for lanes without a subject.
+    private final byte[] table; // table[q * lanes + code]: the score of a subject code against query code q.
+    private final int maxPair; // The best score a single pair of characters can get.
+    private final int gapOpenExtend; // The (positive) cost of a gap's first character.
+    private final int gapExtend; // The (positive) cost of each character after that.
+
+    // Open and extend are the aligner's gap scores, so both must be 0 or less.
+    InterSequenceAligner(char[] query, ScoringMatrix matrix, int match, int mismatch, int open, int extend) {
+        this.matrix = matrix;
+        this.gapOpenExtend = -(open + extend);
+        this.gapExtend = -extend;
+
+        if(matrix == null) {
+            char[] sorted = query.clone();
+            Arrays.sort(sorted);
+            int n = 0;
+            for(int i = 0; i < sorted.length; i++) {
+                if(n == 0 || sorted[n - 1] != sorted[i]) sorted[n++] = sorted[i];
+            }
+            alphabet = Arrays.copyOf(sorted, n);
+            asciiCodes = new byte[128]; // Only used if fits(), when every code fits in a byte.
+            Arrays.fill(asciiCodes, (byte) n);
+            for(int i = 0; i < n && alphabet[i] < 128; i++) asciiCodes[alphabet[i]] = (byte) i;
+
+            queryAlphabet = n;
+            subjectAlphabet = n + 1;
+            maxPair = Math.max(match, mismatch);
+        }
+        else {
+            alphabet = null;
+            asciiCodes = null;
+            queryAlphabet = matrix.stride;
+            subjectAlphabet = matrix.stride;
+
+            int best = Integer.MIN_VALUE;
+            for(char c : query) {
+                for(int code = 0; code < matrix.stride; code++) best = Math.max(best, matrix.scores[code * matrix.stride + matrix.code(c)]);
+            }
+            maxPair = best;
+        }
+
+        queryCodes = new byte[fits() ? query.length : 0];
+        table = new byte[fits() ? queryAlphabet * BYTES.length() : 0];
+        if(!fits()) return;
+
+        for(int j = 0; j < query.length; j++) queryCodes[j] = (byte) (matrix == null ? Arrays.binarySearch(alphabet, query[j]) : matrix.code(query[j]));
+
+        // Codes past the alphabet (including the one for lanes without a subject) get the lane's minimum, which can never start or extend an alignment.
+        int lanes = BYTES.length();
+        Arrays.fill(table, Byte.MIN_VALUE);
+        for(int q = 0; q < queryAlphabet; q++) {
+            for(int code = 0; code < subjectAlphabet; code++) {
+                int pair = matrix == null ? (code == q ? match : mismatch) : matrix.scores[code * matrix.stride + q];
+                table[q * lanes + code] = (byte) Math.max(Math.min(pair, Byte.MAX_VALUE), Byte.MIN_VALUE);
+            }
+        }
+    }
+
+    // Whether the subject alphabet (plus the code for an empty lane) fits in a vector's lanes.
+    boolean fits() {
+        return subjectAlphabet < BYTES.length();
+    }
+
+    // The local alignment score of each of subjects[indices[0, count)] against the query, or SCALAR for the ones that don't fit in 8 bits. Only call it if fits().
+    int[] score(List<String> subjects, int[] indices, int count) {
+        int[] scores = new int[count];
+        if(queryCodes.length == 0 || maxPair <= 0) return scores;
+        if(maxPair > Byte.MAX_VALUE) {
+            Arrays.fill(scores, SCALAR);
+            return scores;
+        }
+
+        int lanes = BYTES.length();
+        int rows = queryCodes.length;
+        byte limit = (byte) (Byte.MAX_VALUE - maxPair);
+
+        byte[] h = new byte[rows * lanes], e = new byte[rows * lanes]; // h[j * lanes + lane]: the previous column's score at query position j.
+        byte[] best = new byte[lanes];
+        byte[] column = new byte[queryAlphabet * lanes]; // The column's scores for each query code, gathered from the table.
+        byte[] laneCodes = new byte[lanes];
+        int[] item = new int[lanes]; // The lane's subject (an index into indices), or -1.
+        String[] laneSubjects = new String[lanes];
+        int[] positions = new int[lanes];
+        Arrays.fill(item, -1);
+        int next = 0;
+
+        ByteVector zero = ByteVector.zero(BYTES);
+        ByteVector gapOE = ByteVector.broadcast(BYTES, (byte) Math.min(gapOpenExtend, Byte.MAX_VALUE));
+        ByteVector gapE = ByteVector.broadcast(BYTES, (byte) Math.min(gapExtend, Byte.MAX_VALUE));
+
+        while(true) {
+            int active = 0;
+            for(int lane = 0; lane < lanes; lane++) {
+                while(item[lane] < 0 && next < count) {
+                    String subject = subjects.get(indices[next]);
+                    if(subject.isEmpty()) {
+                        scores[next++] = 0;
+                        continue;
+                    }
+
+                    item[lane] = next++;
+                    laneSubjects[lane] = subject;
+                    positions[lane] = 0;
+                }
+
+                if(item[lane] < 0) laneCodes[lane] = (byte) subjectAlphabet;
+                else {
+                    laneCodes[lane] = (byte) code(laneSubjects[lane].charAt(positions[lane]++));
+                    active++;
+                }
+            }
+            if(active == 0) break;
+
+            ByteVector codes = ByteVector.fromArray(BYTES, laneCodes, 0);
+            for(int q = 0, offset = 0; q < queryAlphabet; q++, offset += lanes) {
+                codes.selectFrom(ByteVector.fromArray(BYTES, table, offset)).intoArray(column, offset);
+            }
+
+            ByteVector top = ByteVector.fromArray(BYTES, best, 0);
+            ByteVector diag = zero, f = zero;
+            for(int j = 0, offset = 0; j < rows; j++, offset += lanes) {
+                ByteVector up = ByteVector.fromArray(BYTES, h, offset);
+                ByteVector vE = ByteVector.fromArray(BYTES, e, offset);
+                ByteVector vH = diag.add(ByteVector.fromArray(BYTES, column, queryCodes[j] * lanes)).max(zero).max(vE).max(f);
+                top = top.max(vH);
+                vH.intoArray(h, offset);
+                diag = up;
+
+                ByteVector open = vH.sub(gapOE).max(zero);
+                vE.sub(gapE).max(open).intoArray(e, offset);
+                f = f.sub(gapE).max(open);
+            }
+            top.intoArray(best, 0);
+
+            // Read out the lanes whose subject has ended or gone past the limit, and clear them for the next one.
+            for(int lane = 0; lane < lanes; lane++) {
+                if(item[lane] < 0 || (positions[lane] < laneSubjects[lane].length() && best[lane] <= limit)) continue;
+
+                scores[item[lane]] = best[lane] <= limit ? best[lane] : SCALAR;
+                item[lane] = -1;
+                best[lane] = 0;
+                for(int offset = lane; offset < h.length; offset += lanes) {
+                    h[offset] = 0;
+                    e[offset] = 0;
+                }
+            }
+        }
+
+        return scores;
+    }
+
+    private int code(char c) {
+        if(matrix != null) return matrix.code(c);
+        if(c < 128) return asciiCodes[c];
+
+        int i = Arrays.binarySearch(alphabet, c);
+        return i < 0 ? alphabet.length : i;
+    }
+}
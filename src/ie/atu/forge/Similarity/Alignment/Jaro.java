@@ -1,4 +1,7 @@
 package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+
 /**
  * A similarity measure that returns a range (0 - 1). Hangles matches and transpositions.
  *
@@ -13,18 +16,84 @@ public class Jaro {
      * @return The similarity ranging from 0 (completely dissimilar) to 1 (identical).
      */
     public static double similarity(char[] s1, char[] s2) {
-        if (s1.length == 0 && s2.length == 0) return 1.0; // If both are empty, they are a perfect match.
-        if (s1.length == 0 || s2.length == 0) return 0.0; // If only 1 is empty, they cannot have any matches.
+        return similarity(s1, s1.length, s2, s2.length, Workspace.get());
+    }
+
+    // Only the first len1 characters of s1 and len2 characters of s2 are used, as they may be workspace buffers.
+    // Strings of up to 64 characters go through the bit-parallel kernel, with s2 compiled into the workspace's masks.
+    static double similarity(char[] s1, int len1, char[] s2, int len2, Workspace ws) {
+        if (len1 == 0 && len2 == 0) return 1.0; // If both are empty, they are a perfect match.
+        if (len1 == 0 || len2 == 0) return 0.0; // If only 1 is empty, they cannot have any matches.
+
+        if(len1 <= 64 && len2 <= 64) {
+            return bitParallel(s1, len1, s2, len2, ws.mask(s2, 0, len2));
+        }
+
+        return flagged(s1, len1, s2, len2, ws);
+    }
+
+    // As above, but the query's masks were built when the pattern was compiled.
+    static double similarity(char[] s1, int len1, CompiledJaroPattern s2, Workspace ws) {
+        int len2 = s2.length();
+        if (len1 == 0 && len2 == 0) return 1.0;
+        if (len1 == 0 || len2 == 0) return 0.0;
+
+        if(len1 <= 64 && s2.mask != null) return bitParallel(s1, len1, s2.chars, len2, s2.mask);
+
+        return flagged(s1, len1, s2.chars, len2, ws);
+    }
+
+    // Both strings have at most 64 characters, so the match flags for each fit in a single long.
+    // For each character of s1, the candidates are the unmatched positions of s2 inside the window that hold the same character.
+    // Taking the lowest one picks the same match as scanning the window left to right.
+    private static double bitParallel(char[] s1, int len1, char[] s2, int len2, PatternMask pm) {
+        int range = Math.max((int) Math.floor((Math.max(len1, len2) / 2.0d) - 1), 0);
+
+        long matched1 = 0L, matched2 = 0L;
+        for(int i = 0; i < len1; i++) {
+            int start = Math.max(i - range, 0);
+            if(start >= len2) break; // Every later window starts past the end of s2 too.
+            int end = Math.min(i + range + 1, len2);
 
-        int range = Math.max((int) Math.floor((Math.max(s1.length, s2.length) / 2.0d) - 1), 0);
+            long window = (end == 64 ? -1L : (1L << end) - 1) & (-1L << start);
+            long candidates = pm.get(s1[i]) & window & ~matched2;
+
+            if(candidates != 0L) {
+                matched2 |= candidates & -candidates;
+                matched1 |= 1L << i;
+            }
+        }
+
+        int matches = Long.bitCount(matched1);
+        if(matches == 0) return 0;
+
+        // Pair the matches of s1 and s2 up in order, counting the pairs with different characters.
+        int transpositions = 0;
+        while(matched1 != 0L) {
+            if(s1[Long.numberOfTrailingZeros(matched1)] != s2[Long.numberOfTrailingZeros(matched2)]) transpositions++;
+
+            matched1 &= matched1 - 1;
+            matched2 &= matched2 - 1;
+        }
+
+        transpositions /= 2;
+
+        return ( (matches / (double) len1) +  (matches / (double) len2) +  ((matches - transpositions) / (double) matches)) / 3.0d;
+    }
 
-        int[] matched_s1 = new int[s1.length], matched_s2 = new int[s2.length];
+    // For longer strings. The match flags come from the per-thread workspace, so they have to be cleared before use.
+    private static double flagged(char[] s1, int len1, char[] s2, int len2, Workspace ws) {
+        int range = Math.max((int) Math.floor((Math.max(len1, len2) / 2.0d) - 1), 0);
+
+        int[] matched_s1 = ws.ints1(len1), matched_s2 = ws.ints2(len2);
+        Arrays.fill(matched_s1, 0, len1, 0);
+        Arrays.fill(matched_s2, 0, len2, 0);
 
         // Count all matches within range.
         int matches = 0;
-        for(int i = 0; i < s1.length; i++) {
+        for(int i = 0; i < len1; i++) {
             char c1 = s1[i];
-            int end = Math.min(i + range + 1, s2.length);
+            int end = Math.min(i + range + 1, len2);
             for(int j = Math.max(i - range, 0); j < end; j ++) {
                 if(matched_s2[j] == 1) continue;
 
@@ -42,7 +111,7 @@ public class Jaro {
         int transpositions = 0;
         int j = 0;
         // If the next appearing match is not of the same character as the index in s1, this means the characters are not in order and therefore a transposition.
-        for(int i = 0; i < s1.length; i++) {
+        for(int i = 0; i < len1; i++) {
             if(matched_s1[i] == 1) {
                 while(matched_s2[j] == 0) j++;
 
@@ -55,7 +124,7 @@ public class Jaro {
         transpositions /= 2;
         if(matches == 0) return 0;
 
-        return ( (matches / (double) s1.length) +  (matches / (double) s2.length) +  ((matches - transpositions) / (double) matches)) / 3.0d;
+        return ( (matches / (double) len1) +  (matches / (double) len2) +  ((matches - transpositions) / (double) matches)) / 3.0d;
     }
 
     /**
@@ -66,7 +135,33 @@ public class Jaro {
      * @return The similarity ranging from 0 (completely dissimilar) to 1 (identical).
      */
     public static double similarity(String s1, String s2) {
-        return similarity(s1.toCharArray(), s2.toCharArray());
+        return similarity((CharSequence) s1, s2);
+    }
+
+    /**
+     * Measures how similar two character sequences (e.g. StringBuilder) are based on matching characters within a certain distance and the number of transpositions.
+     * Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The query sequence.
+     * @return The similarity ranging from 0 (completely dissimilar) to 1 (identical).
+     */
+    public static double similarity(CharSequence s1, CharSequence s2) {
+        Workspace ws = Workspace.get();
+        return similarity(ws.chars1(s1), s1.length(), ws.chars2(s2), s2.length(), ws);
+    }
+
+    /**
+     * Measures how similar a string is to a pre-compiled query, based on matching characters within a certain distance and the number of transpositions.
+     * Compiling the query once is faster when it is compared against many strings. Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The compiled query.
+     * @return The similarity ranging from 0 (completely dissimilar) to 1 (identical).
+     */
+    public static double similarity(CharSequence s1, CompiledJaroPattern s2) {
+        Workspace ws = Workspace.get();
+        return similarity(ws.chars1(s1), s1.length(), s2, ws);
     }
 
     /**
@@ -90,4 +185,26 @@ public class Jaro {
     public static double distance(String s1, String s2) {
         return 1 - similarity(s1, s2);
     }
+
+    /**
+     * Measures how distant two character sequences (e.g. StringBuilder) are based on matching characters within a certain distance and the number of transpositions.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The query sequence.
+     * @return The distance ranging from 0 (completely dissimilar) to 1 (identical).
+     */
+    public static double distance(CharSequence s1, CharSequence s2) {
+        return 1 - similarity(s1, s2);
+    }
+
+    /**
+     * Measures how distant a string is from a pre-compiled query, based on matching characters within a certain distance and the number of transpositions.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The compiled query.
+     * @return The distance ranging from 0 (identical) to 1 (completely dissimilar).
+     */
+    public static double distance(CharSequence s1, CompiledJaroPattern s2) {
+        return 1 - similarity(s1, s2);
+    }
 }
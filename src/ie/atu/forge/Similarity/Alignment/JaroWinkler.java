@@ -17,13 +17,21 @@ public class JaroWinkler {
      * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical).
      */
     public static double similarity(char[] s1, char[] s2, double p) {
-        if(s1.length == 0 && s2.length == 0) return 1.0d;
-        if(s1.length == 0 || s2.length == 0) return 0.0d;
+        return similarity(s1, s1.length, s2, s2.length, p, Workspace.get());
+    }
+
+    // Only the first len1 characters of s1 and len2 characters of s2 are used, as they may be workspace buffers.
+    private static double similarity(char[] s1, int len1, char[] s2, int len2, double p, Workspace ws) {
+        if(len1 == 0 && len2 == 0) return 1.0d;
+        if(len1 == 0 || len2 == 0) return 0.0d;
 
-        double jaro = Jaro.similarity(s1, s2);
+        return boost(Jaro.similarity(s1, len1, s2, len2, ws), s1, len1, s2, len2, p);
+    }
 
+    // Adds the common prefix reward (for up to 4 characters) to a Jaro similarity.
+    private static double boost(double jaro, char[] s1, int len1, char[] s2, int len2, double p) {
         int l = 0;
-        int end = Math.min(Math.min(s1.length, s2.length), 4);
+        int end = Math.min(Math.min(len1, len2), 4);
 
         for(int i = 0; i < end; i++) {
             if(s1[i] == s2[i]) l = i + 1;
@@ -55,7 +63,21 @@ public class JaroWinkler {
      * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical)
      */
     public static double similarity(String s1, String s2, double p) {
-        return similarity(s1.toCharArray(), s2.toCharArray(), p);
+        return similarity((CharSequence) s1, s2, p);
+    }
+
+    /**
+     * Measures how similar two character sequences (e.g. StringBuilder) are based on matching characters within a certain distance and the number of transpositions.
+     * Common prefixes are rewarded with higher scores. Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The query sequence.
+     * @param p The scaling factor for shared prefixes (It is recommended to keep this value &lt;= 0.25).
+     * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical)
+     */
+    public static double similarity(CharSequence s1, CharSequence s2, double p) {
+        Workspace ws = Workspace.get();
+        return similarity(ws.chars1(s1), s1.length(), ws.chars2(s2), s2.length(), p, ws);
     }
 
     /**
@@ -67,7 +89,51 @@ public class JaroWinkler {
      * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical)
      */
     public static double similarity(String s1, String s2) {
-        return similarity(s1.toCharArray(), s2.toCharArray(), 0.1);
+        return similarity((CharSequence) s1, s2, 0.1);
+    }
+
+    /**
+     * Measures how similar two character sequences (e.g. StringBuilder) are based on matching characters within a certain distance and the number of transpositions.
+     * Common prefixes are rewarded with higher scores, using the default scaling factor of 0.1.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The query sequence.
+     * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical)
+     */
+    public static double similarity(CharSequence s1, CharSequence s2) {
+        return similarity(s1, s2, 0.1);
+    }
+
+    /**
+     * Measures how similar a string is to a pre-compiled query, based on matching characters within a certain distance and the number of transpositions.
+     * Common prefixes are rewarded with higher scores. Compiling the query once is faster when it is compared against many strings.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The compiled query.
+     * @param p The scaling factor for shared prefixes (It is recommended to keep this value &lt;= 0.25).
+     * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical)
+     */
+    public static double similarity(CharSequence s1, CompiledJaroPattern s2, double p) {
+        Workspace ws = Workspace.get();
+        char[] chars = ws.chars1(s1);
+        int len1 = s1.length(), len2 = s2.length();
+
+        if(len1 == 0 && len2 == 0) return 1.0d;
+        if(len1 == 0 || len2 == 0) return 0.0d;
+
+        return boost(Jaro.similarity(chars, len1, s2, ws), chars, len1, s2.chars, len2, p);
+    }
+
+    /**
+     * Measures how similar a string is to a pre-compiled query, based on matching characters within a certain distance and the number of transpositions.
+     * Common prefixes are rewarded with higher scores, using the default scaling factor of 0.1.
+     *
+     * @param s1 The subject sequence.
+     * @param s2 The compiled query.
+     * @return The similarity ranging from 0 (completely dissimilar) to 1 (Identical)
+     */
+    public static double similarity(CharSequence s1, CompiledJaroPattern s2) {
+        return similarity(s1, s2, 0.1);
     }
 
     public static double distance(char[] s1, char[] s2, double p) {
@@ -77,9 +143,21 @@ public class JaroWinkler {
         return 1 - similarity(s1, s2);
     }
     public static double distance(String s1, String s2, double p) {
-        return 1 - similarity(s1.toCharArray(), s2.toCharArray(), p);
+        return 1 - similarity(s1, s2, p);
     }
     public static double distance(String s1, String s2) {
-        return 1 - similarity(s1.toCharArray(), s2.toCharArray());
+        return 1 - similarity(s1, s2);
+    }
+    public static double distance(CharSequence s1, CharSequence s2, double p) {
+        return 1 - similarity(s1, s2, p);
+    }
+    public static double distance(CharSequence s1, CharSequence s2) {
+        return 1 - similarity(s1, s2);
+    }
+    public static double distance(CharSequence s1, CompiledJaroPattern s2, double p) {
+        return 1 - similarity(s1, s2, p);
+    }
+    public static double distance(CharSequence s1, CompiledJaroPattern s2) {
+        return 1 - similarity(s1, s2);
     }
 }
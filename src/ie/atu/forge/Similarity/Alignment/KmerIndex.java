@@ -0,0 +1,158 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Index of the seed positions in a text, for SeedAndExtend's seeding, built without a String or boxed Integer per position.
+// Each seed gets a Rabin-Karp hash of the characters under the '1's of its mask. For kmers the hash is rolled, so moving along the text costs the same whatever k is.
+// The hash picks a bucket, and the positions are counting sorted into one int[] by bucket (starts[b]..starts[b + 1] holds bucket b's positions, in order).
+// Buckets aren't keyed: different seeds can share one, so every candidate position is checked against the text before it's used.
+// The table has between m and 2m buckets for m indexed positions, so a lookup usually only looks at the seed's own positions. Memory is about 2 to 3 ints per indexed position.
+// With minimizers only the positions the SeedScheme samples are indexed (about 2 / (w + 1) of them), and the query is sampled the same way.
+// The text is read in place through a CharSequence, so a String or a memory-mapped file (see ByteText) is indexed without copying it into a char[].
+final class KmerIndex {
+    private static final long BASE = 0x100000001B3L; // Odd, so every character changes the hash. Hashes wrap around mod 2^64.
+    private static final long MIX = 0x9E3779B97F4A7C15L; // Spreads the hash's low bits into the high bits the bucket is taken from.
+
+    private final CharSequence text;
+    private final SeedScheme scheme;
+    private final int[] offsets;
+    private final int span;
+    private final long power; // BASE^span, to take the character leaving a kmer back out.
+    private final int shift; // 64 - log2(buckets).
+    private final int[] starts;
+    private final int[] positions;
+
+    // Called with each sampled position and its mixed hash, in order of position.
+    private interface Sink {
+        void accept(int position, long hash);
+    }
+
+    KmerIndex(CharSequence text, SeedScheme scheme) {
+        this.text = text;
+        this.scheme = scheme;
+        this.offsets = scheme.offsets();
+        this.span = scheme.span();
+
+        long p = 1;
+        for(int i = 0; i < span; i++) p *= BASE;
+        this.power = p;
+
+        // The positions are sampled twice (to count, then to fill), which is cheaper than keeping a hash for each of them.
+        int[] count = new int[1];
+        sample(text, (position, hash) -> count[0]++);
+        int n = count[0];
+
+        int bits = Math.min(30, Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1)))); // Enough buckets for every position (up to 2^30).
+        this.shift = 64 - bits;
+        this.starts = new int[(1 << bits) + 1];
+        this.positions = new int[n];
+        if(n == 0) return;
+
+        // Count the positions in each bucket, then turn the counts into where each bucket starts.
+        sample(text, (position, hash) -> starts[bucket(hash) + 1]++);
+        for(int b = 1; b < starts.length; b++) starts[b] += starts[b - 1];
+
+        // Fill the buckets in order of position, so each bucket's positions end up sorted.
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        sample(text, (position, hash) -> positions[next[bucket(hash)]++] = position);
+    }
+
+    // The number of positions in the index.
+    int size() {
+        return positions.length;
+    }
+
+    // Every (query position, text position) pair where the query and the text share a seed, in order of query position, then text position.
+    List<Seed> seeds(CharSequence query) {
+        List<Seed> seeds = new ArrayList<>();
+        if(positions.length == 0) return seeds;
+
+        sample(query, (i, hash) -> {
+            int bucket = bucket(hash);
+
+            for(int p = starts[bucket]; p < starts[bucket + 1]; p++) {
+                int position = positions[p];
+                if(matches(query, i, position)) seeds.add(new Seed(i, position));
+            }
+        });
+
+        return seeds;
+    }
+
+    // Whether the query's seed at i and the text's seed at 'position' have the same characters under every '1' of the mask.
+    private boolean matches(CharSequence query, int i, int position) {
+        for(int offset: offsets) {
+            if(text.charAt(position + offset) != query.charAt(i + offset)) return false;
+        }
+
+        return true;
+    }
+
+    // Passes every position the scheme seeds in s to the sink, along with the seed's hash.
+    private void sample(CharSequence s, Sink sink) {
+        int n = s.length() - span + 1;
+        if(n <= 0) return;
+
+        int window = scheme.window();
+        if(window == 1) {
+            long h = hash(s, 0);
+            for(int i = 0; ; i++) {
+                sink.accept(i, h * MIX);
+                if(i + 1 == n) break;
+                h = next(s, h, i + 1);
+            }
+            return;
+        }
+
+        // The minimizer of each run of 'window' seeds, found with a queue of the positions that could still be the smallest (their hashes increase from the front).
+        // Hashes are compared unsigned, and ties go to the leftmost position. A minimizer shared by several runs is only passed on once.
+        int[] queue = new int[window];
+        long[] queueHash = new long[window];
+        int head = 0, size = 0, last = -1;
+        int first = Math.min(window, n) - 1; // The end of the first complete run (or of the only run, if there are fewer seeds than that).
+
+        long h = hash(s, 0);
+        for(int i = 0; ; i++) {
+            long mixed = h * MIX;
+
+            if(size > 0 && queue[head] <= i - window) {
+                head = (head + 1) % window;
+                size--;
+            }
+            while(size > 0 && Long.compareUnsigned(queueHash[(head + size - 1) % window], mixed) > 0) size--;
+            queue[(head + size) % window] = i;
+            queueHash[(head + size) % window] = mixed;
+            size++;
+
+            if(i >= first && queue[head] != last) {
+                last = queue[head];
+                sink.accept(last, queueHash[head]);
+            }
+
+            if(i + 1 == n) break;
+            h = next(s, h, i + 1);
+        }
+    }
+
+    // The hash of the seed at i, given the hash of the seed at i - 1. Kmers are rolled, but spaced seeds are hashed again.
+    private long next(CharSequence s, long h, int i) {
+        return scheme.isContiguous() ? roll(h, s.charAt(i - 1), s.charAt(i + span - 1)) : hash(s, i);
+    }
+
+    private long hash(CharSequence s, int from) {
+        long h = 0;
+        for(int offset: offsets) h = h * BASE + s.charAt(from + offset);
+        return h;
+    }
+
+    // Moves a kmer one character along: 'out' leaves on the left, 'in' joins on the right.
+    private long roll(long h, char out, char in) {
+        return h * BASE - out * power + in;
+    }
+
+    private int bucket(long mixed) {
+        return (int) (mixed >>> shift);
+    }
+}
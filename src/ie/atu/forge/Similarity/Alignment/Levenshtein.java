@@ -1,5 +1,7 @@
 package ie.atu.forge.Similarity.Alignment;
 
+import java.util.Arrays;
+
 // I used this for reference: https://www.geeksforgeeks.org/dsa/introduction-to-levenshtein-distance/
 
 /**
@@ -19,9 +21,22 @@ public class Levenshtein {
      * @return The distance between s1 and s2 using Levenshtein Distance.
      */
     public static int distance(String s1, String s2) {
+        return distance((CharSequence) s1, s2);
+    }
+
+    /**
+     *  Measures the minimum Edit Distance between 2 character sequences (e.g. StringBuilder). Handles insertions, deletions, and substitutions.
+     *  Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence
+     * @param s2 The query sequence
+     * @return The distance between s1 and s2 using Levenshtein Distance.
+     */
+    public static int distance(CharSequence s1, CharSequence s2) {
         if(s1 == null || s2 == null) throw new IllegalArgumentException("At least one of the provided strings is null.");
 
-        return distance(s1.toCharArray(), s2.toCharArray());
+        Workspace ws = Workspace.get();
+        return distance(ws.chars1(s1), s1.length(), ws.chars2(s2), s2.length(), ws);
     }
 
     /**
@@ -33,46 +48,240 @@ public class Levenshtein {
      * @return The distance between s1 and s2 using Levenshtein Distance.
      */
     /*
-     * I'm using the character array representations of the strings here, as there will be many function calls to .charAt otherwise. I am assuming this improves performance.
-     * There is another possible implementation which reduces space complexity by only tracking the current and previous rows (since anything else is never really used).
-     * May change to this later.
+     * Rather than filling the full (m+1) x (n+1) matrix, this uses Myers' bit-vector algorithm (with Hyyrö's formulation).
+     * Each column of the matrix is stored as two bit-vectors of vertical differences (+1 / -1), so 64 cells are updated with a handful of word operations.
+     * Patterns of up to 64 characters fit in a single long. Longer patterns are split into 64-bit blocks, carrying the horizontal difference from one block to the next.
+     *
+     * Reference: https://dl.acm.org/doi/10.1145/316542.316550 (Myers) and https://doi.org/10.1007/3-540-45123-4_17 (Hyyrö).
+     *
+     * The pattern masks and block vectors come from a per-thread workspace, so nothing is allocated once a thread has warmed up.
      */
-    public static int distance(char[] s1 , char[] s2) {        
-        int m = s1.length;
-        int n = s2.length;
+    public static int distance(char[] s1 , char[] s2) {
+        return distance(s1, s1.length, s2, s2.length, Workspace.get());
+    }
 
+    // Only the first m characters of s1 and n characters of s2 are used, as they may be workspace buffers.
+    private static int distance(char[] s1, int m, char[] s2, int n, Workspace ws) {
         // If either string is empty, return the length of the other string.
         if(m == 0) return n;
         if(n == 0) return m;
 
-        int[][] matrix = new int[m + 1][n + 1];
+        // A shared prefix or suffix never changes the distance, so trim them off first. Identical strings end here.
+        int start = 0;
+        int min = Math.min(m, n);
+        while(start < min && s1[start] == s2[start]) start++;
 
-        // Initialize first row and column
-        for(int i = 0; i <= m; i++) {
-            matrix[i][0] = i; // cost of deleting all characters from s1
+        int end1 = m, end2 = n;
+        while(end1 > start && end2 > start && s1[end1 - 1] == s2[end2 - 1]) {
+            end1--;
+            end2--;
         }
 
-        for(int j = 0; j <= n; j++) {
-            matrix[0][j] = j; // cost of inserting all characters of s2
+        if(end1 == start) return end2 - start;
+        if(end2 == start) return end1 - start;
+
+        // Distance is symmetric, so the shorter string becomes the pattern. This keeps the number of 64-bit blocks as low as possible.
+        char[] pattern = s1, text = s2;
+        int pEnd = end1, tEnd = end2;
+        if(end1 - start > end2 - start) {
+            pattern = s2;
+            text = s1;
+            pEnd = end2;
+            tEnd = end1;
+        }
+
+        PatternMask peq = ws.mask(pattern, start, pEnd);
+
+        if(peq.blocks() == 1) return myers(peq, text, start, tEnd);
+        return blockedMyers(peq, text, start, tEnd, ws);
+    }
+
+    /**
+     *  Measures the Edit Distance between 2 Strings, giving up once it is known to be greater than maxDistance.
+     *  Useful when only strings within a few edits of each other are of interest.
+     *
+     * @param s1 The subject string
+     * @param s2 The query string
+     * @param maxDistance The largest distance of interest (must not be negative).
+     * @return The distance between s1 and s2 using Levenshtein Distance, or maxDistance + 1 if it is greater than maxDistance.
+     */
+    public static int distance(String s1, String s2, int maxDistance) {
+        return distance((CharSequence) s1, s2, maxDistance);
+    }
+
+    /**
+     *  Measures the Edit Distance between 2 character sequences (e.g. StringBuilder), giving up once it is known to be greater than maxDistance.
+     *  Once a thread has warmed up, no memory is allocated per call.
+     *
+     * @param s1 The subject sequence
+     * @param s2 The query sequence
+     * @param maxDistance The largest distance of interest (must not be negative).
+     * @return The distance between s1 and s2 using Levenshtein Distance, or maxDistance + 1 if it is greater than maxDistance.
+     */
+    public static int distance(CharSequence s1, CharSequence s2, int maxDistance) {
+        if(s1 == null || s2 == null) throw new IllegalArgumentException("At least one of the provided strings is null.");
+
+        Workspace ws = Workspace.get();
+        return distance(ws.chars1(s1), s1.length(), ws.chars2(s2), s2.length(), maxDistance, ws);
+    }
+
+    /**
+     *  Measures the Edit Distance between 2 Strings, giving up once it is known to be greater than maxDistance.
+     *  Useful when only strings within a few edits of each other are of interest.
+     *
+     * @param s1 The subject string (character array)
+     * @param s2 The query string (character array)
+     * @param maxDistance The largest distance of interest (must not be negative).
+     * @return The distance between s1 and s2 using Levenshtein Distance, or maxDistance + 1 if it is greater than maxDistance.
+     */
+    /*
+     * Ukkonen's cut-off: any cell more than k diagonals away from the main diagonal is already worth more than k, so only a band of 2k + 1 cells per row is filled.
+     * The band is stored relative to the diagonal (cell (i, j) lives at index j - i + k + 1), with a sentinel on either side. This keeps memory at O(k) regardless of the string lengths.
+     * If every cell in a row is above k, no path through that row can end at or below k, so we can stop early.
+     */
+    public static int distance(char[] s1, char[] s2, int maxDistance) {
+        return distance(s1, s1.length, s2, s2.length, maxDistance, Workspace.get());
+    }
+
+    private static int distance(char[] s1, int m, char[] s2, int n, int maxDistance, Workspace ws) {
+        if(maxDistance < 0) throw new IllegalArgumentException("maxDistance must not be negative.");
+
+        // At least |m - n| insertions or deletions are needed, so there is nothing to compute if that is already over the limit.
+        if(Math.abs(m - n) > maxDistance) return maxDistance + 1;
+        if(m == 0) return n;
+        if(n == 0) return m;
+
+        // The distance can never be more than the longer string, so there is no point in a band wider than that.
+        int k = Math.min(maxDistance, Math.max(m, n));
+        int over = k + 1; // Stands in for every value above k.
+        int width = 2 * k + 3;
+
+        int[] prev = ws.ints1(width);
+        int[] curr = ws.ints2(width);
+
+        // Row 0: cost of inserting the first j characters of s2.
+        for(int d = 0; d < width; d++) {
+            int j = d - k - 1;
+            prev[d] = (j >= 0 && j <= k && j <= n) ? j : over;
         }
 
-        // Fill in the table
         for(int i = 1; i <= m; i++) {
-            for(int j = 1; j <= n; j++) {
-                if(s1[i-1] == s2[j-1]) {
-                    matrix[i][j] = matrix[i-1][j-1]; // no cost
+            char c1 = s1[i - 1];
+            curr[0] = over;
+            curr[width - 1] = over;
+            int rowMin = over;
+
+            for(int d = 1; d < width - 1; d++) {
+                int j = i + d - k - 1;
+                int value;
+
+                if(j < 0 || j > n) {
+                    value = over;
+                } else if(j == 0) {
+                    value = Math.min(i, over); // cost of deleting the first i characters of s1
                 } else {
-                    matrix[i][j] = 1 + Math.min(
-                            matrix[i-1][j],     // deletion
+                    value = Math.min(
+                            prev[d] + (c1 == s2[j - 1] ? 0 : 1), // substitution (or match)
                             Math.min(
-                                    matrix[i][j-1], // insertion
-                                    matrix[i-1][j-1] // substitution
+                                    prev[d + 1] + 1, // deletion
+                                    curr[d - 1] + 1  // insertion
                             )
                     );
+
+                    if(value > over) value = over;
+                }
+
+                curr[d] = value;
+                if(value < rowMin) rowMin = value;
+            }
+
+            // Every cell in this row is already over the limit.
+            if(rowMin > k) return maxDistance + 1;
+
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+
+        int result = prev[n - m + k + 1];
+        return result > k ? maxDistance + 1 : result;
+    }
+
+    // Single-word Myers. VP/VN hold the positive/negative vertical differences of the current column.
+    private static int myers(PatternMask peq, char[] text, int from, int to) {
+        int m = peq.length();
+        long vp = m == 64 ? -1L : (1L << m) - 1;
+        long vn = 0L;
+        long last = 1L << (m - 1);
+        int score = m;
+
+        for(int j = from; j < to; j++) {
+            long eq = peq.get(text[j]);
+            long x = eq | vn;
+            long d0 = (((x & vp) + vp) ^ vp) | x;
+            long hp = vn | ~(d0 | vp);
+            long hn = vp & d0;
+
+            // The bottom cell of the column is the distance so far.
+            if((hp & last) != 0) score++;
+            else if((hn & last) != 0) score--;
+
+            // Shift in a +1, as the top row of the matrix increases by 1 each column.
+            hp = (hp << 1) | 1L;
+            hn <<= 1;
+
+            vp = hn | ~(d0 | hp);
+            vn = hp & d0;
+        }
+
+        return score;
+    }
+
+    // Multi-word Myers. Each block passes its horizontal difference at the bottom row (-1, 0 or +1) to the block below it.
+    private static int blockedMyers(PatternMask peq, char[] text, int from, int to, Workspace ws) {
+        int m = peq.length();
+        int blocks = peq.blocks();
+        long[] vp = ws.longs1(blocks);
+        long[] vn = ws.longs2(blocks);
+        Arrays.fill(vp, 0, blocks, -1L);
+        Arrays.fill(vn, 0, blocks, 0L);
+
+        int lastBlock = blocks - 1;
+        long last = 1L << ((m - 1) & 63);
+        int score = m;
+
+        for(int j = from; j < to; j++) {
+            int offset = peq.find(text[j]);
+            int carry = 1; // The top row increases by 1 each column.
+
+            for(int b = 0; b < blocks; b++) {
+                long eq = peq.word(offset, b);
+                long pv = vp[b], mv = vn[b];
+                int hin = carry;
+
+                long xv = eq | mv;
+                if(hin < 0) eq |= 1L;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+
+                if(b == lastBlock) {
+                    if((ph & last) != 0) score++;
+                    else if((mh & last) != 0) score--;
+                } else {
+                    carry = (ph >>> 63) != 0 ? 1 : ((mh >>> 63) != 0 ? -1 : 0);
                 }
+
+                ph <<= 1;
+                mh <<= 1;
+                if(hin > 0) ph |= 1L;
+                else if(hin < 0) mh |= 1L;
+
+                vp[b] = mh | ~(xv | ph);
+                vn[b] = ph & xv;
             }
         }
 
-        return matrix[m][n];
+        return score;
     }
 }
@@ -0,0 +1,173 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+
+// Linear-space (Hirschberg style) traceback shared by NeedlemanWunsch and SmithWaterman, for alignments whose full score matrix would not fit in memory.
+// Hirschberg's usual forward/backward split can pick a different alignment when several have the same score, so this follows the aligners' own traceback instead.
+// The scores in rows a..b only depend on row a (the first column is fixed), so to trace back from row b to row a:
+// the row halfway between them is computed from row a, the path is traced back from row b to the middle using that row, and then from the middle to row a.
+// Small regions are traced back from a full matrix. Only one row is kept per level of recursion, at about twice the work of filling in the matrix once.
+final class LinearSpaceTraceback {
+    private static final long BLOCK = 1 << 16; // Regions with at most this many cells are traced back from a full matrix.
+
+    private final char[] s1, s2;
+    private final byte[] codes1, codes2; // Null when there is no scoring matrix.
+    private final int[] table;
+    private final int stride;
+    private final int match, mismatch, gap;
+    private final boolean local;
+
+    // The alignment's columns, collected backwards from its end, and their total score.
+    private CigarBuilder cigar;
+    private int score;
+    private int startI, startJ; // Where a local alignment ended up starting.
+
+    /**
+     * The matrix, if there is one, must already be complete (see ScoringMatrix.withDefault()).
+     */
+    LinearSpaceTraceback(char[] s1, char[] s2, ScoringMatrix matrix, int match, int mismatch, int gap, boolean local) {
+        this.s1 = s1;
+        this.s2 = s2;
+        this.codes1 = matrix == null ? null : matrix.encode(s1);
+        this.codes2 = matrix == null ? null : matrix.encode(s2);
+        this.table = matrix == null ? null : matrix.scores;
+        this.stride = matrix == null ? 0 : matrix.stride;
+        this.match = match;
+        this.mismatch = mismatch;
+        this.gap = gap;
+        this.local = local;
+    }
+
+    /**
+     * The global alignment of both sequences, the same as NeedlemanWunsch's traceback.
+     */
+    AlignmentResult global() {
+        int col = s1.length;
+        int row = s2.length;
+        cigar = new CigarBuilder();
+        score = 0;
+
+        int[] top = new int[row + 1];
+        for(int j = 0; j <= row; j++) top[j] = j * gap;
+
+        int j = walk(0, col, top, row);
+
+        // Once the path reaches the first row, only insertions are left.
+        while(j > 0) {
+            insertion();
+            j--;
+        }
+
+        return cigar.build(s1, s2, 0, col, 0, row, score);
+    }
+
+    /**
+     * The local alignment ending at (maxi, maxj), the same as SmithWaterman's traceback from its max score.
+     */
+    AlignmentResult local(int maxi, int maxj) {
+        cigar = new CigarBuilder();
+        score = 0;
+        startI = maxi;
+        startJ = maxj;
+
+        // Only the rows and columns up to the end cell can be on the path.
+        if(maxi > 0 && maxj > 0) {
+            int j = walk(0, maxi, new int[maxj + 1], maxj);
+
+            // The path reached the first row without the alignment ending first.
+            if(j >= 0) {
+                startI = 0;
+                startJ = j;
+            }
+        }
+
+        return cigar.build(s1, s2, startI, maxi, startJ, maxj, score);
+    }
+
+    // Traces back from (b, e) until the path reaches row a, and returns the column it reached it in (or -1 if a local alignment ended first).
+    // 'top' holds row a's scores for columns 0..e.
+    private int walk(int a, int b, int[] top, int e) {
+        if(a == b) return e;
+        if(b - a == 1 || (long) (b - a + 1) * (e + 1) <= BLOCK) return traceback(a, b, top, e);
+
+        int middle = (a + b) >>> 1;
+        int[] scores = Arrays.copyOf(top, e + 1);
+        for(int i = a + 1; i <= middle; i++) nextRow(scores, i, e);
+
+        int j = walk(middle, b, scores, e);
+        if(j < 0) return j;
+
+        return walk(a, middle, top, j);
+    }
+
+    private int traceback(int a, int b, int[] top, int e) {
+        int[][] scores = new int[b - a + 1][];
+        scores[0] = Arrays.copyOf(top, e + 1);
+        for(int i = a + 1; i <= b; i++) {
+            scores[i - a] = scores[i - a - 1].clone();
+            nextRow(scores[i - a], i, e);
+        }
+
+        // The same order of preference as the aligners' tracebacks: diagonal, then deletion, then insertion.
+        int i = b, j = e;
+        while(i > a) {
+            int[] current = scores[i - a];
+            int[] previous = scores[i - a - 1];
+
+            if(local && (j == 0 || current[j] == 0)) {
+                startI = i;
+                startJ = j;
+                return -1;
+            }
+
+            if(j > 0 && current[j] == previous[j - 1] + score(i, j)) {
+                cigar.pair(s1[i - 1], s2[j - 1]);
+                score += score(i, j);
+                i--;
+                j--;
+            }
+            else if(current[j] == previous[j] + gap) {
+                cigar.add(AlignmentResult.DELETION);
+                score += gap;
+                i--;
+            }
+            else {
+                insertion();
+                j--;
+            }
+        }
+
+        return j;
+    }
+
+    // Overwrites row i - 1 with row i, for columns 0..e.
+    private void nextRow(int[] scores, int i, int e) {
+        char c = s1[i - 1];
+        int base = codes1 == null ? 0 : codes1[i - 1] * stride;
+
+        int diag = scores[0];
+        int left = local ? 0 : i * gap;
+        scores[0] = left;
+
+        for(int j = 1; j <= e; j++) {
+            int up = scores[j];
+            int pair = codes1 == null ? (c == s2[j - 1] ? match : mismatch) : table[base + codes2[j - 1]];
+            int score = Math.max(diag + pair, Math.max(up, left) + gap);
+            if(local) score = Math.max(score, 0);
+
+            diag = up;
+            scores[j] = score;
+            left = score;
+        }
+    }
+
+    private int score(int i, int j) {
+        if(codes1 == null) return s1[i - 1] == s2[j - 1] ? match : mismatch;
+        return table[codes1[i - 1] * stride + codes2[j - 1]];
+    }
+
+    private void insertion() {
+        cigar.add(AlignmentResult.INSERTION);
+        score += gap;
+    }
+}
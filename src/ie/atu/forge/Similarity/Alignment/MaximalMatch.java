@@ -0,0 +1,11 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * A maximal exact match (MEM) between a subject and a query, found by SubjectIndex.maximalMatches().
+ * The matching substring can't be made longer in either direction: the characters before and after it differ (or one of the sequences ends there).
+ *
+ * @param subjectPos The position of the match in the subject.
+ * @param queryPos The position of the match in the query.
+ * @param length The number of matching characters.
+ */
+public record MaximalMatch(int subjectPos, int queryPos, int length) {}
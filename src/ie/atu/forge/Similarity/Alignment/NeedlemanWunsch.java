@@ -1,15 +1,17 @@
 package ie.atu.forge.Similarity.Alignment;
 
-import ie.atu.forge.ToolBox.MatrixLoader;
-
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Global alignment algorithm that aligns entire sequences filling in gaps where necessary.
  * Uses Match, Mismatch, and Gap scores to calculate alignment scores.
  * Alternatively, a scoring matrix can be used for biological sequences.<br><br>
  *
+ * An aligner built with builder() can't be changed, so one instance can be shared between threads.
+ * Aligners created with the constructor can be changed with the setters, but shouldn't be changed while another thread is using them.<br><br>
+ *
  * <a href="https://www.sciencedirect.com/science/article/abs/pii/0022283670900574">Original Paper.</a><br>
  *
  * Scoring Matrices can be found <a href="https://ftp.ncbi.nih.gov/blast/matrices/">here</a>.
@@ -18,7 +20,46 @@ public class NeedlemanWunsch {
     private int MATCH = 1;
     private int MISMATCH = -1;
     private int GAP = -1;
-    private Map<String, Integer> scoringMatrix = null;
+    private ScoringMatrix scoringMatrix = null;
+    private boolean linearSpace = false;
+    private int GAP_OPEN = 0;
+    private int bandWidth = -1; // No band.
+    private int bandDiagonal = 0;
+
+    private final boolean immutable; // Built by a Builder, so the setters are turned off.
+
+    // Alignments with a bigger score matrix than this (256 MB of ints) always use the linear-space traceback.
+    private static final long MAX_MATRIX_CELLS = 1L << 26;
+
+    /**
+     * Creates an aligner with the default scores (Match 1, Mismatch -1 and Gap -1), which can be changed with the setters.
+     * An aligner that is being changed can't safely be used by other threads at the same time. To share one, build it with builder() instead.
+     */
+    public NeedlemanWunsch() {
+        this.immutable = false;
+    }
+
+    private NeedlemanWunsch(Builder builder) {
+        this.MATCH = builder.match;
+        this.MISMATCH = builder.mismatch;
+        this.GAP = builder.gap;
+        // Pairs without a score are filled in now, rather than on every call.
+        this.scoringMatrix = builder.scoringMatrix == null ? null : builder.scoringMatrix.withDefault(builder.mismatch);
+        this.linearSpace = builder.linearSpace;
+        this.GAP_OPEN = builder.gapOpen;
+        this.bandWidth = builder.bandWidth;
+        this.bandDiagonal = builder.bandDiagonal;
+        this.immutable = true;
+    }
+
+    /**
+     * Starts building an aligner whose settings can't be changed once it's built (its setters throw an UnsupportedOperationException).
+     * Nothing about a call is stored in the aligner, so a built aligner can be shared by any number of threads.
+     * @return A builder with the same defaults as new NeedlemanWunsch().
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     /**
      *  Finds the optimal global alignment between 2 strings (or character arrays).
@@ -30,8 +71,7 @@ public class NeedlemanWunsch {
      * @return The optimal alignments for both the subject and query strings.
      */
     public String[] align(String s1, String s2) {
-        if(scoringMatrix == null) return alignWithoutMatrix(s1, s2);
-        else return alignWithMatrix(s1, s2);
+        return alignment(s1, s2).render();
     }
 
     /**
@@ -44,8 +84,7 @@ public class NeedlemanWunsch {
      * @return The optimal alignments for both the subject and query strings.
      */
     public char[][] align(char[] s1, char[] s2) {
-        if(scoringMatrix == null) return alignWithoutMatrix(s1, s2);
-        else return alignWithMatrix(s1, s2);
+        return alignment(s1, s2).renderChars();
     }
 
     /**
@@ -59,14 +98,7 @@ public class NeedlemanWunsch {
      * @return The optimal alignments for both the subject and query strings.
      */
     public String[] align(String s1, String s2, boolean useScoringMatrix) {
-        if(!useScoringMatrix) return alignWithoutMatrix(s1, s2);
-        else {
-            if(scoringMatrix == null) {
-                throw new IllegalStateException("useScoringMatrix was set to true, but no scoring matrix has been set.");
-            }
-
-            return alignWithMatrix(s1, s2);
-        }
+        return alignment(s1, s2, useScoringMatrix).render();
     }
 
     /**
@@ -80,6 +112,58 @@ public class NeedlemanWunsch {
      * @return The optimal alignments for both the subject and query strings.
      */
     public char[][] align(char[] s1, char[] s2, boolean useScoringMatrix) {
+        return alignment(s1, s2, useScoringMatrix).renderChars();
+    }
+
+    /**
+     *  Finds the optimal global alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  its score and a CIGAR (it always covers both sequences). The gapped strings are only built if render() is called.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The optimal global alignment. The result keeps a reference to both strings for rendering.
+     */
+    public AlignmentResult alignment(String s1, String s2) {
+        return alignment(s1.toCharArray(), s2.toCharArray()).withSequences(s1, s2);
+    }
+
+    /**
+     *  Finds the optimal global alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  its score and a CIGAR (it always covers both sequences). The gapped strings are only built if render() is called.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The optimal global alignment. The result keeps a reference to both arrays for rendering.
+     */
+    public AlignmentResult alignment(char[] s1, char[] s2) {
+        return alignment(s1, s2, scoringMatrix != null);
+    }
+
+    /**
+     *  Finds the optimal global alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  its score and a CIGAR (it always covers both sequences). The gapped strings are only built if render() is called.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The optimal global alignment. The result keeps a reference to both strings for rendering.
+     */
+    public AlignmentResult alignment(String s1, String s2, boolean useScoringMatrix) {
+        return alignment(s1.toCharArray(), s2.toCharArray(), useScoringMatrix).withSequences(s1, s2);
+    }
+
+    /**
+     *  Finds the optimal global alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  its score and a CIGAR (it always covers both sequences). The gapped strings are only built if render() is called.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The optimal global alignment. The result keeps a reference to both arrays for rendering.
+     */
+    public AlignmentResult alignment(char[] s1, char[] s2, boolean useScoringMatrix) {
         if(!useScoringMatrix) return alignWithoutMatrix(s1, s2);
         else {
             if(scoringMatrix == null) {
@@ -90,230 +174,261 @@ public class NeedlemanWunsch {
         }
     }
 
-    private String[] alignWithoutMatrix(String s1, String s2) {
-        char[][] alignments = align(s1.toCharArray(), s2.toCharArray());
+    /**
+     *  Finds the score of the optimal global alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  Long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The score of the optimal global alignment.
+     */
+    public int score(String s1, String s2) {
+        return score(s1.toCharArray(), s2.toCharArray());
+    }
+
+    /**
+     *  Finds the score of the optimal global alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  Long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The score of the optimal global alignment.
+     */
+    public int score(char[] s1, char[] s2) {
+        return score(s1, s2, scoringMatrix != null);
+    }
+
+    /**
+     *  Finds the score of the optimal global alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  Long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The score of the optimal global alignment.
+     */
+    public int score(String s1, String s2, boolean useScoringMatrix) {
+        return score(s1.toCharArray(), s2.toCharArray(), useScoringMatrix);
+    }
+
+    /**
+     *  Finds the score of the optimal global alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  Long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The score of the optimal global alignment.
+     */
+    public int score(char[] s1, char[] s2, boolean useScoringMatrix) {
+        if(useScoringMatrix && scoringMatrix == null) {
+            throw new IllegalStateException("useScoringMatrix was set to true, but no scoring matrix has been set.");
+        }
+
+        ScoringMatrix matrix = useScoringMatrix ? scoringMatrix.withDefault(MISMATCH) : null;
+        if(useGotoh()) return gotoh(s1, s2, matrix).score();
 
-        // If the user inputted strings, give them strings back.
-        return new String[]{ new String(alignments[0]), new String(alignments[1]) };
+        return new AlignmentScorer(s1, s2, matrix, MATCH, MISMATCH, GAP, false).score(ForkJoinPool.commonPool());
     }
 
-    private char[][] alignWithoutMatrix(char[] s1, char[] s2) {
+    private AlignmentResult alignWithoutMatrix(char[] s1, char[] s2) {
         int col = s1.length;
         int row = s2.length;
 
-        int[][] scores = new int[col+1][row+1];
+        if(useGotoh()) return gotoh(s1, s2, null).align();
+        if(useLinearSpace(col, row)) return new LinearSpaceTraceback(s1, s2, null, MATCH, MISMATCH, GAP, false).global();
+
+        // The matrix is stored flat, one row of (row + 1) scores after another, in a pooled buffer that may still hold an earlier alignment's scores.
+        int width = row + 1;
+        int[] scores = BufferPool.take((col + 1) * width);
 
         // First, we need to fill in the rows and columns with gap penalties.
         for(int i = 0; i <= col; i++) {
-            scores[i][0] = i * GAP;
+            scores[i * width] = i * GAP;
         }
 
         for(int j = 0; j <= row; j++) {
-            scores[0][j] = j * GAP;
+            scores[j] = j * GAP;
         }
 
         // Fill in the rest of the scores matrix
         for(int i = 1; i <= col; i++) {
+            int above = (i - 1) * width, current = i * width;
+
             for(int j = 1; j <= row; j++) {
                 // Match or Mismatch?
-                scores[i][j] = Math.max(Math.max(
+                scores[current + j] = Math.max(Math.max(
                         // Match/Mismatch?
-                        scores[i - 1][j - 1] + (s1[i - 1] == s2[j - 1] ? MATCH : MISMATCH),
+                        scores[above + j - 1] + (s1[i - 1] == s2[j - 1] ? MATCH : MISMATCH),
                         // Gap in s1 (insertion)
-                        scores[i][j-1] + GAP),
+                        scores[current + j - 1] + GAP),
                         // Gap in s2 (deletion)
-                        scores[i - 1][j] + GAP
+                        scores[above + j] + GAP
                 );
             }
         }
 
         // Traceback through matrix to find optimal alignment (From scores[col][row] to scores[0][0]).
-        return traceback(scores, s1, s2);
-    }
-
-    private String[] alignWithMatrix(String s1, String s2) {
-        char[][] alignments = alignWithMatrix(s1.toCharArray(), s2.toCharArray());
+        AlignmentResult alignment = traceback(scores, width, s1, s2);
+        BufferPool.give(scores);
 
-        return new String[]{new String(alignments[0]), new String(alignments[1])};
+        return alignment;
     }
 
-    private char[][] alignWithMatrix(char[] s1, char[] s2) {
+    private AlignmentResult alignWithMatrix(char[] s1, char[] s2) {
         if(scoringMatrix == null) {
             throw new IllegalStateException("Trying to use Scoring Matrix while none is set.");
         }
 
-        try {
-            int col = s1.length;
-            int row = s2.length;
+        int col = s1.length;
+        int row = s2.length;
 
-            int[][] scores = new int[col+1][row+1];
+        // Convert both sequences to matrix codes once, so each cell's score is a single array read.
+        // If no score is found for a pair, the default MISMATCH score is applied.
+        ScoringMatrix matrix = scoringMatrix.withDefault(MISMATCH);
+        if(useGotoh()) return gotoh(s1, s2, matrix).align();
+        if(useLinearSpace(col, row)) return new LinearSpaceTraceback(s1, s2, matrix, MATCH, MISMATCH, GAP, false).global();
 
-            // First, we need to fill in the rows and columns with cap penalties.
-            for(int i = 0; i <= col; i++) {
-                scores[i][0] = i * GAP;
-            }
+        byte[] codes1 = matrix.encode(s1), codes2 = matrix.encode(s2);
+        int[] table = matrix.scores;
 
-            for(int j = 0; j <= row; j++) {
-                scores[0][j] = j * GAP;
-            }
+        int width = row + 1;
+        int[] scores = BufferPool.take((col + 1) * width);
 
-            // Fill in the rest of the scores matrix
-            for(int i = 1; i <= col; i++) {
-                char c1 = s1[i - 1];
-
-                for(int j = 1; j <= row; j++) {
-                    char c2 = s2[j - 1];
-
-                    // This is the difference between the non-score matrix version and this version
-                    // Try to get the score. If no score is found, the default MISMATCH score is applied.
-                    int match_score = getScore(c1, c2, scoringMatrix);
-
-                    // Match or Mismatch?
-                    scores[i][j] = Math.max(Math.max(
-                                    // Match/Mismatch?
-                                    scores[i - 1][j - 1] + match_score,
-                                    // Gap in s1 (insertion)
-                                    scores[i][j-1] + GAP),
-                            // Gap in s2 (deletion)
-                            scores[i - 1][j] + GAP
-                    );
-                }
-            }
+        // First, we need to fill in the rows and columns with cap penalties.
+        for(int i = 0; i <= col; i++) {
+            scores[i * width] = i * GAP;
+        }
+
+        for(int j = 0; j <= row; j++) {
+            scores[j] = j * GAP;
+        }
+
+        // Fill in the rest of the scores matrix
+        for(int i = 1; i <= col; i++) {
+            int base = codes1[i - 1] * matrix.stride;
+            int above = (i - 1) * width, current = i * width;
+
+            for(int j = 1; j <= row; j++) {
+                int match_score = table[base + codes2[j - 1]];
 
-            return traceback(scoringMatrix,scores, s1, s2);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+                // Match or Mismatch?
+                scores[current + j] = Math.max(Math.max(
+                                // Match/Mismatch?
+                                scores[above + j - 1] + match_score,
+                                // Gap in s1 (insertion)
+                                scores[current + j - 1] + GAP),
+                        // Gap in s2 (deletion)
+                        scores[above + j] + GAP
+                );
+            }
         }
+
+        AlignmentResult alignment = traceback(matrix, codes1, codes2, scores, width, s1, s2);
+        BufferPool.give(scores);
+
+        return alignment;
+    }
+
+    // The matrix align() scores pairs with by default (with unscored pairs filled in), or null if MATCH and MISMATCH are used.
+    // For code that builds a global alignment a piece at a time and scores the ungapped pieces itself (see Chainer).
+    ScoringMatrix completeScoringMatrix() {
+        return scoringMatrix == null ? null : scoringMatrix.withDefault(MISMATCH);
+    }
+
+    // Affine gaps, bands need the three-state (Gotoh) aligner.
+    private boolean useGotoh() {
+        return GAP_OPEN != 0 || bandWidth >= 0;
+    }
+
+    private GotohAligner gotoh(char[] s1, char[] s2, ScoringMatrix matrix) {
+        int low = bandWidth < 0 ? -s1.length : bandDiagonal - bandWidth;
+        int high = bandWidth < 0 ? s2.length : bandDiagonal + bandWidth;
+        return new GotohAligner(s1, s2, matrix, MATCH, MISMATCH, GAP_OPEN, GAP, false, low, high, 0);
+    }
+
+    private void checkMutable() {
+        if(immutable) throw new UnsupportedOperationException("This aligner was built with a Builder and can't be changed.");
     }
 
-    private char[][] traceback(int[][] scores, char[] s1, char[] s2) {
+    private boolean useLinearSpace(int col, int row) {
+        return linearSpace || (long) (col + 1) * (row + 1) > MAX_MATRIX_CELLS;
+    }
+
+    // 'scores' is the flat score matrix, with 'width' scores per row.
+    private AlignmentResult traceback(int[] scores, int width, char[] s1, char[] s2) {
         int col = s1.length;
         int row = s2.length;
 
-        int index = col + row;
-        char[] maxAlignA = new char[index];
-        char[] maxAlignB = new char[index];
-
-        // Instead of creating a new variable, I'm just going to reuse index here for the traceback. It needs to be 1 less to be used for accessing array elements.
-        index--;
+        // The columns are collected as a CIGAR, from the end of the alignment back to the start.
+        CigarBuilder cigar = new CigarBuilder();
 
-        // Again, reusing col and row so I don't have to store additional values.
+        // Reusing col and row so I don't have to store additional values.
         while(col > 0 || row > 0) {
-            // If diagonal.
-            if(col > 0 && row > 0 && scores[col][row] == scores[col - 1][row - 1] + (s1[col - 1] == s2[row - 1] ? MATCH : MISMATCH)) {
-                maxAlignA[index] = s1[col - 1];
-                maxAlignB[index] = s2[row - 1];
+            int cell = col * width + row;
 
+            // If diagonal.
+            if(col > 0 && row > 0 && scores[cell] == scores[cell - width - 1] + (s1[col - 1] == s2[row - 1] ? MATCH : MISMATCH)) {
+                cigar.pair(s1[col - 1], s2[row - 1]);
                 col--;
                 row--;
-                index--;
             }
             // If deletion
-            else if(col > 0 && scores[col][row] == scores[col - 1][row] + GAP) {
-                maxAlignA[index] = s1[col - 1];
-                maxAlignB[index] = '-';
+            else if(col > 0 && scores[cell] == scores[cell - width] + GAP) {
+                cigar.add(AlignmentResult.DELETION);
                 col--;
-                index--;
             }
             // If insertion
             else {
-                maxAlignA[index] = '-';
-                maxAlignB[index] = s2[row - 1];
+                cigar.add(AlignmentResult.INSERTION);
                 row--;
-                index--;
             }
         }
 
-        // Create new arrays with only the alignment characters (i.e. no empty indices).
-        int len = s1.length + s2.length - index - 1;
-        char[] actualAlignA = new char[len];
-        char[] actualAlignB = new char[len];
-        System.arraycopy(maxAlignA, index + 1, actualAlignA, 0, actualAlignA.length);
-        System.arraycopy(maxAlignB, index + 1, actualAlignB, 0, actualAlignB.length);
-
-        return new char[][]{ actualAlignA, actualAlignB };
+        return cigar.build(s1, s2, 0, s1.length, 0, s2.length, scores[s1.length * width + s2.length]);
     }
 
-    private char[][] traceback(Map<String, Integer> scoring_matrix, int[][] scores, char[] s1, char[] s2) {
+    private AlignmentResult traceback(ScoringMatrix matrix, byte[] codes1, byte[] codes2, int[] scores, int width, char[] s1, char[] s2) {
         int col = s1.length;
         int row = s2.length;
 
-        int index = col + row;
-        char[] maxAlignA = new char[index];
-        char[] maxAlignB = new char[index];
+        CigarBuilder cigar = new CigarBuilder();
 
-        // Instead of creating a new variable, I'm just going to reuse index here for the traceback. It needs to be 1 less to be used for accessing array elements.
-        index--;
-
-        // Again, reusing col and row so I don't have to store additional values.
+        // Reusing col and row so I don't have to store additional values.
         while (col > 0 || row > 0) {
+            int cell = col * width + row;
+
             // If diagonal
             if (col > 0 && row > 0) {
-                char c1 = s1[col - 1];
-                char c2 = s2[row - 1];
-                int match_score = getScore(c1, c2, scoring_matrix);
+                int match_score = matrix.scores[codes1[col - 1] * matrix.stride + codes2[row - 1]];
 
-                if (scores[col][row] == scores[col - 1][row - 1] + match_score) {
-                    maxAlignA[index] = c1;
-                    maxAlignB[index] = c2;
+                if (scores[cell] == scores[cell - width - 1] + match_score) {
+                    cigar.pair(s1[col - 1], s2[row - 1]);
                     col--;
                     row--;
-                    index--;
                     continue; // Skip to next iteration since we’ve already handled this step
                 }
             }
 
             // If deletion
-            if (col > 0 && scores[col][row] == scores[col - 1][row] + GAP) {
-                maxAlignA[index] = s1[col - 1];
-                maxAlignB[index] = '-';
+            if (col > 0 && scores[cell] == scores[cell - width] + GAP) {
+                cigar.add(AlignmentResult.DELETION);
                 col--;
-                index--;
             }
             // If insertion
             else {
-                maxAlignA[index] = '-';
-                maxAlignB[index] = s2[row - 1];
+                cigar.add(AlignmentResult.INSERTION);
                 row--;
-                index--;
             }
         }
 
-
-        // Create new arrays with only the alignment characters (i.e. no empty indices).
-        int len = s1.length + s2.length - index - 1;
-        char[] actualAlignA = new char[len];
-        char[] actualAlignB = new char[len];
-        System.arraycopy(maxAlignA, index + 1, actualAlignA, 0, actualAlignA.length);
-        System.arraycopy(maxAlignB, index + 1, actualAlignB, 0, actualAlignB.length);
-
-        return new char[][]{ actualAlignA, actualAlignB };
-    }
-
-    private int getScore(char c1, char c2, Map<String, Integer> scoring_matrix) {
-        // This is the difference between the non-score matrix version and this version
-        // Try to get the score
-        Integer match_score = scoring_matrix.get("" + c1 + c2);
-
-        // If the above doesn't return a value, it means either c1, c2, or both are not in the map.
-        // Try different combinations with the wildcard character (*).
-        if(match_score != null) {
-            return match_score;
-        } else {
-            match_score = scoring_matrix.get(""  + '*' + c2);
-
-            if(match_score != null) {
-                return match_score;
-            } else {
-                match_score = scoring_matrix.get("" + c1 + '*');
-
-                if(match_score != null) {
-                    return match_score;
-                } else {
-                    return scoring_matrix.get("**");
-                }
-            }
-        }
+        return cigar.build(s1, s2, 0, s1.length, 0, s2.length, scores[s1.length * width + s2.length]);
     }
 
     // Getters and Setters below
@@ -321,19 +436,19 @@ public class NeedlemanWunsch {
      * Sets the Match score.
      * @param newValue The new score for matches.
      */
-    public void setMATCH(int newValue) { MATCH = newValue; }
+    public void setMATCH(int newValue) { checkMutable(); MATCH = newValue; }
 
     /**
      * Sets the Mismatch score. Mismatch scores should be negative.
      * @param newValue The new score for mismatches.
      */
-    public void setMISMATCH(int newValue) { MISMATCH = newValue; }
+    public void setMISMATCH(int newValue) { checkMutable(); MISMATCH = newValue; }
 
     /**
      * Sets the Gap score. Gap scores should be negative.
      * @param newValue The new score for gaps.
      */
-    public void setGAP(int newValue) { GAP = newValue; }
+    public void setGAP(int newValue) { checkMutable(); GAP = newValue; }
 
     /**
      * Gets the Match score.
@@ -354,10 +469,90 @@ public class NeedlemanWunsch {
     public int getGAP() { return GAP; }
 
     /**
-     * Sets the scoring matrix to a map provided by the user.
+     * Sets whether alignments are traced back in linear space (Hirschberg style) instead of from a full score matrix.
+     * The alignments are the same either way. Linear space takes about twice as long, but memory grows with the length of the query rather than the product of both lengths.
+     * Alignments too large for a full matrix (more than 2^26 cells) always use linear space.
+     * @param linearSpace True to always use linear space.
+     */
+    public void setLinearSpace(boolean linearSpace) { checkMutable(); this.linearSpace = linearSpace; }
+
+    /**
+     * Gets whether alignments are always traced back in linear space.
+     * @return True if linear space is always used.
+     */
+    public boolean isLinearSpace() { return linearSpace; }
+
+    /**
+     * Sets the Gap Open score, which is added once for every gap on top of the Gap score for each of its characters.
+     * A gap of length k scores GAP_OPEN + k * GAP. The default of 0 gives linear gaps, otherwise Gotoh's algorithm is used.
+     * @param newValue The new score for opening a gap.
+     */
+    public void setGAP_OPEN(int newValue) { checkMutable(); GAP_OPEN = newValue; }
+
+    /**
+     * Gets the Gap Open score.
+     * @return The current score for opening a gap.
+     */
+    public int getGAP_OPEN() { return GAP_OPEN; }
+
+    /**
+     * Only considers alignments that stay within a band of diagonals around the main diagonal, so only about (2 * width + 1) cells per character are computed.
+     * Banded alignments keep one byte per cell in the band for the traceback.
+     * A global alignment has to start and end at the corners, so the band is widened to include both of them.
+     * @param width How many diagonals either side of the main diagonal are included.
+     */
+    public void setBand(int width) { setBand(width, 0); }
+
+    /**
+     * Only considers alignments that stay within a band of diagonals around the given diagonal, such as the diagonal of a seed match.
+     * A character at position i in the subject and position j in the query is on diagonal j - i.
+     * Banded alignments keep one byte per cell in the band for the traceback.
+     * A global alignment has to start and end at the corners, so the band is widened to include both of them.
+     * @param width How many diagonals either side of the given diagonal are included.
+     * @param diagonal The diagonal at the centre of the band.
+     */
+    public void setBand(int width, int diagonal) {
+        checkMutable();
+        if(width < 0) throw new IllegalArgumentException("The band width can't be negative.");
+
+        bandWidth = width;
+        bandDiagonal = diagonal;
+    }
+
+    /**
+     * Removes the band, so every cell is considered again.
+     */
+    public void removeBand() { checkMutable(); bandWidth = -1; }
+
+    /**
+     * Gets the band width.
+     * @return The number of diagonals either side of the band's centre, or -1 if there is no band.
+     */
+    public int getBandWidth() { return bandWidth; }
+
+    /**
+     * Gets the diagonal at the centre of the band.
+     * @return The band's diagonal.
+     */
+    public int getBandDiagonal() { return bandDiagonal; }
+
+    /**
+     * Sets the scoring matrix to a map provided by the user. The map is compiled into a ScoringMatrix.
+     * Pairs with no score (directly or through a '*' wildcard) use the Mismatch score.
      * @param matrix A map of character pairs (as a string) and the associated score for each pair.
      */
     public void setScoringMatrix(Map<String, Integer> matrix) {
+        checkMutable();
+        scoringMatrix = matrix == null ? null : ScoringMatrix.fromMap(matrix);
+    }
+
+    /**
+     * Sets the scoring matrix, e.g. ScoringMatrix.BLOSUM62.
+     * Pairs with no score (directly or through a '*' wildcard) use the Mismatch score.
+     * @param matrix The compiled scoring matrix.
+     */
+    public void setScoringMatrix(ScoringMatrix matrix) {
+        checkMutable();
         scoringMatrix = matrix;
     }
 
@@ -368,6 +563,125 @@ public class NeedlemanWunsch {
      * @throws IOException
      */
     public void loadScoringMatrix(String path) throws IOException {
-        scoringMatrix = MatrixLoader.load(path);
+        checkMutable();
+        scoringMatrix = ScoringMatrix.load(path);
+    }
+
+    /**
+     * Builds a NeedlemanWunsch aligner whose settings can't be changed afterwards, so it can be shared between threads.
+     * Each method sets the same value as the matching setter on NeedlemanWunsch, and anything not set keeps its default.
+     */
+    public static final class Builder {
+        private int match = 1;
+        private int mismatch = -1;
+        private int gap = -1;
+        private ScoringMatrix scoringMatrix = null;
+        private boolean linearSpace = false;
+        private int gapOpen = 0;
+        private int bandWidth = -1;
+        private int bandDiagonal = 0;
+
+        private Builder() {}
+
+        /**
+         * Sets the Match score.
+         * @param score The score for matches.
+         * @return This builder.
+         */
+        public Builder match(int score) {
+            match = score;
+            return this;
+        }
+
+        /**
+         * Sets the Mismatch score. Mismatch scores should be negative.
+         * @param score The score for mismatches.
+         * @return This builder.
+         */
+        public Builder mismatch(int score) {
+            mismatch = score;
+            return this;
+        }
+
+        /**
+         * Sets the Gap score. Gap scores should be negative.
+         * @param score The score for each character of a gap.
+         * @return This builder.
+         */
+        public Builder gap(int score) {
+            gap = score;
+            return this;
+        }
+
+        /**
+         * Sets the Gap Open score (see setGAP_OPEN()).
+         * @param score The score for opening a gap.
+         * @return This builder.
+         */
+        public Builder gapOpen(int score) {
+            gapOpen = score;
+            return this;
+        }
+
+        /**
+         * Sets the scoring matrix, e.g. ScoringMatrix.BLOSUM62. Pairs with no score use the Mismatch score.
+         * @param matrix The compiled scoring matrix, or null to use Match and Mismatch scores.
+         * @return This builder.
+         */
+        public Builder scoringMatrix(ScoringMatrix matrix) {
+            scoringMatrix = matrix;
+            return this;
+        }
+
+        /**
+         * Sets the scoring matrix from a map of character pairs to scores. The map is compiled into a ScoringMatrix.
+         * @param matrix A map of character pairs (as a string) and the associated score for each pair, or null to use Match and Mismatch scores.
+         * @return This builder.
+         */
+        public Builder scoringMatrix(Map<String, Integer> matrix) {
+            scoringMatrix = matrix == null ? null : ScoringMatrix.fromMap(matrix);
+            return this;
+        }
+
+        /**
+         * Sets whether alignments are always traced back in linear space (see setLinearSpace()).
+         * @param linearSpace True to always use linear space.
+         * @return This builder.
+         */
+        public Builder linearSpace(boolean linearSpace) {
+            this.linearSpace = linearSpace;
+            return this;
+        }
+
+        /**
+         * Only considers alignments within a band of diagonals around the main diagonal (see setBand()).
+         * @param width How many diagonals either side of the main diagonal are included.
+         * @return This builder.
+         */
+        public Builder band(int width) {
+            return band(width, 0);
+        }
+
+        /**
+         * Only considers alignments within a band of diagonals around the given diagonal (see setBand()).
+         * @param width How many diagonals either side of the given diagonal are included.
+         * @param diagonal The diagonal at the centre of the band.
+         * @return This builder.
+         */
+        public Builder band(int width, int diagonal) {
+            if(width < 0) throw new IllegalArgumentException("The band width can't be negative.");
+
+            bandWidth = width;
+            bandDiagonal = diagonal;
+            return this;
+        }
+
+        /**
+         * Builds the aligner. The builder can be changed and used again afterwards without affecting it.
+         * @return A NeedlemanWunsch aligner with these settings.
+         */
+        public NeedlemanWunsch build() {
+            return new NeedlemanWunsch(this);
+        }
     }
 }
@@ -0,0 +1,136 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+
+// Bit-vector form of a pattern used by the bit-parallel (Myers/Hyyrö) kernels.
+// For every distinct character of the pattern it stores one 64-bit word per block of 64 pattern positions, with bit i set wherever pattern[i] == c.
+// Characters are kept in a small open-addressing table, as a full 65536 entry table per pattern would cost more than the DP it replaces.
+// ASCII characters also get their first word in a direct lookup table, as get() is called once per text character by the single word kernels.
+final class PatternMask {
+    private static final int EMPTY = -1;
+
+    private int length;  // Number of pattern characters compiled.
+    private int blocks;  // Number of 64-bit words per character.
+
+    private int[] keys = new int[16];  // The character stored in each slot (or EMPTY).
+    private int[] offsets = new int[16]; // Where each character's words start in 'masks'.
+    private int shift = 28; // 32 - log2(keys.length), used by the multiplicative hash.
+    private int[] used = new int[16]; // Slots filled by the last compile, so they can be cleared without sweeping the whole table.
+    private long[] masks = new long[64];
+    private final long[] ascii = new long[128]; // First word of each ASCII character, 0 if it isn't in the pattern.
+    private int distinct;
+
+    PatternMask() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Builds the masks for pattern[from, to). Arrays from a previous compile are reused when they are large enough.
+     */
+    void compile(char[] pattern, int from, int to) {
+        // Clear out the previous pattern.
+        for(int d = 0; d < distinct; d++) {
+            int key = keys[used[d]];
+            if(key < ascii.length) ascii[key] = 0L;
+            keys[used[d]] = EMPTY;
+        }
+
+        length = to - from;
+        blocks = (length + 63) >>> 6;
+        distinct = 0;
+
+        // At most 65536 distinct chars can appear, so the table never needs to be bigger than twice that.
+        int capacity = 16;
+        int wanted = 2 * Math.min(length, 65536);
+        while(capacity < wanted) capacity <<= 1;
+
+        if(keys.length < capacity) {
+            keys = new int[capacity];
+            offsets = new int[capacity];
+            used = new int[capacity / 2];
+            Arrays.fill(keys, EMPTY);
+        }
+        shift = 32 - Integer.numberOfTrailingZeros(keys.length);
+
+        for(int i = from; i < to; i++) {
+            char c = pattern[i];
+            int offset = insert(c);
+            int pos = i - from;
+            masks[offset + (pos >>> 6)] |= 1L << pos; // Shifts in Java only use the lowest 6 bits, so this is pos % 64.
+
+            if(pos < 64 && c < ascii.length) ascii[c] |= 1L << pos;
+        }
+    }
+
+    /**
+     * Builds the masks for the full pattern.
+     */
+    void compile(char[] pattern) {
+        compile(pattern, 0, pattern.length);
+    }
+
+    // Finds the slot for c, adding it (with all-zero words) if it is not there yet. Returns the offset of its first word.
+    private int insert(char c) {
+        int mask = keys.length - 1;
+        int i = hash(c);
+
+        while(keys[i] != EMPTY) {
+            if(keys[i] == c) return offsets[i];
+            i = (i + 1) & mask;
+        }
+
+        int offset = distinct * blocks;
+        if(offset + blocks > masks.length) masks = Arrays.copyOf(masks, Math.max(masks.length * 2, offset + blocks));
+        Arrays.fill(masks, offset, offset + blocks, 0L);
+
+        keys[i] = c;
+        offsets[i] = offset;
+        used[distinct++] = i;
+
+        return offset;
+    }
+
+    private int hash(char c) {
+        return (c * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Offset of the first word for c, or -1 if c does not appear in the pattern. Used with word() by the multi-block kernels.
+     */
+    int find(char c) {
+        int mask = keys.length - 1;
+        int i = hash(c);
+
+        int k;
+        while((k = keys[i]) != EMPTY) {
+            if(k == c) return offsets[i];
+            i = (i + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * The match vector of c for the first block (the whole pattern when it has at most 64 characters).
+     */
+    long get(char c) {
+        if(c < ascii.length) return ascii[c];
+
+        int offset = find(c);
+        return offset < 0 ? 0L : masks[offset];
+    }
+
+    /**
+     * The match vector for the given block, using an offset returned by find().
+     */
+    long word(int offset, int block) {
+        return offset < 0 ? 0L : masks[offset + block];
+    }
+
+    // The length of the largest array, to compare against Workspace's retain limit.
+    int capacity() { return Math.max(keys.length, masks.length); }
+
+    int length() { return length; }
+
+    int blocks() { return blocks; }
+}
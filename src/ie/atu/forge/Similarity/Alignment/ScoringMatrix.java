@@ -0,0 +1,202 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import ie.atu.forge.ToolBox.MatrixLoader;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A substitution matrix compiled for use inside alignment loops.
+ * Each character of the matrix's alphabet is given a small integer code, and scores are stored in a flat table indexed by the codes of the 2 characters.
+ * Characters outside the alphabet share one extra code. Wildcard ('*') entries are resolved when the matrix is compiled, in the same order as a map lookup would try them:
+ * the exact pair, then '*' for the first character, then '*' for the second.<br><br>
+ *
+ * Pairs that don't resolve to anything (such as 2 characters outside the alphabet) are left unset, and are filled in with the aligner's mismatch score by withDefault().
+ * "**" is only the score of '*' against itself, never a fallback for other pairs.
+ * The standard BLOSUM45, BLOSUM62 and PAM250 matrices are provided as constants. A matrix is never modified after it is compiled, so it can be shared between threads.<br><br>
+ *
+ * Scoring Matrices can be found <a href="https://ftp.ncbi.nih.gov/blast/matrices/">here</a>.
+ */
+public final class ScoringMatrix {
+    /** BLOSUM45, for more distantly related protein sequences. */
+    public static final ScoringMatrix BLOSUM45 = parse(StandardMatrices.BLOSUM45);
+    /** BLOSUM62, the usual default for protein sequences. */
+    public static final ScoringMatrix BLOSUM62 = parse(StandardMatrices.BLOSUM62);
+    /** PAM250, for distantly related protein sequences. */
+    public static final ScoringMatrix PAM250 = parse(StandardMatrices.PAM250);
+
+    private static final char WILDCARD = '*';
+    private static final int MAX_ALPHABET = 127; // Codes (including the one for unknown characters) must fit in a byte.
+
+    private final char[] alphabet; // Sorted. A character's code is its index, and unknown characters get alphabet.length.
+    private final byte[] asciiCodes = new byte[128];
+    final int stride; // alphabet.length + 1
+    final int[] scores; // scores[code1 * stride + code2]
+    private final boolean[] unset; // Null once every pair has a score.
+
+    private ScoringMatrix(char[] alphabet, int[] scores, boolean[] unset) {
+        this.alphabet = alphabet;
+        this.stride = alphabet.length + 1;
+        this.scores = scores;
+        this.unset = unset;
+
+        Arrays.fill(asciiCodes, (byte) alphabet.length);
+        for(int i = 0; i < alphabet.length; i++) {
+            if(alphabet[i] < 128) asciiCodes[alphabet[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * Compiles a map of character pairs to scores, such as the one returned by MatrixLoader.
+     * Keys are 2 character strings (the subject character followed by the query character). Keys of any other length are ignored.
+     *
+     * @param matrix A map of character pairs (as a string) and the associated score for each pair.
+     * @return The compiled matrix.
+     */
+    public static ScoringMatrix fromMap(Map<String, Integer> matrix) {
+        if(matrix == null) throw new IllegalArgumentException("The provided matrix is null.");
+
+        TreeSet<Character> symbols = new TreeSet<>();
+        for(String key: matrix.keySet()) {
+            if(key == null || key.length() != 2) continue;
+            symbols.add(key.charAt(0));
+            symbols.add(key.charAt(1));
+        }
+        if(symbols.size() > MAX_ALPHABET) throw new IllegalArgumentException("Scoring matrices can have at most " + MAX_ALPHABET + " characters.");
+
+        char[] alphabet = new char[symbols.size()];
+        int n = 0;
+        for(char c: symbols) alphabet[n++] = c;
+
+        // Code n stands in for every character outside the alphabet. No key can contain it, so only the wildcard entries apply to it.
+        int stride = n + 1;
+        int[] scores = new int[stride * stride];
+        boolean[] unset = new boolean[stride * stride];
+        boolean complete = true;
+
+        for(int a = 0; a <= n; a++) {
+            for(int b = 0; b <= n; b++) {
+                Integer score = null;
+
+                if(a < n && b < n) score = matrix.get("" + alphabet[a] + alphabet[b]);
+                if(score == null && b < n) score = matrix.get("" + WILDCARD + alphabet[b]);
+                if(score == null && a < n) score = matrix.get("" + alphabet[a] + WILDCARD);
+
+                if(score == null) {
+                    unset[a * stride + b] = true;
+                    complete = false;
+                } else {
+                    scores[a * stride + b] = score;
+                }
+            }
+        }
+
+        return new ScoringMatrix(alphabet, scores, complete ? null : unset);
+    }
+
+    /**
+     * Loads and compiles a scoring matrix from a text file in the NCBI format.
+     * Scoring matrices can be found <a href="https://ftp.ncbi.nih.gov/blast/matrices/">here</a>.
+     *
+     * @param path The path to the text file containing the scoring matrix.
+     * @return The compiled matrix.
+     * @throws IOException
+     */
+    public static ScoringMatrix load(String path) throws IOException {
+        Map<String, Integer> matrix = MatrixLoader.load(path);
+        if(matrix == null) throw new IOException("Could not load the scoring matrix: " + path);
+
+        return fromMap(matrix);
+    }
+
+    // Parses a matrix in the NCBI text format: a header row of column characters, then one row per character starting with the row character.
+    // Keys are built as column + row, the same as MatrixLoader.
+    private static ScoringMatrix parse(String text) {
+        String[] lines = text.strip().split("\n");
+        String[] columns = lines[0].trim().split("\\s+");
+
+        Map<String, Integer> matrix = new HashMap<>();
+        for(int r = 1; r < lines.length; r++) {
+            String[] row = lines[r].trim().split("\\s+");
+            for(int c = 1; c < row.length; c++) {
+                matrix.put(columns[c - 1] + row[0], Integer.parseInt(row[c]));
+            }
+        }
+
+        return fromMap(matrix);
+    }
+
+    /**
+     * Gets the score for aligning 2 characters.
+     *
+     * @param c1 The subject character.
+     * @param c2 The query character.
+     * @return The score. Pairs the matrix has no score for (see withDefault()) return 0.
+     */
+    public int score(char c1, char c2) {
+        return scores[code(c1) * stride + code(c2)];
+    }
+
+    /**
+     * Gets the code for a character, which indexes the matrix's score table.
+     *
+     * @param c The character.
+     * @return The character's position in the alphabet, or the alphabet's size for characters outside it.
+     */
+    public int code(char c) {
+        if(c < 128) return asciiCodes[c];
+
+        int i = Arrays.binarySearch(alphabet, c);
+        return i < 0 ? alphabet.length : i;
+    }
+
+    /**
+     * Converts a sequence into codes, so the scores for each pair can be read straight from the table.
+     *
+     * @param s The sequence.
+     * @return The code of each character.
+     */
+    public byte[] encode(char[] s) {
+        byte[] codes = new byte[s.length];
+        for(int i = 0; i < s.length; i++) codes[i] = (byte) code(s[i]);
+        return codes;
+    }
+
+    /**
+     * Whether every pair of characters has a score, either directly or through a wildcard.
+     *
+     * @return True if the matrix has a score for every pair.
+     */
+    public boolean isComplete() {
+        return unset == null;
+    }
+
+    /**
+     * Fills in the pairs without a score.
+     *
+     * @param score The score for pairs the matrix has no score for (the aligners use their mismatch score).
+     * @return This matrix if it is already complete, otherwise a complete copy.
+     */
+    public ScoringMatrix withDefault(int score) {
+        if(unset == null) return this;
+
+        int[] filled = scores.clone();
+        for(int i = 0; i < filled.length; i++) {
+            if(unset[i]) filled[i] = score;
+        }
+
+        return new ScoringMatrix(alphabet, filled, null);
+    }
+
+    /**
+     * Gets the characters the matrix has scores for (including '*' if it has wildcard entries).
+     *
+     * @return The alphabet, in sorted order.
+     */
+    public String getAlphabet() {
+        return new String(alphabet);
+    }
+}
@@ -0,0 +1,4 @@
+package ie.atu.forge.Similarity.Alignment;
+
+// A record for each seed: a position where the query and the subject share a kmer (or spaced seed).
+record Seed (int queryIndex, int subjectIndex) {}
@@ -1,10 +1,17 @@
 package ie.atu.forge.Similarity.Alignment;
 
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.StructuredTaskScope;
-
-// A record for each seed.
-record Seed (int queryIndex, int subjectIndex) {}
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  *     A 2 stage local sequence matching algorithm.
@@ -18,6 +25,10 @@ record Seed (int queryIndex, int subjectIndex) {}
  *
  */
 public class SeedAndExtend {
+    private static final int GRAIN = 256; // Seeds extended by a task before it stops splitting.
+    private static final int DEFAULT_MAX_GAP = 5000; // Longest gap between chained seeds, as in minimap2.
+    private static final NeedlemanWunsch GAP_ALIGNER = NeedlemanWunsch.builder().linearSpace(true).build(); // Fills in the gaps between chained seeds.
+
     /**
      * Finds alignments between a subject and a query string. Begins with a seeding phase, where short exact matching sequences are found.
      * The length of these seeds is controlled by "kmerLength".
@@ -35,18 +46,26 @@ public class SeedAndExtend {
      * @throws Exception
      */
     public static Extension[] align(String subject, String query, int kmerLength, SmithWaterman smithWaterman, int windowSize) throws Exception {   // smithWaterman - controls whether to use Greedy or Smith-Waterman extension. Null = Greedy.
-        if(subject == null || subject.isEmpty() || query == null || query.isEmpty() || kmerLength <= 0) return new Extension[0]; // No alignments can be made on empty strings. No seeds can be generated as kmerLength is <= 0.
-
-        List<Seed> seeds = seed(subject, query, kmerLength);
-        Extension[] extensions;
+        if(kmerLength <= 0) return new Extension[0]; // No seeds can be generated as kmerLength is <= 0.
 
-        if(smithWaterman != null) {
-            extensions = swExtend(seeds, subject, query, kmerLength, smithWaterman, windowSize);
-        } else {
-            extensions = extendSeeds(seeds, subject, query, kmerLength);
-        }
+        return align(subject, query, SeedScheme.kmers(kmerLength), smithWaterman, windowSize);
+    }
 
-        return extensions;
+    /**
+     * Finds alignments between a subject and a query string, the same as align(String, String, int, SmithWaterman, int), but with the seeds described by a SeedScheme.
+     * Spaced seeds and minimizers find fewer, longer-range seeds than every kmer, and a minimizer index takes a fraction of the memory for long subjects.
+     * Seeds are extended from their full span, so a greedy extension from a spaced seed can include mismatches where its mask has a '0'.
+     *
+     * @param subject The subject string.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @param smithWaterman A SmithWaterman object to use for extension.
+     * @param windowSize The length of text around the seed to be passed to the SmithWaterman object during extension.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     * @throws Exception
+     */
+    public static Extension[] align(String subject, String query, SeedScheme seeds, SmithWaterman smithWaterman, int windowSize) throws Exception {
+        return alignText(subject, query, seeds, smithWaterman, windowSize);
     }
 
     /**
@@ -64,65 +83,354 @@ public class SeedAndExtend {
      * @return An array of extensions (alignments) found between the subject and the query.
      */
     public static Extension[] align(String subject, String query, int kmerLength) {
-        if(subject == null || subject.isEmpty() || query == null || query.isEmpty() || kmerLength <= 0) return new Extension[0];
+        if(kmerLength <= 0) return new Extension[0];
 
-        List<Seed> seeds = seed(subject, query, kmerLength);
+        return align(subject, query, SeedScheme.kmers(kmerLength));
+    }
 
-        return extendSeeds(seeds, subject, query, kmerLength);
+    /**
+     * Finds alignments between a subject and a query string, the same as align(String, String, int), but with the seeds described by a SeedScheme.
+     * Seeds are extended greedily from their full span, so an extension from a spaced seed can include mismatches where its mask has a '0'.
+     *
+     * @param subject The subject string.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     */
+    public static Extension[] align(String subject, String query, SeedScheme seeds) {
+        return alignText(subject, query, seeds);
     }
-    // The seeding part should find exact matching parts of the 2 sequences.
-    private static List<Seed> seed(String subject, String query, int kmerLength) {
-        // The value needs to be a list as the same combination may appear multiple times.
-        Map<String, List<Integer>> kmerMap = new HashMap<>();
 
-        // Enter subject kmers into the map for matching.
-        for(int i = 0; i <= subject.length() - kmerLength; i++) {
-            kmerMap.computeIfAbsent(subject.substring(i, i + kmerLength), v -> new ArrayList<>()).add(i);
+    /**
+     * Finds alignments between an indexed subject and a query string, the same as align(String, String, int, SmithWaterman, int).
+     * The seeds are looked up in the index instead of indexing the subject again, so aligning many queries against one subject only pays for the index once.
+     *
+     * @param index The index of the subject string.
+     * @param query The query string.
+     * @param kmerLength The initial seed size.
+     * @param smithWaterman A SmithWaterman object to use for extension.
+     * @param windowSize The length of text around the seed to be passed to the SmithWaterman object during extension.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     * @throws Exception
+     */
+    public static Extension[] align(SubjectIndex index, String query, int kmerLength, SmithWaterman smithWaterman, int windowSize) throws Exception {
+        if(smithWaterman == null) return align(index, query, kmerLength);
+        if(index == null || index.length() == 0 || query == null || query.isEmpty() || kmerLength <= 0) return new Extension[0];
+
+        List<Seed> seeds = index.seeds(query.toCharArray(), kmerLength);
+
+        return swExtend(seeds, index.text(), query, kmerLength, smithWaterman, windowSize);
+    }
+
+    /**
+     * Finds alignments between an indexed subject and a query string, the same as align(String, String, int), using greedy no-gap extension.
+     * Greedily extending a seed as far as it goes gives a maximal exact match, so the matches longer than a kmer are read straight from the index (see SubjectIndex.maximalMatches())
+     * instead of extending every seed. Repeated kmers don't get extended over and over again.
+     *
+     * @param index The index of the subject string.
+     * @param query The query string.
+     * @param kmerLength The initial seed size.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     */
+    public static Extension[] align(SubjectIndex index, String query, int kmerLength) {
+        if(index == null || index.length() == 0 || query == null || query.isEmpty() || kmerLength <= 0) return new Extension[0];
+
+        CharSequence subject = index.text();
+        List<MaximalMatch> matches = index.maximalMatches(query, kmerLength + 1); // Extensions no longer than a kmer are dropped (see filterExtensions()).
+        Extension[] extensions = new Extension[matches.size()];
+        for(int i = 0; i < extensions.length; i++) {
+            MaximalMatch match = matches.get(i);
+            extensions[i] = new Extension(match.subjectPos(), match.queryPos(), subject.subSequence(match.subjectPos(), match.subjectPos() + match.length()).toString());
         }
 
-        List<Seed> seeds = new ArrayList<>();
+        return extensions;
+    }
+
+    /**
+     * Chains collinear seeds into long alignments, instead of extending each seed on its own. Seeds that appear in the same order in both strings,
+     * with gaps no longer than 5000 characters between them, are joined into a chain, and only the gaps between consecutive seeds are aligned (globally, with linear space).
+     * Comparing 2 long, similar documents gives a few long alignments rather than thousands of separate local hits.
+     * Chains that score at least one more than the seed span are returned (the same as extensions longer than a kmer).
+     *
+     * @param subject The subject string.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @return The chains, best first.
+     */
+    public static Chain[] chain(String subject, String query, SeedScheme seeds) {
+        if(seeds == null) throw new IllegalArgumentException("The provided seed scheme is null.");
 
-        // Find all matches of query kmers with subject map. Make seeds from them.
-        for(int i = 0; i <= query.length() - kmerLength; i++) {
-            List<Integer> match = kmerMap.get(query.substring(i, i + kmerLength));
+        return chain(subject, query, seeds, GAP_ALIGNER, DEFAULT_MAX_GAP, seeds.span() + 1);
+    }
 
-            if(match != null) {
-                for(Integer index: match) {
-                    seeds.add(new Seed(i, index));
-                }
-            }
+    /**
+     * Chains collinear seeds into long alignments, instead of extending each seed on its own.
+     * Seeds are chained with a dynamic programming pass over the seeds sorted by subject position, as in minimap2: each seed is joined to the best earlier seed that comes before it
+     * in both strings, scoring the characters the seeds add less a penalty that grows with the difference between the 2 gaps.
+     * The alignment through each chain pairs up the characters of its seeds, fills in the gaps between them with the given aligner, and extends both ends through exact matches.
+     *
+     * @param subject The subject string.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @param aligner The aligner used to fill in the gaps between seeds. Its scores are also used to score the chain's alignment.
+     * @param maxGap The longest gap (in either string) allowed between consecutive seeds in a chain.
+     * @param minScore The lowest chaining score a chain can have to be returned.
+     * @return The chains, best first.
+     */
+    public static Chain[] chain(String subject, String query, SeedScheme seeds, NeedlemanWunsch aligner, int maxGap, int minScore) {
+        return chainText(subject, query, seeds, aligner, maxGap, minScore);
+    }
+
+    /**
+     * Finds alignments between a subject stored outside the heap (such as a memory-mapped file) and a query string, the same as align(String, String, SeedScheme).
+     * The subject is read one byte per character (ASCII or ISO-8859-1, e.g. a reference sequence) straight from the segment. Seeds are indexed over the segment in place,
+     * and extensions only copy the characters they return, so the subject is never decoded into a String.
+     * Extensions run on the common ForkJoinPool, so the segment must be readable from other threads (e.g. mapped with a shared or automatic Arena).
+     *
+     * @param subject The subject's bytes. Subjects can be up to 2^31 - 1 bytes long.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     */
+    public static Extension[] align(MemorySegment subject, String query, SeedScheme seeds) {
+        return alignText(subject == null ? null : new ByteText(subject), query, seeds);
+    }
+
+    /**
+     * Finds alignments between a subject stored outside the heap (such as a memory-mapped file) and a query string, the same as align(String, String, SeedScheme, SmithWaterman, int).
+     * The subject is read one byte per character (ASCII or ISO-8859-1), and only the window around each seed is copied for the Smith-Waterman extension.
+     * Extensions run on the common ForkJoinPool, so the segment must be readable from other threads (e.g. mapped with a shared or automatic Arena).
+     *
+     * @param subject The subject's bytes. Subjects can be up to 2^31 - 1 bytes long.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @param smithWaterman A SmithWaterman object to use for extension.
+     * @param windowSize The length of text around the seed to be passed to the SmithWaterman object during extension.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     * @throws Exception
+     */
+    public static Extension[] align(MemorySegment subject, String query, SeedScheme seeds, SmithWaterman smithWaterman, int windowSize) throws Exception {
+        return alignText(subject == null ? null : new ByteText(subject), query, seeds, smithWaterman, windowSize);
+    }
+
+    /**
+     * Chains collinear seeds between a subject stored outside the heap (such as a memory-mapped file) and a query string, the same as chain(String, String, SeedScheme).
+     * The subject is read one byte per character (ASCII or ISO-8859-1). The chains' alignments render from the segment, so it must stay open while they're used.
+     *
+     * @param subject The subject's bytes. Subjects can be up to 2^31 - 1 bytes long.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @return The chains, best first.
+     */
+    public static Chain[] chain(MemorySegment subject, String query, SeedScheme seeds) {
+        if(seeds == null) throw new IllegalArgumentException("The provided seed scheme is null.");
+
+        return chainText(subject == null ? null : new ByteText(subject), query, seeds, GAP_ALIGNER, DEFAULT_MAX_GAP, seeds.span() + 1);
+    }
+
+    /**
+     * Finds alignments between a subject file and a query string, the same as align(String, String, SeedScheme).
+     * The file is memory-mapped rather than read onto the heap, and read one byte per character (ASCII or ISO-8859-1, e.g. a reference sequence).
+     * The mapping is released once it's no longer used. To align many queries against one file, map it once and use align(MemorySegment, String, SeedScheme).
+     *
+     * @param subject The subject file. Files can be up to 2^31 - 1 bytes long.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     * @throws IOException
+     */
+    public static Extension[] align(Path subject, String query, SeedScheme seeds) throws IOException {
+        return align(map(subject), query, seeds);
+    }
+
+    /**
+     * Finds alignments between a subject file and a query string, the same as align(String, String, SeedScheme, SmithWaterman, int).
+     * The file is memory-mapped rather than read onto the heap, and read one byte per character (ASCII or ISO-8859-1).
+     *
+     * @param subject The subject file. Files can be up to 2^31 - 1 bytes long.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @param smithWaterman A SmithWaterman object to use for extension.
+     * @param windowSize The length of text around the seed to be passed to the SmithWaterman object during extension.
+     * @return An array of extensions (alignments) found between the subject and the query.
+     * @throws Exception
+     */
+    public static Extension[] align(Path subject, String query, SeedScheme seeds, SmithWaterman smithWaterman, int windowSize) throws Exception {
+        return align(map(subject), query, seeds, smithWaterman, windowSize);
+    }
+
+    /**
+     * Chains collinear seeds between a subject file and a query string, the same as chain(String, String, SeedScheme).
+     * The file is memory-mapped rather than read onto the heap, and read one byte per character (ASCII or ISO-8859-1).
+     * The chains' alignments render from the mapping, which is kept until they're no longer used.
+     *
+     * @param subject The subject file. Files can be up to 2^31 - 1 bytes long.
+     * @param query The query string.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @return The chains, best first.
+     * @throws IOException
+     */
+    public static Chain[] chain(Path subject, String query, SeedScheme seeds) throws IOException {
+        return chain(map(subject), query, seeds);
+    }
+
+    /**
+     * Aligns many queries against one subject, the same as calling align(String, String, SeedScheme) for each of them, but indexing the subject only once.
+     * Queries are aligned in parallel on the common ForkJoinPool, which also runs each query's extensions, so the machine's cores are shared
+     * between queries rather than each query trying to use all of them.<br><br>
+     *
+     * Each query's alignments are passed to the callback as soon as they're found, along with the query's position in the list.
+     * The callback is called exactly once per query, but in no set order and from several threads at once, so it must be thread safe.
+     *
+     * @param subject The subject string.
+     * @param queries The query strings. Null or empty queries get no alignments.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @param results Called with each query's index and its array of extensions.
+     */
+    public static void alignAll(String subject, List<String> queries, SeedScheme seeds, BiConsumer<Integer, Extension[]> results) {
+        ForkJoinPool.commonPool().invoke(queryTask(subject, queries, seeds, null, 0, results));
+    }
+
+    /**
+     * Aligns many queries against one subject, the same as calling align(String, String, SeedScheme, SmithWaterman, int) for each of them, but indexing the subject only once.
+     * See alignAll(String, List, SeedScheme, BiConsumer) for how the queries are run and the callback is called.
+     * The SmithWaterman object is shared between queries, as it is between the seeds of one query.
+     *
+     * @param subject The subject string.
+     * @param queries The query strings. Null or empty queries get no alignments.
+     * @param seeds The shape of the seeds, and which positions get one.
+     * @param smithWaterman A SmithWaterman object to use for extension.
+     * @param windowSize The length of text around the seed to be passed to the SmithWaterman object during extension.
+     * @param results Called with each query's index and its array of extensions.
+     * @throws Exception
+     */
+    public static void alignAll(String subject, List<String> queries, SeedScheme seeds, SmithWaterman smithWaterman, int windowSize, BiConsumer<Integer, Extension[]> results) throws Exception {
+        if(smithWaterman == null) {
+            alignAll(subject, queries, seeds, results);
+            return;
+        }
+
+        QueryTask task = queryTask(subject, queries, seeds, smithWaterman, windowSize, results);
+        try {
+            ForkJoinPool.commonPool().invoke(task);
+        } catch (RuntimeException e) {
+            throw new Exception(e);
         }
+    }
+
+    // Indexes the subject for a batch of queries. Every query is looked up in the same index, which is only read once it's built.
+    private static QueryTask queryTask(CharSequence subject, List<String> queries, SeedScheme seeds, SmithWaterman smithWaterman, int windowSize, BiConsumer<Integer, Extension[]> results) {
+        if(seeds == null) throw new IllegalArgumentException("The provided seed scheme is null.");
+        if(queries == null) throw new IllegalArgumentException("The provided list of queries is null.");
+        if(results == null) throw new IllegalArgumentException("The provided callback is null.");
 
-        return seeds;
+        KmerIndex index = new KmerIndex(subject == null ? "" : subject, seeds);
+        String[] batch = queries.toArray(new String[0]);
+
+        return new QueryTask(index, subject, batch, 0, batch.length, seeds.span(), smithWaterman, windowSize, results);
     }
 
-    // Greedy ungapped extension. Continues to extend both left and right as long as they are still exact matches.
-    // Since this is a greedy no-gap implementation, both the subject match and query match will be the same.
-    private static Extension[] extendSeeds(List<Seed> seeds, String subject, String query, int kmerLength) {
-        try(var scope = new StructuredTaskScope.ShutdownOnFailure()) {
-            List<StructuredTaskScope.Subtask<Extension>> tasks = new ArrayList<>();
-
-            for(Seed seed: seeds) {
-                // Each seed can be checked independently.
-                var task = scope.fork(() -> extendSeed(seed, subject, query, kmerLength));
-                tasks.add(task);
+    // Splits the queries down to one per task. A query is far more work than a task, and queries differ too much in length to batch them evenly.
+    @SuppressWarnings("serial")
+    private static final class QueryTask extends RecursiveAction {
+        private final KmerIndex index;
+        private final CharSequence subject;
+        private final String[] queries;
+        private final int from, to;
+        private final int kmerLength;
+        private final SmithWaterman smithWaterman;
+        private final int windowSize;
+        private final BiConsumer<Integer, Extension[]> results;
+
+        QueryTask(KmerIndex index, CharSequence subject, String[] queries, int from, int to, int kmerLength, SmithWaterman smithWaterman, int windowSize, BiConsumer<Integer, Extension[]> results) {
+            this.index = index;
+            this.subject = subject;
+            this.queries = queries;
+            this.from = from;
+            this.to = to;
+            this.kmerLength = kmerLength;
+            this.smithWaterman = smithWaterman;
+            this.windowSize = windowSize;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if(from == to) return;
+            if(to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new QueryTask(index, subject, queries, from, mid, kmerLength, smithWaterman, windowSize, results),
+                        new QueryTask(index, subject, queries, mid, to, kmerLength, smithWaterman, windowSize, results));
+                return;
             }
 
-            scope.join().throwIfFailed();
+            String query = queries[from];
+            if(query == null || query.isEmpty()) {
+                results.accept(from, new Extension[0]);
+                return;
+            }
 
-            // Get each string returned by each task and return them as an array.
-            Extension[] extensions = tasks.stream().map(StructuredTaskScope.Subtask::get).toArray(Extension[]::new);
+            // The query's extensions are forked into the same pool, so they're shared out with the other queries' work.
+            List<Seed> seeds = index.seeds(query);
+            int halfWindow = halfWindow(windowSize);
+            Extension[] extensions = smithWaterman == null
+                    ? extendByDiagonal(seeds, kmerLength, seed -> extendSeed(seed, subject, query, kmerLength))
+                    : extendInOrder(seeds, kmerLength, seed -> swExtendSeed(seed, subject, query, kmerLength, smithWaterman, halfWindow));
 
-            return filterExtensions(extensions, kmerLength);
+            results.accept(from, filterExtensions(extensions, kmerLength));
+        }
+    }
+
+    // The subject can be a String, or the bytes of a memory segment (see ByteText).
+    private static Extension[] alignText(CharSequence subject, String query, SeedScheme seeds, SmithWaterman smithWaterman, int windowSize) throws Exception {
+        if(smithWaterman == null) return alignText(subject, query, seeds);
+        if(seeds == null) throw new IllegalArgumentException("The provided seed scheme is null.");
+        if(subject == null || subject.isEmpty() || query == null || query.isEmpty()) return new Extension[0]; // No alignments can be made on empty strings.
+
+        return swExtend(seed(subject, query, seeds), subject, query, seeds.span(), smithWaterman, windowSize);
+    }
+
+    private static Extension[] alignText(CharSequence subject, String query, SeedScheme seeds) {
+        if(seeds == null) throw new IllegalArgumentException("The provided seed scheme is null.");
+        if(subject == null || subject.isEmpty() || query == null || query.isEmpty()) return new Extension[0];
+
+        return extendSeeds(seed(subject, query, seeds), subject, query, seeds.span());
+    }
+
+    private static Chain[] chainText(CharSequence subject, String query, SeedScheme seeds, NeedlemanWunsch aligner, int maxGap, int minScore) {
+        if(seeds == null) throw new IllegalArgumentException("The provided seed scheme is null.");
+        if(aligner == null) throw new IllegalArgumentException("The provided aligner is null.");
+        if(maxGap <= 0) throw new IllegalArgumentException("maxGap must be greater than 0.");
+        if(subject == null || subject.isEmpty() || query == null || query.isEmpty()) return new Chain[0];
+
+        return new Chainer(subject, query, seeds.span(), aligner, maxGap).chain(seed(subject, query, seeds), minScore).toArray(new Chain[0]);
+    }
+
+    // Maps a file read-only with an automatic Arena, so it's unmapped once nothing refers to it (e.g. a Chain rendering from it).
+    private static MemorySegment map(Path path) throws IOException {
+        if(path == null) throw new IllegalArgumentException("The provided path is null.");
 
-        } catch (Exception e) {
-            System.err.println("Error: " + e);
-            return new Extension[0];
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
         }
     }
 
+    // The seeding part should find exact matching parts of the 2 sequences.
+    // Subject seeds are indexed by hash (see KmerIndex), so no substrings or boxed positions are created per subject position.
+    private static List<Seed> seed(CharSequence subject, String query, SeedScheme scheme) {
+        return new KmerIndex(subject, scheme).seeds(query);
+    }
+
+    // Greedy ungapped extension. Continues to extend both left and right as long as they are still exact matches.
+    // Since this is a greedy no-gap implementation, both the subject match and query match will be the same.
+    private static Extension[] extendSeeds(List<Seed> seeds, CharSequence subject, String query, int kmerLength) {
+        Extension[] extensions = extendByDiagonal(seeds, kmerLength, seed -> extendSeed(seed, subject, query, kmerLength));
+
+        return filterExtensions(extensions, kmerLength);
+    }
+
     // Extends a single seed (Greedy).
-    private static Extension extendSeed(Seed seed, String subject, String query, int kmerLength) {
+    private static Extension extendSeed(Seed seed, CharSequence subject, String query, int kmerLength) {
         int sStart = seed.subjectIndex();
         int qStart = seed.queryIndex();
         int sEnd = sStart + kmerLength - 1;
@@ -141,31 +449,115 @@ public class SeedAndExtend {
         }
 
         // It doesn't matter if we choose subject or query here, both will be the same.
-        return new Extension(sStart, qStart, subject.substring(sStart, sEnd + 1));
+        return new Extension(sStart, qStart, subject.subSequence(sStart, sEnd + 1).toString());
+    }
+
+    private static Extension[] swExtend(List<Seed> seeds, CharSequence subject, String query, int kmerLength, SmithWaterman smithWaterman, int windowSize) throws Exception {
+        int halfWindow = halfWindow(windowSize);
+        try {
+            Extension[] extensions = extendInOrder(seeds, kmerLength, seed -> swExtendSeed(seed, subject, query, kmerLength, smithWaterman, halfWindow));
+
+            return filterExtensions(extensions, kmerLength);
+
+        } catch (RuntimeException e) {
+            throw new Exception(e);
+        }
+    }
+
+    private static int halfWindow(int windowSize) {
+        return (int) ((windowSize + 1) * 0.5); // Adding 1 to get a rounded up, even number.
+    }
+
+    // Seeds on the same diagonal (subject position - query position) that overlap are usually part of the same match, so extending each of them repeats the same work.
+    // Seeds are grouped by diagonal and extended in order of query position, and a seed that lies inside the last extension on its diagonal is skipped.
+    // This is only for greedy extension, where it changes nothing, as the skipped seed would extend to exactly the same match.
+    // The diagonals are split into batches on the common ForkJoinPool, rather than forking a task per seed.
+    private static Extension[] extendByDiagonal(List<Seed> seeds, int kmerLength, Function<Seed, Extension> extender) {
+        Seed[] sorted = seeds.toArray(new Seed[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(SeedAndExtend::diagonal).thenComparingInt(Seed::queryIndex));
+
+        // starts[d]..starts[d + 1] holds the seeds on the d-th diagonal.
+        int[] starts = new int[sorted.length + 1];
+        int diagonals = 0;
+        for(int i = 0; i < sorted.length; i++) {
+            if(i == 0 || diagonal(sorted[i]) != diagonal(sorted[i - 1])) starts[diagonals++] = i;
+        }
+        starts[diagonals] = sorted.length;
+
+        List<Extension> extensions = ForkJoinPool.commonPool().invoke(new ExtendTask(sorted, starts, 0, diagonals, kmerLength, extender, true));
+        return extensions.toArray(new Extension[0]);
+    }
+
+    // Extends every seed, in batches on the common ForkJoinPool, keeping the seeds' order. Used for Smith-Waterman extension, where a seed inside
+    // another seed's extension can still give a different alignment (the extension's text is a consensus, and its start is estimated), so none are skipped.
+    private static Extension[] extendInOrder(List<Seed> seeds, int kmerLength, Function<Seed, Extension> extender) {
+        Seed[] ordered = seeds.toArray(new Seed[0]);
+
+        // Each seed is its own group, so batches are split between any 2 seeds.
+        int[] starts = new int[ordered.length + 1];
+        for(int i = 0; i < starts.length; i++) starts[i] = i;
+
+        List<Extension> extensions = ForkJoinPool.commonPool().invoke(new ExtendTask(ordered, starts, 0, ordered.length, kmerLength, extender, false));
+        return extensions.toArray(new Extension[0]);
     }
 
-    private static Extension[] swExtend(List<Seed> seeds, String subject, String query, int kmerLength, SmithWaterman smithWaterman, int windowSize) throws Exception {
-        int halfWindow = (int) ((windowSize + 1) * 0.5); // Adding 1 to get a rounded up, even number.
-        try(var scope = new StructuredTaskScope.ShutdownOnFailure()) {
-            List<StructuredTaskScope.Subtask<Extension>> tasks = new ArrayList<>();
+    private static int diagonal(Seed seed) {
+        return seed.subjectIndex() - seed.queryIndex();
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ExtendTask extends RecursiveTask<List<Extension>> {
+        private final Seed[] seeds;
+        private final int[] starts;
+        private final int from, to; // Diagonals, not seeds.
+        private final int kmerLength;
+        private final Function<Seed, Extension> extender;
+        private final boolean skipCovered; // Whether seeds inside the last extension on their diagonal are skipped.
+
+        ExtendTask(Seed[] seeds, int[] starts, int from, int to, int kmerLength, Function<Seed, Extension> extender, boolean skipCovered) {
+            this.seeds = seeds;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+            this.kmerLength = kmerLength;
+            this.extender = extender;
+            this.skipCovered = skipCovered;
+        }
 
-            for(Seed seed: seeds) {
-                var task = scope.fork(() -> swExtendSeed(seed, subject, query, kmerLength, smithWaterman, halfWindow));
-                tasks.add(task);
+        @Override
+        protected List<Extension> compute() {
+            if(starts[to] - starts[from] > GRAIN && to - from > 1) {
+                // Split at the diagonal closest to the middle seed, so both halves get about as many seeds. One diagonal is never split.
+                int mid = Arrays.binarySearch(starts, from, to, (starts[from] + starts[to]) >>> 1);
+                if(mid < 0) mid = -mid - 1;
+                mid = Math.min(Math.max(mid, from + 1), to - 1);
+
+                ExtendTask right = new ExtendTask(seeds, starts, mid, to, kmerLength, extender, skipCovered);
+                right.fork();
+                List<Extension> left = new ExtendTask(seeds, starts, from, mid, kmerLength, extender, skipCovered).compute();
+                left.addAll(right.join());
+                return left;
             }
 
-            scope.join().throwIfFailed();
-            Extension[] extensions = tasks.stream().map(StructuredTaskScope.Subtask::get).toArray(Extension[]::new);
+            List<Extension> extensions = new ArrayList<>();
+            for(int d = from; d < to; d++) {
+                Extension last = null;
 
-            return filterExtensions(extensions, kmerLength);
+                for(int i = starts[d]; i < starts[d + 1]; i++) {
+                    Seed seed = seeds[i];
+                    if(skipCovered && last != null && seed.queryIndex() >= last.queryPos() && seed.queryIndex() + kmerLength <= last.queryPos() + last.text().length()) continue;
 
-        } catch (Exception e) {
-            throw new Exception(e);
+                    last = extender.apply(seed);
+                    extensions.add(last);
+                }
+            }
+
+            return extensions;
         }
     }
 
     // Smith-Waterman returns 2 strings (1 for subject, 1 for query). However, an extension will only have a single string.
-    private static Extension swExtendSeed(Seed seed, String subject, String query, int kmerLength, SmithWaterman smithWaterman, int halfWindow) {
+    private static Extension swExtendSeed(Seed seed, CharSequence subject, String query, int kmerLength, SmithWaterman smithWaterman, int halfWindow) {
         int proposedSStart = seed.subjectIndex() - (halfWindow - kmerLength), proposedQStart = seed.queryIndex() - (halfWindow - kmerLength); // The window should start half the window - kmer length to the left of the seed start point.
         int proposedSEnd = seed.subjectIndex() + (halfWindow + kmerLength), proposedQEnd = seed.queryIndex() + (halfWindow + kmerLength);  // The window should end half the window + kmer length to the right of the seed start point. (1 kmer length the right will be the seed, the next will be the extended window).
 
@@ -209,7 +601,7 @@ public class SeedAndExtend {
         actualQStart = Math.max(0, actualQStart);
 
         // If the 'smithWaterman' object has a scoring matrix load, the matrix will be used. Otherwise, the MATCH, MISTMATCH, GAP scores will be used.
-        char[][] alignments = smithWaterman.align(subject.substring(actualSStart, actualSEnd).toCharArray(), query.substring(actualQStart, actualQEnd).toCharArray());
+        char[][] alignments = smithWaterman.align(subject.subSequence(actualSStart, actualSEnd).toString().toCharArray(), query.substring(actualQStart, actualQEnd).toCharArray());
 
         char[] subjectAlignment = alignments[0];
         char[] queryAlignment = alignments[1];
@@ -254,9 +646,9 @@ public class SeedAndExtend {
     }
 
     // Need to recalculate the starting position of the alignments
-    private static int[] findConsensusStartingPoints(Seed seed, char[] subjectAlignment, char[] queryAlignment, int kmerLength, String subject, String query) {
+    private static int[] findConsensusStartingPoints(Seed seed, char[] subjectAlignment, char[] queryAlignment, int kmerLength, CharSequence subject, String query) {
         int newSStart = 0, newQStart = 0; // New Subject Start, New Query Start
-        char[] originalSeed = subject.substring(seed.subjectIndex(), seed.subjectIndex() + kmerLength).toCharArray();
+        char[] originalSeed = subject.subSequence(seed.subjectIndex(), seed.subjectIndex() + kmerLength).toString().toCharArray();
         // We can find the new starting points by counting how many non-gap characters appear before the original seed. Then, subtract that value from the seed starting points.
         int subjectStart = -1, queryStart = -1;
         // Find the subject first
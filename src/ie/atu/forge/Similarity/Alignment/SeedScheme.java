@@ -0,0 +1,110 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * Which seeds SeedAndExtend looks for: the shape of a seed, and which positions of the subject and query get one.<br><br>
+ *
+ * A seed's shape is a mask such as "1101101": the subject and query have to match at every '1', and can differ at every '0'.
+ * A plain kmer is a mask of k '1's. Spaced seeds find more of the matches that contain a few mismatches than a kmer with the same number of '1's (the weight),
+ * as a mismatch only breaks the seeds that have a '1' over it.<br><br>
+ *
+ * By default every position is seeded. With minimizers(w), only the (w, k)-minimizers are: in every run of w consecutive seeds, only the one with the smallest hash is kept.
+ * Two sequences sharing a run of w seeds always pick the same seed from it, so matches at least w + span - 1 characters long are still found,
+ * while only about 2 / (w + 1) of the positions are seeded and indexed.<br><br>
+ *
+ * <a href="https://doi.org/10.1093/bioinformatics/bth408">Minimizers paper.</a><br>
+ * <a href="https://doi.org/10.1093/bioinformatics/18.3.440">Spaced seeds paper (PatternHunter).</a>
+ */
+public final class SeedScheme {
+    private final String mask;
+    private final int[] offsets; // The positions of the '1's in the mask.
+    private final int window;
+
+    private SeedScheme(String mask, int[] offsets, int window) {
+        this.mask = mask;
+        this.offsets = offsets;
+        this.window = window;
+    }
+
+    /**
+     * Seeds every position with a kmer (a contiguous exact match).
+     *
+     * @param k The length of a kmer.
+     * @return The scheme.
+     */
+    public static SeedScheme kmers(int k) {
+        if(k <= 0) throw new IllegalArgumentException("k must be greater than 0.");
+
+        return spaced("1".repeat(k));
+    }
+
+    /**
+     * Seeds every position with a spaced seed.
+     *
+     * @param mask The seed's shape, made of '1's (characters that must match) and '0's (characters that don't have to). It must start and end with a '1'.
+     * @return The scheme.
+     */
+    public static SeedScheme spaced(String mask) {
+        if(mask == null) throw new IllegalArgumentException("The provided mask is null.");
+        if(mask.isEmpty() || mask.charAt(0) != '1' || mask.charAt(mask.length() - 1) != '1') throw new IllegalArgumentException("The mask must start and end with a '1'.");
+
+        int weight = 0;
+        for(int i = 0; i < mask.length(); i++) {
+            char c = mask.charAt(i);
+            if(c != '0' && c != '1') throw new IllegalArgumentException("The mask can only contain '0' and '1'.");
+            if(c == '1') weight++;
+        }
+
+        int[] offsets = new int[weight];
+        for(int i = 0, j = 0; i < mask.length(); i++) {
+            if(mask.charAt(i) == '1') offsets[j++] = i;
+        }
+
+        return new SeedScheme(mask, offsets, 1);
+    }
+
+    /**
+     * Seeds only the (window, span)-minimizers instead of every position.
+     *
+     * @param window The number of consecutive seeds to pick one from. 1 seeds every position.
+     * @return A scheme with the same seed shape, sampled by minimizers.
+     */
+    public SeedScheme minimizers(int window) {
+        if(window <= 0) throw new IllegalArgumentException("window must be greater than 0.");
+
+        return new SeedScheme(mask, offsets, window);
+    }
+
+    /**
+     * @return The number of characters a seed covers (the length of the mask).
+     */
+    public int span() { return mask.length(); }
+
+    /**
+     * @return The number of characters that must match (the number of '1's in the mask).
+     */
+    public int weight() { return offsets.length; }
+
+    /**
+     * @return The number of consecutive seeds a minimizer is picked from, or 1 if every position is seeded.
+     */
+    public int window() { return window; }
+
+    /**
+     * @return The seed's shape.
+     */
+    public String mask() { return mask; }
+
+    // True if the mask has no '0's, so seed hashes can be rolled along the sequence.
+    boolean isContiguous() {
+        return offsets.length == mask.length();
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    @Override
+    public String toString() {
+        return "SeedScheme[mask=" + mask + ", window=" + window + "]";
+    }
+}
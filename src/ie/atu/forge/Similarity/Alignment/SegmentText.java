@@ -0,0 +1,47 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+// Text stored as little-endian UTF-16 chars in a memory segment (e.g. a memory-mapped file), read as a CharSequence without copying it onto the heap.
+// Only subSequence() and toString() copy, and only the characters asked for.
+final class SegmentText implements CharSequence {
+    static final ValueLayout.OfChar CHAR = ValueLayout.JAVA_CHAR_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final MemorySegment chars;
+    private final int length;
+
+    SegmentText(MemorySegment chars) {
+        this.chars = chars;
+        this.length = (int) (chars.byteSize() / Character.BYTES);
+    }
+
+    MemorySegment segment() {
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars.getAtIndex(CHAR, index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if(start < 0 || start > end || end > length) throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+
+        char[] copy = new char[end - start];
+        MemorySegment.copy(chars, CHAR, (long) start * Character.BYTES, copy, 0, copy.length);
+        return new String(copy);
+    }
+
+    @Override
+    public String toString() {
+        return (String) subSequence(0, length);
+    }
+}
@@ -0,0 +1,19 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import jdk.incubator.vector.VectorShape;
+
+// Whether the kernels written with the Vector API (jdk.incubator.vector) can run.
+// It's an incubator module, so it's only there when the JVM is started with --add-modules jdk.incubator.vector, and it's only worth using when the CPU has vector registers of at least 128 bits.
+// Classes that use the Vector API are only touched after checking AVAILABLE, so without the module every kernel falls back to its scalar (or SWAR) version.
+final class Simd {
+    static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && Shape.wide();
+
+    private Simd() {}
+
+    // A class of its own, so VectorShape is only loaded once the module is known to be there.
+    private static final class Shape {
+        static boolean wide() {
+            return VectorShape.preferredShape().vectorBitSize() >= 128;
+        }
+    }
+}
@@ -1,15 +1,18 @@
 package ie.atu.forge.Similarity.Alignment;
 
-import ie.atu.forge.ToolBox.MatrixLoader;
-
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Local alignment algorithm that finds the highest-scoring matching subsequences between two sequences, inserting gaps where needed.
  * Uses Match, Mismatch, and Gap scores to calculate optimal alignment.
  * Alternatively, a scoring matrix can be used for biological sequences.<br><br>
  *
+ * An aligner built with builder() can't be changed, so one instance can be shared between threads.
+ * Aligners created with the constructor can be changed with the setters, but shouldn't be changed while another thread is using them.<br><br>
+ *
  * <a href="https://www.sciencedirect.com/science/article/pii/0022283681900875">Original Paper.</a><br>
  *
  * Scoring Matrices can be found <a href="https://ftp.ncbi.nih.gov/blast/matrices/">here</a>.
@@ -18,7 +21,51 @@ public class SmithWaterman {
     private int MATCH = 1;
     private int MISMATCH = -1;
     private int GAP = -1;
-    private Map<String, Integer> scoringMatrix = null;
+    private ScoringMatrix scoringMatrix = null;
+    private boolean linearSpace = false;
+    private int GAP_OPEN = 0;
+    private int bandWidth = -1; // No band.
+    private int bandDiagonal = 0;
+    private int X_DROP = 0;
+
+    private final boolean immutable; // Built by a Builder, so the setters are turned off.
+
+    // Alignments with a bigger score matrix than this (256 MB of ints) always use the linear-space traceback.
+    private static final long MAX_MATRIX_CELLS = 1L << 26;
+
+    // Below this many cells, setting up the striped (SIMD) kernel costs more than it saves over the scalar one. The scalar affine kernel is slow enough that it always pays.
+    private static final long MIN_STRIPED_CELLS = 2048;
+
+    /**
+     * Creates an aligner with the default scores (Match 1, Mismatch -1 and Gap -1), which can be changed with the setters.
+     * An aligner that is being changed can't safely be used by other threads at the same time. To share one, build it with builder() instead.
+     */
+    public SmithWaterman() {
+        this.immutable = false;
+    }
+
+    private SmithWaterman(Builder builder) {
+        this.MATCH = builder.match;
+        this.MISMATCH = builder.mismatch;
+        this.GAP = builder.gap;
+        // Pairs without a score are filled in now, rather than on every call.
+        this.scoringMatrix = builder.scoringMatrix == null ? null : builder.scoringMatrix.withDefault(builder.mismatch);
+        this.linearSpace = builder.linearSpace;
+        this.GAP_OPEN = builder.gapOpen;
+        this.bandWidth = builder.bandWidth;
+        this.bandDiagonal = builder.bandDiagonal;
+        this.X_DROP = builder.xDrop;
+        this.immutable = true;
+    }
+
+    /**
+     * Starts building an aligner whose settings can't be changed once it's built (its setters throw an UnsupportedOperationException).
+     * Nothing about a call is stored in the aligner, so a built aligner can be shared by any number of threads, such as the tasks SeedAndExtend forks.
+     * @return A builder with the same defaults as new SmithWaterman().
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     /**
      *  Finds the optimal local alignment between 2 strings (or character arrays).
@@ -30,8 +77,7 @@ public class SmithWaterman {
      * @return The optimal alignments for both the subject and query strings.
      */
     public String[] align(String s1, String s2) {
-        if(scoringMatrix == null) return alignWithoutMatrix(s1, s2);
-        else return alignWithMatrix(s1, s2);
+        return alignment(s1, s2).render();
     }
 
     /**
@@ -44,8 +90,7 @@ public class SmithWaterman {
      * @return The optimal alignments for both the subject and query strings.
      */
     public char[][] align(char[] s1, char[] s2) {
-        if(scoringMatrix == null) return alignWithoutMatrix(s1, s2);
-        else return alignWithMatrix(s1, s2);
+        return alignment(s1, s2).renderChars();
     }
 
     /**
@@ -59,8 +104,7 @@ public class SmithWaterman {
      * @return The optimal alignments for both the subject and query strings.
      */
     public String[] align(String s1, String s2, boolean useScoringMatrix) {
-        if(!useScoringMatrix) return alignWithoutMatrix(s1, s2);
-        else return alignWithMatrix(s1, s2);
+        return alignment(s1, s2, useScoringMatrix).render();
     }
 
     /**
@@ -74,30 +118,280 @@ public class SmithWaterman {
      * @return The optimal alignments for both the subject and query strings.
      */
     public char[][] align(char[] s1, char[] s2, boolean useScoringMatrix) {
+        return alignment(s1, s2, useScoringMatrix).renderChars();
+    }
+
+    /**
+     *  Finds the optimal local alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  where it starts and ends in both sequences, its score and a CIGAR. The gapped strings are only built if render() is called.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The optimal local alignment. The result keeps a reference to both strings for rendering.
+     */
+    public AlignmentResult alignment(String s1, String s2) {
+        return alignment(s1.toCharArray(), s2.toCharArray()).withSequences(s1, s2);
+    }
+
+    /**
+     *  Finds the optimal local alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  where it starts and ends in both sequences, its score and a CIGAR. The gapped strings are only built if render() is called.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The optimal local alignment. The result keeps a reference to both arrays for rendering.
+     */
+    public AlignmentResult alignment(char[] s1, char[] s2) {
+        return alignment(s1, s2, scoringMatrix != null);
+    }
+
+    /**
+     *  Finds the optimal local alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  where it starts and ends in both sequences, its score and a CIGAR. The gapped strings are only built if render() is called.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The optimal local alignment. The result keeps a reference to both strings for rendering.
+     */
+    public AlignmentResult alignment(String s1, String s2, boolean useScoringMatrix) {
+        return alignment(s1.toCharArray(), s2.toCharArray(), useScoringMatrix).withSequences(s1, s2);
+    }
+
+    /**
+     *  Finds the optimal local alignment between 2 strings (or character arrays), the same as align(), but returns it in compact form:
+     *  where it starts and ends in both sequences, its score and a CIGAR. The gapped strings are only built if render() is called.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The optimal local alignment. The result keeps a reference to both arrays for rendering.
+     */
+    public AlignmentResult alignment(char[] s1, char[] s2, boolean useScoringMatrix) {
         if(!useScoringMatrix) return alignWithoutMatrix(s1, s2);
         else return alignWithMatrix(s1, s2);
     }
 
-    private String[] alignWithoutMatrix(String s1, String s2) {
-        char[][] alignments = alignWithoutMatrix(s1.toCharArray(), s2.toCharArray());
+    /**
+     *  Finds the score of the optimal local alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  With the Vector API (--add-modules jdk.incubator.vector), the score is computed a whole vector of cells at a time with Farrar's striped algorithm, unless a band or X-drop is set.
+     *  Otherwise, or for scores too big for 16 bits, long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The score of the optimal local alignment (0 if no characters align with a positive score).
+     */
+    public int score(String s1, String s2) {
+        return score(s1.toCharArray(), s2.toCharArray());
+    }
+
+    /**
+     *  Finds the score of the optimal local alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  With the Vector API (--add-modules jdk.incubator.vector), the score is computed a whole vector of cells at a time with Farrar's striped algorithm, unless a band or X-drop is set.
+     *  Otherwise, or for scores too big for 16 bits, long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *  If a scoring matrix has been set, it will be used by default. Otherwise, Match, Mismatch, and Gap scores will be used.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @return The score of the optimal local alignment (0 if no characters align with a positive score).
+     */
+    public int score(char[] s1, char[] s2) {
+        return score(s1, s2, scoringMatrix != null);
+    }
+
+    /**
+     *  Finds the score of the optimal local alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  With the Vector API (--add-modules jdk.incubator.vector), the score is computed a whole vector of cells at a time with Farrar's striped algorithm, unless a band or X-drop is set.
+     *  Otherwise, or for scores too big for 16 bits, long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The score of the optimal local alignment (0 if no characters align with a positive score).
+     */
+    public int score(String s1, String s2, boolean useScoringMatrix) {
+        return score(s1.toCharArray(), s2.toCharArray(), useScoringMatrix);
+    }
+
+    /**
+     *  Finds the score of the optimal local alignment between 2 strings (or character arrays), without building the alignment itself.
+     *  Only one row of scores is kept, so memory use is linear in the length of the shorter sequence, and no traceback matrix is allocated.
+     *  With the Vector API (--add-modules jdk.incubator.vector), the score is computed a whole vector of cells at a time with Farrar's striped algorithm, unless a band or X-drop is set.
+     *  Otherwise, or for scores too big for 16 bits, long alignments are split into tiles, and the tiles on each anti-diagonal are scored in parallel on the common ForkJoinPool.
+     *
+     * @param s1 The subject string (or character array).
+     * @param s2 The query string (or character array).
+     * @param useScoringMatrix Controls use of Scoring Matrix or Match, Mismatch, and Gap scores.
+     * @return The score of the optimal local alignment (0 if no characters align with a positive score).
+     */
+    public int score(char[] s1, char[] s2, boolean useScoringMatrix) {
+        if(useScoringMatrix && scoringMatrix == null) throw new IllegalStateException("No scoring matrix set.");
+
+        ScoringMatrix matrix = useScoringMatrix ? scoringMatrix.withDefault(MISMATCH) : null;
+        if(useSimd() && (GAP_OPEN != 0 || (long) s1.length * s2.length >= MIN_STRIPED_CELLS)) {
+            int score = new StripedAligner(s2, matrix, MATCH, MISMATCH, GAP_OPEN, GAP).score(s1, s1.length);
+            if(score != StripedAligner.SCALAR) return score;
+        }
+        if(useGotoh()) return gotoh(s1, s2, matrix).score();
+
+        return new AlignmentScorer(s1, s2, matrix, MATCH, MISMATCH, GAP, true).score(ForkJoinPool.commonPool());
+    }
+
+    /**
+     *  Finds the subjects with the best local alignment scores against a query, using the common ForkJoinPool.
+     *  The current scoring (Match, Mismatch and Gap scores, or the scoring matrix, plus any gap open, band or X-drop settings) is used.
+     *
+     * @param query The query string.
+     * @param subjects The subject strings to search.
+     * @param n The number of hits to return.
+     * @return Up to n hits, best first. Ties go to the subject that appears first in the list. Subjects that don't align at all (a score of 0) aren't returned.
+     */
+    public List<CandidateMatch> search(String query, List<String> subjects, int n) {
+        return search(query, subjects, n, ForkJoinPool.commonPool());
+    }
+
+    /**
+     *  Finds the subjects with the best local alignment scores against a query.
+     *  The query is prepared once and shared by every subject, subjects are scored in parallel on the pool,
+     *  and subjects too short to beat the hits found so far are skipped without being aligned.
+     *  With the Vector API (--add-modules jdk.incubator.vector), subjects are scored a vector's worth at a time, one subject per lane, unless a band or X-drop is set.
+     *  The current scoring (Match, Mismatch and Gap scores, or the scoring matrix, plus any gap open, band or X-drop settings) is used.
+     *
+     * @param query The query string.
+     * @param subjects The subject strings to search.
+     * @param n The number of hits to return.
+     * @param pool The pool to score the subjects on.
+     * @return Up to n hits, best first. Ties go to the subject that appears first in the list. Subjects that don't align at all (a score of 0) aren't returned.
+     */
+    public List<CandidateMatch> search(String query, List<String> subjects, int n, ForkJoinPool pool) {
+        if(n <= 0) throw new IllegalArgumentException("n must be greater than 0.");
+        if(query == null) throw new IllegalArgumentException("The provided query is null.");
+        if(subjects == null) throw new IllegalArgumentException("The provided subjects are null.");
+        if(pool == null) throw new IllegalArgumentException("The provided pool is null.");
+        for(String subject: subjects) {
+            if(subject == null) throw new IllegalArgumentException("The provided subjects contain a null string.");
+        }
+
+        ScoringMatrix matrix = scoringMatrix == null ? null : scoringMatrix.withDefault(MISMATCH);
+        return new DatabaseSearch(this, matrix, query, subjects, n).run(pool);
+    }
+
+    // Finds the end of the local alignment in linear space, for the linear-space traceback.
+    // Returns the max score and the cell it was found in ({ max, maxi, maxj }), picking the same cell as align() when there are ties.
+    private int[] findEndWithoutMatrix(char[] s1, char[] s2) {
+        int row = s2.length;
+
+        // The previous row, overwritten in place as the current row is filled in. 'diag' and 'left' hold the 2 cells that have already been overwritten.
+        int[] scores = new int[row + 1];
+        int max = 0, maxi = 0, maxj = 0;
+
+        for(int i = 1; i <= s1.length; i++) {
+            char c = s1[i - 1];
+            int diag = 0, left = 0;
+
+            for(int j = 1; j <= row; j++) {
+                int up = scores[j];
+                // Both gaps cost the same, so the larger neighbour is the only one that can win.
+                int score = Math.max(Math.max(0, diag + (c == s2[j - 1] ? MATCH : MISMATCH)), Math.max(up, left) + GAP);
+
+                diag = up;
+                scores[j] = score;
+                left = score;
+
+                if(score > max) {
+                    max = score;
+                    maxi = i;
+                    maxj = j;
+                }
+            }
+        }
+
+        return new int[]{ max, maxi, maxj };
+    }
+
+    private int[] findEndWithMatrix(char[] s1, char[] s2) {
+        if(scoringMatrix == null) throw new IllegalStateException("No scoring matrix set.");
+
+        ScoringMatrix matrix = scoringMatrix.withDefault(MISMATCH);
+        byte[] codes1 = matrix.encode(s1);
+        int[][] profile = profile(matrix, codes1, s2);
+        int row = s2.length;
+
+        int[] scores = new int[row + 1];
+        int max = 0, maxi = 0, maxj = 0;
+
+        for(int i = 1; i <= s1.length; i++) {
+            int[] subject = profile[codes1[i - 1]];
+            int diag = 0, left = 0;
+
+            for(int j = 1; j <= row; j++) {
+                int up = scores[j];
+                int score = Math.max(Math.max(0, diag + subject[j]), Math.max(up, left) + GAP);
+
+                diag = up;
+                scores[j] = score;
+                left = score;
+
+                if(score > max) {
+                    max = score;
+                    maxi = i;
+                    maxj = j;
+                }
+            }
+        }
+
+        return new int[]{ max, maxi, maxj };
+    }
+
+    // Query profile (Farrar): for each code in the subject, its score against every query position (profile[code][j], from 1).
+    // The inner loop then reads its scores in order from one array, instead of looking up a pair in the matrix for every cell.
+    // Only the codes that appear in the subject get a row.
+    private static int[][] profile(ScoringMatrix matrix, byte[] codes1, char[] s2) {
+        byte[] codes2 = matrix.encode(s2);
+        int[][] profile = new int[matrix.stride][];
 
-        // If the user inputted strings, give them strings back.
-        return new String[]{ new String(alignments[0]), new String(alignments[1]) };
+        for(byte code: codes1) {
+            if(profile[code] != null) continue;
+
+            int[] scores = new int[s2.length + 1];
+            int base = code * matrix.stride;
+            for(int j = 1; j <= s2.length; j++) scores[j] = matrix.scores[base + codes2[j - 1]];
+
+            profile[code] = scores;
+        }
+
+        return profile;
     }
 
-    private char[][] alignWithoutMatrix(char[] s1, char[] s2) {
+    private AlignmentResult alignWithoutMatrix(char[] s1, char[] s2) {
         int col = s1.length;
         int row = s2.length;
 
-        int[][] scores = new int[col+1][row+1];
+        if(useGotoh()) return gotoh(s1, s2, null).align();
+
+        // The end of the alignment is found in linear space first, so only the scores above and to the left of it need to be revisited.
+        if(useLinearSpace(col, row)) {
+            int[] end = findEndWithoutMatrix(s1, s2);
+            return new LinearSpaceTraceback(s1, s2, null, MATCH, MISMATCH, GAP, true).local(end[1], end[2]);
+        }
+
+        // The matrix is stored flat, one row of (row + 1) scores after another, in a pooled buffer that may still hold an earlier alignment's scores.
+        int width = row + 1;
+        int[] scores = BufferPool.take((col + 1) * width);
 
         // Fill in first row/column with 0
         for(int i = 0; i <= col; i++) {
-            scores[i][0] = 0;
+            scores[i * width] = 0;
         }
 
         for(int j = 0; j <= row; j++) {
-            scores[0][j] = 0;
+            scores[j] = 0;
         }
 
         // To keep track of the max value in the matrix
@@ -105,21 +399,24 @@ public class SmithWaterman {
 
         // Fill in the rest of the scores matrix
         for(int i = 1; i <= col; i++) {
+            int above = (i - 1) * width, current = i * width;
+
             for(int j = 1; j <= row; j++) {
                 // Match or Mismatch?
-                scores[i][j] = Math.max(Math.max(
+                int score = Math.max(Math.max(
                         0,
                         // Match/Mismatch?
-                        scores[i - 1][j - 1] + (s1[i - 1] == s2[j - 1] ? MATCH : MISMATCH)),
+                        scores[above + j - 1] + (s1[i - 1] == s2[j - 1] ? MATCH : MISMATCH)),
                         // Gap in s1 (insertion)
-                        Math.max(scores[i][j-1] + GAP,
+                        Math.max(scores[current + j - 1] + GAP,
                         // Gap in s2 (deletion)
-                        scores[i - 1][j] + GAP
+                        scores[above + j] + GAP
                 ));
+                scores[current + j] = score;
 
                 // Tracking max score
-                if(scores[i][j] > max) {
-                    max = scores[i][j];
+                if(score > max) {
+                    max = score;
                     maxi = i;
                     maxj = j;
                 }
@@ -127,181 +424,161 @@ public class SmithWaterman {
         }
 
         // After filling out the matrix of scores, it's time to perform the traceback from the max score.
-        return traceback(scores, s1, s2, maxi, maxj);
-    }
-
-    private String[] alignWithMatrix(String s1, String s2) {
-        char[][] alignments = alignWithMatrix(s1.toCharArray(), s2.toCharArray());
+        AlignmentResult alignment = traceback(scores, width, s1, s2, maxi, maxj);
+        BufferPool.give(scores);
 
-        // If the user inputted strings, give them strings back.
-        return new String[]{ new String(alignments[0]), new String(alignments[1]) };
+        return alignment;
     }
 
-    private char[][] alignWithMatrix(char[] s1, char[] s2) {
+    private AlignmentResult alignWithMatrix(char[] s1, char[] s2) {
         if(scoringMatrix == null) throw new IllegalStateException("No scoring matrix set.");
 
         int col = s1.length;
         int row = s2.length;
 
-        int[][] scores = new int[col+1][row+1];
+        // Convert both sequences to matrix codes once, so each cell's score is a single array read.
+        ScoringMatrix matrix = scoringMatrix.withDefault(MISMATCH);
+        if(useGotoh()) return gotoh(s1, s2, matrix).align();
+
+        if(useLinearSpace(col, row)) {
+            int[] end = findEndWithMatrix(s1, s2);
+            return new LinearSpaceTraceback(s1, s2, matrix, MATCH, MISMATCH, GAP, true).local(end[1], end[2]);
+        }
+
+        byte[] codes1 = matrix.encode(s1), codes2 = matrix.encode(s2);
+        int[] table = matrix.scores;
+
+        int width = row + 1;
+        int[] scores = BufferPool.take((col + 1) * width);
+
+        // Fill in first row/column with 0
+        for(int i = 0; i <= col; i++) {
+            scores[i * width] = 0;
+        }
+
+        for(int j = 0; j <= row; j++) {
+            scores[j] = 0;
+        }
 
         // To keep track of the max value in the matrix
         int max = 0, maxi = 0, maxj = 0;
 
         // Fill in the rest of the scores matrix
         for(int i = 1; i <= col; i++) {
-            char c1 = s1[i - 1];
-            for(int j = 1; j <= row; j++) {
-                char c2 = s2[j - 1];
+            int base = codes1[i - 1] * matrix.stride;
+            int above = (i - 1) * width, current = i * width;
 
+            for(int j = 1; j <= row; j++) {
                 // Get the score from the scoring matrix passed by the user.
-                int score = getScore(c1, c2, scoringMatrix);
+                int score = table[base + codes2[j - 1]];
                 // Match or Mismatch?
-                scores[i][j] = Math.max(Math.max(
+                score = Math.max(Math.max(
                                 0,
                                 // Match/Mismatch?
-                                scores[i - 1][j - 1] + score),
+                                scores[above + j - 1] + score),
                         // Gap in s1 (insertion)
-                        Math.max(scores[i][j-1] + GAP,
+                        Math.max(scores[current + j - 1] + GAP,
                                 // Gap in s2 (deletion)
-                                scores[i - 1][j] + GAP
+                                scores[above + j] + GAP
                         ));
+                scores[current + j] = score;
 
                 // Tracking max score
-                if(scores[i][j] > max) {
-                    max = scores[i][j];
+                if(score > max) {
+                    max = score;
                     maxi = i;
                     maxj = j;
                 }
             }
         }
 
-        return traceback(scoringMatrix, scores, s1, s2, maxi, maxj);
+        AlignmentResult alignment = traceback(matrix, codes1, codes2, scores, width, s1, s2, maxi, maxj);
+        BufferPool.give(scores);
+
+        return alignment;
     }
 
-    private char[][] traceback(int[][] scores, char[] s1, char[] s2, int maxi, int maxj) {
-        // This is the maximum possible length the alignments could be.
-        int index = maxi + maxj;
-        char[] maxAlignA = new char[index];
-        char[] maxAlignB = new char[index];
+    // Affine gaps, bands and X-drop need the three-state (Gotoh) aligner.
+    boolean useGotoh() {
+        return GAP_OPEN != 0 || bandWidth >= 0 || X_DROP > 0;
+    }
 
+    // Whether the SIMD kernels (StripedAligner and InterSequenceAligner) can score with these settings. They handle linear and affine gaps, but not bands or X-drop.
+    boolean useSimd() {
+        return Simd.AVAILABLE && bandWidth < 0 && X_DROP == 0 && GAP_OPEN <= 0 && GAP <= 0;
+    }
 
-        // Instead of creating a new variable, I'm just going to reuse index here for the traceback. It needs to be 1 less to be used for accessing array elements.
-        index--;
-        int size = 0; // Tracks the actual size of the alignment
-        while(maxi > 0 && maxj > 0 && scores[maxi][maxj] > 0) {
-            // If diagonal
-            if(scores[maxi][maxj] == scores[maxi - 1][maxj - 1] + (s1[maxi - 1] == s2[maxj - 1] ? MATCH : MISMATCH)) {
-                maxAlignA[index] = s1[maxi - 1];
-                maxAlignB[index] = s2[maxj - 1];
+    GotohAligner gotoh(char[] s1, char[] s2, ScoringMatrix matrix) {
+        int low = bandWidth < 0 ? -s1.length : bandDiagonal - bandWidth;
+        int high = bandWidth < 0 ? s2.length : bandDiagonal + bandWidth;
+        return new GotohAligner(s1, s2, matrix, MATCH, MISMATCH, GAP_OPEN, GAP, true, low, high, X_DROP);
+    }
+
+    private void checkMutable() {
+        if(immutable) throw new UnsupportedOperationException("This aligner was built with a Builder and can't be changed.");
+    }
+
+    private boolean useLinearSpace(int col, int row) {
+        return linearSpace || (long) (col + 1) * (row + 1) > MAX_MATRIX_CELLS;
+    }
+
+    // 'scores' is the flat score matrix, with 'width' scores per row.
+    private AlignmentResult traceback(int[] scores, int width, char[] s1, char[] s2, int maxi, int maxj) {
+        // The columns are collected as a CIGAR, from the end of the alignment back to the start.
+        CigarBuilder cigar = new CigarBuilder();
+        int endi = maxi, endj = maxj;
 
+        while(maxi > 0 && maxj > 0 && scores[maxi * width + maxj] > 0) {
+            int cell = maxi * width + maxj;
+
+            // If diagonal
+            if(scores[cell] == scores[cell - width - 1] + (s1[maxi - 1] == s2[maxj - 1] ? MATCH : MISMATCH)) {
+                cigar.pair(s1[maxi - 1], s2[maxj - 1]);
                 maxi--;
                 maxj--;
-                index--;
             }
             // If deletion
-            else if(scores[maxi][maxj] == scores[maxi - 1][maxj] + GAP) {
-                maxAlignA[index] = s1[maxi - 1];
-                maxAlignB[index] = '-';
+            else if(scores[cell] == scores[cell - width] + GAP) {
+                cigar.add(AlignmentResult.DELETION);
                 maxi--;
-                index--;
             }
             // If insertion
             else {
-                maxAlignA[index] = '-';
-                maxAlignB[index] = s2[maxj - 1];
+                cigar.add(AlignmentResult.INSERTION);
                 maxj--;
-                index--;
             }
-
-            size++;
         }
 
-        // Create new arrays with only the alignment characters (i.e. no empty indices).
-        char[] actualAlignA = new char[size];
-        char[] actualAlignB = new char[size];
-        System.arraycopy(maxAlignA, index + 1, actualAlignA, 0, actualAlignA.length);
-        System.arraycopy(maxAlignB, index + 1, actualAlignB, 0, actualAlignB.length);
-
-        return new char[][]{ actualAlignA, actualAlignB };
+        return cigar.build(s1, s2, maxi, endi, maxj, endj, scores[endi * width + endj]);
     }
 
-    private char[][] traceback(Map<String, Integer> scoring_matrix, int[][] scores, char[] s1, char[] s2, int maxi, int maxj) {
-        // This is the maximum possible length the alignments could be.
-        int index = maxi + maxj;
-        char[] maxAlignA = new char[index];
-        char[] maxAlignB = new char[index];
+    private AlignmentResult traceback(ScoringMatrix matrix, byte[] codes1, byte[] codes2, int[] scores, int width, char[] s1, char[] s2, int maxi, int maxj) {
+        CigarBuilder cigar = new CigarBuilder();
+        int endi = maxi, endj = maxj;
 
-
-        // Instead of creating a new variable, I'm just going to reuse index here for the traceback. It needs to be 1 less to be used for accessing array elements.
-        index--;
-        int size = 0; // Tracks the actual size of the alignment
-        while(maxi > 0 && maxj > 0 && scores[maxi][maxj] > 0) {
-            int score = getScore(s1[maxi - 1], s2[maxj - 1], scoring_matrix);
+        while(maxi > 0 && maxj > 0 && scores[maxi * width + maxj] > 0) {
+            int cell = maxi * width + maxj;
+            int score = matrix.scores[codes1[maxi - 1] * matrix.stride + codes2[maxj - 1]];
 
             // If diagonal
-            if(scores[maxi][maxj] == scores[maxi - 1][maxj - 1] + score) {
-                maxAlignA[index] = s1[maxi - 1];
-                maxAlignB[index] = s2[maxj - 1];
-
+            if(scores[cell] == scores[cell - width - 1] + score) {
+                cigar.pair(s1[maxi - 1], s2[maxj - 1]);
                 maxi--;
                 maxj--;
-                index--;
             }
             // If deletion
-            else if(scores[maxi][maxj] == scores[maxi - 1][maxj] + GAP) {
-                maxAlignA[index] = s1[maxi - 1];
-                maxAlignB[index] = '-';
+            else if(scores[cell] == scores[cell - width] + GAP) {
+                cigar.add(AlignmentResult.DELETION);
                 maxi--;
-                index--;
             }
             // If insertion
             else {
-                maxAlignA[index] = '-';
-                maxAlignB[index] = s2[maxj - 1];
+                cigar.add(AlignmentResult.INSERTION);
                 maxj--;
-                index--;
             }
-
-            size++;
         }
 
-        // Create new arrays with only the alignment characters (i.e. no empty indices).
-        char[] actualAlignA = new char[size];
-        char[] actualAlignB = new char[size];
-        System.arraycopy(maxAlignA, index + 1, actualAlignA, 0, actualAlignA.length);
-        System.arraycopy(maxAlignB, index + 1, actualAlignB, 0, actualAlignB.length);
-
-        return new char[][]{ actualAlignA, actualAlignB };
-    }
-
-    private int getScore(char c1, char c2, Map<String, Integer> scoring_matrix) {
-        // This is the difference between the non-score matrix version and this version
-        // Try to get the score
-        Integer match_score = scoring_matrix.get("" + c1 + c2);
-
-        // If the above doesn't return a value, it means either c1, c2, or both are not in the map.
-        // Try different combinations with the wildcard character (*).
-        if(match_score != null) {
-            return match_score;
-        } else {
-            match_score = scoring_matrix.get(""  + '*' + c2);
-
-            if(match_score != null) {
-                return match_score;
-            } else {
-                match_score = scoring_matrix.get("" + c1 + '*');
-
-                if(match_score != null) {
-                    return match_score;
-                } else {
-                    match_score = scoring_matrix.get("**");
-                }
-            }
-        }
-
-        // If nothing has been found at all, i.e., there were no wildcard characters in the map, return the default mismatch.
-        return MISMATCH;
+        return cigar.build(s1, s2, maxi, endi, maxj, endj, scores[endi * width + endj]);
     }
 
     // Getters and Setters below
@@ -309,19 +586,19 @@ public class SmithWaterman {
      * Sets the Match score.
      * @param newValue The new score for matches.
      */
-    public void setMATCH(int newValue) { MATCH = newValue; }
+    public void setMATCH(int newValue) { checkMutable(); MATCH = newValue; }
 
     /**
      * Sets the Mismatch score.
      * @param newValue The new score for mismatches.
      */
-    public void setMISMATCH(int newValue) { MISMATCH = newValue; }
+    public void setMISMATCH(int newValue) { checkMutable(); MISMATCH = newValue; }
 
     /**
      * Sets the Gap score.
      * @param newValue The new score for gaps.
      */
-    public void setGAP(int newValue) { GAP = newValue; }
+    public void setGAP(int newValue) { checkMutable(); GAP = newValue; }
 
     /**
      * Gets the Match score.
@@ -342,10 +619,106 @@ public class SmithWaterman {
     public int getGAP() { return GAP; }
 
     /**
-     * Sets the scoring matrix to a map provided by the user.
+     * Sets whether alignments are traced back in linear space (Hirschberg style) instead of from a full score matrix.
+     * The alignments are the same either way. Linear space takes about twice as long, but memory grows with the length of the query rather than the product of both lengths.
+     * Alignments too large for a full matrix (more than 2^26 cells) always use linear space.
+     * @param linearSpace True to always use linear space.
+     */
+    public void setLinearSpace(boolean linearSpace) { checkMutable(); this.linearSpace = linearSpace; }
+
+    /**
+     * Gets whether alignments are always traced back in linear space.
+     * @return True if linear space is always used.
+     */
+    public boolean isLinearSpace() { return linearSpace; }
+
+    /**
+     * Sets the Gap Open score, which is added once for every gap on top of the Gap score for each of its characters.
+     * A gap of length k scores GAP_OPEN + k * GAP. The default of 0 gives linear gaps, otherwise Gotoh's algorithm is used.
+     * @param newValue The new score for opening a gap.
+     */
+    public void setGAP_OPEN(int newValue) { checkMutable(); GAP_OPEN = newValue; }
+
+    /**
+     * Gets the Gap Open score.
+     * @return The current score for opening a gap.
+     */
+    public int getGAP_OPEN() { return GAP_OPEN; }
+
+    /**
+     * Only considers alignments that stay within a band of diagonals around the main diagonal, so only about (2 * width + 1) cells per character are computed.
+     * Banded alignments keep one byte per cell in the band for the traceback.
+     * @param width How many diagonals either side of the main diagonal are included.
+     */
+    public void setBand(int width) { setBand(width, 0); }
+
+    /**
+     * Only considers alignments that stay within a band of diagonals around the given diagonal, such as the diagonal of a seed match.
+     * A character at position i in the subject and position j in the query is on diagonal j - i.
+     * Banded alignments keep one byte per cell in the band for the traceback.
+     * @param width How many diagonals either side of the given diagonal are included.
+     * @param diagonal The diagonal at the centre of the band.
+     */
+    public void setBand(int width, int diagonal) {
+        checkMutable();
+        if(width < 0) throw new IllegalArgumentException("The band width can't be negative.");
+
+        bandWidth = width;
+        bandDiagonal = diagonal;
+    }
+
+    /**
+     * Removes the band, so every cell is considered again.
+     */
+    public void removeBand() { checkMutable(); bandWidth = -1; }
+
+    /**
+     * Gets the band width.
+     * @return The number of diagonals either side of the band's centre, or -1 if there is no band.
+     */
+    public int getBandWidth() { return bandWidth; }
+
+    /**
+     * Gets the diagonal at the centre of the band.
+     * @return The band's diagonal.
+     */
+    public int getBandDiagonal() { return bandDiagonal; }
+
+    /**
+     * Sets the X-drop value. Once the best score found is more than X above 0, cells scoring more than X below it are pruned,
+     * and rows stop being computed past the cells that are still alive. This is a heuristic: an alignment that dips more than X below the best score
+     * before recovering will be missed. 0 (the default) turns it off.
+     * @param newValue The new X-drop value.
+     */
+    public void setX_DROP(int newValue) {
+        checkMutable();
+        if(newValue < 0) throw new IllegalArgumentException("The X-drop value can't be negative.");
+        X_DROP = newValue;
+    }
+
+    /**
+     * Gets the X-drop value.
+     * @return The current X-drop value, or 0 if it is turned off.
+     */
+    public int getX_DROP() { return X_DROP; }
+
+    /**
+     * Sets the scoring matrix to a map provided by the user. The map is compiled into a ScoringMatrix.
+     * Pairs with no score (directly or through a '*' wildcard) use the Mismatch score.
      * @param matrix A map of character pairs (as a string) and the associated score for each pair.
      */
     public void setScoringMatrix(Map<String, Integer> matrix) {
+        checkMutable();
+        scoringMatrix = matrix == null ? null : ScoringMatrix.fromMap(matrix);
+    }
+
+    /**
+     * Sets the scoring matrix, e.g. ScoringMatrix.BLOSUM62.
+     * Pairs with no score (directly or through a '*' wildcard) use the Mismatch score.
+     * @param matrix The compiled scoring matrix.
+     */
+    public void setScoringMatrix(ScoringMatrix matrix) {
+        checkMutable();
         scoringMatrix = matrix;
     }
 
@@ -356,6 +729,138 @@ public class SmithWaterman {
      * @throws IOException
      */
     public void loadScoringMatrix(String path) throws IOException {
-        scoringMatrix = MatrixLoader.load(path);
+        checkMutable();
+        scoringMatrix = ScoringMatrix.load(path);
+    }
+
+    /**
+     * Builds a SmithWaterman aligner whose settings can't be changed afterwards, so it can be shared between threads.
+     * Each method sets the same value as the matching setter on SmithWaterman, and anything not set keeps its default.
+     */
+    public static final class Builder {
+        private int match = 1;
+        private int mismatch = -1;
+        private int gap = -1;
+        private ScoringMatrix scoringMatrix = null;
+        private boolean linearSpace = false;
+        private int gapOpen = 0;
+        private int bandWidth = -1;
+        private int bandDiagonal = 0;
+        private int xDrop = 0;
+
+        private Builder() {}
+
+        /**
+         * Sets the Match score.
+         * @param score The score for matches.
+         * @return This builder.
+         */
+        public Builder match(int score) {
+            match = score;
+            return this;
+        }
+
+        /**
+         * Sets the Mismatch score.
+         * @param score The score for mismatches.
+         * @return This builder.
+         */
+        public Builder mismatch(int score) {
+            mismatch = score;
+            return this;
+        }
+
+        /**
+         * Sets the Gap score.
+         * @param score The score for each character of a gap.
+         * @return This builder.
+         */
+        public Builder gap(int score) {
+            gap = score;
+            return this;
+        }
+
+        /**
+         * Sets the Gap Open score (see setGAP_OPEN()).
+         * @param score The score for opening a gap.
+         * @return This builder.
+         */
+        public Builder gapOpen(int score) {
+            gapOpen = score;
+            return this;
+        }
+
+        /**
+         * Sets the scoring matrix, e.g. ScoringMatrix.BLOSUM62. Pairs with no score use the Mismatch score.
+         * @param matrix The compiled scoring matrix, or null to use Match and Mismatch scores.
+         * @return This builder.
+         */
+        public Builder scoringMatrix(ScoringMatrix matrix) {
+            scoringMatrix = matrix;
+            return this;
+        }
+
+        /**
+         * Sets the scoring matrix from a map of character pairs to scores. The map is compiled into a ScoringMatrix.
+         * @param matrix A map of character pairs (as a string) and the associated score for each pair, or null to use Match and Mismatch scores.
+         * @return This builder.
+         */
+        public Builder scoringMatrix(Map<String, Integer> matrix) {
+            scoringMatrix = matrix == null ? null : ScoringMatrix.fromMap(matrix);
+            return this;
+        }
+
+        /**
+         * Sets whether alignments are always traced back in linear space (see setLinearSpace()).
+         * @param linearSpace True to always use linear space.
+         * @return This builder.
+         */
+        public Builder linearSpace(boolean linearSpace) {
+            this.linearSpace = linearSpace;
+            return this;
+        }
+
+        /**
+         * Only considers alignments within a band of diagonals around the main diagonal (see setBand()).
+         * @param width How many diagonals either side of the main diagonal are included.
+         * @return This builder.
+         */
+        public Builder band(int width) {
+            return band(width, 0);
+        }
+
+        /**
+         * Only considers alignments within a band of diagonals around the given diagonal (see setBand()).
+         * @param width How many diagonals either side of the given diagonal are included.
+         * @param diagonal The diagonal at the centre of the band.
+         * @return This builder.
+         */
+        public Builder band(int width, int diagonal) {
+            if(width < 0) throw new IllegalArgumentException("The band width can't be negative.");
+
+            bandWidth = width;
+            bandDiagonal = diagonal;
+            return this;
+        }
+
+        /**
+         * Sets the X-drop value (see setX_DROP()).
+         * @param value The X-drop value, or 0 to turn it off.
+         * @return This builder.
+         */
+        public Builder xDrop(int value) {
+            if(value < 0) throw new IllegalArgumentException("The X-drop value can't be negative.");
+
+            xDrop = value;
+            return this;
+        }
+
+        /**
+         * Builds the aligner. The builder can be changed and used again afterwards without affecting it.
+         * @return A SmithWaterman aligner with these settings.
+         */
+        public SmithWaterman build() {
+            return new SmithWaterman(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * The alignment based string metrics that can be used for batch comparisons.
+ * Edit distances are "lower is better", while Jaro and Jaro-Winkler similarities are "higher is better".
+ */
+public enum StringMetric {
+    /** Levenshtein distance (insertions, deletions, and substitutions). */
+    LEVENSHTEIN(true) {
+        @Override
+        public double compare(String s1, String s2) { return Levenshtein.distance(s1, s2); }
+    },
+    /** Damerau-Levenshtein distance (optimal string alignment, so adjacent transpositions also count as 1 edit). */
+    DAMERAU_LEVENSHTEIN(true) {
+        @Override
+        public double compare(String s1, String s2) { return DamerauLevenshtein.distance(s1, s2); }
+    },
+    /** Jaro similarity. */
+    JARO(false) {
+        @Override
+        public double compare(String s1, String s2) { return Jaro.similarity(s1, s2); }
+    },
+    /** Jaro-Winkler similarity, with the default prefix scaling factor of 0.1. */
+    JARO_WINKLER(false) {
+        @Override
+        public double compare(String s1, String s2) { return JaroWinkler.similarity(s1, s2); }
+    },
+    /** Hamming distance (substitutions only, so both strings must be the same length). */
+    HAMMING(true) {
+        @Override
+        public double compare(String s1, String s2) { return Hamming.distance(s1, s2); }
+    };
+
+    private final boolean distance;
+
+    StringMetric(boolean distance) {
+        this.distance = distance;
+    }
+
+    /**
+     * Compares 2 strings with this metric.
+     *
+     * @param s1 The subject string.
+     * @param s2 The query string.
+     * @return The distance (for edit distances) or similarity (for Jaro and Jaro-Winkler) between the strings.
+     */
+    public abstract double compare(String s1, String s2);
+
+    /**
+     * Whether this metric is a distance (lower is better) rather than a similarity (higher is better).
+     *
+     * @return True for edit distances, false for similarities.
+     */
+    public boolean isDistance() {
+        return distance;
+    }
+}
@@ -0,0 +1,285 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Farrar's striped Smith-Waterman (https://doi.org/10.1093/bioinformatics/btl582) on the Vector API: the local alignment score of a query against any number of subjects.
+// The query is split into one stripe per lane: lane l holds query positions l * segments + k, for k = 0 .. segments - 1. A cell and the cell below it are then in the same lane
+// of consecutive vectors, so a whole vector of cells can be filled at once from the previous subject column. Vertical gaps that cross from one stripe into the next are
+// fixed afterwards by the "lazy F" loop, which usually stops within a pass.
+// Scores are first kept in 8-bit lanes (e.g. 64 cells per step with AVX-512), then 16-bit lanes if they get too big, and score() gives up with SCALAR after that.
+// It also gives up when gaps are so cheap that the lazy F loop does most of the work (short queries, wide vectors), where the scalar kernels are faster.
+// The Vector API has no saturating adds, so every value is kept between 0 and the lane's maximum minus the best pair score instead, which no add or subtract can wrap,
+// and a column whose best cell passes that bound counts as an overflow. Gaps score open + length * extend, as in GotohAligner (open is 0 for linear gaps).
+// It keeps its columns between calls, so an instance can only be used by one thread. Only used once Simd.AVAILABLE has been checked.
+final class StripedAligner {
+    static final int SCALAR = -1; // The caller should use the scalar kernels instead.
+    private static final int OVERFLOW = -2;
+
+    // After the first WARMUP columns, give up once the lazy F loop has updated more than LAZY_LIMIT segments for each one the main loop has filled.
+    private static final int WARMUP = 16;
+    private static final int LAZY_LIMIT = 6;
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+
+    private final char[] query;
+    private final ScoringMatrix matrix; // Null for Match and Mismatch scores.
+    private final byte[] queryCodes; // The query's matrix codes.
+    private final int match;
+    private final int mismatch;
+    private final int gapOpenExtend; // The (positive) cost of a gap's first character.
+    private final int gapExtend; // The (positive) cost of each character after that.
+    private final char[] alphabet; // Without a matrix: the query's characters, sorted. A character's code is its index, and any other character gets alphabet.length.
+    private final int maxPair; // The best score a single pair of characters can get.
+
+    private final int segments8;
+    private final byte[][] profile8; // profile8[code] holds the score of each query position against that character, in striped order. Built when a code is first seen.
+    private byte[] hLoad8, hStore8, e8;
+
+    private final int segments16;
+    private final short[][] profile16;
+    private short[] hLoad16, hStore16, e16;
+
+    // Open and extend are the aligner's gap scores, so both must be 0 or less.
+    StripedAligner(char[] query, ScoringMatrix matrix, int match, int mismatch, int open, int extend) {
+        this.query = query;
+        this.matrix = matrix;
+        this.match = match;
+        this.mismatch = mismatch;
+        this.gapOpenExtend = -(open + extend);
+        this.gapExtend = -extend;
+
+        if(matrix == null) {
+            char[] sorted = query.clone();
+            Arrays.sort(sorted);
+            int n = 0;
+            for(int i = 0; i < sorted.length; i++) {
+                if(n == 0 || sorted[n - 1] != sorted[i]) sorted[n++] = sorted[i];
+            }
+            alphabet = Arrays.copyOf(sorted, n);
+        }
+        else alphabet = null;
+        queryCodes = matrix == null ? null : matrix.encode(query);
+
+        if(matrix == null) maxPair = Math.max(match, mismatch);
+        else {
+            int best = Integer.MIN_VALUE;
+            boolean[] seen = new boolean[matrix.stride];
+            for(byte code : queryCodes) {
+                if(seen[code]) continue;
+                seen[code] = true;
+                for(int row = 0; row < matrix.stride; row++) best = Math.max(best, matrix.scores[row * matrix.stride + code]);
+            }
+            maxPair = best;
+        }
+
+        segments8 = (query.length + BYTES.length() - 1) / BYTES.length();
+        profile8 = new byte[codes()][];
+        segments16 = (query.length + SHORTS.length() - 1) / SHORTS.length();
+        profile16 = new short[codes()][];
+    }
+
+    // The score of the best local alignment between the query and subject[0, length), or SCALAR if it doesn't fit in 16 bits or the striped kernel is the wrong tool.
+    int score(char[] subject, int length) {
+        if(query.length == 0 || length == 0 || maxPair <= 0) return 0;
+
+        int score = maxPair <= Byte.MAX_VALUE ? score8(subject, length) : OVERFLOW;
+        if(score == OVERFLOW && maxPair <= Short.MAX_VALUE) score = score16(subject, length);
+        return score == OVERFLOW ? SCALAR : score;
+    }
+
+    // score() without the 8-bit attempt, for subjects already known to overflow it.
+    int scoreWide(char[] subject, int length) {
+        if(query.length == 0 || length == 0 || maxPair <= 0) return 0;
+
+        int score = maxPair <= Short.MAX_VALUE ? score16(subject, length) : OVERFLOW;
+        return score == OVERFLOW ? SCALAR : score;
+    }
+
+    private int score8(char[] subject, int length) {
+        int lanes = BYTES.length();
+        int segments = segments8;
+        if(hLoad8 == null) {
+            hLoad8 = new byte[segments * lanes];
+            hStore8 = new byte[segments * lanes];
+            e8 = new byte[segments * lanes];
+        }
+        else {
+            Arrays.fill(hStore8, (byte) 0);
+            Arrays.fill(e8, (byte) 0);
+        }
+        byte[] hLoad = hLoad8, hStore = hStore8, e = e8;
+
+        ByteVector zero = ByteVector.zero(BYTES);
+        ByteVector gapOE = ByteVector.broadcast(BYTES, (byte) Math.min(gapOpenExtend, Byte.MAX_VALUE));
+        ByteVector gapE = ByteVector.broadcast(BYTES, (byte) Math.min(gapExtend, Byte.MAX_VALUE));
+        ByteVector gapO = ByteVector.broadcast(BYTES, (byte) Math.min(gapOpenExtend - gapExtend, Byte.MAX_VALUE));
+        ByteVector limit = ByteVector.broadcast(BYTES, (byte) (Byte.MAX_VALUE - maxPair));
+        ByteVector best = zero;
+        long lazyUpdates = 0;
+
+        for(int i = 0; i < length; i++) {
+            int code = code(subject[i]);
+            byte[] profile = profile8[code];
+            if(profile == null) profile = profile8[code] = buildProfile8(code);
+
+            // The diagonal for the first segment comes from the previous segment of the lane before.
+            ByteVector h = ByteVector.fromArray(BYTES, hStore, (segments - 1) * lanes).unslice(1);
+            byte[] swap = hLoad; hLoad = hStore; hStore = swap;
+            ByteVector f = zero;
+
+            for(int k = 0, offset = 0; k < segments; k++, offset += lanes) {
+                ByteVector vE = ByteVector.fromArray(BYTES, e, offset);
+                h = h.add(ByteVector.fromArray(BYTES, profile, offset)).max(zero).max(vE).max(f);
+                best = best.max(h);
+                h.intoArray(hStore, offset);
+
+                ByteVector open = h.sub(gapOE).max(zero);
+                vE.sub(gapE).max(open).intoArray(e, offset);
+                f = f.sub(gapE).max(open);
+                h = ByteVector.fromArray(BYTES, hLoad, offset);
+            }
+
+            // Lazy F: carry the vertical gaps over into the next lane. Once f is no more than a cell's score minus the gap open cost, everything below the cell
+            // already gets at least as much from the gap opened there, so the loop can stop.
+            // It's one loop (not a loop of passes over the segments) because C2 boxes f when it has to carry it out of a nested loop.
+            f = f.unslice(1);
+            for(int k = 0, pass = 0; pass <= lanes; ) {
+                int offset = k * lanes;
+                ByteVector vH = ByteVector.fromArray(BYTES, hStore, offset);
+                if(!f.compare(VectorOperators.GT, vH.sub(gapO).max(zero)).anyTrue()) break;
+
+                lazyUpdates++;
+                vH = vH.max(f);
+                best = best.max(vH);
+                vH.intoArray(hStore, offset);
+                ByteVector.fromArray(BYTES, e, offset).max(vH.sub(gapOE)).intoArray(e, offset);
+                f = f.sub(gapE).max(zero);
+                if(++k == segments) {
+                    k = 0;
+                    pass++;
+                    f = f.unslice(1);
+                }
+            }
+
+            if(best.compare(VectorOperators.GT, limit).anyTrue()) return OVERFLOW;
+            if(i >= WARMUP && lazyUpdates > LAZY_LIMIT * (long) segments * (i + 1)) return SCALAR;
+        }
+
+        return best.reduceLanes(VectorOperators.MAX);
+    }
+
+    // score8() with 16-bit lanes.
+    private int score16(char[] subject, int length) {
+        int lanes = SHORTS.length();
+        int segments = segments16;
+        if(hLoad16 == null) {
+            hLoad16 = new short[segments * lanes];
+            hStore16 = new short[segments * lanes];
+            e16 = new short[segments * lanes];
+        }
+        else {
+            Arrays.fill(hStore16, (short) 0);
+            Arrays.fill(e16, (short) 0);
+        }
+        short[] hLoad = hLoad16, hStore = hStore16, e = e16;
+
+        ShortVector zero = ShortVector.zero(SHORTS);
+        ShortVector gapOE = ShortVector.broadcast(SHORTS, (short) Math.min(gapOpenExtend, Short.MAX_VALUE));
+        ShortVector gapE = ShortVector.broadcast(SHORTS, (short) Math.min(gapExtend, Short.MAX_VALUE));
+        ShortVector gapO = ShortVector.broadcast(SHORTS, (short) Math.min(gapOpenExtend - gapExtend, Short.MAX_VALUE));
+        ShortVector limit = ShortVector.broadcast(SHORTS, (short) (Short.MAX_VALUE - maxPair));
+        ShortVector best = zero;
+        long lazyUpdates = 0;
+
+        for(int i = 0; i < length; i++) {
+            int code = code(subject[i]);
+            short[] profile = profile16[code];
+            if(profile == null) profile = profile16[code] = buildProfile16(code);
+
+            ShortVector h = ShortVector.fromArray(SHORTS, hStore, (segments - 1) * lanes).unslice(1);
+            short[] swap = hLoad; hLoad = hStore; hStore = swap;
+            ShortVector f = zero;
+
+            for(int k = 0, offset = 0; k < segments; k++, offset += lanes) {
+                ShortVector vE = ShortVector.fromArray(SHORTS, e, offset);
+                h = h.add(ShortVector.fromArray(SHORTS, profile, offset)).max(zero).max(vE).max(f);
+                best = best.max(h);
+                h.intoArray(hStore, offset);
+
+                ShortVector open = h.sub(gapOE).max(zero);
+                vE.sub(gapE).max(open).intoArray(e, offset);
+                f = f.sub(gapE).max(open);
+                h = ShortVector.fromArray(SHORTS, hLoad, offset);
+            }
+
+            f = f.unslice(1);
+            for(int k = 0, pass = 0; pass <= lanes; ) {
+                int offset = k * lanes;
+                ShortVector vH = ShortVector.fromArray(SHORTS, hStore, offset);
+                if(!f.compare(VectorOperators.GT, vH.sub(gapO).max(zero)).anyTrue()) break;
+
+                lazyUpdates++;
+                vH = vH.max(f);
+                best = best.max(vH);
+                vH.intoArray(hStore, offset);
+                ShortVector.fromArray(SHORTS, e, offset).max(vH.sub(gapOE)).intoArray(e, offset);
+                f = f.sub(gapE).max(zero);
+                if(++k == segments) {
+                    k = 0;
+                    pass++;
+                    f = f.unslice(1);
+                }
+            }
+
+            if(best.compare(VectorOperators.GT, limit).anyTrue()) return OVERFLOW;
+            if(i >= WARMUP && lazyUpdates > LAZY_LIMIT * (long) segments * (i + 1)) return SCALAR;
+        }
+
+        return best.reduceLanes(VectorOperators.MAX);
+    }
+
+    // Positions past the end of the query get the lane's minimum, which can never start or extend an alignment.
+    private byte[] buildProfile8(int code) {
+        int lanes = BYTES.length();
+        byte[] profile = new byte[segments8 * lanes];
+        for(int k = 0, i = 0; k < segments8; k++) {
+            for(int lane = 0, j = k; lane < lanes; lane++, i++, j += segments8) {
+                profile[i] = j < query.length ? (byte) Math.max(pair(code, j), Byte.MIN_VALUE) : Byte.MIN_VALUE;
+            }
+        }
+        return profile;
+    }
+
+    private short[] buildProfile16(int code) {
+        int lanes = SHORTS.length();
+        short[] profile = new short[segments16 * lanes];
+        for(int k = 0, i = 0; k < segments16; k++) {
+            for(int lane = 0, j = k; lane < lanes; lane++, i++, j += segments16) {
+                profile[i] = j < query.length ? (short) Math.max(pair(code, j), Short.MIN_VALUE) : Short.MIN_VALUE;
+            }
+        }
+        return profile;
+    }
+
+    private int codes() {
+        return matrix == null ? alphabet.length + 1 : matrix.stride;
+    }
+
+    private int code(char c) {
+        if(matrix != null) return matrix.code(c);
+
+        int i = Arrays.binarySearch(alphabet, c);
+        return i < 0 ? alphabet.length : i;
+    }
+
+    // The score of a subject character (by its code) against the query character at position j.
+    private int pair(int code, int j) {
+        if(matrix != null) return matrix.scores[code * matrix.stride + queryCodes[j]];
+        return code < alphabet.length && alphabet[code] == query[j] ? match : mismatch;
+    }
+}
@@ -0,0 +1,371 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A suffix array over a subject string, built once and reused for any number of queries (e.g. a reference genome that many reads are aligned against).
+ * Exact matches of any length are looked up by binary searching the sorted suffixes, so a lookup costs O(m log n) for a pattern of length m
+ * instead of a pass over the subject. SeedAndExtend.align() indexes the subject on every call, so passing it an index instead skips that work.<br><br>
+ *
+ * The suffix array is built in linear time with SA-IS, and takes 4 bytes per subject character on top of the subject itself.
+ * It can be saved to a file and loaded back later by memory mapping the file, so a large index is only read from disk as it's used, and isn't rebuilt for each run.
+ * Indexes loaded from a file must be closed to unmap the file. Indexes can be shared between threads, but not used after they're closed.<br><br>
+ *
+ * <a href="https://doi.org/10.1109/TC.2010.188">SA-IS paper.</a>
+ */
+public class SubjectIndex implements AutoCloseable {
+    private static final int MAGIC = 0x53554258; // "SUBX"
+    private static final int VERSION = 1;
+    private static final long HEADER_BYTES = 4L * Integer.BYTES;
+    private static final int CHUNK = 8192; // Characters copied into the file at a time.
+    private static final int LEFT_CHECK = 8; // Ranges of suffixes this small are checked for left-maximal matches before narrowing them further.
+
+    // Little-endian regardless of the platform, so files can be moved between machines.
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final CharSequence text;
+    private final int length;
+    private final MemorySegment suffixes; // The start of each suffix, in sorted order.
+    private final ValueLayout.OfInt suffixLayout; // Native order on the heap, little-endian in a file.
+    private final Arena arena; // Only set for indexes loaded from a file.
+
+    private SubjectIndex(CharSequence text, MemorySegment suffixes, ValueLayout.OfInt suffixLayout, Arena arena) {
+        this.text = text;
+        this.length = text.length();
+        this.suffixes = suffixes;
+        this.suffixLayout = suffixLayout;
+        this.arena = arena;
+    }
+
+    /**
+     * Builds an index over a subject, on the heap.
+     *
+     * @param subject The subject string.
+     * @return The index.
+     */
+    public static SubjectIndex build(String subject) {
+        if(subject == null) throw new IllegalArgumentException("The provided subject is null.");
+
+        // The first slot is the empty suffix, which is never looked up.
+        int[] sa = SuffixArray.build(subject);
+        return new SubjectIndex(subject, MemorySegment.ofArray(sa).asSlice(Integer.BYTES), ValueLayout.JAVA_INT, null);
+    }
+
+    /**
+     * Writes the index (the subject and its suffix array) to a file, which is created or overwritten. The file can be loaded with load().
+     * The index is written to a temporary file next to it first, then moved into place, so an index loaded from a file can be saved back over that file.
+     *
+     * @param path The file to write to.
+     * @throws IOException
+     */
+    public void save(String path) throws IOException {
+        if(path == null) throw new IllegalArgumentException("The provided path is null.");
+
+        long suffixOffset = suffixOffset(length);
+        long bytes = suffixOffset + (long) length * Integer.BYTES;
+
+        // Truncating the file in place would wipe it out from under an index mapped from it, before it's copied.
+        Path target = Path.of(path).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            write(temporary, bytes, suffixOffset);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(Path path, long bytes, long suffixOffset) throws IOException {
+        try(Arena mapping = Arena.ofConfined(); FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes, mapping);
+
+            if(text instanceof SegmentText mapped) {
+                MemorySegment.copy(mapped.segment(), 0, file, HEADER_BYTES, (long) length * Character.BYTES);
+            } else {
+                String subject = (String) text;
+                char[] buffer = new char[CHUNK];
+                for(int from = 0; from < length; from += CHUNK) {
+                    int to = Math.min(length, from + CHUNK);
+                    subject.getChars(from, to, buffer, 0);
+                    MemorySegment.copy(buffer, 0, file, SegmentText.CHAR, HEADER_BYTES + (long) from * Character.BYTES, to - from);
+                }
+            }
+            MemorySegment.copy(suffixes, suffixLayout, 0, file, INT, suffixOffset, length);
+
+            // The header goes in last, so an interrupted save doesn't leave a file that looks complete.
+            file.set(INT, 0, MAGIC);
+            file.set(INT, 4, VERSION);
+            file.set(INT, 8, length);
+            file.set(INT, 12, 0);
+            file.force();
+        }
+    }
+
+    /**
+     * Maps an index previously saved to a file. The subject and suffix array are read from the file as they're accessed, rather than loaded up front.
+     *
+     * @param path The file to read from.
+     * @return The index, which must be closed to unmap the file.
+     * @throws IOException
+     */
+    public static SubjectIndex load(String path) throws IOException {
+        if(path == null) throw new IllegalArgumentException("The provided path is null.");
+
+        Arena arena = Arena.ofShared();
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if(bytes < HEADER_BYTES) throw new IOException("Not a SubjectIndex file: " + path);
+
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes, arena);
+            if(file.get(INT, 0) != MAGIC) throw new IOException("Not a SubjectIndex file: " + path);
+            int version = file.get(INT, 4);
+            if(version != VERSION) throw new IOException("Unsupported SubjectIndex file version: " + version);
+
+            int n = file.get(INT, 8);
+            if(n < 0 || bytes != suffixOffset(n) + (long) n * Integer.BYTES) throw new IOException("Corrupt SubjectIndex file: " + path);
+
+            SegmentText text = new SegmentText(file.asSlice(HEADER_BYTES, (long) n * Character.BYTES));
+            return new SubjectIndex(text, file.asSlice(suffixOffset(n), (long) n * Integer.BYTES), INT, arena);
+        } catch(IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the length of the indexed subject.
+     *
+     * @return The number of characters in the subject.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Counts the occurrences of a pattern in the subject (overlapping occurrences included).
+     *
+     * @param pattern The pattern to look for.
+     * @return The number of positions the pattern occurs at.
+     */
+    public int count(String pattern) {
+        if(pattern == null) throw new IllegalArgumentException("The provided pattern is null.");
+
+        long range = range(pattern.toCharArray(), 0, pattern.length());
+        return (int) range - (int) (range >>> 32);
+    }
+
+    /**
+     * Finds every occurrence of a pattern in the subject (overlapping occurrences included).
+     *
+     * @param pattern The pattern to look for.
+     * @return The positions the pattern occurs at, in increasing order.
+     */
+    public int[] find(String pattern) {
+        if(pattern == null) throw new IllegalArgumentException("The provided pattern is null.");
+
+        long range = range(pattern.toCharArray(), 0, pattern.length());
+        return positions((int) (range >>> 32), (int) range);
+    }
+
+    /**
+     * Finds every maximal exact match (MEM) between the subject and a query that is at least minLength characters long.
+     * Unlike fixed length k-mer seeds, each match is as long as it can be, so a long shared region is found once rather than as many overlapping k-mers.<br><br>
+     *
+     * For each query position, the range of suffixes starting with the query's next minLength characters is looked up, then narrowed one character at a time.
+     * Suffixes that drop out of the range match exactly up to that character, so they're right-maximal; those with a different character before them
+     * (or at the start of either sequence) are left-maximal too. Once the range is down to a few suffixes that all extend to the left, they're a match
+     * already found from an earlier query position, so the narrowing stops there. Inside a long shared region each query position costs one lookup,
+     * rather than a walk to the end of the match.
+     *
+     * @param query The query string.
+     * @param minLength The minimum length of a match.
+     * @return The matches, in order of query position, then subject position.
+     */
+    public List<MaximalMatch> maximalMatches(String query, int minLength) {
+        if(query == null) throw new IllegalArgumentException("The provided query is null.");
+        if(minLength <= 0) throw new IllegalArgumentException("minLength must be greater than 0.");
+
+        char[] q = query.toCharArray();
+        List<MaximalMatch> matches = new ArrayList<>();
+
+        for(int i = 0; i + minLength <= q.length; i++) {
+            // Nothing shorter than minLength is reported, so the range starts at the suffixes matching the first minLength characters.
+            long range = range(q, i, i + minLength);
+            int lo = (int) (range >>> 32), hi = (int) range;
+            if(lo == hi || (hi - lo <= LEFT_CHECK && !anyLeftMaximal(q, i, lo, hi))) continue;
+
+            int from = matches.size();
+            for(int d = minLength; ; d++) {
+                if(i + d == q.length) {
+                    addMaximal(matches, q, i, lo, hi, d);
+                    break;
+                }
+
+                char c = q[i + d];
+                int nextLo = lowerBound(lo, hi, d, c);
+                int nextHi = upperBound(nextLo, hi, d, c);
+
+                addMaximal(matches, q, i, lo, nextLo, d);
+                addMaximal(matches, q, i, nextHi, hi, d);
+                if(nextLo == nextHi) break;
+                if((nextLo != lo || nextHi != hi) && nextHi - nextLo <= LEFT_CHECK && !anyLeftMaximal(q, i, nextLo, nextHi)) break;
+
+                lo = nextLo;
+                hi = nextHi;
+            }
+
+            matches.subList(from, matches.size()).sort(Comparator.comparingInt(MaximalMatch::subjectPos));
+        }
+
+        return matches;
+    }
+
+    /**
+     * Unmaps the file backing the index. Does nothing for indexes built on the heap.
+     */
+    @Override
+    public void close() {
+        if(arena != null) arena.close();
+    }
+
+    CharSequence text() {
+        return text;
+    }
+
+    // Every (query position, subject position) pair where the query and the subject share a k-mer, in the same order as KmerIndex.seeds().
+    List<Seed> seeds(char[] query, int k) {
+        List<Seed> seeds = new ArrayList<>();
+
+        for(int i = 0; i + k <= query.length; i++) {
+            long range = range(query, i, i + k);
+            for(int position: positions((int) (range >>> 32), (int) range)) seeds.add(new Seed(i, position));
+        }
+
+        return seeds;
+    }
+
+    // The suffixes in sa[from, to) that match exactly 'matched' characters of the query from i, and can't be extended to the left either.
+    private void addMaximal(List<MaximalMatch> matches, char[] query, int i, int from, int to, int matched) {
+        for(int x = from; x < to; x++) {
+            int position = suffix(x);
+            if(i == 0 || position == 0 || text.charAt(position - 1) != query[i - 1]) matches.add(new MaximalMatch(position, i, matched));
+        }
+    }
+
+    // Whether any suffix in sa[from, to) can't be extended to the left. If none can, narrowing the range further can't find a match.
+    private boolean anyLeftMaximal(char[] query, int i, int from, int to) {
+        if(i == 0) return true;
+
+        for(int x = from; x < to; x++) {
+            int position = suffix(x);
+            if(position == 0 || text.charAt(position - 1) != query[i - 1]) return true;
+        }
+
+        return false;
+    }
+
+    // The range of sorted suffixes starting with pattern[from, to), packed as start << 32 | end.
+    // Most ranges only hold a few suffixes, so the end is found by galloping up from the start rather than searching the whole array again.
+    private long range(char[] pattern, int from, int to) {
+        int start = search(pattern, from, to, 0, length, false);
+
+        int end = start, step = 1; // Every suffix in sa[start, end) starts with the pattern.
+        while(end + step <= length && startsWith(suffix(end + step - 1), pattern, from, to)) {
+            end += step;
+            step <<= 1;
+        }
+        end = search(pattern, from, to, end, Math.min(end + step - 1, length), true);
+
+        return (long) start << 32 | end;
+    }
+
+    // The first suffix in sa[lo, hi) that sorts after pattern[from, to), or (for the end of a range) after every suffix starting with it. Hi if there isn't one.
+    // Every suffix between the bounds shares at least as many characters with the pattern as both bounds do, so comparisons start there (Manber and Myers).
+    private int search(char[] pattern, int from, int to, int lo, int hi, boolean upper) {
+        int m = to - from;
+        int lcpLo = 0, lcpHi = 0; // The characters the pattern shares with the suffixes just below lo and at hi.
+
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int position = suffix(mid);
+            int k = Math.min(lcpLo, lcpHi);
+            while(k < m && charAt(position, k) == pattern[from + k]) k++;
+
+            if(k == m ? upper : charAt(position, k) < pattern[from + k]) {
+                lo = mid + 1;
+                lcpLo = k;
+            } else {
+                hi = mid;
+                lcpHi = k;
+            }
+        }
+
+        return lo;
+    }
+
+    private boolean startsWith(int suffix, char[] pattern, int from, int to) {
+        for(int d = 0; d < to - from; d++) {
+            if(charAt(suffix, d) != pattern[from + d]) return false;
+        }
+
+        return true;
+    }
+
+    // The subject positions of the suffixes in sa[from, to), in increasing order.
+    private int[] positions(int from, int to) {
+        int[] positions = new int[to - from];
+        for(int x = from; x < to; x++) positions[x - from] = suffix(x);
+        Arrays.sort(positions);
+
+        return positions;
+    }
+
+    // Every suffix in sa[lo, hi) shares its first d characters, so they're sorted by their character at d (suffixes that end before it first).
+    private int lowerBound(int lo, int hi, int d, char c) {
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(charAt(suffix(mid), d) < c) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    private int upperBound(int lo, int hi, int d, char c) {
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(charAt(suffix(mid), d) <= c) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    private int suffix(int index) {
+        return suffixes.getAtIndex(suffixLayout, index);
+    }
+
+    // The character d places into a suffix, or -1 past the end of the subject.
+    private int charAt(int suffix, int d) {
+        int position = suffix + d;
+        return position < length ? text.charAt(position) : -1;
+    }
+
+    // The suffix array follows the subject's chars, rounded up so the ints are aligned.
+    private static long suffixOffset(int n) {
+        return HEADER_BYTES + (((long) n * Character.BYTES + 3) & ~3L);
+    }
+}
@@ -0,0 +1,147 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import java.util.Arrays;
+
+// Builds suffix arrays in linear time with SA-IS (Nong, Zhang & Chan, "Two Efficient Algorithms for Linear Time Suffix Array Construction", 2011).
+// Suffixes are split into S-type (smaller than the next suffix) and L-type (larger). The leftmost S-type suffixes of each run (LMS suffixes) are sorted first,
+// by naming their substrings and recursing on the names when they aren't all different, and every other suffix is then put in place by induced sorting.
+// The text is reduced to the characters it actually uses before sorting, so the bucket arrays are as small as its alphabet rather than 65536 entries.
+final class SuffixArray {
+    private SuffixArray() {}
+
+    // The start of every suffix of the text, in sorted order. A suffix that is a prefix of another sorts first.
+    // The array has one extra slot at the front (the empty suffix), so the sorted suffixes are at sa[1..n].
+    static int[] build(CharSequence text) {
+        int n = text.length();
+        if(n == 0) return new int[]{ 0 };
+
+        // Number the characters the text uses from 1 in order, leaving 0 for the sentinel at the end.
+        int[] rank = new int[Character.MAX_VALUE + 1];
+        for(int i = 0; i < n; i++) rank[text.charAt(i)] = 1;
+        int alphabet = 1;
+        for(int c = 0; c < rank.length; c++) {
+            if(rank[c] != 0) rank[c] = alphabet++;
+        }
+
+        int[] s = new int[n + 1];
+        for(int i = 0; i < n; i++) s[i] = rank[text.charAt(i)];
+
+        int[] sa = new int[n + 1];
+        sais(s, sa, n + 1, alphabet);
+
+        return sa;
+    }
+
+    // Sorts the suffixes of s[0..n), where every value is in [0, alphabet) and s[n - 1] is a unique 0.
+    private static void sais(int[] s, int[] sa, int n, int alphabet) {
+        boolean[] sType = new boolean[n];
+        sType[n - 1] = true;
+        for(int i = n - 2; i >= 0; i--) sType[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && sType[i + 1]);
+
+        int[] buckets = new int[alphabet];
+
+        // Stage 1: put the LMS suffixes at the ends of their buckets, and induce an order where their substrings (up to the next LMS position) are sorted.
+        bucketEnds(s, buckets, n);
+        Arrays.fill(sa, 0, n, -1);
+        for(int i = 1; i < n; i++) {
+            if(isLms(sType, i)) sa[--buckets[s[i]]] = i;
+        }
+        induce(s, sa, sType, buckets, n);
+
+        // Move the sorted LMS suffixes to the front, then name each by its substring. Equal substrings get the same name.
+        int lmsCount = 0;
+        for(int i = 0; i < n; i++) {
+            if(isLms(sType, sa[i])) sa[lmsCount++] = sa[i];
+        }
+        Arrays.fill(sa, lmsCount, n, -1);
+
+        int names = 0, previous = -1;
+        for(int i = 0; i < lmsCount; i++) {
+            int position = sa[i];
+            boolean different = false;
+
+            for(int d = 0; d < n; d++) {
+                if(previous == -1 || s[position + d] != s[previous + d] || sType[position + d] != sType[previous + d]) {
+                    different = true;
+                    break;
+                }
+                if(d > 0 && (isLms(sType, position + d) || isLms(sType, previous + d))) break;
+            }
+
+            if(different) {
+                names++;
+                previous = position;
+            }
+            sa[lmsCount + position / 2] = names - 1; // LMS positions are at least 2 apart, so each gets its own slot.
+        }
+
+        // Pack the names into the end of sa, in order of position. That's the reduced string.
+        for(int i = n - 1, j = n - 1; i >= lmsCount; i--) {
+            if(sa[i] >= 0) sa[j--] = sa[i];
+        }
+
+        // Stage 2: sort the reduced string. If every name is different, its suffix array follows straight from the names.
+        int[] reduced = Arrays.copyOfRange(sa, n - lmsCount, n);
+        int[] reducedSa = new int[lmsCount];
+        if(names < lmsCount) {
+            sais(reduced, reducedSa, lmsCount, names);
+        } else {
+            for(int i = 0; i < lmsCount; i++) reducedSa[reduced[i]] = i;
+        }
+
+        // Stage 3: put the LMS suffixes in their final order at the ends of their buckets, and induce everything else from them.
+        for(int i = 1, j = 0; i < n; i++) {
+            if(isLms(sType, i)) reduced[j++] = i;
+        }
+        for(int i = 0; i < lmsCount; i++) reducedSa[i] = reduced[reducedSa[i]];
+
+        bucketEnds(s, buckets, n);
+        Arrays.fill(sa, 0, n, -1);
+        for(int i = lmsCount - 1; i >= 0; i--) {
+            int position = reducedSa[i];
+            sa[--buckets[s[position]]] = position;
+        }
+        induce(s, sa, sType, buckets, n);
+    }
+
+    // Induces the L-type suffixes left to right from the bucket starts, then the S-type suffixes right to left from the bucket ends.
+    private static void induce(int[] s, int[] sa, boolean[] sType, int[] buckets, int n) {
+        bucketStarts(s, buckets, n);
+        for(int i = 0; i < n; i++) {
+            int j = sa[i] - 1;
+            if(j >= 0 && !sType[j]) sa[buckets[s[j]]++] = j;
+        }
+
+        bucketEnds(s, buckets, n);
+        for(int i = n - 1; i >= 0; i--) {
+            int j = sa[i] - 1;
+            if(j >= 0 && sType[j]) sa[--buckets[s[j]]] = j;
+        }
+    }
+
+    private static void bucketStarts(int[] s, int[] buckets, int n) {
+        counts(s, buckets, n);
+        for(int c = 0, sum = 0; c < buckets.length; c++) {
+            int count = buckets[c];
+            buckets[c] = sum;
+            sum += count;
+        }
+    }
+
+    private static void bucketEnds(int[] s, int[] buckets, int n) {
+        counts(s, buckets, n);
+        for(int c = 0, sum = 0; c < buckets.length; c++) {
+            sum += buckets[c];
+            buckets[c] = sum;
+        }
+    }
+
+    private static void counts(int[] s, int[] buckets, int n) {
+        Arrays.fill(buckets, 0);
+        for(int i = 0; i < n; i++) buckets[s[i]]++;
+    }
+
+    private static boolean isLms(boolean[] sType, int i) {
+        return i > 0 && sType[i] && !sType[i - 1];
+    }
+}
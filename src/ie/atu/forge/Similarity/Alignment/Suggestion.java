@@ -0,0 +1,10 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * A spelling suggestion, with its edit distance from the query and how often the term appeared in the corpus.
+ *
+ * @param term The suggested dictionary term.
+ * @param distance The Damerau-Levenshtein distance between the term and the query.
+ * @param count The frequency of the term in the corpus the index was built from.
+ */
+public record Suggestion(String term, int distance, int count) {}
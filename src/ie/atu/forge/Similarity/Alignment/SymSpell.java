@@ -0,0 +1,342 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import ie.atu.forge.Vectorisers.BagOfWords;
+
+import java.util.*;
+
+/**
+ * Symmetric delete spelling correction. Every dictionary term is indexed under all the strings that can be made by deleting up to k of its characters.
+ * At lookup time, the same deletes are generated for the query. Any term sharing a delete with the query is a candidate, which is then verified with the bounded Damerau-Levenshtein distance.
+ * Since only deletes are generated (never insertions, substitutions, or transpositions), the number of variants stays small and lookups don't depend on the alphabet size.
+ * Suggestions are ranked by distance, then by how often the term appeared in the corpus.<br><br>
+ *
+ * The index is immutable once built, so it can be shared between threads.<br><br>
+ *
+ * <a href="https://github.com/wolfgarbe/SymSpell">Original Implementation.</a>
+ */
+public class SymSpell {
+    private final String[] terms;
+    private final int[] counts;
+    private final int maxDistance;
+    private final int prefixLength;
+
+    // Open-addressing table from the 64-bit hash of a delete to the ids of the terms that produce it.
+    // The ids for slot s are postings[starts[s]] to postings[starts[s + 1] - 1]. A key of 0 marks an empty slot.
+    // Two different deletes sharing a hash only adds candidates, which are all verified anyway.
+    private final long[] keys;
+    private final int[] starts;
+    private final int[] postings;
+
+    /**
+     * Builds an index over the words (and counts) in a bag of words.
+     *
+     * @param bag The corpus. Each word's count is used to rank suggestions.
+     * @param maxDistance The largest edit distance that lookups can use.
+     */
+    public SymSpell(BagOfWords bag, int maxDistance) {
+        this(bag.getBag(), maxDistance, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds an index over the words (and counts) in a bag of words.
+     * Only the first prefixLength characters of each term are used to generate deletes, which greatly reduces the size of the index for long terms.
+     * Candidates are still verified against the full term.
+     *
+     * @param bag The corpus. Each word's count is used to rank suggestions.
+     * @param maxDistance The largest edit distance that lookups can use.
+     * @param prefixLength The number of leading characters used to generate deletes (must be greater than maxDistance).
+     */
+    public SymSpell(BagOfWords bag, int maxDistance, int prefixLength) {
+        this(bag.getBag(), maxDistance, prefixLength);
+    }
+
+    /**
+     * Builds an index over the given terms and their counts.
+     *
+     * @param counts A map of each term to its frequency.
+     * @param maxDistance The largest edit distance that lookups can use.
+     */
+    public SymSpell(Map<String, Integer> counts, int maxDistance) {
+        this(counts, maxDistance, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds an index over the given terms and their counts.
+     * Only the first prefixLength characters of each term are used to generate deletes, which greatly reduces the size of the index for long terms.
+     * Candidates are still verified against the full term.
+     *
+     * @param counts A map of each term to its frequency.
+     * @param maxDistance The largest edit distance that lookups can use.
+     * @param prefixLength The number of leading characters used to generate deletes (must be greater than maxDistance).
+     */
+    public SymSpell(Map<String, Integer> counts, int maxDistance, int prefixLength) {
+        if(counts == null) throw new IllegalArgumentException("The provided counts are null.");
+        if(maxDistance < 0) throw new IllegalArgumentException("maxDistance must not be negative.");
+        if(prefixLength <= maxDistance) throw new IllegalArgumentException("prefixLength must be greater than maxDistance.");
+
+        this.maxDistance = maxDistance;
+        this.prefixLength = prefixLength;
+
+        String[] terms = new String[counts.size()];
+        int[] termCounts = new int[counts.size()];
+        int id = 0;
+        for(Map.Entry<String, Integer> entry: counts.entrySet()) {
+            if(entry.getKey() == null) continue;
+            terms[id] = entry.getKey();
+            termCounts[id++] = entry.getValue() == null ? 0 : entry.getValue();
+        }
+        int termCount = id;
+        this.terms = Arrays.copyOf(terms, termCount);
+        this.counts = Arrays.copyOf(termCounts, termCount);
+
+        // First pass: work out every (delete, term) pair, counting how many terms share each delete.
+        LongBuffer pairHashes = new LongBuffer();
+        int[] pairIds = new int[16];
+        LongBuffer variants = new LongBuffer();
+        char[] chars = new char[16];
+
+        long[] table = new long[16];
+        int[] tableCounts = new int[16];
+        int distinct = 0;
+
+        for(id = 0; id < termCount; id++) {
+            int length = Math.min(terms[id].length(), prefixLength);
+            if(chars.length < length) chars = new char[length];
+            terms[id].getChars(0, length, chars, 0);
+
+            variants.size = 0;
+            deletes(chars, length, maxDistance, variants);
+
+            // Repeated letters can produce the same delete more than once. Each term only needs to be listed once per delete.
+            Arrays.sort(variants.data, 0, variants.size);
+            for(int v = 0; v < variants.size; v++) {
+                long hash = variants.data[v];
+                if(v > 0 && hash == variants.data[v - 1]) continue;
+
+                if(pairHashes.size == pairIds.length) pairIds = Arrays.copyOf(pairIds, pairIds.length * 2);
+                pairIds[pairHashes.size] = id;
+                pairHashes.add(hash);
+
+                if(2 * (distinct + 1) > table.length) {
+                    long[] oldTable = table;
+                    int[] oldCounts = tableCounts;
+                    table = new long[oldTable.length * 2];
+                    tableCounts = new int[oldTable.length * 2];
+
+                    for(int s = 0; s < oldTable.length; s++) {
+                        if(oldTable[s] == 0L) continue;
+                        int slot = slot(table, oldTable[s]);
+                        table[slot] = oldTable[s];
+                        tableCounts[slot] = oldCounts[s];
+                    }
+                }
+
+                int slot = slot(table, hash);
+                if(table[slot] == 0L) {
+                    table[slot] = hash;
+                    distinct++;
+                }
+                tableCounts[slot]++;
+            }
+        }
+
+        // Second pass: lay the term ids out contiguously per slot (a counting sort on the slot).
+        int[] slotStarts = new int[table.length + 1];
+        for(int s = 0; s < table.length; s++) slotStarts[s + 1] = slotStarts[s] + tableCounts[s];
+
+        int[] fill = Arrays.copyOf(slotStarts, table.length);
+        int[] ids = new int[pairHashes.size];
+        for(int p = 0; p < pairHashes.size; p++) {
+            int slot = slot(table, pairHashes.data[p]);
+            ids[fill[slot]++] = pairIds[p];
+        }
+
+        keys = table;
+        starts = slotStarts;
+        postings = ids;
+    }
+
+    /**
+     * Finds every dictionary term within the index's maximum edit distance of the query.
+     *
+     * @param query The (possibly misspelled) word.
+     * @return The suggestions, closest first. Terms at the same distance are ordered by count (most frequent first).
+     */
+    public List<Suggestion> lookup(String query) {
+        return lookup(query, maxDistance);
+    }
+
+    /**
+     * Finds every dictionary term within maxDistance edits (insertions, deletions, substitutions, and adjacent transpositions) of the query.
+     *
+     * @param query The (possibly misspelled) word.
+     * @param maxDistance The largest edit distance allowed. Can't be larger than the distance the index was built with.
+     * @return The suggestions, closest first. Terms at the same distance are ordered by count (most frequent first).
+     */
+    public List<Suggestion> lookup(String query, int maxDistance) {
+        if(query == null) throw new IllegalArgumentException("The provided query is null.");
+        if(maxDistance < 0) throw new IllegalArgumentException("maxDistance must not be negative.");
+        if(maxDistance > this.maxDistance) throw new IllegalArgumentException("maxDistance can't be larger than the index's maximum distance (" + this.maxDistance + ").");
+
+        int length = Math.min(query.length(), prefixLength);
+        char[] chars = new char[length];
+        query.getChars(0, length, chars, 0);
+
+        LongBuffer variants = new LongBuffer();
+        deletes(chars, length, maxDistance, variants);
+
+        IntSet seen = new IntSet();
+        List<Suggestion> suggestions = new ArrayList<>();
+
+        for(int v = 0; v < variants.size; v++) {
+            int slot = slot(keys, variants.data[v]);
+            if(keys[slot] == 0L) continue;
+
+            for(int p = starts[slot]; p < starts[slot + 1]; p++) {
+                int id = postings[p];
+                if(!seen.add(id)) continue;
+
+                String term = terms[id];
+                if(Math.abs(term.length() - query.length()) > maxDistance) continue;
+
+                int distance = DamerauLevenshtein.distance(term, query, maxDistance);
+                if(distance <= maxDistance) suggestions.add(new Suggestion(term, distance, counts[id]));
+            }
+        }
+
+        suggestions.sort(Comparator.comparingInt(Suggestion::distance)
+                .thenComparing(Comparator.comparingInt(Suggestion::count).reversed())
+                .thenComparing(Suggestion::term));
+
+        return suggestions;
+    }
+
+    /**
+     * Gets the best suggestion for the query (the closest term, with ties going to the most frequent one).
+     *
+     * @param query The (possibly misspelled) word.
+     * @return The best suggestion, or null if no term is within the index's maximum edit distance.
+     */
+    public Suggestion correct(String query) {
+        List<Suggestion> suggestions = lookup(query);
+        return suggestions.isEmpty() ? null : suggestions.get(0);
+    }
+
+    /**
+     * Gets the number of terms in the index.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * Gets the largest edit distance that lookups can use.
+     *
+     * @return The maximum edit distance.
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    // Adds the hash of chars[0, length), and of everything reachable from it by deleting up to 'edits' characters.
+    private static void deletes(char[] chars, int length, int edits, LongBuffer out) {
+        out.add(hash(chars, length));
+        deletes(chars, length, 0, edits, out);
+    }
+
+    // Positions are deleted left to right starting at 'from', so each set of positions is only produced once.
+    // The array is modified in place and restored before returning.
+    private static void deletes(char[] chars, int length, int from, int edits, LongBuffer out) {
+        if(edits == 0 || length == 0) return;
+
+        for(int i = from; i < length; i++) {
+            // Deleting either of 2 equal neighbours gives the same string, so only the first is deleted.
+            if(i > from && chars[i] == chars[i - 1]) continue;
+
+            char removed = chars[i];
+            System.arraycopy(chars, i + 1, chars, i, length - i - 1);
+
+            out.add(hash(chars, length - 1));
+            deletes(chars, length - 1, i, edits - 1, out);
+
+            System.arraycopy(chars, i, chars, i + 1, length - i - 1);
+            chars[i] = removed;
+        }
+    }
+
+    // 64-bit FNV-1a, with a final mix so that consecutive slots aren't filled by similar strings. Never returns 0, as that marks an empty slot.
+    private static long hash(char[] chars, int length) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < length; i++) {
+            h ^= chars[i];
+            h *= 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+
+        return h == 0L ? 1L : h;
+    }
+
+    // Linear probing. Returns the slot holding 'hash', or the empty slot where it would go.
+    private static int slot(long[] table, long hash) {
+        int mask = table.length - 1;
+        int i = (int) hash & mask;
+
+        while(table[i] != 0L && table[i] != hash) i = (i + 1) & mask;
+
+        return i;
+    }
+
+    // A growable array of longs, to avoid boxing every hash.
+    private static final class LongBuffer {
+        long[] data = new long[16];
+        int size = 0;
+
+        void add(long value) {
+            if(size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+    }
+
+    // A minimal open-addressing set of non-negative ints, used to skip candidates that were already checked.
+    private static final class IntSet {
+        int[] slots = new int[16];
+        int size = 0;
+
+        IntSet() {
+            Arrays.fill(slots, -1);
+        }
+
+        boolean add(int value) {
+            if(2 * (size + 1) > slots.length) {
+                int[] old = slots;
+                slots = new int[old.length * 2];
+                Arrays.fill(slots, -1);
+                for(int v: old) {
+                    if(v >= 0) insert(v);
+                }
+            }
+
+            if(!insert(value)) return false;
+            size++;
+            return true;
+        }
+
+        private boolean insert(int value) {
+            int mask = slots.length - 1;
+            int i = (value * 0x9E3779B9) & mask;
+
+            while(slots[i] != -1) {
+                if(slots[i] == value) return false;
+                i = (i + 1) & mask;
+            }
+
+            slots[i] = value;
+            return true;
+        }
+    }
+}
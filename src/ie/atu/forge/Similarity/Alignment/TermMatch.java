@@ -0,0 +1,9 @@
+package ie.atu.forge.Similarity.Alignment;
+
+/**
+ * A dictionary term found by a fuzzy lookup, along with its edit distance from the query.
+ *
+ * @param term The dictionary term.
+ * @param distance The edit distance between the term and the query.
+ */
+public record TermMatch(String term, int distance) {}
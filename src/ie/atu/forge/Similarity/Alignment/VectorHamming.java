@@ -0,0 +1,55 @@
+package ie.atu.forge.Similarity.Alignment;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Hamming distance on the Vector API: both inputs are loaded a full vector at a time (e.g. 32 chars or 64 bytes with AVX-512), compared lane by lane,
+// and the differing lanes are counted with a popcount of the comparison's mask. Two vectors are compared per step, so their loads and compares overlap.
+// Only whole vectors are compared. Hamming finishes the tail with its SWAR loop. Only used once Simd.AVAILABLE has been checked.
+final class VectorHamming {
+    private static final VectorSpecies<Short> CHARS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorHamming() {}
+
+    // The number of leading chars (or bytes) of a 'length' long input that distance() compares.
+    static int charBound(int length) {
+        return CHARS.loopBound(length);
+    }
+
+    static int byteBound(int length) {
+        return BYTES.loopBound(length);
+    }
+
+    // The number of differing chars in s1[0, to) and s2[0, to), where 'to' came from charBound().
+    static int distance(char[] s1, char[] s2, int to) {
+        int lanes = CHARS.length();
+        int dist = 0;
+        int i = 0;
+
+        for(; i + 2 * lanes <= to; i += 2 * lanes) {
+            dist += ShortVector.fromCharArray(CHARS, s1, i).compare(VectorOperators.NE, ShortVector.fromCharArray(CHARS, s2, i)).trueCount()
+                    + ShortVector.fromCharArray(CHARS, s1, i + lanes).compare(VectorOperators.NE, ShortVector.fromCharArray(CHARS, s2, i + lanes)).trueCount();
+        }
+        if(i < to) dist += ShortVector.fromCharArray(CHARS, s1, i).compare(VectorOperators.NE, ShortVector.fromCharArray(CHARS, s2, i)).trueCount();
+
+        return dist;
+    }
+
+    // The same for bytes, where 'to' came from byteBound().
+    static int distance(byte[] s1, byte[] s2, int to) {
+        int lanes = BYTES.length();
+        int dist = 0;
+        int i = 0;
+
+        for(; i + 2 * lanes <= to; i += 2 * lanes) {
+            dist += ByteVector.fromArray(BYTES, s1, i).compare(VectorOperators.NE, ByteVector.fromArray(BYTES, s2, i)).trueCount()
+                    + ByteVector.fromArray(BYTES, s1, i + lanes).compare(VectorOperators.NE, ByteVector.fromArray(BYTES, s2, i + lanes)).trueCount();
+        }
+        if(i < to) dist += ByteVector.fromArray(BYTES, s1, i).compare(VectorOperators.NE, ByteVector.fromArray(BYTES, s2, i)).trueCount();
+
+        return dist;
+    }
+}
@@ -0,0 +1,118 @@
+package ie.atu.forge.Similarity.Alignment;
+
+// Per-thread scratch space for the edit distance and Jaro kernels, so a warmed-up thread can make calls without allocating anything.
+// Buffers only ever grow, up to RETAIN_LIMIT elements. Anything bigger is handed out as a one-off array so a single huge input doesn't stay pinned to the thread.
+// A public method fetches the workspace once and passes it down. Kernels never call back into another public method, so two callers never hold the same buffer.
+final class Workspace {
+    private static final ThreadLocal<Workspace> LOCAL = ThreadLocal.withInitial(Workspace::new);
+    private static final int RETAIN_LIMIT = 1 << 16;
+
+    private PatternMask mask = new PatternMask();
+
+    private char[] chars1 = new char[64];
+    private char[] chars2 = new char[64];
+    private int[] ints1 = new int[64];
+    private int[] ints2 = new int[64];
+    private int[] ints3 = new int[64];
+    private long[] longs1 = new long[4];
+    private long[] longs2 = new long[4];
+    private long[] longs3 = new long[4];
+    private long[] longs4 = new long[4];
+
+    static Workspace get() {
+        return LOCAL.get();
+    }
+
+    // Compiles pattern[from, to) into the pattern mask. A pattern that needed tables bigger than RETAIN_LIMIT gets them as a one-off:
+    // the compiled mask is handed over to the caller, and the thread starts again from a small one.
+    PatternMask mask(char[] pattern, int from, int to) {
+        PatternMask compiled = mask;
+        compiled.compile(pattern, from, to);
+        if(compiled.capacity() > RETAIN_LIMIT) mask = new PatternMask();
+
+        return compiled;
+    }
+
+    // Copies s into the first char buffer. Only the first s.length() characters are valid.
+    char[] chars1(CharSequence s) {
+        char[] buffer = ensure(chars1, s.length());
+        if(buffer.length <= RETAIN_LIMIT) chars1 = buffer;
+        return copy(s, buffer);
+    }
+
+    // Copies s into the second char buffer. Only the first s.length() characters are valid.
+    char[] chars2(CharSequence s) {
+        char[] buffer = ensure(chars2, s.length());
+        if(buffer.length <= RETAIN_LIMIT) chars2 = buffer;
+        return copy(s, buffer);
+    }
+
+    // The int buffers are not cleared. Callers must initialise whatever they read.
+    int[] ints1(int size) {
+        int[] buffer = ensure(ints1, size);
+        if(buffer.length <= RETAIN_LIMIT) ints1 = buffer;
+        return buffer;
+    }
+
+    int[] ints2(int size) {
+        int[] buffer = ensure(ints2, size);
+        if(buffer.length <= RETAIN_LIMIT) ints2 = buffer;
+        return buffer;
+    }
+
+    int[] ints3(int size) {
+        int[] buffer = ensure(ints3, size);
+        if(buffer.length <= RETAIN_LIMIT) ints3 = buffer;
+        return buffer;
+    }
+
+    long[] longs1(int size) {
+        long[] buffer = longs1.length >= size ? longs1 : new long[grow(longs1.length, size)];
+        if(buffer.length <= RETAIN_LIMIT) longs1 = buffer;
+        return buffer;
+    }
+
+    long[] longs2(int size) {
+        long[] buffer = longs2.length >= size ? longs2 : new long[grow(longs2.length, size)];
+        if(buffer.length <= RETAIN_LIMIT) longs2 = buffer;
+        return buffer;
+    }
+
+    long[] longs3(int size) {
+        long[] buffer = longs3.length >= size ? longs3 : new long[grow(longs3.length, size)];
+        if(buffer.length <= RETAIN_LIMIT) longs3 = buffer;
+        return buffer;
+    }
+
+    long[] longs4(int size) {
+        long[] buffer = longs4.length >= size ? longs4 : new long[grow(longs4.length, size)];
+        if(buffer.length <= RETAIN_LIMIT) longs4 = buffer;
+        return buffer;
+    }
+
+    private static char[] ensure(char[] buffer, int size) {
+        return buffer.length >= size ? buffer : new char[grow(buffer.length, size)];
+    }
+
+    private static int[] ensure(int[] buffer, int size) {
+        return buffer.length >= size ? buffer : new int[grow(buffer.length, size)];
+    }
+
+    private static int grow(int current, int size) {
+        // Grow by at least 1.5x, so a slowly increasing input size doesn't reallocate on every call. Don't overshoot the retain limit though.
+        if(size > RETAIN_LIMIT) return size;
+        return Math.min(Math.max(size, current + (current >> 1)), RETAIN_LIMIT);
+    }
+
+    private static char[] copy(CharSequence s, char[] buffer) {
+        int length = s.length();
+
+        if(s instanceof String str) {
+            str.getChars(0, length, buffer, 0);
+        } else {
+            for(int i = 0; i < length; i++) buffer[i] = s.charAt(i);
+        }
+
+        return buffer;
+    }
+}